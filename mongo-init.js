@@ -26,10 +26,13 @@ db.createUser({
   ],
 });
 
-// Insert some initial data
+// Price-ordered index used by range filters and the covered sortByPrice scan
+db.products.createIndex({ price: 1, _id: 1, item: 1 }, { name: "price_barcode_item" });
+
+// Insert some initial data; the barcode is the document _id
 db.products.insertMany([
   {
-    barcode: "74001755",
+    _id: "74001755", // barcode
     item: "Ball Gown",
     category: "Full Body Outfits",
     price: 3548,
@@ -37,7 +40,7 @@ db.products.insertMany([
     available: 1,
   },
   {
-    barcode: "74001756",
+    _id: "74001756", // barcode
     item: "Summer Dress",
     category: "Full Body Outfits",
     price: 2500,
@@ -45,7 +48,7 @@ db.products.insertMany([
     available: 1,
   },
   {
-    barcode: "74001757",
+    _id: "74001757", // barcode
     item: "Winter Coat",
     category: "Outerwear",
     price: 4000,
@@ -53,7 +56,7 @@ db.products.insertMany([
     available: 1,
   },
   {
-    barcode: "74002423",
+    _id: "74002423", // barcode
     item: "Silk Scarf",
     category: "Accessories",
     price: 890,
@@ -61,7 +64,7 @@ db.products.insertMany([
     available: 1,
   },
   {
-    barcode: "74003512",
+    _id: "74003512", // barcode
     item: "Leather Jacket",
     category: "Outerwear",
     price: 2250,
@@ -69,7 +72,7 @@ db.products.insertMany([
     available: 1,
   },
   {
-    barcode: "74004298",
+    _id: "74004298", // barcode
     item: "Cotton T-Shirt",
     category: "Casual Wear",
     price: 450,
@@ -77,7 +80,7 @@ db.products.insertMany([
     available: 1,
   },
   {
-    barcode: "74005123",
+    _id: "74005123", // barcode
     item: "Denim Jeans",
     category: "Casual Wear",
     price: 1200,
@@ -85,7 +88,7 @@ db.products.insertMany([
     available: 0,
   },
   {
-    barcode: "74006789",
+    _id: "74006789", // barcode
     item: "Wool Sweater",
     category: "Winter Collection",
     price: 1750,
@@ -93,7 +96,7 @@ db.products.insertMany([
     available: 0,
   },
   {
-    barcode: "74007890",
+    _id: "74007890", // barcode
     item: "Designer Sunglasses",
     category: "Accessories",
     price: 1580,
@@ -11,6 +11,7 @@ display_usage() {
     echo "  build        Build the application"
     echo "  run          Run the application"
     echo "  test         Run the tests"
+    echo "  loadtest     Load-test a running application (extra --name=value options are passed on)"
     echo "  clean        Clean the project"
     echo "  help         Display this help message"
     echo ""
@@ -39,6 +40,11 @@ case "$1" in
         echo "Running tests..."
         mvn test
         ;;
+    loadtest)
+        echo "Load-testing the running application..."
+        shift
+        mvn -P loadtest test-compile exec:exec -Dloadtest.args="$*"
+        ;;
     clean)
         echo "Cleaning the project..."
         mvn clean
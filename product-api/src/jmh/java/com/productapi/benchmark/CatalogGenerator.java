@@ -0,0 +1,88 @@
+package com.productapi.benchmark;
+
+import com.productapi.model.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic catalogs for the benchmarks
+ *
+ * Product i always gets the same barcode, name, category and price for a
+ * given seed, so runs of different stores and releases load identical
+ * data. Names and categories repeat the way a real catalog does, which
+ * matters to the stores that dictionary-encode them.
+ */
+final class CatalogGenerator {
+
+    // Prices are spread over [0, MAX_PRICE) cents
+    static final int MAX_PRICE = 100000;
+
+    private static final int BARCODE_LENGTH = 10;
+
+    private static final String[] CATEGORIES = {
+            "Full Body Outfits", "Outerwear", "Accessories", "Casual Wear", "Footwear",
+            "Tops", "Bottoms", "Sportswear", "Sleepwear", "Swimwear", "Formal Wear", "Bags"
+    };
+
+    private static final String[] NAMES = {
+            "Dress", "Coat", "Scarf", "Jacket", "T-Shirt", "Jeans", "Sneakers", "Blouse",
+            "Skirt", "Sweater", "Hoodie", "Shorts", "Boots", "Cardigan", "Blazer", "Belt"
+    };
+
+    private static final String[] MATERIALS = {
+            "Cotton", "Linen", "Silk", "Wool", "Denim", "Leather", "Cashmere", "Polyester"
+    };
+
+    private final long seed;
+
+    CatalogGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Get the barcode of the i-th generated product
+     *
+     * @param i product index
+     * @return a zero-padded barcode, unique per index
+     */
+    static String barcode(long i) {
+        // Cheaper than String.format, which would dominate a lookup benchmark
+        char[] digits = new char[BARCODE_LENGTH];
+        for (int d = BARCODE_LENGTH - 1; d >= 0; d--) {
+            digits[d] = (char) ('0' + i % 10);
+            i /= 10;
+        }
+        return new String(digits);
+    }
+
+    /**
+     * Build the i-th product
+     *
+     * @param i product index
+     * @return the product
+     */
+    Product product(long i) {
+        SplittableRandom random = new SplittableRandom(seed ^ (i * 0x9E3779B97F4A7C15L));
+        String name = MATERIALS[random.nextInt(MATERIALS.length)] + " " + NAMES[random.nextInt(NAMES.length)]
+                + " " + random.nextInt(1000);
+        return new Product(barcode(i), name, CATEGORIES[random.nextInt(CATEGORIES.length)],
+                random.nextInt(MAX_PRICE), random.nextInt(51), random.nextInt(10) == 0 ? 0 : 1);
+    }
+
+    /**
+     * Build products [from, to)
+     *
+     * @param from first product index
+     * @param to index after the last product
+     * @return the products, in index order
+     */
+    List<Product> products(long from, long to) {
+        List<Product> products = new ArrayList<>((int) (to - from));
+        for (long i = from; i < to; i++) {
+            products.add(product(i));
+        }
+        return products;
+    }
+}
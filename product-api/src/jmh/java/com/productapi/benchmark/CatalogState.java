@@ -0,0 +1,133 @@
+package com.productapi.benchmark;
+
+import com.productapi.model.Product;
+import com.productapi.service.ColumnarProductServiceImpl;
+import com.productapi.service.OffHeapProductServiceImpl;
+import com.productapi.service.ProductService;
+import com.productapi.service.ProductServiceImpl;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * A catalog store loaded with a generated catalog, shared by all benchmark threads
+ *
+ * The store is built the way Spring builds it, minus the container: the
+ * no-argument constructor and init(), which seeds the sample products,
+ * then the generated products in bulk upserts. With wal set to off the
+ * memory store runs without snapshot file or write-ahead log, so nothing
+ * touches the disk. Otherwise wal is the group commit window in
+ * microseconds, and the log and its snapshot file live in a temporary
+ * directory deleted after the trial; the load is logged too, before any
+ * timed call. The columnar and offheap stores have no log and ignore wal,
+ * so narrow it with -p wal=off when benchmarking them. The mongo store
+ * needs a server and is not covered.
+ */
+@State(Scope.Benchmark)
+public class CatalogState {
+
+    // Products per bulk upsert while loading
+    private static final int LOAD_BATCH = 100000;
+
+    static final long SEED = 42;
+
+    @Param({"memory", "columnar", "offheap"})
+    public String store;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int catalogSize;
+
+    // Write-ahead log commit window in microseconds, or off
+    @Param({"off", "0", "1000"})
+    public String wal;
+
+    ProductService productService;
+    CatalogGenerator generator;
+
+    private Path walDirectory;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        productService = create(store);
+        generator = new CatalogGenerator(SEED);
+        for (long from = 0; from < catalogSize; from += LOAD_BATCH) {
+            long to = Math.min(catalogSize, from + LOAD_BATCH);
+            productService.upsertAll(generator.products(from, to));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        if (productService instanceof ProductServiceImpl) {
+            ((ProductServiceImpl) productService).shutdown();
+        }
+        productService = null;
+        if (walDirectory != null) {
+            delete(walDirectory);
+            walDirectory = null;
+        }
+    }
+
+    /**
+     * Get a generated product, as loaded
+     *
+     * @param i product index in [0, catalogSize)
+     * @return the product
+     */
+    Product product(long i) {
+        return generator.product(i);
+    }
+
+    private ProductService create(String store) throws IOException {
+        switch (store) {
+            case "memory": {
+                ProductServiceImpl service = new ProductServiceImpl();
+                if (!"off".equals(wal)) {
+                    walDirectory = Files.createTempDirectory("catalog-wal");
+                    service.setWalDirectory(walDirectory.resolve("wal").toString());
+                    service.setSnapshotPath(walDirectory.resolve("catalog.snapshot").toString());
+                    service.setCommitWindowMicros(Long.parseLong(wal));
+                }
+                service.init();
+                return service;
+            }
+            case "columnar": {
+                ColumnarProductServiceImpl service = new ColumnarProductServiceImpl();
+                service.init();
+                return service;
+            }
+            case "offheap": {
+                OffHeapProductServiceImpl service = new OffHeapProductServiceImpl();
+                service.init();
+                return service;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown store: " + store);
+        }
+    }
+
+    private static void delete(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            // Deepest first, so each directory is empty when it is deleted
+            files.sorted(Comparator.reverseOrder()).forEach(file -> {
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.productapi.benchmark;
+
+import com.productapi.model.Product;
+import com.productapi.service.ProductServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Price range filters of the memory store with and without the range cache
+ *
+ * The store is loaded as in {@link CatalogState}, with app.catalog.range-cache.size
+ * set from rangeCacheSize; 0 turns the cache off. Ranges are drawn from a
+ * fixed pool: with distinctRanges below the cache size every lookup after
+ * warmup is a hit, above it most lookups miss and insert. Readers run on
+ * one and on eight threads, so the cost of the cache's bookkeeping under
+ * contention shows next to the binary searches it saves.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+public class PriceRangeCacheBenchmark {
+
+    /**
+     * A loaded memory store with the range cache sized from the parameter
+     */
+    @State(Scope.Benchmark)
+    public static class Store {
+
+        @Param({"0", "256"})
+        public int rangeCacheSize;
+
+        @Param({"1000000"})
+        public int catalogSize;
+
+        ProductServiceImpl productService;
+
+        @Setup(Level.Trial)
+        public void load() {
+            productService = new ProductServiceImpl();
+            productService.setRangeCacheSize(rangeCacheSize);
+            productService.init();
+            CatalogGenerator generator = new CatalogGenerator(CatalogState.SEED);
+            for (long from = 0; from < catalogSize; from += 100000) {
+                productService.upsertAll(generator.products(from, Math.min(catalogSize, from + 100000)));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            productService.shutdown();
+        }
+    }
+
+    /**
+     * Ranges one thread filters by, cycled in a random order
+     */
+    @State(Scope.Thread)
+    public static class Ranges {
+
+        @Param({"64", "4096"})
+        public int distinctRanges;
+
+        private int[] starts;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            // The same pool on every thread, so the threads share the cached entries
+            SplittableRandom pool = new SplittableRandom(CatalogState.SEED);
+            starts = new int[distinctRanges];
+            for (int i = 0; i < distinctRanges; i++) {
+                starts[i] = pool.nextInt(CatalogGenerator.MAX_PRICE - RANGE_WIDTH);
+            }
+            next = new SplittableRandom(Thread.currentThread().getId()).nextInt(distinctRanges);
+        }
+
+        int nextStart() {
+            int start = starts[next];
+            next = next + 1 == starts.length ? 0 : next + 1;
+            return start;
+        }
+    }
+
+    // A hundredth of the price scale, as in ProductServiceBenchmark
+    static final int RANGE_WIDTH = CatalogGenerator.MAX_PRICE / 100;
+
+    @Benchmark
+    @Threads(1)
+    public List<Product> filterOneThread(Store store, Ranges ranges) {
+        int from = ranges.nextStart();
+        return store.productService.filterByPriceRange(from, from + RANGE_WIDTH);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public List<Product> filterEightThreads(Store store, Ranges ranges) {
+        int from = ranges.nextStart();
+        return store.productService.filterByPriceRange(from, from + RANGE_WIDTH);
+    }
+}
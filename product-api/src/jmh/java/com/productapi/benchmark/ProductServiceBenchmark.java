@@ -0,0 +1,257 @@
+package com.productapi.benchmark;
+
+import com.productapi.model.BulkUpsertResult;
+import com.productapi.model.Product;
+import com.productapi.service.PageSpec;
+import com.productapi.service.ProductSort;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hot paths of the catalog stores over generated catalogs
+ *
+ * Every benchmark runs against each store and catalog size of
+ * {@link CatalogState}; narrow them with -p store=memory -p catalogSize=1000000.
+ * Reads pick random products and price ranges from a per-thread generator,
+ * so caches see a realistic spread of keys rather than one hot key. Writes
+ * generate the product they write inside the timed call, which costs well
+ * under a microsecond.
+ *
+ * Update and bulk upsert reprice existing products, so they keep the
+ * catalog at its size by themselves. Create and delete do
+ * not, and undoing each call in a per-invocation setup would put JMH's
+ * own timestamps around every microsecond-scale call. They therefore run
+ * as batches instead: each iteration times WRITE_BATCH calls as one
+ * single-shot operation, so their score is the time per batch, and an
+ * untimed iteration teardown removes the created products or restores
+ * the deleted ones. A batch deletes distinct products, so every call
+ * finds the product it deletes. Run with -p wal=0,1000 to see what the
+ * write-ahead log and its group commit add to each write. The mixed group
+ * runs lookups, range filters, price sorts and updates concurrently, so
+ * readers pay for the snapshot and cache invalidation caused by writers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx8g", "-XX:MaxDirectMemorySize=8g"})
+public class ProductServiceBenchmark {
+
+    /**
+     * Random choices of one benchmark thread
+     */
+    @State(Scope.Thread)
+    public static class Picks {
+
+        // Share of the price scale covered by a filtered range
+        @Param({"0.01"})
+        public double selectivity;
+
+        // Barcodes drawn ahead of time, so lookups do not time building them
+        private static final int BARCODE_POOL = 65536;
+
+        private SplittableRandom random;
+        private int catalogSize;
+        private int rangeWidth;
+        private String[] barcodes;
+        private int nextBarcode;
+
+        @Setup(Level.Trial)
+        public void setup(CatalogState catalog) {
+            random = new SplittableRandom(CatalogState.SEED + Thread.currentThread().getId());
+            catalogSize = catalog.catalogSize;
+            rangeWidth = (int) (CatalogGenerator.MAX_PRICE * selectivity);
+            barcodes = new String[BARCODE_POOL];
+            for (int i = 0; i < BARCODE_POOL; i++) {
+                barcodes[i] = CatalogGenerator.barcode(index());
+            }
+        }
+
+        long index() {
+            return random.nextInt(catalogSize);
+        }
+
+        String barcode() {
+            String barcode = barcodes[nextBarcode];
+            nextBarcode = (nextBarcode + 1) & (BARCODE_POOL - 1);
+            return barcode;
+        }
+
+        int rangeStart() {
+            return random.nextInt(CatalogGenerator.MAX_PRICE - rangeWidth + 1);
+        }
+
+        int price() {
+            return random.nextInt(CatalogGenerator.MAX_PRICE);
+        }
+    }
+
+    /**
+     * Write batch of one benchmark thread; undone after every iteration
+     */
+    @State(Scope.Thread)
+    public static class Writes {
+
+        // Barcodes of created products start above the generated ones, one block per thread
+        private static final AtomicInteger threads = new AtomicInteger();
+
+        private SplittableRandom random;
+        private long nextCreated;
+        private final List<String> created = new ArrayList<>(WRITE_BATCH);
+        private final List<Product> deleted = new ArrayList<>(WRITE_BATCH);
+        private long[] toDelete;
+        private int nextDelete;
+
+        @Setup(Level.Trial)
+        public void setup(CatalogState catalog) {
+            random = new SplittableRandom(CatalogState.SEED - Thread.currentThread().getId());
+            nextCreated = catalog.catalogSize + threads.getAndIncrement() * 1_000_000_000L;
+        }
+
+        @Setup(Level.Iteration)
+        public void draw(CatalogState catalog) {
+            // Distinct products, so no delete of the batch misses
+            Set<Long> picked = new HashSet<>();
+            int count = Math.min(WRITE_BATCH, catalog.catalogSize);
+            while (picked.size() < count) {
+                picked.add((long) random.nextInt(catalog.catalogSize));
+            }
+            toDelete = picked.stream().mapToLong(Long::longValue).toArray();
+            nextDelete = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void undo(CatalogState catalog) {
+            for (String barcode : created) {
+                catalog.productService.deleteProduct(barcode);
+            }
+            created.clear();
+            if (!deleted.isEmpty()) {
+                catalog.productService.upsertAll(deleted);
+                deleted.clear();
+            }
+        }
+
+        long nextDelete() {
+            return toDelete[nextDelete++ % toDelete.length];
+        }
+    }
+
+    // Calls per timed create or delete batch; a tenth of the smallest catalog
+    static final int WRITE_BATCH = 100;
+
+    // Products per bulk upsert
+    static final int BULK_SIZE = 100;
+
+    private static final ProductSort FINAL_PRICE_DESC = ProductSort.parse("finalPrice:desc,item");
+    private static final PageSpec TOP_PAGE = PageSpec.of(0, 100);
+
+    @Benchmark
+    public Product lookupByBarcode(CatalogState catalog, Picks picks) {
+        return catalog.productService.getProductByBarcode(picks.barcode());
+    }
+
+    @Benchmark
+    public List<Product> filterByPriceRange(CatalogState catalog, Picks picks) {
+        int from = picks.rangeStart();
+        return catalog.productService.filterByPriceRange(from, from + picks.rangeWidth);
+    }
+
+    @Benchmark
+    public List<String> sortByPrice(CatalogState catalog) {
+        return catalog.productService.sortByPrice();
+    }
+
+    @Benchmark
+    public List<Product> sortByFinalPriceTopPage(CatalogState catalog) {
+        return catalog.productService.sortProducts(FINAL_PRICE_DESC, TOP_PAGE);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 50, batchSize = WRITE_BATCH)
+    @Measurement(iterations = 200, batchSize = WRITE_BATCH)
+    public Product create(CatalogState catalog, Writes writes) {
+        long i = writes.nextCreated++;
+        Product product = catalog.generator.product(i);
+        writes.created.add(product.getBarcode());
+        return catalog.productService.createProduct(product);
+    }
+
+    @Benchmark
+    public Product update(CatalogState catalog, Picks picks) {
+        Product product = catalog.product(picks.index());
+        product.setPrice(picks.price());
+        return catalog.productService.updateProduct(product);
+    }
+
+    @Benchmark
+    public BulkUpsertResult bulkUpsert(CatalogState catalog, Picks picks) {
+        List<Product> products = new ArrayList<>(BULK_SIZE);
+        for (int i = 0; i < BULK_SIZE; i++) {
+            Product product = catalog.product(picks.index());
+            product.setPrice(picks.price());
+            products.add(product);
+        }
+        return catalog.productService.upsertAll(products);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 50, batchSize = WRITE_BATCH)
+    @Measurement(iterations = 200, batchSize = WRITE_BATCH)
+    public boolean delete(CatalogState catalog, Writes writes) {
+        long i = writes.nextDelete();
+        writes.deleted.add(catalog.product(i));
+        return catalog.productService.deleteProduct(CatalogGenerator.barcode(i));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(6)
+    public Product mixedLookup(CatalogState catalog, Picks picks) {
+        return lookupByBarcode(catalog, picks);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public List<Product> mixedFilter(CatalogState catalog, Picks picks) {
+        return filterByPriceRange(catalog, picks);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public List<String> mixedSort(CatalogState catalog) {
+        return sortByPrice(catalog);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public Product mixedUpdate(CatalogState catalog, Picks picks) {
+        return update(catalog, picks);
+    }
+}
@@ -0,0 +1,161 @@
+package com.productapi.benchmark;
+
+import com.productapi.model.Product;
+import com.productapi.service.ProductService;
+import com.productapi.service.ProductServiceImpl;
+import com.productapi.service.metrics.ServiceMetricsAspect;
+import com.productapi.tracing.RequestTracer;
+import com.productapi.tracing.TracingAspect;
+import com.productapi.tracing.TracingFilters;
+import com.productapi.tracing.TracingInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the request tracer's hooks with sampling off, against no tracing beans at all
+ *
+ * The memory store is called through a proxy with the
+ * {@link ServiceMetricsAspect}, as in the application. tracing=none stops
+ * there, with a bare filter chain, as if TracingConfig were not loaded.
+ * tracing=off adds the hooks TracingConfig registers: the {@link TracingAspect}
+ * on the same proxy, both tracing filters and the controller interceptor,
+ * with a sample rate of 0. tracing=all samples every request, to put the
+ * difference in scale. Only the hooks run: no HTTP, dispatcher servlet or
+ * security chain, so the difference between none and off is the whole cost
+ * of leaving tracing configured but off.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TracingOverheadBenchmark {
+
+    /**
+     * The sample store, with or without the tracing hooks around it
+     */
+    @State(Scope.Benchmark)
+    public static class Hooks {
+
+        @Param({"none", "off", "all"})
+        public String tracing;
+
+        ProductService service;
+        Filter[] filters;
+        TracingInterceptor interceptor;
+
+        private ProductServiceImpl store;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            store = new ProductServiceImpl();
+            store.init();
+            AspectJProxyFactory proxy = new AspectJProxyFactory(store);
+            StaticListableBeanFactory beans = new StaticListableBeanFactory(Map.of("registry", new SimpleMeterRegistry()));
+            proxy.addAspect(new ServiceMetricsAspect(beans.getBeanProvider(MeterRegistry.class)));
+            if (tracing.equals("none")) {
+                service = proxy.getProxy();
+                filters = new Filter[0];
+                return;
+            }
+            RequestTracer tracer = new RequestTracer(tracing.equals("all") ? 1 : 0, 1024);
+            proxy.addAspect(new TracingAspect(tracer));
+            service = proxy.getProxy();
+            filters = new Filter[] {new TracingFilters.Outer(tracer), new TracingFilters.Inner(tracer)};
+            interceptor = new TracingInterceptor(tracer);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            store.shutdown();
+        }
+    }
+
+    /**
+     * One thread's request and response, reused across invocations
+     */
+    @State(Scope.Thread)
+    public static class Exchange {
+
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/products/" + BARCODE);
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+    }
+
+    // A sample product, so lookups hit
+    static final String BARCODE = "74001755";
+
+    @Benchmark
+    public Product serviceCall(Hooks hooks) {
+        return hooks.service.getProductByBarcode(BARCODE);
+    }
+
+    @Benchmark
+    public Object request(Hooks hooks, Exchange exchange) throws Exception {
+        Product[] found = new Product[1];
+        FilterChain servlet = (request, response) -> {
+            HttpServletRequest http = (HttpServletRequest) request;
+            HttpServletResponse httpResponse = (HttpServletResponse) response;
+            if (hooks.interceptor != null) {
+                hooks.interceptor.preHandle(http, httpResponse, hooks);
+            }
+            found[0] = hooks.service.getProductByBarcode(BARCODE);
+            if (hooks.interceptor != null) {
+                hooks.interceptor.afterCompletion(http, httpResponse, hooks, null);
+            }
+        };
+        new Chain(hooks.filters, servlet).doFilter(exchange.request, exchange.response);
+        return found[0];
+    }
+
+    /**
+     * Runs filters in order, then the servlet, as the container would
+     */
+    private static final class Chain implements FilterChain {
+
+        private final Filter[] filters;
+        private final FilterChain servlet;
+        private int next;
+
+        Chain(Filter[] filters, FilterChain servlet) {
+            this.filters = filters;
+            this.servlet = servlet;
+        }
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
+            if (next < filters.length) {
+                filters[next++].doFilter(request, response, this);
+            } else {
+                servlet.doFilter(request, response);
+            }
+        }
+    }
+}
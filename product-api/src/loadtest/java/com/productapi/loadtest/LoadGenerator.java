@@ -0,0 +1,239 @@
+package com.productapi.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.productapi.loadtest.RouteMix.Route;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop HTTP load generator for the ProductController read routes
+ *
+ * Requests are scheduled at the target rate whether or not earlier ones
+ * have completed, and each latency is measured from the time the request
+ * was scheduled to be sent, not from when it actually went out. A server
+ * that stalls therefore shows up as a stall in every request that should
+ * have been sent meanwhile, instead of as a single slow sample: the
+ * percentiles are free of coordinated omission.
+ *
+ * Before the run, the catalog is read once from GET /products to pick real
+ * barcodes and price ranges. Latencies of requests scheduled during the
+ * warm-up are discarded. Each route records into its own HdrHistogram.
+ *
+ * Run against a locally booted application:
+ * mvn -P loadtest test-compile exec:exec -Dloadtest.args="--rate=500 --duration=60"
+ */
+public final class LoadGenerator {
+
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final LoadOptions options;
+    private final HttpClient client;
+    private final SplittableRandom random;
+    private final Map<Route, Recorder> recorders = new EnumMap<>(Route.class);
+    private final Map<Route, LongAdder> errors = new EnumMap<>(Route.class);
+    private final Semaphore inFlight;
+
+    private List<String> barcodes;
+    private int minPrice;
+    private int maxPrice;
+
+    // Largest delay between a request's scheduled and actual send, i.e. how far the generator itself fell behind
+    private long maxSendLagNanos;
+
+    private LoadGenerator(LoadOptions options) {
+        this.options = options;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.random = new SplittableRandom(options.seed);
+        this.inFlight = new Semaphore(options.maxInFlight);
+        for (Route route : options.mix.routes()) {
+            recorders.put(route, new Recorder(3));
+            errors.put(route, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadOptions.usage());
+            System.exit(2);
+            return;
+        }
+        new LoadGenerator(options).run();
+    }
+
+    private void run() throws IOException, InterruptedException {
+        loadCatalog();
+        System.out.printf(Locale.ROOT, "Target %s at %.0f req/s (%s arrivals), %d s warm-up + %d s measured, mix %s%n",
+                options.baseUrl, options.rate, options.poisson ? "poisson" : "uniform",
+                options.warmupSeconds, options.durationSeconds, options.mix.routes());
+
+        long meanIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / options.rate);
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+
+        long scheduled = start;
+        while (scheduled < end) {
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+                continue;
+            }
+            // Waiting for a permit delays the send, but not the time latency is measured from
+            inFlight.acquire();
+            send(options.mix.next(random), scheduled, scheduled >= measureFrom);
+            maxSendLagNanos = Math.max(maxSendLagNanos, System.nanoTime() - scheduled);
+            scheduled += options.poisson
+                    ? (long) (-Math.log(1 - random.nextDouble()) * meanIntervalNanos)
+                    : meanIntervalNanos;
+        }
+
+        // Let the last requests finish; their latency is still measured from their schedule
+        if (!inFlight.tryAcquire(options.maxInFlight, 60, TimeUnit.SECONDS)) {
+            System.out.println("Warning: requests still in flight after 60 s are not reported");
+        }
+        report();
+    }
+
+    /**
+     * Send one request without waiting for it
+     *
+     * @param route the route to call
+     * @param scheduledNanos when the request was due, on the System.nanoTime clock
+     * @param measured false for warm-up requests
+     */
+    private void send(Route route, long scheduledNanos, boolean measured) {
+        HttpRequest request = HttpRequest.newBuilder(uri(route))
+                .timeout(Duration.ofSeconds(30))
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+            long latency = System.nanoTime() - scheduledNanos;
+            inFlight.release();
+            if (!measured) {
+                return;
+            }
+            recorders.get(route).recordValue(latency);
+            if (failure != null || response.statusCode() >= 400) {
+                errors.get(route).increment();
+            }
+        });
+    }
+
+    private URI uri(Route route) {
+        switch (route) {
+            case PRODUCTS:
+                return options.baseUrl.resolve("/products");
+            case BARCODE:
+                return options.baseUrl.resolve("/products/" + barcodes.get(random.nextInt(barcodes.size())));
+            case SORT:
+                return options.baseUrl.resolve("/sort/price");
+            case FILTER:
+                int width = Math.min(options.rangeWidth, maxPrice - minPrice);
+                int from = minPrice + random.nextInt(maxPrice - minPrice - width + 1);
+                return options.baseUrl.resolve("/filter/price/" + from + "/" + (from + width));
+            default:
+                throw new IllegalStateException("Unknown route " + route);
+        }
+    }
+
+    /**
+     * Read the barcodes and price bounds of the catalog under test
+     */
+    private void loadCatalog() throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(options.baseUrl.resolve("/products")).timeout(Duration.ofSeconds(60)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("GET /products returned " + response.statusCode());
+        }
+        JsonNode products = new ObjectMapper().readTree(response.body());
+        barcodes = new ArrayList<>(products.size());
+        minPrice = Integer.MAX_VALUE;
+        maxPrice = 0;
+        for (JsonNode product : products) {
+            barcodes.add(product.get("barcode").asText());
+            int price = product.get("price").asInt();
+            minPrice = Math.min(minPrice, price);
+            maxPrice = Math.max(maxPrice, price);
+        }
+        if (barcodes.isEmpty()) {
+            throw new IllegalStateException("The catalog is empty");
+        }
+        System.out.printf(Locale.ROOT, "Catalog: %d products, prices %d-%d%n", barcodes.size(), minPrice, maxPrice);
+    }
+
+    private void report() throws IOException {
+        PrintStream out = System.out;
+        double seconds = options.durationSeconds;
+        out.printf(Locale.ROOT, "%n%-10s %10s %8s %10s %10s %10s %10s %10s%n",
+                "route", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        Histogram total = null;
+        long totalErrors = 0;
+        for (Route route : options.mix.routes()) {
+            Histogram histogram = recorders.get(route).getIntervalHistogram();
+            long routeErrors = errors.get(route).sum();
+            print(out, route.name().toLowerCase(Locale.ROOT), histogram, routeErrors, seconds);
+            writeDistribution(route.name().toLowerCase(Locale.ROOT), histogram);
+            if (total == null) {
+                total = histogram.copy();
+            } else {
+                total.add(histogram);
+            }
+            totalErrors += routeErrors;
+        }
+        print(out, "total", total, totalErrors, seconds);
+        writeDistribution("total", total);
+        out.printf(Locale.ROOT, "%nTarget %.0f req/s; the generator fell behind its schedule by at most %.1f ms%n",
+                options.rate, maxSendLagNanos / NANOS_PER_MILLI);
+    }
+
+    private static void print(PrintStream out, String name, Histogram histogram, long errors, double seconds) {
+        out.printf(Locale.ROOT, "%-10s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n",
+                name, histogram.getTotalCount(), errors, histogram.getTotalCount() / seconds,
+                histogram.getValueAtPercentile(50) / NANOS_PER_MILLI,
+                histogram.getValueAtPercentile(99) / NANOS_PER_MILLI,
+                histogram.getValueAtPercentile(99.9) / NANOS_PER_MILLI,
+                histogram.getMaxValue() / NANOS_PER_MILLI);
+    }
+
+    private void writeDistribution(String name, Histogram histogram) throws IOException {
+        if (options.histogramDir == null) {
+            return;
+        }
+        Path dir = Paths.get(options.histogramDir);
+        Files.createDirectories(dir);
+        try (PrintStream file = new PrintStream(Files.newOutputStream(dir.resolve(name + ".hgrm")), false, "UTF-8")) {
+            histogram.outputPercentileDistribution(file, NANOS_PER_MILLI);
+        }
+    }
+}
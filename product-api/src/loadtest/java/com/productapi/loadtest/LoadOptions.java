@@ -0,0 +1,98 @@
+package com.productapi.loadtest;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command-line options of the load generator, given as --name=value
+ */
+final class LoadOptions {
+
+    // Base URL of the running application
+    final URI baseUrl;
+
+    // Target arrival rate over all routes, in requests per second
+    final double rate;
+
+    // Seconds of load whose latencies are discarded
+    final int warmupSeconds;
+
+    // Seconds of load that are measured
+    final int durationSeconds;
+
+    // Route weights, e.g. barcode:60,filter:25,sort:10,products:5
+    final RouteMix mix;
+
+    // Poisson arrivals when true, evenly spaced arrivals otherwise
+    final boolean poisson;
+
+    // Requests allowed in flight before the scheduler waits; waiting still counts towards latency
+    final int maxInFlight;
+
+    // Width of filtered price ranges, in cents
+    final int rangeWidth;
+
+    // Directory for per-route percentile distributions (.hgrm), or null
+    final String histogramDir;
+
+    final long seed;
+
+    private LoadOptions(Map<String, String> values) {
+        baseUrl = URI.create(take(values, "url", "http://localhost:9090"));
+        rate = Double.parseDouble(take(values, "rate", "200"));
+        warmupSeconds = Integer.parseInt(take(values, "warmup", "10"));
+        durationSeconds = Integer.parseInt(take(values, "duration", "60"));
+        mix = RouteMix.parse(take(values, "mix", "barcode:60,filter:25,sort:10,products:5"));
+        poisson = !"uniform".equals(take(values, "arrivals", "poisson"));
+        maxInFlight = Integer.parseInt(take(values, "max-in-flight", "10000"));
+        rangeWidth = Integer.parseInt(take(values, "range-width", "2000"));
+        histogramDir = values.containsKey("histogram-dir") ? values.remove("histogram-dir") : null;
+        seed = Long.parseLong(take(values, "seed", "42"));
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options: " + values.keySet());
+        }
+        if (rate <= 0 || durationSeconds <= 0 || warmupSeconds < 0 || maxInFlight <= 0 || rangeWidth < 0) {
+            throw new IllegalArgumentException("Rate, duration and max-in-flight must be positive; warmup and range-width non-negative");
+        }
+    }
+
+    /**
+     * Parse the command line
+     *
+     * @param args arguments of the form --name=value
+     * @return the options, with defaults for the ones not given
+     * @throws IllegalArgumentException if an argument is malformed or unknown
+     */
+    static LoadOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            values.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        return new LoadOptions(values);
+    }
+
+    static String usage() {
+        return "Options (all --name=value):\n"
+                + "  url            base URL of the application (http://localhost:9090)\n"
+                + "  rate           target requests per second over all routes (200)\n"
+                + "  warmup         seconds of load before measuring (10)\n"
+                + "  duration       seconds of measured load (60)\n"
+                + "  mix            route weights (barcode:60,filter:25,sort:10,products:5)\n"
+                + "                 routes: products, barcode, sort, filter\n"
+                + "  arrivals       poisson or uniform (poisson)\n"
+                + "  max-in-flight  outstanding requests before the scheduler waits (10000)\n"
+                + "  range-width    width of filtered price ranges in cents (2000)\n"
+                + "  histogram-dir  write each route's percentile distribution as .hgrm\n"
+                + "  seed           random seed for routes, barcodes and ranges (42)";
+    }
+
+    private static String take(Map<String, String> values, String name, String defaultValue) {
+        String value = values.remove(name);
+        return value != null ? value : defaultValue;
+    }
+}
@@ -0,0 +1,95 @@
+package com.productapi.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Weighted choice between the routes under load
+ */
+final class RouteMix {
+
+    /**
+     * A ProductController route the generator can call
+     */
+    enum Route {
+        // GET /products
+        PRODUCTS,
+        // GET /products/{barcode}
+        BARCODE,
+        // GET /sort/price
+        SORT,
+        // GET /filter/price/{initial_range}/{final_range}
+        FILTER
+    }
+
+    private final List<Route> routes;
+    private final double[] cumulative;
+
+    private RouteMix(List<Route> routes, double[] cumulative) {
+        this.routes = routes;
+        this.cumulative = cumulative;
+    }
+
+    /**
+     * Parse a mix such as barcode:60,filter:25,sort:10,products:5
+     *
+     * @param spec comma-separated route:weight pairs
+     * @return the mix
+     * @throws IllegalArgumentException if a route is unknown or a weight is not positive
+     */
+    static RouteMix parse(String spec) {
+        List<Route> routes = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String[] pair = part.trim().split(":");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected route:weight but got " + part);
+            }
+            Route route = Route.valueOf(pair[0].trim().toUpperCase(Locale.ROOT));
+            double weight = Double.parseDouble(pair[1].trim());
+            if (weight <= 0 || routes.contains(route)) {
+                throw new IllegalArgumentException("Route " + pair[0] + " needs one positive weight");
+            }
+            routes.add(route);
+            weights.add(weight);
+        }
+        double[] cumulative = new double[weights.size()];
+        double total = 0;
+        for (int i = 0; i < cumulative.length; i++) {
+            total += weights.get(i);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < cumulative.length; i++) {
+            cumulative[i] /= total;
+        }
+        return new RouteMix(Collections.unmodifiableList(routes), cumulative);
+    }
+
+    /**
+     * Pick a route by weight
+     *
+     * @param random the source of randomness
+     * @return the route
+     */
+    Route next(SplittableRandom random) {
+        double r = random.nextDouble();
+        for (int i = 0; i < cumulative.length - 1; i++) {
+            if (r < cumulative[i]) {
+                return routes.get(i);
+            }
+        }
+        return routes.get(routes.size() - 1);
+    }
+
+    /**
+     * Get the routes in the mix
+     *
+     * @return the routes, in the order given
+     */
+    List<Route> routes() {
+        return routes;
+    }
+}
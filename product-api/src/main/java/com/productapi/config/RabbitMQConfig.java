@@ -1,8 +1,10 @@
 package com.productapi.config;
 
+import org.springframework.amqp.core.AnonymousQueue;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.FanoutExchange;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
@@ -24,6 +26,7 @@ public class RabbitMQConfig {
     
     // Exchange names
     public static final String EXCHANGE_MESSAGES = "messages-exchange";
+    public static final String EXCHANGE_PRODUCT_CHANGES = "product-changes-exchange";
     
     // Routing keys
     public static final String ROUTING_KEY_MESSAGES = "messages.routing.key";
@@ -62,6 +65,22 @@ public class RabbitMQConfig {
         return new DirectExchange(EXCHANGE_MESSAGES);
     }
     
+    /**
+     * Create product changes fanout exchange, shared by all catalog replicas
+     */
+    @Bean
+    public FanoutExchange productChangesExchange() {
+        return new FanoutExchange(EXCHANGE_PRODUCT_CHANGES);
+    }
+    
+    /**
+     * Create this instance's product changes queue; exclusive and deleted when the instance stops
+     */
+    @Bean
+    public Queue productChangesQueue() {
+        return new AnonymousQueue();
+    }
+    
     /**
      * Bind messages queue to exchange
      */
@@ -95,6 +114,16 @@ public class RabbitMQConfig {
                 .with(ROUTING_KEY_NOTIFICATIONS);
     }
     
+    /**
+     * Bind product changes queue to the fanout exchange
+     */
+    @Bean
+    public Binding productChangesBinding(Queue productChangesQueue, FanoutExchange productChangesExchange) {
+        return BindingBuilder
+                .bind(productChangesQueue)
+                .to(productChangesExchange);
+    }
+    
     /**
      * Configure message converter to JSON
      */
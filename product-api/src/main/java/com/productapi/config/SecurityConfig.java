@@ -35,6 +35,8 @@ public class SecurityConfig {
             .authorizeRequests()
                 // Allow all product-related endpoints without authentication
                 .antMatchers("/products/**", "/filter/**", "/sort/**").permitAll()
+                // Allow health checks and Prometheus scrapes
+                .antMatchers("/actuator/health", "/actuator/prometheus").permitAll()
                 // Allow Swagger UI and OpenAPI docs
                 .antMatchers("/swagger-ui/**", "/swagger-ui.html", "/api-docs/**", "/v3/api-docs/**").permitAll()
                 // Allow OPTIONS requests without authentication for CORS preflight
@@ -0,0 +1,96 @@
+package com.productapi.config;
+
+import com.productapi.tracing.RequestTracer;
+import com.productapi.tracing.TracingAspect;
+import com.productapi.tracing.TracingFilters;
+import com.productapi.tracing.TracingInterceptor;
+import com.productapi.tracing.TracingJacksonConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Configuration of the sampling request tracer
+ *
+ * Registers the hooks that record request phases: filters on both sides
+ * of the security filter chain, a controller interceptor, the JSON
+ * converter and an aspect on the services. Sampling starts at
+ * app.tracing.sample-rate (0, i.e. off, by default) and can be changed
+ * while running through /diagnostics/tracing.
+ */
+@Configuration
+public class TracingConfig {
+
+    private static final double DEFAULT_SAMPLE_RATE = 0;
+    private static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    /**
+     * Create the tracer and its trace buffer
+     */
+    @Bean
+    public RequestTracer requestTracer(
+            @Value("${app.tracing.sample-rate:" + DEFAULT_SAMPLE_RATE + "}") double sampleRate,
+            @Value("${app.tracing.buffer-size:" + DEFAULT_BUFFER_SIZE + "}") int bufferSize) {
+        return new RequestTracer(sampleRate, bufferSize);
+    }
+
+    /**
+     * Start traces just before the security filter chain
+     */
+    @Bean
+    public FilterRegistrationBean<TracingFilters.Outer> tracingOuterFilter(RequestTracer tracer) {
+        FilterRegistrationBean<TracingFilters.Outer> registration = new FilterRegistrationBean<>(new TracingFilters.Outer(tracer));
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+        return registration;
+    }
+
+    /**
+     * End the security span just after the security filter chain
+     */
+    @Bean
+    public FilterRegistrationBean<TracingFilters.Inner> tracingInnerFilter(RequestTracer tracer) {
+        FilterRegistrationBean<TracingFilters.Inner> registration = new FilterRegistrationBean<>(new TracingFilters.Inner(tracer));
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+        return registration;
+    }
+
+    /**
+     * Time service calls of traced requests
+     */
+    @Bean
+    public TracingAspect tracingAspect(RequestTracer tracer) {
+        return new TracingAspect(tracer);
+    }
+
+    /**
+     * Time controller methods and serialization of traced requests
+     */
+    @Bean
+    public WebMvcConfigurer tracingWebMvcConfigurer(RequestTracer tracer) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(new TracingInterceptor(tracer));
+            }
+
+            @Override
+            public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+                // Swap the JSON converter in place, so converter precedence is unchanged
+                for (int i = 0; i < converters.size(); i++) {
+                    if (converters.get(i).getClass() == MappingJackson2HttpMessageConverter.class) {
+                        MappingJackson2HttpMessageConverter json = (MappingJackson2HttpMessageConverter) converters.get(i);
+                        converters.set(i, new TracingJacksonConverter(json.getObjectMapper(), tracer));
+                    }
+                }
+            }
+        };
+    }
+}
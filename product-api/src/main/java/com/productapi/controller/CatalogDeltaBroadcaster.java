@@ -0,0 +1,307 @@
+package com.productapi.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.productapi.model.CatalogDelta;
+import com.productapi.model.CatalogDeltaPage;
+import com.productapi.service.changefeed.ChangeFeedExpiredException;
+import com.productapi.service.changefeed.ProductChangeFeed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes change feed deltas to server-sent event subscribers
+ *
+ * A single dispatcher thread reads each new delta from the feed once,
+ * serializes it once, and queues it for every subscriber. Each subscriber
+ * is sent its queue on a sender thread of its own, one send at a time, so
+ * a client that reads slowly only holds up itself. The queue holds at most
+ * MAX_BACKLOG deltas: a subscriber that falls further behind is closed, and
+ * its client reconnects with Last-Event-ID and catches up from the feed.
+ *
+ * A new subscriber first catches up from the feed on its sender thread,
+ * while live deltas already queue up behind; those it was sent during the
+ * catch-up are skipped, so nothing is skipped or sent twice in between. A
+ * subscriber that falls behind the feed's horizon is sent an "expired"
+ * event and closed.
+ */
+class CatalogDeltaBroadcaster {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogDeltaBroadcaster.class);
+
+    // Deltas read from the feed per pass
+    private static final int BATCH_SIZE = 256;
+
+    // Deltas queued for one subscriber before it is closed as too slow
+    static final int MAX_BACKLOG = 1024;
+
+    private final ProductChangeFeed feed;
+    private final ObjectWriter writer;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ExecutorService dispatcher;
+
+    // At most one thread per subscriber, and only while it has deltas to send
+    private final ExecutorService senders;
+
+    // Set while a pass is queued, so a burst of writes queues one pass
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    // Newest version queued for the subscribers; used by the dispatcher thread only
+    private long dispatched;
+
+    CatalogDeltaBroadcaster(ProductChangeFeed feed, ObjectMapper objectMapper) {
+        this.feed = feed;
+        // Each event's data must stay on one line
+        this.writer = objectMapper.writerFor(CatalogDelta.class).without(SerializationFeature.INDENT_OUTPUT);
+        this.dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-change-feed-sse");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger senderCount = new AtomicInteger();
+        this.senders = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-change-feed-sse-sender-" + senderCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dispatched = feed.getLatestVersion();
+        feed.addAppendListener(this::schedule);
+    }
+
+    /**
+     * Add a subscriber that receives the deltas after a version
+     *
+     * @param since the last version the client has seen
+     * @param timeoutMillis how long the connection is kept open
+     * @return the emitter to return from the request
+     */
+    SseEmitter subscribe(long since, long timeoutMillis) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter, since);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        // Added before catching up, so every delta after the catch-up is queued for it
+        subscribers.add(subscriber);
+        subscriber.wake();
+        return emitter;
+    }
+
+    /**
+     * Close every subscription and stop the dispatcher and senders
+     */
+    void shutdown() {
+        dispatcher.shutdown();
+        senders.shutdown();
+        try {
+            dispatcher.awaitTermination(5, TimeUnit.SECONDS);
+            senders.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            dispatcher.execute(this::dispatch);
+        }
+    }
+
+    private void dispatch() {
+        // Cleared first, so a delta recorded during this pass queues another
+        scheduled.set(false);
+        if (subscribers.isEmpty()) {
+            // Subscribers added from now on catch up from the feed
+            dispatched = feed.getLatestVersion();
+            return;
+        }
+        CatalogDeltaPage page;
+        do {
+            try {
+                page = feed.since(dispatched, BATCH_SIZE);
+            } catch (ChangeFeedExpiredException e) {
+                // Deltas were dropped before they were queued; every subscriber resumes from the feed instead
+                log.warn("Change feed moved past the event stream dispatcher: {}", e.getMessage());
+                dispatched = feed.getLatestVersion();
+                for (Subscriber subscriber : subscribers) {
+                    subscriber.overflow();
+                }
+                return;
+            }
+            for (CatalogDelta delta : page.getDeltas()) {
+                Event event;
+                try {
+                    event = new Event(delta.getVersion(), serialize(delta));
+                } catch (UncheckedIOException e) {
+                    log.error("Could not serialize catalog delta {}", delta.getVersion(), e);
+                    dispatched = delta.getVersion();
+                    continue;
+                }
+                for (Subscriber subscriber : subscribers) {
+                    subscriber.offer(event);
+                }
+                dispatched = delta.getVersion();
+            }
+        } while (!page.isComplete());
+    }
+
+    private String serialize(CatalogDelta delta) {
+        try {
+            return writer.writeValueAsString(delta);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A serialized delta, shared by every subscriber it is queued for
+     */
+    private static final class Event {
+
+        private final long version;
+        private final String data;
+
+        private Event(long version, String data) {
+            this.version = version;
+            this.data = data;
+        }
+    }
+
+    /**
+     * A connected client, its queued deltas and the last version it was sent
+     */
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final BlockingQueue<Event> backlog = new ArrayBlockingQueue<>(MAX_BACKLOG);
+
+        // Set while a sender thread has this subscriber; hands the fields below from one sender to the next
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        // Set once the backlog overflowed; the sender closes the connection
+        private volatile boolean overflowed;
+
+        private long version;
+        private boolean caughtUp;
+
+        private Subscriber(SseEmitter emitter, long version) {
+            this.emitter = emitter;
+            this.version = version;
+        }
+
+        /**
+         * Queue a delta, or mark the subscriber too slow if its backlog is full; called by the dispatcher
+         */
+        private void offer(Event event) {
+            if (backlog.offer(event)) {
+                wake();
+            } else {
+                overflow();
+            }
+        }
+
+        private void overflow() {
+            if (!overflowed) {
+                log.debug("Closing change feed subscriber more than {} deltas behind", MAX_BACKLOG);
+                overflowed = true;
+                subscribers.remove(this);
+                wake();
+            }
+        }
+
+        /**
+         * Hand the subscriber to a sender thread unless one already has it
+         */
+        private void wake() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // Shutting down; shutdown closes the connection
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                do {
+                    if (overflowed) {
+                        // Closing lets the client reconnect with Last-Event-ID and catch up from the feed
+                        backlog.clear();
+                        emitter.complete();
+                        // The subscriber keeps draining set, so it is never handed to a sender again
+                        return;
+                    }
+                    if (!caughtUp) {
+                        catchUp();
+                        caughtUp = true;
+                    }
+                    Event event;
+                    while (!overflowed && (event = backlog.poll()) != null) {
+                        // Deltas sent during the catch-up were queued as well
+                        if (event.version > version) {
+                            send(event.version, event.data);
+                        }
+                    }
+                    draining.set(false);
+                } while ((overflowed || !backlog.isEmpty()) && draining.compareAndSet(false, true));
+            } catch (ChangeFeedExpiredException e) {
+                expire(e);
+            } catch (IOException | UncheckedIOException | IllegalStateException e) {
+                // The client went away; the emitter's callbacks may not have fired yet
+                log.debug("Dropping change feed subscriber: {}", e.getMessage());
+                subscribers.remove(this);
+                emitter.completeWithError(e);
+            }
+        }
+
+        private void catchUp() throws IOException {
+            CatalogDeltaPage page;
+            do {
+                page = feed.since(version, BATCH_SIZE);
+                for (CatalogDelta delta : page.getDeltas()) {
+                    send(delta.getVersion(), serialize(delta));
+                }
+            } while (!page.isComplete());
+        }
+
+        private void send(long deltaVersion, String data) throws IOException {
+            emitter.send(SseEmitter.event()
+                    .id(String.valueOf(deltaVersion))
+                    .name("delta")
+                    .data(data));
+            version = deltaVersion;
+        }
+
+        private void expire(ChangeFeedExpiredException e) {
+            subscribers.remove(this);
+            try {
+                emitter.send(SseEmitter.event().name("expired").data(e.getMessage()));
+                emitter.complete();
+            } catch (IOException | IllegalStateException closed) {
+                emitter.completeWithError(closed);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.productapi.controller;
+
+import com.productapi.model.RequestTrace;
+import com.productapi.model.TracingSettings;
+import com.productapi.tracing.RequestTracer;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * REST Controller for request tracing diagnostics
+ */
+@RestController
+@Tag(name = "Diagnostics", description = "API endpoints for inspecting sampled request traces")
+public class DiagnosticsController {
+
+    // Traces returned when no limit is given
+    static final int DEFAULT_LIMIT = 50;
+
+    private final RequestTracer tracer;
+
+    @Autowired
+    public DiagnosticsController(RequestTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Get the latest sampled request traces
+     *
+     * @param limit optional maximum number of traces
+     * @param path optional prefix the request path must start with
+     * @param minMillis optional minimum request duration
+     * @return traces, newest first
+     */
+    @Operation(summary = "Get sampled request traces", description = "Returns the latest traced requests, newest first, with the time spent in the security chain, the controller, each service call and JSON serialization")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Success", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = RequestTrace.class)) }),
+        @ApiResponse(responseCode = "400", description = "Invalid limit")
+    })
+    @GetMapping("/diagnostics/traces")
+    public ResponseEntity<?> getTraces(
+            @Parameter(description = "Maximum number of traces to return") @RequestParam(value = "limit", defaultValue = "" + DEFAULT_LIMIT) int limit,
+            @Parameter(description = "Only requests whose path starts with this, e.g. /filter/price") @RequestParam(value = "path", required = false) String path,
+            @Parameter(description = "Only requests that took at least this long") @RequestParam(value = "minMillis", defaultValue = "0") long minMillis) {
+        if (limit <= 0) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Limit must be a positive value");
+        }
+        // Filters apply to the whole buffer, so the limit counts matching traces
+        List<RequestTrace> traces = tracer.recent(Integer.MAX_VALUE).stream()
+                .filter(trace -> path == null || trace.getPath().startsWith(path))
+                .filter(trace -> trace.getDurationMicros() >= minMillis * 1000)
+                .limit(limit)
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(traces);
+    }
+
+    /**
+     * Get the sample rate and buffer state
+     *
+     * @return the tracer settings
+     */
+    @Operation(summary = "Get tracing settings", description = "Returns the sample rate, buffer capacity and number of requests traced so far")
+    @GetMapping("/diagnostics/tracing")
+    public ResponseEntity<TracingSettings> getTracing() {
+        return ResponseEntity.ok(tracer.getSettings());
+    }
+
+    /**
+     * Change the sample rate
+     *
+     * @param sampleRate fraction of requests to trace; 0 turns sampling off
+     * @return the new tracer settings
+     */
+    @Operation(summary = "Change the sample rate", description = "Sets the fraction of requests traced, from 0 (off) to 1 (every request). Requests with an X-Trace header are always traced")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Sample rate changed", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = TracingSettings.class)) }),
+        @ApiResponse(responseCode = "400", description = "Sample rate outside 0-1")
+    })
+    @PutMapping("/diagnostics/tracing")
+    public ResponseEntity<?> setTracing(
+            @Parameter(description = "Fraction of requests to trace, 0-1", required = true) @RequestParam("sampleRate") double sampleRate) {
+        try {
+            tracer.setSampleRate(sampleRate);
+            return ResponseEntity.ok(tracer.getSettings());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+}
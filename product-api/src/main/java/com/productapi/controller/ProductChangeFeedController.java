@@ -0,0 +1,138 @@
+package com.productapi.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.productapi.model.CatalogDeltaPage;
+import com.productapi.service.changefeed.ChangeFeedExpiredException;
+import com.productapi.service.changefeed.ProductChangeFeed;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * REST Controller for the catalog change feed
+ */
+@RestController
+@Tag(name = "Product Change Feed", description = "API endpoints for fetching catalog changes by version")
+public class ProductChangeFeedController {
+
+    // Deltas returned by a since request that passes no limit
+    static final int DEFAULT_LIMIT = 1000;
+
+    // Largest limit a since request may pass
+    static final int MAX_LIMIT = 10000;
+
+    private static final long DEFAULT_SSE_TIMEOUT_MILLIS = 1800000;
+
+    private final ProductChangeFeed feed;
+    private final CatalogDeltaBroadcaster broadcaster;
+    private final long sseTimeoutMillis;
+
+    @Autowired
+    public ProductChangeFeedController(ProductChangeFeed feed, ObjectMapper objectMapper,
+            @Value("${app.catalog.change-feed.sse-timeout-ms:" + DEFAULT_SSE_TIMEOUT_MILLIS + "}") long sseTimeoutMillis) {
+        this.feed = feed;
+        this.broadcaster = new CatalogDeltaBroadcaster(feed, objectMapper);
+        this.sseTimeoutMillis = sseTimeoutMillis;
+    }
+
+    /**
+     * Close the open event streams
+     */
+    @PreDestroy
+    public void shutdown() {
+        broadcaster.shutdown();
+    }
+
+    /**
+     * Get the catalog writes recorded after a version
+     *
+     * @param epoch optional epoch of since
+     * @param since the last catalog version the client has seen
+     * @param limit optional maximum number of deltas to return
+     * @return the deltas in version order
+     */
+    @Operation(summary = "Get catalog changes since a version", description = "Returns the products created, updated or deleted by every write after the given catalog version, one delta per write. Pass the returned version as since and the returned epoch as epoch to fetch the next changes")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Success", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = CatalogDeltaPage.class)) }),
+        @ApiResponse(responseCode = "400", description = "Invalid version or limit"),
+        @ApiResponse(responseCode = "410", description = "Changes since the version are no longer retained, the version is newer than the catalog or from another epoch; reload the catalog")
+    })
+    @GetMapping("/products/changes")
+    public ResponseEntity<?> getChanges(
+            @Parameter(description = "Epoch of since, e.g. from X-Catalog-Epoch") @RequestParam(value = "epoch", required = false) String epoch,
+            @Parameter(description = "Last catalog version seen, e.g. from X-Catalog-Version", required = true) @RequestParam("since") long since,
+            @Parameter(description = "Maximum number of deltas to return (1-" + MAX_LIMIT + ")") @RequestParam(value = "limit", defaultValue = "" + DEFAULT_LIMIT) int limit) {
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Limit must be between 1 and " + MAX_LIMIT);
+        }
+        try {
+            CatalogDeltaPage page = feed.since(epoch, since, limit);
+            return ResponseEntity.ok()
+                    .header(ProductController.CATALOG_VERSION_HEADER, String.valueOf(page.getVersion()))
+                    .header(ProductController.CATALOG_EPOCH_HEADER, page.getEpoch())
+                    .body(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (ChangeFeedExpiredException e) {
+            return ResponseEntity.status(HttpStatus.GONE).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Stream the catalog writes after a version as server-sent events
+     *
+     * @param epoch optional epoch of since, also checked against Last-Event-ID on reconnect
+     * @param since the last catalog version the client has seen
+     * @param lastEventId the id of the last event received, sent by reconnecting clients
+     * @return the event stream
+     */
+    @Operation(summary = "Stream catalog changes", description = "Sends one \"delta\" event per write after the given version, first the recorded ones and then live. The event id is the catalog version, so reconnecting with Last-Event-ID resumes where the stream stopped. An \"expired\" event ends the stream when the client falls behind the retained changes")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Event stream"),
+        @ApiResponse(responseCode = "400", description = "Missing or invalid version"),
+        @ApiResponse(responseCode = "410", description = "Changes since the version are no longer retained, the version is newer than the catalog or from another epoch; reload the catalog")
+    })
+    @GetMapping(value = "/products/changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(
+            @Parameter(description = "Epoch of since, e.g. from X-Catalog-Epoch") @RequestParam(value = "epoch", required = false) String epoch,
+            @Parameter(description = "Last catalog version seen; defaults to the latest") @RequestParam(value = "since", required = false) Long since,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        long from;
+        try {
+            // A reconnect resumes from the last event rather than the original since
+            from = lastEventId != null ? Long.parseLong(lastEventId)
+                    : since != null ? since
+                    : feed.getLatestVersion();
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid Last-Event-ID");
+        }
+        // The emitter return type has no body for an error message, so errors go through the status exception
+        if (from < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Version must be a non-negative value");
+        }
+        try {
+            // A reconnecting client repeats the same query, so the epoch also guards Last-Event-ID
+            feed.checkContinuable(epoch, from);
+        } catch (ChangeFeedExpiredException e) {
+            throw new ResponseStatusException(HttpStatus.GONE, e.getMessage());
+        }
+        return broadcaster.subscribe(from, sseTimeoutMillis);
+    }
+}
@@ -1,7 +1,16 @@
 package com.productapi.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.productapi.model.BulkUpsertResult;
+import com.productapi.model.IngestResult;
 import com.productapi.model.Product;
+import com.productapi.service.PageSpec;
+import com.productapi.service.PriceCursor;
+import com.productapi.service.PriceKey;
 import com.productapi.service.ProductService;
+import com.productapi.service.ProductSort;
+import com.productapi.service.cache.CacheStats;
+import com.productapi.service.changefeed.ProductChangeFeed;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -9,12 +18,23 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * REST Controller for product operations
@@ -23,11 +43,50 @@ import java.util.List;
 @Tag(name = "Product Controller", description = "API endpoints for product management")
 public class ProductController {
 
+    /**
+     * Response header carrying the catalog version of a response. The version is
+     * read before the data, so it is never newer than the body it accompanies.
+     */
+    public static final String CATALOG_VERSION_HEADER = "X-Catalog-Version";
+
+    /**
+     * Response header carrying the epoch of the catalog version, which changes
+     * when a restart may start the versions over. Pass it with the version to
+     * the change feed.
+     */
+    public static final String CATALOG_EPOCH_HEADER = "X-Catalog-Epoch";
+
+    /**
+     * Response header carrying the cursor of the next keyset page, present only
+     * when the returned page is full
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    // Page size of keyset requests that pass a cursor but no limit
+    static final int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * Media type of newline-delimited JSON exports
+     */
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    /**
+     * Media type of CSV imports
+     */
+    public static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
     private final ProductService productService;
+    private final ProductStreamWriter streamWriter;
+    private final ProductIngestReader ingestReader;
+    private final ObjectProvider<ProductChangeFeed> changeFeed;
 
     @Autowired
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, ObjectMapper objectMapper,
+            ObjectProvider<ProductChangeFeed> changeFeed) {
         this.productService = productService;
+        this.changeFeed = changeFeed;
+        this.streamWriter = new ProductStreamWriter(objectMapper);
+        this.ingestReader = new ProductIngestReader(objectMapper);
     }
 
     /**
@@ -35,18 +94,31 @@ public class ProductController {
      *
      * @param initialRange the minimum price
      * @param finalRange the maximum price
+     * @param offset optional number of leading products to skip
+     * @param limit optional maximum number of products to return
+     * @param cursor optional keyset cursor: empty for the first page, then the X-Next-Cursor header of the previous page
      * @return list of products within the price range
      */
-    @Operation(summary = "Filter products by price range", description = "Returns all products within the specified price range")
+    @Operation(summary = "Filter products by price range", description = "Returns products within the specified price range in ascending price order, optionally paged with offset and limit or with a keyset cursor")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Products found", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = Product.class)) }),
-        @ApiResponse(responseCode = "400", description = "Invalid price range parameters"),
+        @ApiResponse(responseCode = "400", description = "Invalid price range or paging parameters"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @GetMapping("/filter/price/{initial_range}/{final_range}")
     public ResponseEntity<?> filterByPrice(
             @Parameter(description = "Minimum price", required = true) @PathVariable("initial_range") String initialRangeStr,
-            @Parameter(description = "Maximum price", required = true) @PathVariable("final_range") String finalRangeStr) {
+            @Parameter(description = "Maximum price", required = true) @PathVariable("final_range") String finalRangeStr,
+            @Parameter(description = "Number of products to skip") @RequestParam(value = "offset", required = false) Integer offset,
+            @Parameter(description = "Maximum number of products to return") @RequestParam(value = "limit", required = false) Integer limit,
+            @Parameter(description = "Keyset paging: empty for the first page, then the X-Next-Cursor of the previous page. Without it, paging is by offset and limit") @RequestParam(value = "cursor", required = false) String cursor) {
+        
+        PageSpec page;
+        try {
+            page = pageOf(offset, limit);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
         
         try {
             int initialRange = Integer.parseInt(initialRangeStr);
@@ -56,8 +128,15 @@ public class ProductController {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid price range");
             }
             
-            List<Product> filteredProducts = productService.filterByPriceRange(initialRange, finalRange);
-            return ResponseEntity.ok(filteredProducts);
+            if (cursor != null) {
+                return keysetPage(initialRange, finalRange, offset, limit, cursor, products -> products);
+            }
+            
+            long version = productService.getCatalogVersion();
+            List<Product> filteredProducts = page == null
+                    ? productService.filterByPriceRange(initialRange, finalRange)
+                    : productService.filterByPriceRange(initialRange, finalRange, page);
+            return versioned(version).body(filteredProducts);
         } catch (NumberFormatException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid price range parameters");
         }
@@ -66,33 +145,164 @@ public class ProductController {
     /**
      * Sort products by price in ascending order
      *
+     * @param offset optional number of leading names to skip
+     * @param limit optional maximum number of names to return
+     * @param cursor optional keyset cursor: empty for the first page, then the X-Next-Cursor header of the previous page
      * @return list of product names sorted by price
      */
-    @Operation(summary = "Sort products by price", description = "Returns a list of product names sorted by price in ascending order")
+    @Operation(summary = "Sort products by price", description = "Returns a list of product names sorted by price in ascending order, optionally paged with offset and limit or with a keyset cursor")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Success", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = String.class)) }),
+        @ApiResponse(responseCode = "400", description = "Invalid paging parameters"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @GetMapping("/sort/price")
-    public ResponseEntity<List<String>> sortByPrice() {
-        List<String> sortedProducts = productService.sortByPrice();
-        return ResponseEntity.ok(sortedProducts);
+    public ResponseEntity<?> sortByPrice(
+            @Parameter(description = "Number of names to skip") @RequestParam(value = "offset", required = false) Integer offset,
+            @Parameter(description = "Maximum number of names to return") @RequestParam(value = "limit", required = false) Integer limit,
+            @Parameter(description = "Keyset paging: empty for the first page, then the X-Next-Cursor of the previous page. Without it, paging is by offset and limit") @RequestParam(value = "cursor", required = false) String cursor) {
+        PageSpec page;
+        try {
+            page = pageOf(offset, limit);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+        
+        if (cursor != null) {
+            return keysetPage(Integer.MIN_VALUE, Integer.MAX_VALUE, offset, limit, cursor,
+                    products -> products.stream().map(Product::getItem).collect(Collectors.toList()));
+        }
+        
+        long version = productService.getCatalogVersion();
+        List<String> sortedProducts = page == null ? productService.sortByPrice() : productService.sortByPrice(page);
+        return versioned(version).body(sortedProducts);
+    }
+
+    /**
+     * Sort products by one or more fields
+     *
+     * @param by comma-separated sort fields, each optionally suffixed with ":asc" or ":desc"
+     * @param offset optional number of leading products to skip
+     * @param limit optional maximum number of products to return
+     * @return list of products in the requested order
+     */
+    @Operation(summary = "Sort products by fields", description = "Returns products sorted by one or more of price, finalPrice, discount, item, category, available and barcode. Ties are broken by barcode")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Success", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = Product.class)) }),
+        @ApiResponse(responseCode = "400", description = "Invalid sort specification or paging parameters"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping("/sort/products")
+    public ResponseEntity<?> sortProducts(
+            @Parameter(description = "Sort fields, e.g. finalPrice:desc,item", example = "finalPrice:desc,item") @RequestParam(value = "by", defaultValue = "price") String by,
+            @Parameter(description = "Number of products to skip") @RequestParam(value = "offset", required = false) Integer offset,
+            @Parameter(description = "Maximum number of products to return") @RequestParam(value = "limit", required = false) Integer limit) {
+        ProductSort sort;
+        PageSpec page;
+        try {
+            sort = ProductSort.parse(by);
+            page = pageOf(offset, limit);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+        
+        long version = productService.getCatalogVersion();
+        List<Product> sortedProducts = page == null ? productService.sortProducts(sort) : productService.sortProducts(sort, page);
+        return versioned(version).body(sortedProducts);
     }
 
     /**
      * Get all products
      *
+     * @param offset optional number of leading products to skip
+     * @param limit optional maximum number of products to return
+     * @param cursor optional keyset cursor: empty for the first page, then the X-Next-Cursor header of the previous page
      * @return list of all products
      */
-    @Operation(summary = "Get all products", description = "Returns a list of all products in the catalog")
+    @Operation(summary = "Get all products", description = "Returns a list of all products in the catalog in (price, barcode) order, optionally paged with offset and limit or with a keyset cursor")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Success", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = Product.class)) }),
+        @ApiResponse(responseCode = "400", description = "Invalid limit or cursor"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @GetMapping("/products")
-    public ResponseEntity<List<Product>> getAllProducts() {
-        List<Product> products = productService.getAllProducts();
-        return ResponseEntity.ok(products);
+    public ResponseEntity<?> getAllProducts(
+            @Parameter(description = "Number of products to skip") @RequestParam(value = "offset", required = false) Integer offset,
+            @Parameter(description = "Maximum number of products to return") @RequestParam(value = "limit", required = false) Integer limit,
+            @Parameter(description = "Keyset paging: empty for the first page, then the X-Next-Cursor of the previous page. Without it, paging is by offset and limit") @RequestParam(value = "cursor", required = false) String cursor) {
+        PageSpec page;
+        try {
+            page = pageOf(offset, limit);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+        
+        if (cursor != null) {
+            return keysetPage(Integer.MIN_VALUE, Integer.MAX_VALUE, offset, limit, cursor, products -> products);
+        }
+        
+        long version = productService.getCatalogVersion();
+        // The whole catalog is the unbounded price range, in the same (price, barcode) order
+        List<Product> products = page == null
+                ? productService.getAllProducts()
+                : productService.filterByPriceRange(Integer.MIN_VALUE, Integer.MAX_VALUE, page);
+        return versioned(version).body(products);
+    }
+    
+    /**
+     * Stream the full catalog without buffering it
+     *
+     * @param format "ndjson" for one product per line, or "json" for a chunked JSON array
+     * @return the streamed catalog
+     */
+    @Operation(summary = "Export all products as a stream", description = "Streams every product straight from the catalog store with constant memory, as NDJSON (stream=ndjson) or a chunked JSON array (stream=json)")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Success", content = {
+            @Content(mediaType = "application/x-ndjson", schema = @Schema(implementation = Product.class)),
+            @Content(mediaType = "application/json", schema = @Schema(implementation = Product.class)) }),
+        @ApiResponse(responseCode = "400", description = "Unknown stream format"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping(value = "/products", params = "stream")
+    public ResponseEntity<StreamingResponseBody> streamAllProducts(
+            @Parameter(description = "Stream format: ndjson or json", required = true) @RequestParam("stream") String format) {
+        boolean ndjson = "ndjson".equalsIgnoreCase(format);
+        if (!ndjson && !"json".equalsIgnoreCase(format)) {
+            // The streaming return type needs a streaming body, even for the error message
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(out -> out.write("Stream format must be ndjson or json".getBytes(StandardCharsets.UTF_8)));
+        }
+        
+        long version = productService.getCatalogVersion();
+        Stream<Product> products = productService.streamByPrice();
+        StreamingResponseBody body = out -> {
+            // Closing the stream releases whatever the store holds open for it, such as a database cursor
+            try (products) {
+                if (ndjson) {
+                    streamWriter.writeNdjson(products, out);
+                } else {
+                    streamWriter.writeJsonArray(products, out);
+                }
+            }
+        };
+        return versioned(version)
+                .contentType(ndjson ? APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+    
+    /**
+     * Get the counters of the catalog caches
+     *
+     * @return hits, misses, evictions, size and hit ratio by cache name
+     */
+    @Operation(summary = "Get catalog cache statistics", description = "Returns hits, misses, evictions, size and hit ratio of each cache in front of the catalog")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Success")
+    })
+    @GetMapping("/products/cache/stats")
+    public ResponseEntity<Map<String, CacheStats>> getCacheStats() {
+        return ResponseEntity.ok(productService.getCacheStats());
     }
     
     /**
@@ -147,6 +357,64 @@ public class ProductController {
         }
     }
     
+    /**
+     * Create or replace many products in one request
+     *
+     * @param products the products to import
+     * @return per-item results and batch totals
+     */
+    @Operation(summary = "Bulk import products", description = "Creates or replaces many products in one atomic batch. Every item is validated; when items share a barcode the last one wins. Returns one result per item")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Batch processed", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = BulkUpsertResult.class)) }),
+        @ApiResponse(responseCode = "400", description = "Missing product list"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PostMapping("/products/bulk")
+    public ResponseEntity<?> upsertProducts(
+            @Parameter(description = "Products to create or replace", required = true) @RequestBody List<Product> products) {
+        try {
+            BulkUpsertResult result = productService.upsertAll(products);
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error importing products: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Stream products into the catalog without buffering the request body
+     *
+     * @param contentType the body format, application/x-ndjson or text/csv
+     * @param batchSize optional number of records applied per batch
+     * @param body the request body
+     * @return totals and the first errors
+     */
+    @Operation(summary = "Stream products into the catalog", description = "Reads NDJSON (one product per line) or CSV with a header row from the request body and creates or replaces products in batches as they arrive. Memory use depends on the batch size, not the body size. Malformed and invalid records are counted and skipped")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Stream processed", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = IngestResult.class)) }),
+        @ApiResponse(responseCode = "400", description = "Invalid batch size or CSV header"),
+        @ApiResponse(responseCode = "500", description = "Reading the stream failed; batches applied before the failure are kept")
+    })
+    @PostMapping(value = "/products/ingest", consumes = { "application/x-ndjson", "text/csv" })
+    public ResponseEntity<?> ingestProducts(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            @Parameter(description = "Records applied per batch (1-" + ProductIngestReader.MAX_BATCH_SIZE + ")") @RequestParam(value = "batchSize", defaultValue = "" + ProductIngestReader.DEFAULT_BATCH_SIZE) int batchSize,
+            InputStream body) {
+        if (batchSize <= 0 || batchSize > ProductIngestReader.MAX_BATCH_SIZE) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Batch size must be between 1 and " + ProductIngestReader.MAX_BATCH_SIZE);
+        }
+        try {
+            IngestResult result = TEXT_CSV.isCompatibleWith(MediaType.parseMediaType(contentType))
+                    ? ingestReader.readCsv(body, productService, batchSize)
+                    : ingestReader.readNdjson(body, productService, batchSize);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error ingesting products: " + e.getMessage());
+        }
+    }
+    
     /**
      * Update an existing product
      *
@@ -206,4 +474,71 @@ public class ProductController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error deleting product: " + e.getMessage());
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * Build a page spec from optional paging parameters
+     *
+     * @param offset number of results to skip, or null
+     * @param limit maximum number of results, or null
+     * @return the page spec, or null when neither parameter was given
+     * @throws IllegalArgumentException if a parameter is negative
+     */
+    private static PageSpec pageOf(Integer offset, Integer limit) {
+        if (offset == null && limit == null) {
+            return null;
+        }
+        return PageSpec.of(offset, limit);
+    }
+
+    /**
+     * Serve one keyset page of a price range in (price, barcode) order
+     *
+     * @param initialRange the minimum price
+     * @param finalRange the maximum price
+     * @param offset the offset parameter, which must not be combined with a cursor
+     * @param limit the page size, or null for the default
+     * @param cursor the cursor of the previous page, or empty for the first page
+     * @param body maps the page of products to the response body
+     * @return the page, with X-Next-Cursor set when more products may follow
+     */
+    private ResponseEntity<?> keysetPage(int initialRange, int finalRange, Integer offset, Integer limit, String cursor,
+                                         Function<List<Product>, ?> body) {
+        if (offset != null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Offset cannot be combined with a cursor");
+        }
+        if (limit != null && limit <= 0) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Limit must be a positive value");
+        }
+        PriceKey after;
+        try {
+            after = cursor.isEmpty() ? null : PriceCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+        
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        long version = productService.getCatalogVersion();
+        List<Product> products = productService.filterByPriceRangeAfter(initialRange, finalRange, after, pageSize);
+        
+        ResponseEntity.BodyBuilder response = versioned(version);
+        if (products.size() == pageSize) {
+            response.header(NEXT_CURSOR_HEADER, PriceCursor.encode(products.get(products.size() - 1)));
+        }
+        return response.body(body.apply(products));
+    }
+
+    /**
+     * Start a successful response carrying a catalog version and, when the change feed is running, its epoch
+     *
+     * @param version the catalog version read before the data
+     * @return the response builder
+     */
+    private ResponseEntity.BodyBuilder versioned(long version) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().header(CATALOG_VERSION_HEADER, String.valueOf(version));
+        ProductChangeFeed feed = changeFeed.getIfAvailable();
+        if (feed != null) {
+            response.header(CATALOG_EPOCH_HEADER, feed.getEpoch());
+        }
+        return response;
+    }
+}
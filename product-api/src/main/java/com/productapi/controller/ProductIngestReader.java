@@ -0,0 +1,413 @@
+package com.productapi.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.productapi.model.BulkUpsertResult;
+import com.productapi.model.BulkUpsertResult.ItemResult;
+import com.productapi.model.IngestResult;
+import com.productapi.model.IngestResult.RecordError;
+import com.productapi.model.Product;
+import com.productapi.service.ProductService;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads products from a request stream and applies them in bounded batches
+ *
+ * Records are parsed one line at a time and handed to
+ * {@link ProductService#upsertAll} every batch-size records. The upsert runs
+ * on the request thread, so the body is not read any further until the
+ * batch is applied: a slow catalog slows the client down instead of letting
+ * records pile up in memory. A line is held up to
+ * {@value #MAX_RECORD_LENGTH} characters; the rest of a longer one, such as
+ * a minified JSON array posted as NDJSON, is read and dropped, and the line
+ * fails as a record. Memory use depends on the batch size, not on the size
+ * of the stream or of its lines.
+ */
+class ProductIngestReader {
+
+    static final int DEFAULT_BATCH_SIZE = 1000;
+
+    static final int MAX_BATCH_SIZE = 10_000;
+
+    // Only the first errors are reported; the rest are counted
+    private static final int MAX_ERRORS = 100;
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    // Longest line read as a record; a product is a few hundred characters
+    static final int MAX_RECORD_LENGTH = 64 * 1024;
+
+    private static final String[] CSV_COLUMNS = {"barcode", "item", "category", "price", "discount", "available"};
+
+    private final ObjectReader reader;
+
+    ProductIngestReader(ObjectMapper objectMapper) {
+        this.reader = objectMapper.readerFor(Product.class);
+    }
+
+    /**
+     * Ingest newline-delimited JSON, one product object per line
+     *
+     * @param in the request body
+     * @param productService the catalog to write to
+     * @param batchSize number of records applied per batch
+     * @return totals and the first errors
+     * @throws IOException if reading the body fails; batches applied so far are kept
+     */
+    IngestResult readNdjson(InputStream in, ProductService productService, int batchSize) throws IOException {
+        Batch batch = new Batch(productService, batchSize);
+        try (BoundedLines lines = new BoundedLines(in, MAX_RECORD_LENGTH)) {
+            String line;
+            while ((line = lines.next()) != null) {
+                long lineNumber = lines.number();
+                if (lines.tooLong()) {
+                    batch.reject(lineNumber, null, tooLong());
+                    continue;
+                }
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    batch.add(lineNumber, reader.readValue(line));
+                } catch (JsonProcessingException e) {
+                    batch.reject(lineNumber, null, "Malformed JSON: " + e.getOriginalMessage());
+                }
+            }
+        }
+        return batch.finish();
+    }
+
+    /**
+     * Ingest CSV with a header row naming the columns
+     *
+     * The header must contain barcode, item, category, price, discount and
+     * available, in any order; other columns are ignored. Fields may be
+     * quoted with double quotes, with "" for a literal quote, but may not
+     * span lines.
+     *
+     * @param in the request body
+     * @param productService the catalog to write to
+     * @param batchSize number of records applied per batch
+     * @return totals and the first errors
+     * @throws IllegalArgumentException if the header is missing a column
+     * @throws IOException if reading the body fails; batches applied so far are kept
+     */
+    IngestResult readCsv(InputStream in, ProductService productService, int batchSize) throws IOException {
+        Batch batch = new Batch(productService, batchSize);
+        try (BoundedLines lines = new BoundedLines(in, MAX_RECORD_LENGTH)) {
+            String line;
+            int[] columns = null;
+            while ((line = lines.next()) != null) {
+                long lineNumber = lines.number();
+                if (lines.tooLong()) {
+                    if (columns == null) {
+                        throw new IllegalArgumentException("CSV header is " + tooLong().toLowerCase(Locale.ROOT));
+                    }
+                    batch.reject(lineNumber, null, tooLong());
+                    continue;
+                }
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                List<String> fields;
+                try {
+                    fields = splitCsv(line);
+                } catch (IllegalArgumentException e) {
+                    if (columns == null) {
+                        throw e;
+                    }
+                    batch.reject(lineNumber, null, e.getMessage());
+                    continue;
+                }
+                if (columns == null) {
+                    columns = headerColumns(fields);
+                    continue;
+                }
+                Product product = new Product();
+                try {
+                    product.setBarcode(field(fields, columns[0]));
+                    product.setItem(field(fields, columns[1]));
+                    product.setCategory(field(fields, columns[2]));
+                    product.setPrice(intField(fields, columns[3], "price"));
+                    product.setDiscount(intField(fields, columns[4], "discount"));
+                    product.setAvailable(intField(fields, columns[5], "available"));
+                } catch (IllegalArgumentException e) {
+                    batch.reject(lineNumber, product.getBarcode(), e.getMessage());
+                    continue;
+                }
+                batch.add(lineNumber, product);
+            }
+        }
+        return batch.finish();
+    }
+
+    private static String tooLong() {
+        return "Record longer than " + MAX_RECORD_LENGTH + " characters";
+    }
+
+    /**
+     * Map the required columns to their positions in the header row
+     *
+     * @param header the header fields
+     * @return position of each of CSV_COLUMNS
+     * @throws IllegalArgumentException if a required column is missing
+     */
+    private static int[] headerColumns(List<String> header) {
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            positions.putIfAbsent(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        int[] columns = new int[CSV_COLUMNS.length];
+        for (int i = 0; i < CSV_COLUMNS.length; i++) {
+            Integer position = positions.get(CSV_COLUMNS[i]);
+            if (position == null) {
+                throw new IllegalArgumentException("CSV header must include the columns " + String.join(",", CSV_COLUMNS));
+            }
+            columns[i] = position;
+        }
+        return columns;
+    }
+
+    private static String field(List<String> fields, int column) {
+        if (column >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(column).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static Integer intField(List<String> fields, int column, String name) {
+        String value = field(fields, column);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " value: " + value);
+        }
+    }
+
+    /**
+     * Split one CSV line into fields
+     *
+     * @param line the line
+     * @return the unquoted fields
+     * @throws IllegalArgumentException if a quoted field is not closed
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Lines of a request body, each held up to a maximum length
+     *
+     * Unlike BufferedReader.readLine, a line with no newline in sight never
+     * grows past the maximum: the rest of it is read and dropped, and the
+     * line is marked too long. Lines end at \n or \r\n.
+     */
+    private static final class BoundedLines implements Closeable {
+
+        private final Reader in;
+        private final int maxLength;
+        private final char[] buffer = new char[READ_BUFFER_SIZE];
+        private final StringBuilder line = new StringBuilder();
+        private int position;
+        private int limit;
+        private long number;
+        private boolean tooLong;
+
+        BoundedLines(InputStream in, int maxLength) {
+            this.in = new InputStreamReader(in, StandardCharsets.UTF_8);
+            this.maxLength = maxLength;
+        }
+
+        /**
+         * Read the next line
+         *
+         * @return the line without its terminator, cut off at the maximum length; null at the end of the stream
+         * @throws IOException if reading fails
+         */
+        String next() throws IOException {
+            line.setLength(0);
+            tooLong = false;
+            boolean started = false;
+            while (true) {
+                if (position == limit) {
+                    int read = in.read(buffer, 0, buffer.length);
+                    position = 0;
+                    limit = Math.max(read, 0);
+                    if (read < 0) {
+                        if (!started) {
+                            return null;
+                        }
+                        break;
+                    }
+                    continue;
+                }
+                started = true;
+                int start = position;
+                while (position < limit && buffer[position] != '\n') {
+                    position++;
+                }
+                append(start, position);
+                if (position < limit) {
+                    // Skip the newline
+                    position++;
+                    break;
+                }
+            }
+            number++;
+            int length = line.length();
+            if (length > 0 && line.charAt(length - 1) == '\r') {
+                line.setLength(length - 1);
+            }
+            return line.toString();
+        }
+
+        private void append(int start, int end) {
+            // One spare character for the \r of a \r\n terminator
+            int room = maxLength + 1 - line.length();
+            if (end - start > room) {
+                tooLong = true;
+                end = start + Math.max(room, 0);
+            }
+            line.append(buffer, start, end - start);
+        }
+
+        /**
+         * Get the number of the line last read
+         *
+         * @return the line number, counting from 1
+         */
+        long number() {
+            return number;
+        }
+
+        /**
+         * Check whether the line last read was longer than the maximum
+         *
+         * @return true if the line was cut off
+         */
+        boolean tooLong() {
+            return tooLong || line.length() > maxLength;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Records waiting to be applied, and the running totals of the ingest
+     */
+    private static class Batch {
+
+        private final ProductService productService;
+        private final int batchSize;
+        private final List<Product> products;
+        private final long[] lines;
+        private final IngestResult result = new IngestResult();
+        private final long start = System.nanoTime();
+
+        Batch(ProductService productService, int batchSize) {
+            this.productService = productService;
+            this.batchSize = batchSize;
+            this.products = new ArrayList<>(batchSize);
+            this.lines = new long[batchSize];
+        }
+
+        void add(long line, Product product) {
+            lines[products.size()] = line;
+            products.add(product);
+            result.setReceived(result.getReceived() + 1);
+            if (products.size() == batchSize) {
+                flush();
+            }
+        }
+
+        void reject(long line, String barcode, String error) {
+            result.setReceived(result.getReceived() + 1);
+            fail(line, barcode, error);
+        }
+
+        private void fail(long line, String barcode, String error) {
+            result.setFailed(result.getFailed() + 1);
+            if (result.getErrors().size() < MAX_ERRORS) {
+                result.getErrors().add(new RecordError(line, barcode, error));
+            }
+        }
+
+        /**
+         * Apply the pending records, validated by the service, and fold the outcome into the totals
+         */
+        private void flush() {
+            if (products.isEmpty()) {
+                return;
+            }
+            BulkUpsertResult applied = productService.upsertAll(products);
+            result.setBatches(result.getBatches() + 1);
+            result.setCreated(result.getCreated() + applied.getCreated());
+            result.setUpdated(result.getUpdated() + applied.getUpdated());
+            result.setSuperseded(result.getSuperseded() + applied.getSuperseded());
+            result.setCatalogVersion(applied.getCatalogVersion());
+            for (ItemResult item : applied.getItems()) {
+                if (item.getStatus() == BulkUpsertResult.Status.FAILED) {
+                    fail(lines[item.getIndex()], item.getBarcode(), item.getError());
+                }
+            }
+            products.clear();
+        }
+
+        IngestResult finish() {
+            flush();
+            if (result.getBatches() == 0) {
+                result.setCatalogVersion(productService.getCatalogVersion());
+            }
+            long elapsed = System.nanoTime() - start;
+            result.setDurationMillis(elapsed / 1_000_000);
+            result.setItemsPerSecond(result.getReceived() * 1e9 / Math.max(1, elapsed));
+            return result;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.productapi.controller;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.productapi.model.Product;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes products straight to a response stream, one at a time
+ *
+ * Products are read from the store's stream as they are written, so memory
+ * use does not depend on the number of products: nothing is buffered
+ * beyond the generator's own output buffer, which is flushed
+ * every {@value #FLUSH_INTERVAL} products so clients receive chunks
+ * while the export is still running.
+ */
+class ProductStreamWriter {
+
+    private static final int FLUSH_INTERVAL = 1000;
+
+    private final ObjectWriter writer;
+
+    ProductStreamWriter(ObjectMapper objectMapper) {
+        // Pretty-printing and per-value flushing would multiply the cost of a full export
+        this.writer = objectMapper.writerFor(Product.class)
+                .without(SerializationFeature.INDENT_OUTPUT)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Write products as newline-delimited JSON, one object per line
+     *
+     * @param products the products to write; the caller closes the stream
+     * @param out the response stream
+     * @throws IOException if writing fails
+     */
+    void writeNdjson(Stream<Product> products, OutputStream out) throws IOException {
+        try (JsonGenerator generator = writer.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.setRootValueSeparator(new SerializedString("\n"));
+            int written = 0;
+            for (Iterator<Product> it = products.iterator(); it.hasNext(); ) {
+                writer.writeValue(generator, it.next());
+                if (++written % FLUSH_INTERVAL == 0) {
+                    generator.flush();
+                }
+            }
+            if (written > 0) {
+                generator.writeRaw('\n');
+            }
+        }
+    }
+
+    /**
+     * Write products as a single JSON array
+     *
+     * @param products the products to write; the caller closes the stream
+     * @param out the response stream
+     * @throws IOException if writing fails
+     */
+    void writeJsonArray(Stream<Product> products, OutputStream out) throws IOException {
+        try (JsonGenerator generator = writer.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            int written = 0;
+            for (Iterator<Product> it = products.iterator(); it.hasNext(); ) {
+                writer.writeValue(generator, it.next());
+                if (++written % FLUSH_INTERVAL == 0) {
+                    generator.flush();
+                }
+            }
+            generator.writeEndArray();
+        }
+    }
+}
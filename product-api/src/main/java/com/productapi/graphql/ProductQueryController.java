@@ -0,0 +1,88 @@
+package com.productapi.graphql;
+
+import com.productapi.model.Product;
+import com.productapi.service.ProductService;
+import com.productapi.service.ProductSort;
+import com.productapi.service.ProductSortKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.stereotype.Controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GraphQL controller for product queries
+ */
+@Controller
+public class ProductQueryController {
+
+    private final ProductService productService;
+
+    @Autowired
+    public ProductQueryController(ProductService productService) {
+        this.productService = productService;
+    }
+
+    /**
+     * Query to get all products
+     *
+     * @return list of all products
+     */
+    @QueryMapping
+    public List<Product> products() {
+        return productService.getAllProducts();
+    }
+
+    /**
+     * Query to get a product by barcode
+     *
+     * @param barcode the product barcode
+     * @return the product, or null if not found
+     */
+    @QueryMapping
+    public Product productByBarcode(@Argument String barcode) {
+        return productService.getProductByBarcode(barcode);
+    }
+
+    /**
+     * Query to filter products by price range
+     *
+     * @param minPrice the minimum price
+     * @param maxPrice the maximum price
+     * @return list of products within the price range
+     */
+    @QueryMapping
+    public List<Product> filterProductsByPrice(@Argument int minPrice, @Argument int maxPrice) {
+        return productService.filterByPriceRange(minPrice, maxPrice);
+    }
+
+    /**
+     * Query to get product names sorted by price
+     *
+     * @return list of product names in ascending price order
+     */
+    @QueryMapping
+    public List<String> sortProductsByPrice() {
+        return productService.sortByPrice();
+    }
+
+    /**
+     * Query to sort products by one or more fields
+     *
+     * @param by list of {field, direction} inputs, most significant first
+     * @return list of products in the requested order
+     */
+    @QueryMapping
+    public List<Product> sortProducts(@Argument List<Map<String, Object>> by) {
+        List<ProductSort.Order> orders = new ArrayList<>();
+        for (Map<String, Object> input : by) {
+            ProductSortKey key = ProductSortKey.valueOf((String) input.get("field"));
+            String direction = (String) input.get("direction");
+            orders.add(new ProductSort.Order(key, direction != null ? ProductSort.Direction.valueOf(direction) : null));
+        }
+        return productService.sortProducts(ProductSort.of(orders));
+    }
+}
@@ -0,0 +1,112 @@
+package com.productapi.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk product upsert, with one result per submitted item
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Result of a bulk product import")
+public class BulkUpsertResult {
+    
+    /**
+     * Per-item results, in submission order
+     */
+    @Schema(description = "Outcome of each submitted item, in submission order")
+    private List<ItemResult> items = new ArrayList<>();
+    
+    /**
+     * Number of products created
+     */
+    @Schema(description = "Number of products created", example = "120")
+    private int created;
+    
+    /**
+     * Number of existing products replaced
+     */
+    @Schema(description = "Number of existing products replaced", example = "30")
+    private int updated;
+    
+    /**
+     * Number of items rejected by validation
+     */
+    @Schema(description = "Number of items rejected by validation", example = "2")
+    private int failed;
+    
+    /**
+     * Number of items replaced by a later item with the same barcode in the batch
+     */
+    @Schema(description = "Number of items overridden by a later item with the same barcode", example = "1")
+    private int superseded;
+    
+    /**
+     * Catalog version after the batch was applied
+     */
+    @Schema(description = "Catalog version after the batch was applied", example = "42")
+    private long catalogVersion;
+    
+    /**
+     * Wall-clock time spent validating and applying the batch
+     */
+    @Schema(description = "Time spent validating and applying the batch, in milliseconds", example = "15")
+    private long durationMillis;
+    
+    /**
+     * Submitted items processed per second
+     */
+    @Schema(description = "Submitted items processed per second", example = "10000.0")
+    private double itemsPerSecond;
+    
+    /**
+     * Enumeration for the outcome of a single item
+     */
+    @Schema(description = "Outcome of a single item")
+    public enum Status {
+        CREATED,
+        UPDATED,
+        FAILED,
+        SUPERSEDED
+    }
+    
+    /**
+     * Inner class holding the outcome of a single item
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Schema(description = "Outcome of a single submitted item")
+    public static class ItemResult {
+        
+        /**
+         * Position of the item in the submitted batch
+         */
+        @Schema(description = "Position of the item in the submitted batch", example = "0")
+        private int index;
+        
+        /**
+         * Barcode of the item, or null if it had none
+         */
+        @Schema(description = "Barcode of the item", example = "74001755")
+        private String barcode;
+        
+        /**
+         * What happened to the item
+         */
+        @Schema(description = "Outcome of the item")
+        private Status status;
+        
+        /**
+         * Validation message for a failed item
+         */
+        @Schema(description = "Validation message when the item failed", example = "Product price must be a non-negative value")
+        private String error;
+    }
+}
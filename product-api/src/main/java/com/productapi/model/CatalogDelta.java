@@ -0,0 +1,28 @@
+package com.productapi.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One catalog write, as recorded in the change feed
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Products changed by one catalog write")
+public class CatalogDelta {
+    
+    // Catalog version the write produced
+    private long version;
+    
+    // Time the write was recorded, in epoch milliseconds
+    private long timestamp;
+    
+    // Products changed by the write, in the order they were applied
+    private List<ProductChange> changes = new ArrayList<>();
+}
@@ -0,0 +1,34 @@
+package com.productapi.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Catalog writes recorded after a given version
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Catalog writes recorded after a given version")
+public class CatalogDeltaPage {
+    
+    // Run of catalog versions the page belongs to; pass it as epoch next time
+    private String epoch;
+    
+    // Version the page starts after, as requested
+    private long since;
+    
+    // Version of the last delta in the page, or since if the page is empty; pass it as since next time
+    private long version;
+    
+    // True if no recorded delta follows this page
+    private boolean complete;
+    
+    // The deltas, in version order
+    private List<CatalogDelta> deltas = new ArrayList<>();
+}
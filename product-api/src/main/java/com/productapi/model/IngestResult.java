@@ -0,0 +1,64 @@
+package com.productapi.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Summary of a streamed product ingest
+ *
+ * Unlike a bulk upsert result, only totals and the first few errors are
+ * kept, so the summary stays small however many records were streamed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Result of a streamed product ingest")
+public class IngestResult {
+
+    // Number of records read from the request body
+    private long received;
+
+    // Number of products created
+    private long created;
+
+    // Number of existing products replaced
+    private long updated;
+
+    // Number of records that could not be parsed or failed validation
+    private long failed;
+
+    // Number of records replaced by a later record with the same barcode in the same batch
+    private long superseded;
+
+    // Number of batches applied to the catalog
+    private int batches;
+
+    // Catalog version after the last batch was applied
+    private long catalogVersion;
+
+    // Wall-clock time spent reading and applying the stream
+    private long durationMillis;
+
+    // Records processed per second
+    private double itemsPerSecond;
+
+    // The first errors, in stream order
+    private List<RecordError> errors = new ArrayList<>();
+
+    /**
+     * Inner class describing a record that was rejected
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RecordError {
+        private long line;
+        private String barcode;
+        private String error;
+    }
+}
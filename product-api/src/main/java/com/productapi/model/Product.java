@@ -4,6 +4,8 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
 
 /**
  * Product entity class containing product details
@@ -12,11 +14,13 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @Schema(description = "Product information")
+@Document(collection = "products")
 public class Product {
     
     /**
-     * The unique identifier of the product
+     * The unique identifier of the product, stored as the document _id in MongoDB
      */
+    @Id
     @Schema(description = "Product barcode (unique identifier)", example = "74001755", required = true)
     private String barcode;
     
@@ -0,0 +1,55 @@
+package com.productapi.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A single product created, updated or deleted by a catalog write
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Product created, updated or deleted by a catalog write")
+public class ProductChange {
+    
+    // What happened to the product
+    private Type type;
+    
+    // Barcode of the product
+    private String barcode;
+    
+    // The product as written; null for deletions
+    private Product product;
+    
+    /**
+     * Enumeration for the kind of change
+     */
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+    
+    /**
+     * Create the change for a product that was created or updated
+     * 
+     * @param type CREATED or UPDATED
+     * @param product the product as written
+     * @return the change
+     */
+    public static ProductChange put(Type type, Product product) {
+        return new ProductChange(type, product.getBarcode(), product);
+    }
+    
+    /**
+     * Create the change for a deleted product
+     * 
+     * @param barcode the barcode
+     * @return the change
+     */
+    public static ProductChange deleted(String barcode) {
+        return new ProductChange(Type.DELETED, barcode, null);
+    }
+}
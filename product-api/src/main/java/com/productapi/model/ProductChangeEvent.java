@@ -0,0 +1,61 @@
+package com.productapi.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Catalog write published by one replica to its peers
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductChangeEvent {
+    
+    // Identifier of the publishing replica, new on every start
+    private String origin;
+    
+    // Position in the origin's stream: 1 for its first event, then consecutive
+    private long sequence;
+    
+    // Catalog version the write produced on the origin
+    private long catalogVersion;
+    
+    // Time of the write, in epoch milliseconds; with the origin, decides which of two writes to a barcode wins;
+    // on a resync reply, the stamp time of the origin's products not written since it started
+    private long timestamp;
+    
+    // Products changed by the write, in the order they were applied
+    private List<ProductChange> changes = new ArrayList<>();
+    
+    // On a resync request, the origin asked to resend its catalog; the request itself has no sequence
+    private String resyncOrigin;
+    
+    // On a resync request and every page of its reply, identifies the resync
+    private String resyncId;
+    
+    // On a resync reply, position of this page in the reply: 0 for the first, then consecutive
+    private int resyncPage;
+    
+    // On a resync reply, whether this is the last page, after which the reply is complete
+    private boolean resyncComplete;
+    
+    // On a resync reply, one page of the origin's catalog; the reply has no sequence
+    private List<ReplicatedProduct> catalog;
+    
+    /**
+     * Create the event for a write
+     * 
+     * @param origin the publishing replica
+     * @param sequence position in the origin's stream
+     * @param catalogVersion catalog version the write produced on the origin
+     * @param timestamp time of the write, in epoch milliseconds
+     * @param changes products changed by the write
+     */
+    public ProductChangeEvent(String origin, long sequence, long catalogVersion, long timestamp, List<ProductChange> changes) {
+        this(origin, sequence, catalogVersion, timestamp, changes, null, null, 0, false, null);
+    }
+}
@@ -0,0 +1,26 @@
+package com.productapi.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A barcode's state on a replica, with the write that left it
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplicatedProduct {
+    
+    // Barcode of the product
+    private String barcode;
+    
+    // The product as last written; null if the last write deleted it
+    private Product product;
+    
+    // Timestamp of the last write, in epoch milliseconds; if not written since the replica started, minus its start time
+    private long timestamp;
+    
+    // Origin of the last write, or the replica itself if not written since it started; breaks timestamp ties
+    private String origin;
+}
@@ -0,0 +1,63 @@
+package com.productapi.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Phase breakdown of one sampled request
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Phase breakdown of one sampled request")
+public class RequestTrace {
+    
+    // Position in the trace buffer; also sent to the client as X-Trace-Id
+    private long id;
+    
+    // HTTP method
+    private String method;
+    
+    // Request path, without the query string
+    private String path;
+    
+    // Response status
+    private int status;
+    
+    // Time the request started, in epoch milliseconds
+    private long startedAt;
+    
+    // Time from the first traced filter to the end of the request
+    private long durationMicros;
+    
+    // The phases, in the order they started
+    private List<Span> spans = new ArrayList<>();
+    
+    /**
+     * Inner class describing one timed phase
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Span {
+        
+        // Phase, e.g. security, controller ProductController.filterByPrice or serialization
+        private String name;
+        
+        // Nesting level; 0 for phases directly under the request
+        private int depth;
+        
+        // Start, relative to the start of the request
+        private long startMicros;
+        
+        private long durationMicros;
+        
+        // Duration minus the time spent in nested phases
+        private long selfMicros;
+    }
+}
@@ -0,0 +1,25 @@
+package com.productapi.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Current state of the request tracer
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Current state of the request tracer")
+public class TracingSettings {
+    
+    // Fraction of requests traced; 0 turns sampling off
+    private double sampleRate;
+    
+    // Number of traces the buffer keeps before overwriting the oldest
+    private int capacity;
+    
+    // Number of requests traced since start
+    private long traced;
+}
@@ -0,0 +1,33 @@
+package com.productapi.repository;
+
+import com.productapi.model.Product;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository interface for Product entity operations with MongoDB
+ */
+@Repository
+public interface ProductRepository extends MongoRepository<Product, String> {
+    
+    /**
+     * Find products in a price range, ordered by price then barcode
+     * 
+     * @param initialRange lowest price, inclusive
+     * @param finalRange highest price, inclusive
+     * @return list of products
+     */
+    @Query(value = "{ 'price': { $gte: ?0, $lte: ?1 } }", sort = "{ 'price': 1, '_id': 1 }")
+    List<Product> findByPriceRange(int initialRange, int finalRange);
+    
+    /**
+     * Find every product, ordered by price then barcode
+     * 
+     * @return list of products
+     */
+    @Query(value = "{}", sort = "{ 'price': 1, '_id': 1 }")
+    List<Product> findAllByPrice();
+}
@@ -0,0 +1,117 @@
+package com.productapi.service;
+
+import com.productapi.model.BulkUpsertResult;
+import com.productapi.model.BulkUpsertResult.ItemResult;
+import com.productapi.model.BulkUpsertResult.Status;
+import com.productapi.model.Product;
+import com.productapi.model.ProductChange;
+import com.productapi.model.ProductChange.Type;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Validation and bookkeeping shared by the bulk upserts of the catalog stores
+ */
+final class BulkUpserts {
+
+    // Batches at least this large are validated in parallel
+    static final int PARALLEL_VALIDATION_THRESHOLD = 1024;
+
+    private BulkUpserts() {
+    }
+
+    /**
+     * Validate a batch and pick the item that wins for each barcode
+     * 
+     * Runs without any lock, in parallel for large batches. Failed and
+     * superseded items get their result; the winners are left for the caller
+     * to apply.
+     * 
+     * @param items the submitted items
+     * @param results one slot per item, filled in for items that will not be applied
+     * @return index of the last valid item for each barcode
+     */
+    static Map<String, Integer> prepare(List<Product> items, ItemResult[] results) {
+        // Each task writes only its own slot
+        IntStream indexes = IntStream.range(0, items.size());
+        if (items.size() >= PARALLEL_VALIDATION_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(i -> {
+            try {
+                ProductValidator.validate(items.get(i));
+            } catch (IllegalArgumentException e) {
+                Product product = items.get(i);
+                results[i] = new ItemResult(i, product != null ? product.getBarcode() : null, Status.FAILED, e.getMessage());
+            }
+        });
+        
+        // Dedupe within the batch: the last valid item for a barcode wins
+        Map<String, Integer> winners = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (results[i] == null) {
+                Integer previous = winners.put(items.get(i).getBarcode(), i);
+                if (previous != null) {
+                    results[previous] = new ItemResult(previous, items.get(previous).getBarcode(), Status.SUPERSEDED, null);
+                }
+            }
+        }
+        return winners;
+    }
+
+    /**
+     * Total up the per-item results of an applied batch
+     * 
+     * @param results one result per submitted item
+     * @param version catalog version after the batch
+     * @param startNanos System.nanoTime() when the batch was received
+     * @return the batch result
+     */
+    static BulkUpsertResult summarize(ItemResult[] results, long version, long startNanos) {
+        BulkUpsertResult result = new BulkUpsertResult();
+        for (ItemResult item : results) {
+            result.getItems().add(item);
+            switch (item.getStatus()) {
+                case CREATED:
+                    result.setCreated(result.getCreated() + 1);
+                    break;
+                case UPDATED:
+                    result.setUpdated(result.getUpdated() + 1);
+                    break;
+                case FAILED:
+                    result.setFailed(result.getFailed() + 1);
+                    break;
+                default:
+                    result.setSuperseded(result.getSuperseded() + 1);
+                    break;
+            }
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        result.setCatalogVersion(version);
+        result.setDurationMillis(elapsed / 1_000_000);
+        result.setItemsPerSecond(results.length * 1e9 / Math.max(1, elapsed));
+        return result;
+    }
+
+    /**
+     * Describe the applied winners of a batch as product changes
+     * 
+     * @param items the submitted items
+     * @param winners index of the applied item for each barcode
+     * @param results per-item results, CREATED or UPDATED for every winner
+     * @return one change per winner, in submission order
+     */
+    static List<ProductChange> changes(List<Product> items, Map<String, Integer> winners, ItemResult[] results) {
+        int[] applied = winners.values().stream().mapToInt(Integer::intValue).sorted().toArray();
+        List<ProductChange> changes = new ArrayList<>(applied.length);
+        for (int i : applied) {
+            Type type = results[i].getStatus() == Status.CREATED ? Type.CREATED : Type.UPDATED;
+            changes.add(ProductChange.put(type, items.get(i)));
+        }
+        return changes;
+    }
+}
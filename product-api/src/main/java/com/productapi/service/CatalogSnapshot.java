@@ -0,0 +1,266 @@
+package com.productapi.service;
+
+import com.productapi.model.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable point-in-time view of the catalog
+ *
+ * Products are held in (price, barcode) order. A snapshot is never modified
+ * after it is published, so readers can share it and hand out views of it
+ * without copying or locking.
+ */
+public final class CatalogSnapshot {
+
+    /**
+     * Snapshot of an empty catalog before any write
+     */
+    public static final CatalogSnapshot EMPTY = new CatalogSnapshot(0, new Product[0]);
+
+    private final long version;
+    private final Product[] byPrice;
+    private final List<Product> products;
+
+    // Item names in price order, computed on first use; a benign race at worst builds it twice
+    private volatile List<String> itemsByPrice;
+
+    // Orderings other than price, each computed once per snapshot on first use
+    private final Map<ProductSort, List<Product>> orderings = new ConcurrentHashMap<>();
+
+    // Bounds the memory spent on memoized orderings; further sorts are computed per call
+    private static final int MAX_ORDERINGS = 16;
+
+    // Pages reaching at most 1/16th into the catalog use top-K selection instead of a full sort
+    private static final int TOP_K_FRACTION = 16;
+
+    /**
+     * Create a snapshot
+     *
+     * @param version the catalog version this snapshot reflects
+     * @param byPrice products in (price, barcode) order; ownership passes to the snapshot
+     */
+    public CatalogSnapshot(long version, Product[] byPrice) {
+        this.version = version;
+        this.byPrice = byPrice;
+        this.products = Collections.unmodifiableList(Arrays.asList(byPrice));
+    }
+
+    /**
+     * Get the catalog version, incremented by every successful write
+     *
+     * @return the version number
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get all products in price order
+     *
+     * @return unmodifiable view of the snapshot
+     */
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    /**
+     * Get the product names in price order, memoized for the lifetime of the snapshot
+     *
+     * @return unmodifiable list of item names
+     */
+    public List<String> getItemsByPrice() {
+        List<String> items = itemsByPrice;
+        if (items == null) {
+            List<String> built = new ArrayList<>(byPrice.length);
+            for (Product product : byPrice) {
+                built.add(product.getItem());
+            }
+            items = Collections.unmodifiableList(built);
+            itemsByPrice = items;
+        }
+        return items;
+    }
+
+    /**
+     * Get all products in the order of a sort specification
+     *
+     * Price order is the snapshot itself; any other ordering is sorted once,
+     * starting from price order, and reused until the next catalog version.
+     *
+     * @param sort the sort specification
+     * @return unmodifiable list of the products in that order
+     */
+    public List<Product> sorted(ProductSort sort) {
+        if (sort.equals(ProductSort.PRICE_ASCENDING)) {
+            return products;
+        }
+        List<Product> ordering = orderings.get(sort);
+        if (ordering == null) {
+            Product[] copy = byPrice.clone();
+            Arrays.sort(copy, sort.comparator());
+            ordering = Collections.unmodifiableList(Arrays.asList(copy));
+            if (orderings.size() < MAX_ORDERINGS) {
+                List<Product> existing = orderings.putIfAbsent(sort, ordering);
+                ordering = existing != null ? existing : ordering;
+            }
+        }
+        return ordering;
+    }
+
+    /**
+     * Get one page of the products in the order of a sort specification
+     *
+     * Uses the snapshot itself or a memoized ordering when one exists. Otherwise
+     * pages near the start are answered by keeping the best offset + limit
+     * products in a bounded heap, O(n log k), without sorting the catalog.
+     *
+     * @param sort the sort specification
+     * @param page the page to return
+     * @return unmodifiable list of the products in the page
+     */
+    public List<Product> sorted(ProductSort sort, PageSpec page) {
+        if (sort.equals(ProductSort.PRICE_ASCENDING)) {
+            return page.slice(products);
+        }
+        List<Product> ordering = orderings.get(sort);
+        if (ordering != null) {
+            return page.slice(ordering);
+        }
+        if (page.getEnd() > byPrice.length / TOP_K_FRACTION) {
+            return page.slice(sorted(sort));
+        }
+        return page.slice(topK(sort, page.getEnd()));
+    }
+
+    /**
+     * Select the first k products of an ordering with a bounded max-heap
+     *
+     * @param sort the sort specification
+     * @param k the number of products to keep
+     * @return the first k products in order
+     */
+    private List<Product> topK(ProductSort sort, int k) {
+        if (k == 0) {
+            return Collections.emptyList();
+        }
+        Comparator<Product> comparator = sort.comparator();
+        PriorityQueue<Product> heap = new PriorityQueue<>(k + 1, comparator.reversed());
+        for (Product product : byPrice) {
+            if (heap.size() < k) {
+                heap.add(product);
+            } else if (comparator.compare(product, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(product);
+            }
+        }
+        Product[] best = heap.toArray(new Product[0]);
+        Arrays.sort(best, comparator);
+        return Collections.unmodifiableList(Arrays.asList(best));
+    }
+
+    /**
+     * Get the number of products in the snapshot
+     *
+     * @return the product count
+     */
+    public int size() {
+        return byPrice.length;
+    }
+
+    /**
+     * Get the products whose price lies within an inclusive range
+     *
+     * @param initialRange the minimum price
+     * @param finalRange the maximum price
+     * @return unmodifiable view of the matching products in price order
+     */
+    public List<Product> range(int initialRange, int finalRange) {
+        if (initialRange > finalRange) {
+            return Collections.emptyList();
+        }
+        return products.subList(firstIndexAtLeast(initialRange), firstIndexAbove(finalRange));
+    }
+
+    /**
+     * Get the products of a price range that come after a keyset position
+     *
+     * @param initialRange the minimum price
+     * @param finalRange the maximum price
+     * @param after position to start after, or null to start at the beginning of the range
+     * @param limit maximum number of products to return
+     * @return unmodifiable view of up to limit products in price order
+     */
+    public List<Product> rangeAfter(int initialRange, int finalRange, PriceKey after, int limit) {
+        if (initialRange > finalRange) {
+            return Collections.emptyList();
+        }
+        int from = firstIndexAtLeast(initialRange);
+        if (after != null) {
+            from = Math.max(from, firstIndexAfter(after));
+        }
+        int to = firstIndexAbove(finalRange);
+        if (from >= to) {
+            return Collections.emptyList();
+        }
+        return products.subList(from, (int) Math.min(to, (long) from + limit));
+    }
+
+    /**
+     * Binary search for the first product positioned after a (price, barcode) key
+     *
+     * @param key the position
+     * @return index of the first such product, or size() if none
+     */
+    int firstIndexAfter(PriceKey key) {
+        int low = 0;
+        int high = byPrice.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            Product product = byPrice[mid];
+            if (new PriceKey(product.getPrice(), product.getBarcode()).compareTo(key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Binary search for the first product priced at or above a value
+     *
+     * @param price the price
+     * @return index of the first such product, or size() if none
+     */
+    int firstIndexAtLeast(int price) {
+        int low = 0;
+        int high = byPrice.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (byPrice[mid].getPrice() < price) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Binary search for the first product priced above a value
+     *
+     * @param price the price
+     * @return index of the first such product, or size() if none
+     */
+    int firstIndexAbove(int price) {
+        return price == Integer.MAX_VALUE ? byPrice.length : firstIndexAtLeast(price + 1);
+    }
+}
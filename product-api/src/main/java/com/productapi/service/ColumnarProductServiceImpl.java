@@ -0,0 +1,546 @@
+package com.productapi.service;
+
+import com.productapi.model.BulkUpsertResult;
+import com.productapi.model.BulkUpsertResult.ItemResult;
+import com.productapi.model.BulkUpsertResult.Status;
+import com.productapi.model.Product;
+import com.productapi.model.ProductChange;
+import com.productapi.model.ProductChange.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+
+/**
+ * Columnar implementation of the ProductService interface
+ *
+ * Products are not kept as objects. Each field lives in its own array
+ * indexed by row: prices in an int[], discount and availability in byte[]s,
+ * and items and categories as int codes into string dictionaries. Barcodes
+ * are unique, so their dictionary is the barcode to row index itself. The
+ * store holds a handful of arrays instead of millions of small objects, and
+ * queries scan and compare primitives.
+ *
+ * Writes update the columns under a write lock. Point lookups read them
+ * under an optimistic stamp and retry under the read lock only if a write
+ * overlapped. Writes also keep the rows in (price, barcode) order: a single
+ * write moves one entry of that permutation, and a bulk upsert merges its
+ * rows in with one pass. Range and sort queries use an immutable
+ * {@link ColumnarSnapshot}: the first reader after a write copies the
+ * columns and the price order, a few array copies with no sorting, while
+ * other readers wanting that version wait for the copy rather than making
+ * their own. Products are created only for the rows a query returns.
+ *
+ * Selected with app.catalog.store=columnar.
+ */
+@Service
+@ConditionalOnProperty(name = "app.catalog.store", havingValue = "columnar")
+public class ColumnarProductServiceImpl implements ProductService {
+
+    private static final Logger log = LoggerFactory.getLogger(ColumnarProductServiceImpl.class);
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Dictionaries are rebuilt when unused entries outnumber live rows by this factor
+    private static final int DICTIONARY_SLACK = 2;
+
+    // Guards the columns: writers take the write lock, point lookups read optimistically
+    private final StampedLock lock = new StampedLock();
+
+    // Barcode dictionary: barcode -> row
+    private final Map<String, Integer> rows = new ConcurrentHashMap<>();
+
+    // Columns, indexed by row; rows [0, size) are live
+    private int size;
+    private String[] barcodes = new String[INITIAL_CAPACITY];
+    private int[] prices = new int[INITIAL_CAPACITY];
+    private byte[] discounts = new byte[INITIAL_CAPACITY];
+    private byte[] available = new byte[INITIAL_CAPACITY];
+    private int[] itemCodes = new int[INITIAL_CAPACITY];
+    private int[] categoryCodes = new int[INITIAL_CAPACITY];
+    private StringDictionary items = new StringDictionary();
+    private StringDictionary categories = new StringDictionary();
+
+    // Rows [0, size) in (price, barcode) order
+    private int[] byPrice = new int[INITIAL_CAPACITY];
+
+    // Incremented by every write, under the write lock
+    private volatile long version;
+
+    // Latest snapshot; replaced by the first reader after a write
+    private volatile ColumnarSnapshot snapshot;
+
+    // Held while building a snapshot, so one reader builds it and the rest wait
+    private final Object snapshotBuild = new Object();
+
+    // Told about every write, under the write lock
+    private final ProductChangeListeners changeListeners = new ProductChangeListeners();
+
+    /**
+     * Initialize some sample product data
+     */
+    @PostConstruct
+    public void init() {
+        long stamp = lock.writeLock();
+        try {
+            if (size == 0) {
+                log.info("Initializing the columnar catalog with sample products");
+                List<Integer> added = new ArrayList<>();
+                for (Product product : SampleCatalog.products()) {
+                    added.add(appendRow(product));
+                }
+                mergeIntoPriceOrder(added, 0);
+                version++;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public List<Product> filterByPriceRange(int initialRange, int finalRange) {
+        return getSnapshot().range(initialRange, finalRange);
+    }
+
+    @Override
+    public List<Product> filterByPriceRange(int initialRange, int finalRange, PageSpec page) {
+        // Only the rows of the page are materialized
+        return getSnapshot().range(initialRange, finalRange, page);
+    }
+
+    @Override
+    public List<Product> filterByPriceRangeAfter(int initialRange, int finalRange, PriceKey after, int limit) {
+        return getSnapshot().rangeAfter(initialRange, finalRange, after, limit);
+    }
+
+    @Override
+    public List<String> sortByPrice() {
+        // Decodes item names in price order without creating products
+        return getSnapshot().getItemsByPrice();
+    }
+
+    @Override
+    public List<String> sortByPrice(PageSpec page) {
+        return getSnapshot().getItemsByPrice(page);
+    }
+
+    @Override
+    public List<Product> sortProducts(ProductSort sort) {
+        return getSnapshot().sorted(sort);
+    }
+
+    @Override
+    public List<Product> sortProducts(ProductSort sort, PageSpec page) {
+        return getSnapshot().sorted(sort, page);
+    }
+
+    @Override
+    public List<Product> getAllProducts() {
+        return getSnapshot().getProducts();
+    }
+
+    @Override
+    public Stream<Product> streamByPrice() {
+        // Products are created row by row as the stream is consumed
+        return getSnapshot().stream();
+    }
+
+    @Override
+    public long getProductCount() {
+        // The barcode dictionary is concurrent, so no lock or snapshot is needed
+        return rows.size();
+    }
+
+    @Override
+    public long getCatalogVersion() {
+        return version;
+    }
+
+    /**
+     * Get the snapshot of the latest version of the catalog
+     *
+     * @return the current snapshot, built on first use after a write
+     */
+    ColumnarSnapshot getSnapshot() {
+        long wanted = version;
+        ColumnarSnapshot current = snapshot;
+        if (current != null && current.getVersion() >= wanted) {
+            return current;
+        }
+        synchronized (snapshotBuild) {
+            // Built by another reader while this one waited
+            current = snapshot;
+            if (current != null && current.getVersion() >= wanted) {
+                return current;
+            }
+
+            // Copy the columns under the read lock; the rows are already in price order
+            long stamp = lock.readLock();
+            ColumnarSnapshot built;
+            try {
+                built = new ColumnarSnapshot(version, size, Arrays.copyOf(barcodes, size), Arrays.copyOf(prices, size),
+                        Arrays.copyOf(discounts, size), Arrays.copyOf(available, size),
+                        Arrays.copyOf(itemCodes, size), Arrays.copyOf(categoryCodes, size),
+                        items.values(), items.size(), categories.values(), categories.size(),
+                        Arrays.copyOf(byPrice, size));
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            snapshot = built;
+            return built;
+        }
+    }
+
+    @Override
+    public void addChangeListener(ProductChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    @Override
+    public Product getProductByBarcode(String barcode) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            Product product = null;
+            RuntimeException torn = null;
+            try {
+                product = readProduct(barcode);
+            } catch (RuntimeException e) {
+                // A concurrent write moved or resized the columns; retried below
+                torn = e;
+            }
+            if (lock.validate(stamp)) {
+                if (torn != null) {
+                    throw torn;
+                }
+                return product;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return readProduct(barcode);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Product createProduct(Product product) {
+        ProductValidator.validate(product);
+
+        long stamp = lock.writeLock();
+        try {
+            if (rows.containsKey(product.getBarcode())) {
+                throw new IllegalArgumentException("Product with barcode " + product.getBarcode() + " already exists");
+            }
+            priceInsert(appendRow(product));
+            version++;
+            fireChange(ProductChange.put(Type.CREATED, product));
+            return product;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Product updateProduct(Product product) {
+        ProductValidator.validate(product);
+
+        long stamp = lock.writeLock();
+        try {
+            Integer row = rows.get(product.getBarcode());
+            if (row == null) {
+                return null;
+            }
+            boolean repriced = prices[row] != product.getPrice();
+            if (repriced) {
+                priceRemove(row);
+            }
+            writeRow(row, product);
+            if (repriced) {
+                priceInsert(row);
+            }
+            compactDictionariesIfSparse();
+            version++;
+            fireChange(ProductChange.put(Type.UPDATED, product));
+            return product;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean deleteProduct(String barcode) {
+        long stamp = lock.writeLock();
+        try {
+            Integer row = rows.remove(barcode);
+            if (row == null) {
+                return false;
+            }
+            priceRemove(row);
+            // Fill the hole with the last row so live rows stay contiguous
+            int last = size - 1;
+            if (row != last) {
+                byPrice[pricePosition(last, size - 1)] = row;
+                moveRow(last, row);
+                rows.put(barcodes[row], row);
+            }
+            barcodes[last] = null;
+            size--;
+            compactDictionariesIfSparse();
+            version++;
+            fireChange(ProductChange.deleted(barcode));
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public BulkUpsertResult upsertAll(Collection<Product> batch) {
+        long start = System.nanoTime();
+        List<Product> submitted = new ArrayList<>(batch);
+        ItemResult[] results = new ItemResult[submitted.size()];
+
+        // Validate and dedupe outside the lock
+        Map<String, Integer> winners = BulkUpserts.prepare(submitted, results);
+
+        // Apply the whole batch as one version
+        long appliedVersion;
+        long stamp = lock.writeLock();
+        try {
+            if (!winners.isEmpty()) {
+                ensureCapacity(size + winners.size());
+                int previousSize = size;
+                List<Integer> moved = new ArrayList<>();
+                for (int i : winners.values()) {
+                    Product product = submitted.get(i);
+                    Integer row = rows.get(product.getBarcode());
+                    if (row != null) {
+                        if (prices[row] != product.getPrice()) {
+                            moved.add(row);
+                        }
+                        writeRow(row, product);
+                        results[i] = new ItemResult(i, product.getBarcode(), Status.UPDATED, null);
+                    } else {
+                        moved.add(appendRow(product));
+                        results[i] = new ItemResult(i, product.getBarcode(), Status.CREATED, null);
+                    }
+                }
+                mergeIntoPriceOrder(moved, previousSize);
+                compactDictionariesIfSparse();
+                version++;
+                if (!changeListeners.isEmpty()) {
+                    changeListeners.fire(version, BulkUpserts.changes(submitted, winners, results));
+                }
+            }
+            appliedVersion = version;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        BulkUpsertResult result = BulkUpserts.summarize(results, appliedVersion, start);
+        log.debug("Bulk upsert of {} items took {} ms", submitted.size(), result.getDurationMillis());
+        return result;
+    }
+
+    /**
+     * Materialize the row of a barcode; callers hold a stamp or lock
+     *
+     * @param barcode the barcode
+     * @return the product, or null if not found
+     */
+    private Product readProduct(String barcode) {
+        Integer row = rows.get(barcode);
+        if (row == null) {
+            return null;
+        }
+        int r = row;
+        return new Product(barcodes[r], items.decode(itemCodes[r]), categories.decode(categoryCodes[r]),
+                prices[r], (int) discounts[r], (int) available[r]);
+    }
+
+    /**
+     * Add a product as a new row, not yet in price order; callers hold the write lock
+     *
+     * @param product the validated product
+     * @return the new row
+     */
+    private int appendRow(Product product) {
+        ensureCapacity(size + 1);
+        int row = size++;
+        writeRow(row, product);
+        rows.put(product.getBarcode(), row);
+        return row;
+    }
+
+    /**
+     * Store a product's values in a row; callers hold the write lock
+     *
+     * @param row the row
+     * @param product the validated product
+     */
+    private void writeRow(int row, Product product) {
+        barcodes[row] = product.getBarcode();
+        prices[row] = product.getPrice();
+        discounts[row] = product.getDiscount().byteValue();
+        available[row] = product.getAvailable().byteValue();
+        itemCodes[row] = items.encode(product.getItem());
+        categoryCodes[row] = categories.encode(product.getCategory());
+    }
+
+    private void moveRow(int from, int to) {
+        barcodes[to] = barcodes[from];
+        prices[to] = prices[from];
+        discounts[to] = discounts[from];
+        available[to] = available[from];
+        itemCodes[to] = itemCodes[from];
+        categoryCodes[to] = categoryCodes[from];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= barcodes.length) {
+            return;
+        }
+        int grown = Math.max(capacity, barcodes.length + (barcodes.length >> 1));
+        barcodes = Arrays.copyOf(barcodes, grown);
+        prices = Arrays.copyOf(prices, grown);
+        discounts = Arrays.copyOf(discounts, grown);
+        available = Arrays.copyOf(available, grown);
+        itemCodes = Arrays.copyOf(itemCodes, grown);
+        categoryCodes = Arrays.copyOf(categoryCodes, grown);
+        byPrice = Arrays.copyOf(byPrice, grown);
+    }
+
+    private int compareRows(int a, int b) {
+        int result = Integer.compare(prices[a], prices[b]);
+        return result != 0 ? result : barcodes[a].compareTo(barcodes[b]);
+    }
+
+    /**
+     * Binary search the price order for the first position after a row's (price, barcode) key
+     *
+     * @param row the row
+     * @param count number of positions in price order
+     * @return the position
+     */
+    private int positionAfter(int row, int count) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareRows(byPrice[mid], row) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Find a row's position in the price order by its current values
+     *
+     * @param row the row
+     * @param count number of positions in price order
+     * @return the row's position
+     */
+    private int pricePosition(int row, int count) {
+        return positionAfter(row, count) - 1;
+    }
+
+    /**
+     * Put a row into the price order; it holds size - 1 rows before the call
+     */
+    private void priceInsert(int row) {
+        int count = size - 1;
+        int position = positionAfter(row, count);
+        System.arraycopy(byPrice, position, byPrice, position + 1, count - position);
+        byPrice[position] = row;
+    }
+
+    /**
+     * Take a row out of the price order; it holds size rows before the call
+     */
+    private void priceRemove(int row) {
+        int position = pricePosition(row, size);
+        System.arraycopy(byPrice, position + 1, byPrice, position, size - position - 1);
+    }
+
+    /**
+     * Merge new and repriced rows into the price order in one pass; callers hold the write lock
+     *
+     * @param moved rows appended by the batch, and existing rows whose price changed
+     * @param previousSize number of rows, and of positions in price order, before the batch
+     */
+    private void mergeIntoPriceOrder(List<Integer> moved, int previousSize) {
+        if (moved.isEmpty()) {
+            return;
+        }
+        // Stale positions of repriced rows are skipped while copying
+        int[] repriced = moved.stream().mapToInt(Integer::intValue).filter(row -> row < previousSize).sorted().toArray();
+        int[] added = moved.stream().mapToInt(Integer::intValue).toArray();
+        ColumnarSnapshot.sortRows(added, 0, added.length, this::compareRows);
+
+        int[] merged = new int[byPrice.length];
+        int next = 0;
+        int written = 0;
+        for (int position = 0; position < previousSize; position++) {
+            int row = byPrice[position];
+            if (Arrays.binarySearch(repriced, row) >= 0) {
+                continue;
+            }
+            while (next < added.length && compareRows(row, added[next]) > 0) {
+                merged[written++] = added[next++];
+            }
+            merged[written++] = row;
+        }
+        while (next < added.length) {
+            merged[written++] = added[next++];
+        }
+        byPrice = merged;
+    }
+
+    /**
+     * Re-encode items and categories when updates and deletes have left most
+     * dictionary entries unused; callers hold the write lock
+     */
+    private void compactDictionariesIfSparse() {
+        int limit = DICTIONARY_SLACK * size + INITIAL_CAPACITY;
+        if (items.size() > limit) {
+            items = reencode(items, itemCodes);
+        }
+        if (categories.size() > limit) {
+            categories = reencode(categories, categoryCodes);
+        }
+    }
+
+    private StringDictionary reencode(StringDictionary dictionary, int[] codes) {
+        StringDictionary compacted = new StringDictionary(size);
+        for (int row = 0; row < size; row++) {
+            codes[row] = compacted.encode(dictionary.decode(codes[row]));
+        }
+        return compacted;
+    }
+
+    /**
+     * Report a single-product write to the change listeners; callers hold the write lock
+     *
+     * @param change the product changed by the write
+     */
+    private void fireChange(ProductChange change) {
+        if (!changeListeners.isEmpty()) {
+            changeListeners.fire(version, Collections.singletonList(change));
+        }
+    }
+}
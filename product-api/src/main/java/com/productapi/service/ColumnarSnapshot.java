@@ -0,0 +1,483 @@
+package com.productapi.service;
+
+import com.productapi.model.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Immutable point-in-time copy of the columnar catalog
+ *
+ * Each field is a primitive column indexed by row, with items and categories
+ * as dictionary codes. Rows are ordered by an int permutation, never by
+ * moving objects: filters binary-search the price column in permutation
+ * order and sorts compare primitives, so Product objects are only created
+ * for the rows a query returns.
+ */
+final class ColumnarSnapshot {
+
+    // Bounds the memory spent on memoized orderings; further sorts are computed per call
+    private static final int MAX_ORDERINGS = 16;
+
+    // Runs shorter than this are insertion-sorted by the row merge sort
+    private static final int INSERTION_SORT_THRESHOLD = 24;
+
+    private final long version;
+    private final int size;
+    private final String[] barcodes;
+    private final int[] prices;
+    private final byte[] discounts;
+    private final byte[] available;
+    private final int[] itemCodes;
+    private final int[] categoryCodes;
+    private final String[] items;
+    private final String[] categories;
+    private final int itemCount;
+    private final int categoryCount;
+
+    // Rows in (price, barcode) order, and their prices in the same order for cache-friendly searches
+    private final int[] byPrice;
+    private final int[] sortedPrices;
+
+    // Built on first use; a benign race at worst builds them twice
+    private volatile List<String> itemsByPrice;
+    private volatile int[] itemRanks;
+    private volatile int[] categoryRanks;
+
+    // Row orderings other than price, each computed once per snapshot on first use
+    private final Map<ProductSort, int[]> orderings = new ConcurrentHashMap<>();
+
+    /**
+     * Create a snapshot; the arrays are owned by the snapshot from here on
+     *
+     * @param version the catalog version
+     * @param size the number of rows
+     * @param barcodes barcode column
+     * @param prices price column
+     * @param discounts discount column
+     * @param available availability column
+     * @param itemCodes item name codes
+     * @param categoryCodes category codes
+     * @param items item dictionary values; entries below itemCount never change
+     * @param itemCount number of item dictionary entries
+     * @param categories category dictionary values; entries below categoryCount never change
+     * @param categoryCount number of category dictionary entries
+     * @param byPrice rows in (price, barcode) order
+     */
+    ColumnarSnapshot(long version, int size, String[] barcodes, int[] prices, byte[] discounts, byte[] available,
+                     int[] itemCodes, int[] categoryCodes, String[] items, int itemCount,
+                     String[] categories, int categoryCount, int[] byPrice) {
+        this.version = version;
+        this.size = size;
+        this.barcodes = barcodes;
+        this.prices = prices;
+        this.discounts = discounts;
+        this.available = available;
+        this.itemCodes = itemCodes;
+        this.categoryCodes = categoryCodes;
+        this.items = items;
+        this.itemCount = itemCount;
+        this.categories = categories;
+        this.categoryCount = categoryCount;
+        this.byPrice = byPrice;
+        this.sortedPrices = new int[size];
+        for (int i = 0; i < size; i++) {
+            sortedPrices[i] = prices[byPrice[i]];
+        }
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get all products in price order
+     *
+     * Materialized per call rather than kept, so a snapshot holds only its
+     * columns.
+     *
+     * @return unmodifiable list of every product
+     */
+    List<Product> getProducts() {
+        return materialize(byPrice, 0, size);
+    }
+
+    /**
+     * Stream all products in price order, creating each only when it is reached
+     *
+     * @return the products
+     */
+    Stream<Product> stream() {
+        return IntStream.range(0, size).mapToObj(position -> product(byPrice[position]));
+    }
+
+    /**
+     * Get the product names in price order without materializing products
+     *
+     * @return unmodifiable list of item names
+     */
+    List<String> getItemsByPrice() {
+        List<String> names = itemsByPrice;
+        if (names == null) {
+            names = itemNames(0, size);
+            itemsByPrice = names;
+        }
+        return names;
+    }
+
+    /**
+     * Get one page of the product names in price order
+     *
+     * @param page the page
+     * @return list of item names
+     */
+    List<String> getItemsByPrice(PageSpec page) {
+        int from = Math.min(page.getOffset(), size);
+        return itemNames(from, (int) Math.min(size, (long) from + page.getLimit()));
+    }
+
+    /**
+     * Get the products whose price lies within an inclusive range
+     *
+     * @param initialRange the minimum price
+     * @param finalRange the maximum price
+     * @return unmodifiable list of the matching products in price order
+     */
+    List<Product> range(int initialRange, int finalRange) {
+        if (initialRange > finalRange) {
+            return Collections.emptyList();
+        }
+        return materialize(byPrice, firstIndexAtLeast(initialRange), firstIndexAbove(finalRange));
+    }
+
+    /**
+     * Get one page of the products whose price lies within an inclusive range
+     *
+     * @param initialRange the minimum price
+     * @param finalRange the maximum price
+     * @param page the page
+     * @return unmodifiable list of the matching products in price order
+     */
+    List<Product> range(int initialRange, int finalRange, PageSpec page) {
+        if (initialRange > finalRange) {
+            return Collections.emptyList();
+        }
+        int to = firstIndexAbove(finalRange);
+        int from = (int) Math.min(to, (long) firstIndexAtLeast(initialRange) + page.getOffset());
+        return materialize(byPrice, from, (int) Math.min(to, (long) from + page.getLimit()));
+    }
+
+    /**
+     * Get the products of a price range that come after a keyset position
+     *
+     * @param initialRange the minimum price
+     * @param finalRange the maximum price
+     * @param after position to start after, or null to start at the beginning of the range
+     * @param limit maximum number of products to return
+     * @return unmodifiable list of up to limit products in price order
+     */
+    List<Product> rangeAfter(int initialRange, int finalRange, PriceKey after, int limit) {
+        if (initialRange > finalRange) {
+            return Collections.emptyList();
+        }
+        int from = firstIndexAtLeast(initialRange);
+        if (after != null) {
+            from = Math.max(from, firstIndexAfter(after));
+        }
+        int to = firstIndexAbove(finalRange);
+        if (from >= to) {
+            return Collections.emptyList();
+        }
+        return materialize(byPrice, from, (int) Math.min(to, (long) from + limit));
+    }
+
+    /**
+     * Get all products in the order of a sort specification
+     *
+     * @param sort the sort specification
+     * @return unmodifiable list of the products in that order
+     */
+    List<Product> sorted(ProductSort sort) {
+        int[] rows = ordering(sort);
+        return materialize(rows, 0, rows.length);
+    }
+
+    /**
+     * Get one page of the products in the order of a sort specification,
+     * materializing only the rows of the page
+     *
+     * @param sort the sort specification
+     * @param page the page
+     * @return unmodifiable list of the products in the page
+     */
+    List<Product> sorted(ProductSort sort, PageSpec page) {
+        int[] rows = ordering(sort);
+        int from = Math.min(page.getOffset(), rows.length);
+        return materialize(rows, from, (int) Math.min(rows.length, (long) from + page.getLimit()));
+    }
+
+    /**
+     * Get the rows in the order of a sort specification
+     *
+     * @param sort the sort specification
+     * @return row numbers in order; callers must not modify the array
+     */
+    private int[] ordering(ProductSort sort) {
+        if (sort.equals(ProductSort.PRICE_ASCENDING)) {
+            return byPrice;
+        }
+        int[] rows = orderings.get(sort);
+        if (rows == null) {
+            // Price order is a good starting point: many sorts are mostly sorted by price already
+            rows = byPrice.clone();
+            sortRows(rows, 0, rows.length, comparator(sort));
+            if (orderings.size() < MAX_ORDERINGS) {
+                int[] existing = orderings.putIfAbsent(sort, rows);
+                rows = existing != null ? existing : rows;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Create the Product of a row
+     *
+     * @param row the row number
+     * @return a new Product holding the row's values
+     */
+    Product product(int row) {
+        return new Product(barcodes[row], items[itemCodes[row]], categories[categoryCodes[row]],
+                prices[row], (int) discounts[row], (int) available[row]);
+    }
+
+    private List<Product> materialize(int[] rows, int from, int to) {
+        if (from >= to) {
+            return Collections.emptyList();
+        }
+        Product[] result = new Product[to - from];
+        for (int i = from; i < to; i++) {
+            result[i - from] = product(rows[i]);
+        }
+        return Collections.unmodifiableList(Arrays.asList(result));
+    }
+
+    private List<String> itemNames(int from, int to) {
+        List<String> names = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            names.add(items[itemCodes[byPrice[i]]]);
+        }
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Build a row comparator equivalent to the Product comparator of a sort
+     *
+     * @param sort the sort specification
+     * @return comparator over row numbers, including the barcode tie-breaker
+     */
+    private RowComparator comparator(ProductSort sort) {
+        RowComparator result = null;
+        boolean hasBarcode = false;
+        for (ProductSort.Order order : sort.getOrders()) {
+            RowComparator next = comparator(order.getKey());
+            if (order.getDirection() == ProductSort.Direction.DESC) {
+                RowComparator ascending = next;
+                next = (a, b) -> ascending.compare(b, a);
+            }
+            result = result == null ? next : result.thenComparing(next);
+            hasBarcode |= order.getKey() == ProductSortKey.BARCODE;
+        }
+        return hasBarcode ? result : result.thenComparing(comparator(ProductSortKey.BARCODE));
+    }
+
+    private RowComparator comparator(ProductSortKey key) {
+        switch (key) {
+            case PRICE:
+                return (a, b) -> Integer.compare(prices[a], prices[b]);
+            case FINAL_PRICE:
+                return (a, b) -> Integer.compare(finalPrice(a), finalPrice(b));
+            case DISCOUNT:
+                return (a, b) -> Integer.compare(discounts[a], discounts[b]);
+            case AVAILABLE:
+                return (a, b) -> Integer.compare(available[a], available[b]);
+            case ITEM: {
+                int[] ranks = itemRanks();
+                return (a, b) -> Integer.compare(ranks[itemCodes[a]], ranks[itemCodes[b]]);
+            }
+            case CATEGORY: {
+                int[] ranks = categoryRanks();
+                return (a, b) -> Integer.compare(ranks[categoryCodes[a]], ranks[categoryCodes[b]]);
+            }
+            default:
+                return (a, b) -> barcodes[a].compareTo(barcodes[b]);
+        }
+    }
+
+    // Same rounding as Product.getFinalPrice
+    private int finalPrice(int row) {
+        return Math.round(prices[row] * (100 - discounts[row]) / 100.0f);
+    }
+
+    private int[] itemRanks() {
+        int[] ranks = itemRanks;
+        if (ranks == null) {
+            ranks = ranks(items, itemCount);
+            itemRanks = ranks;
+        }
+        return ranks;
+    }
+
+    private int[] categoryRanks() {
+        int[] ranks = categoryRanks;
+        if (ranks == null) {
+            ranks = ranks(categories, categoryCount);
+            categoryRanks = ranks;
+        }
+        return ranks;
+    }
+
+    /**
+     * Rank dictionary codes by their strings, so comparing two ranks compares the strings
+     *
+     * @param values dictionary values
+     * @param count number of entries
+     * @return rank of each code
+     */
+    private static int[] ranks(String[] values, int count) {
+        Integer[] codes = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            codes[i] = i;
+        }
+        Arrays.sort(codes, (a, b) -> values[a].compareTo(values[b]));
+        int[] ranks = new int[count];
+        for (int rank = 0; rank < count; rank++) {
+            ranks[codes[rank]] = rank;
+        }
+        return ranks;
+    }
+
+    /**
+     * Binary search for the first position after a (price, barcode) key
+     *
+     * @param key the position
+     * @return index into the price order, or size() if none
+     */
+    int firstIndexAfter(PriceKey key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (new PriceKey(sortedPrices[mid], barcodes[byPrice[mid]]).compareTo(key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Binary search for the first position priced at or above a value
+     *
+     * @param price the price
+     * @return index into the price order, or size() if none
+     */
+    int firstIndexAtLeast(int price) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedPrices[mid] < price) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Binary search for the first position priced above a value
+     *
+     * @param price the price
+     * @return index into the price order, or size() if none
+     */
+    int firstIndexAbove(int price) {
+        return price == Integer.MAX_VALUE ? size : firstIndexAtLeast(price + 1);
+    }
+
+    /**
+     * Stable merge sort of a range of row numbers
+     *
+     * @param rows the row numbers
+     * @param from first index, inclusive
+     * @param to last index, exclusive
+     * @param comparator row order
+     */
+    static void sortRows(int[] rows, int from, int to, RowComparator comparator) {
+        int[] sorted = Arrays.copyOfRange(rows, from, to);
+        mergeSort(sorted.clone(), sorted, 0, sorted.length, comparator);
+        System.arraycopy(sorted, 0, rows, from, sorted.length);
+    }
+
+    /**
+     * Sort dest[from, to), using src as scratch space; both start with the same contents
+     */
+    private static void mergeSort(int[] src, int[] dest, int from, int to, RowComparator comparator) {
+        if (to - from < INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                int row = dest[i];
+                int j = i;
+                while (j > from && comparator.compare(dest[j - 1], row) > 0) {
+                    dest[j] = dest[j - 1];
+                    j--;
+                }
+                dest[j] = row;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        // Sort each half into src, then merge the halves back into dest
+        mergeSort(dest, src, from, mid, comparator);
+        mergeSort(dest, src, mid, to, comparator);
+        if (comparator.compare(src[mid - 1], src[mid]) <= 0) {
+            System.arraycopy(src, from, dest, from, to - from);
+            return;
+        }
+        int low = from;
+        int high = mid;
+        for (int i = from; i < to; i++) {
+            if (high >= to || (low < mid && comparator.compare(src[low], src[high]) <= 0)) {
+                dest[i] = src[low++];
+            } else {
+                dest[i] = src[high++];
+            }
+        }
+    }
+
+    /**
+     * Comparison of two rows of the snapshot
+     */
+    @FunctionalInterface
+    interface RowComparator {
+
+        int compare(int a, int b);
+
+        default RowComparator thenComparing(RowComparator next) {
+            return (a, b) -> {
+                int result = compare(a, b);
+                return result != 0 ? result : next.compare(a, b);
+            };
+        }
+    }
+}
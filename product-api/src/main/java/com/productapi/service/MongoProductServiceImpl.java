@@ -0,0 +1,474 @@
+package com.productapi.service;
+
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.ClientSession;
+import com.productapi.model.BulkUpsertResult;
+import com.productapi.model.BulkUpsertResult.ItemResult;
+import com.productapi.model.BulkUpsertResult.Status;
+import com.productapi.model.Product;
+import com.productapi.model.ProductChange;
+import com.productapi.model.ProductChange.Type;
+import com.productapi.repository.ProductRepository;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * MongoDB implementation of the ProductService interface
+ *
+ * Products are documents in the products collection with the barcode as
+ * _id, so barcode lookups and the duplicate check use the primary key. A
+ * compound index on (price, _id, item) serves every price-ordered query:
+ * range filters are pushed down as $gte/$lte and read the index in order,
+ * keyset pages continue from a (price, barcode) position, and sortByPrice
+ * projects only item, so the server answers it from the index alone without
+ * fetching any document. Multi-key sorts, paged or not, run on the server
+ * as well; a sort on the discounted price computes it in an aggregation.
+ *
+ * The catalog version is a counter document incremented by every write,
+ * so all instances sharing the database report the same version. On a
+ * replica set or sharded cluster the write and the increment commit in one
+ * transaction. A standalone server has no transactions: the increment
+ * follows the write, and the version is bumped once more at startup, so a
+ * write whose increment was lost to a crash is not hidden behind an old
+ * version for good. Reads of the version are served from memory for up to
+ * VERSION_REFRESH_MILLIS; writes through this instance raise it at once.
+ * Since the version is read before the data, a version that lags only
+ * understates how fresh the data is.
+ *
+ * Selected with app.catalog.store=mongo, which the mongo profile sets.
+ */
+@Service
+@ConditionalOnProperty(name = "app.catalog.store", havingValue = "mongo")
+public class MongoProductServiceImpl implements ProductService {
+
+    private static final Logger log = LoggerFactory.getLogger(MongoProductServiceImpl.class);
+
+    static final String COLLECTION = "products";
+    static final String PRICE_INDEX = "price_barcode_item";
+
+    private static final String COUNTERS = "counters";
+    private static final String VERSION_COUNTER = "catalog";
+
+    // Fields as stored: the barcode is the document _id
+    private static final String ID = "_id";
+    private static final String PRICE = "price";
+    private static final String ITEM = "item";
+    private static final String FINAL_PRICE = "finalPrice";
+
+    // Product.getFinalPrice in integer arithmetic: price * (100 - discount) / 100, rounded half up
+    private static final Document FINAL_PRICE_EXPRESSION = new Document("$floor", new Document("$divide", List.of(
+            new Document("$add", List.of(
+                    new Document("$multiply", List.of("$" + PRICE, new Document("$subtract", List.of(100, "$discount")))),
+                    50)),
+            100)));
+
+    // Returned by write when there was nothing to change
+    private static final long NOT_WRITTEN = -1;
+
+    // How long a version read from the counter is served before it is read again
+    static final long VERSION_REFRESH_MILLIS = 100;
+
+    private final MongoTemplate mongoTemplate;
+    private final ProductRepository productRepository;
+
+    // Told about writes made through this instance; other instances' writes are not seen
+    private final ProductChangeListeners changeListeners = new ProductChangeListeners();
+
+    // Held while a write takes its version and reports it, so listeners see versions in order
+    private final Object publishLock = new Object();
+
+    private final LongSupplier clock;
+
+    // Set by init when the server supports multi-document transactions
+    private volatile boolean transactions;
+
+    // Highest version seen, and when it is next read from the counter
+    private final AtomicLong knownVersion = new AtomicLong();
+    private volatile long versionStaleAt = Long.MIN_VALUE;
+    private final AtomicBoolean readingVersion = new AtomicBoolean();
+
+    @Autowired
+    public MongoProductServiceImpl(MongoTemplate mongoTemplate, ProductRepository productRepository) {
+        this(mongoTemplate, productRepository, System::currentTimeMillis);
+    }
+
+    MongoProductServiceImpl(MongoTemplate mongoTemplate, ProductRepository productRepository, LongSupplier clock) {
+        this.mongoTemplate = mongoTemplate;
+        this.productRepository = productRepository;
+        this.clock = clock;
+    }
+
+    /**
+     * Create the price index and add sample products to an empty collection
+     */
+    @PostConstruct
+    public void init() {
+        // Index creation is idempotent; auto-index-creation stays off for the other collections
+        mongoTemplate.indexOps(COLLECTION).ensureIndex(
+                new Index().on(PRICE, Sort.Direction.ASC).on(ID, Sort.Direction.ASC).on(ITEM, Sort.Direction.ASC)
+                        .named(PRICE_INDEX));
+        transactions = supportsTransactions();
+        if (!transactions) {
+            log.info("MongoDB has no transactions; catalog versions are bumped after each write");
+            raiseKnownVersion(incrementVersion(mongoTemplate));
+        }
+        if (productRepository.count() == 0) {
+            log.info("Initializing the MongoDB catalog with sample products");
+            upsertAll(SampleCatalog.products());
+        }
+    }
+
+    @Override
+    public List<Product> filterByPriceRange(int initialRange, int finalRange) {
+        return productRepository.findByPriceRange(initialRange, finalRange);
+    }
+
+    @Override
+    public List<Product> filterByPriceRange(int initialRange, int finalRange, PageSpec page) {
+        // Skip and limit run on the server, so only the page crosses the network
+        return mongoTemplate.find(page(priceOrdered(priceRange(initialRange, finalRange)), page), Product.class);
+    }
+
+    @Override
+    public List<Product> filterByPriceRangeAfter(int initialRange, int finalRange, PriceKey after, int limit) {
+        Criteria criteria = priceRange(initialRange, finalRange);
+        if (after != null) {
+            // Resume strictly after the (price, barcode) position; a null barcode is past every product at that price
+            Criteria next = after.getBarcode() == null
+                    ? where(PRICE).gt(after.getPrice())
+                    : new Criteria().orOperator(where(PRICE).gt(after.getPrice()),
+                            where(PRICE).is(after.getPrice()).and(ID).gt(after.getBarcode()));
+            criteria = new Criteria().andOperator(criteria, next);
+        }
+        return mongoTemplate.find(priceOrdered(criteria).limit(limit), Product.class);
+    }
+
+    @Override
+    public List<String> sortByPrice() {
+        return sortByPrice(new PageSpec(0, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public List<String> sortByPrice(PageSpec page) {
+        // Covered query: the hinted index holds price, _id and item, and only item is projected
+        Query query = page(priceOrdered(new Criteria()), page).withHint(PRICE_INDEX);
+        query.fields().include(ITEM).exclude(ID);
+        List<Document> documents = mongoTemplate.find(query, Document.class, COLLECTION);
+        List<String> items = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            items.add(document.getString(ITEM));
+        }
+        return items;
+    }
+
+    @Override
+    public List<Product> sortProducts(ProductSort sort) {
+        return sortProducts(sort, new PageSpec(0, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public List<Product> sortProducts(ProductSort sort, PageSpec page) {
+        Document order = sortDocument(sort);
+        if (!order.containsKey(FINAL_PRICE)) {
+            // Skip and limit run on the server; large sorts may spill to disk
+            Query query = page(new Query().with(Sort.by(sortOrders(order))), page).allowDiskUse(true);
+            return mongoTemplate.find(query, Product.class, COLLECTION);
+        }
+
+        // The discounted price is derived, so it is computed in the pipeline before sorting
+        List<AggregationOperation> stages = new ArrayList<>();
+        stages.add(context -> new Document("$addFields", new Document(FINAL_PRICE, FINAL_PRICE_EXPRESSION)));
+        stages.add(context -> new Document("$sort", order));
+        if (page.getOffset() > 0) {
+            stages.add(Aggregation.skip((long) page.getOffset()));
+        }
+        if (page.getLimit() != Integer.MAX_VALUE) {
+            stages.add(Aggregation.limit(page.getLimit()));
+        }
+        stages.add(context -> new Document("$project", new Document(FINAL_PRICE, 0)));
+        Aggregation aggregation = Aggregation.newAggregation(stages)
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+        return mongoTemplate.aggregate(aggregation, COLLECTION, Product.class).getMappedResults();
+    }
+
+    @Override
+    public List<Product> getAllProducts() {
+        return productRepository.findAllByPrice();
+    }
+
+    @Override
+    public Stream<Product> streamByPrice() {
+        // A server cursor in price order, held open until the stream is closed
+        return mongoTemplate.stream(priceOrdered(new Criteria()), Product.class).stream();
+    }
+
+    @Override
+    public long getProductCount() {
+        // Read from the collection metadata instead of counting documents
+        return mongoTemplate.estimatedCount(COLLECTION);
+    }
+
+    @Override
+    public long getCatalogVersion() {
+        // One reader refreshes a stale version; the others serve the known one meanwhile
+        if (clock.getAsLong() >= versionStaleAt && readingVersion.compareAndSet(false, true)) {
+            try {
+                long readAt = clock.getAsLong();
+                Document counter = mongoTemplate.findById(VERSION_COUNTER, Document.class, COUNTERS);
+                Number version = counter != null ? counter.get("version", Number.class) : null;
+                raiseKnownVersion(version != null ? version.longValue() : 0);
+                versionStaleAt = readAt + VERSION_REFRESH_MILLIS;
+            } finally {
+                readingVersion.set(false);
+            }
+        }
+        return knownVersion.get();
+    }
+
+    @Override
+    public void addChangeListener(ProductChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    @Override
+    public Product getProductByBarcode(String barcode) {
+        return productRepository.findById(barcode).orElse(null);
+    }
+
+    @Override
+    public Product createProduct(Product product) {
+        ProductValidator.validate(product);
+
+        try {
+            // The unique _id index rejects duplicates atomically
+            write(operations -> {
+                operations.insert(product, COLLECTION);
+                return true;
+            }, () -> Collections.singletonList(ProductChange.put(Type.CREATED, product)));
+        } catch (DuplicateKeyException e) {
+            throw new IllegalArgumentException("Product with barcode " + product.getBarcode() + " already exists");
+        }
+        return product;
+    }
+
+    @Override
+    public Product updateProduct(Product product) {
+        ProductValidator.validate(product);
+
+        // Replace only an existing document; null means there was nothing to replace
+        long version = write(
+                operations -> operations.findAndReplace(byBarcode(product.getBarcode()), product, COLLECTION) != null,
+                () -> Collections.singletonList(ProductChange.put(Type.UPDATED, product)));
+        return version != NOT_WRITTEN ? product : null;
+    }
+
+    @Override
+    public boolean deleteProduct(String barcode) {
+        long version = write(
+                operations -> operations.remove(byBarcode(barcode), Product.class, COLLECTION).getDeletedCount() > 0,
+                () -> Collections.singletonList(ProductChange.deleted(barcode)));
+        return version != NOT_WRITTEN;
+    }
+
+    @Override
+    public BulkUpsertResult upsertAll(Collection<Product> batch) {
+        long start = System.nanoTime();
+        List<Product> items = new ArrayList<>(batch);
+        ItemResult[] results = new ItemResult[items.size()];
+
+        // Validate and dedupe before touching the database
+        Map<String, Integer> winners = BulkUpserts.prepare(items, results);
+
+        long version;
+        if (!winners.isEmpty()) {
+            List<Integer> requests = new ArrayList<>(winners.values());
+            Collections.sort(requests);
+            version = write(operations -> {
+                // One unordered round trip for the whole batch; the result reports which requests inserted
+                BulkOperations bulk = operations.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class, COLLECTION);
+                for (int i : requests) {
+                    Product product = items.get(i);
+                    bulk.replaceOne(byBarcode(product.getBarcode()), product, FindAndReplaceOptions.options().upsert());
+                }
+                boolean[] inserted = new boolean[requests.size()];
+                for (BulkWriteUpsert upsert : bulk.execute().getUpserts()) {
+                    inserted[upsert.getIndex()] = true;
+                }
+                for (int r = 0; r < requests.size(); r++) {
+                    int i = requests.get(r);
+                    results[i] = new ItemResult(i, items.get(i).getBarcode(), inserted[r] ? Status.CREATED : Status.UPDATED, null);
+                }
+                return true;
+            }, () -> BulkUpserts.changes(items, winners, results));
+        } else {
+            version = getCatalogVersion();
+        }
+
+        BulkUpsertResult result = BulkUpserts.summarize(results, version, start);
+        log.debug("Bulk upsert of {} items took {} ms", items.size(), result.getDurationMillis());
+        return result;
+    }
+
+    /**
+     * Apply a write, bump the catalog version and report the write to the change listeners
+     *
+     * The counter hands out versions atomically, but two writers could still
+     * report theirs in the opposite order, and a feed reader between the two
+     * would skip the lower version for good. Taking the version and reporting
+     * it under one lock keeps the reports in version order. With transactions
+     * the write commits together with its version, so it runs under the lock
+     * too and this instance's writes go one at a time; without, only the
+     * counter round trip does.
+     *
+     * @param write applies the write; returns false if it changed nothing
+     * @param changes builds the changes; only called when someone listens
+     * @return the new version, or NOT_WRITTEN if the write changed nothing
+     */
+    private long write(Predicate<MongoOperations> write, Supplier<List<ProductChange>> changes) {
+        if (!transactions && !write.test(mongoTemplate)) {
+            return NOT_WRITTEN;
+        }
+        synchronized (publishLock) {
+            long version;
+            if (transactions) {
+                version = inTransaction(operations -> write.test(operations) ? incrementVersion(operations) : NOT_WRITTEN);
+                if (version == NOT_WRITTEN) {
+                    return NOT_WRITTEN;
+                }
+            } else {
+                version = incrementVersion(mongoTemplate);
+            }
+            raiseKnownVersion(version);
+            if (!changeListeners.isEmpty()) {
+                changeListeners.fire(version, changes.get());
+            }
+            return version;
+        }
+    }
+
+    /**
+     * Run writes in one transaction, retried by the driver on transient errors
+     *
+     * @param body the writes, given operations bound to the transaction's session
+     * @return the body's result
+     */
+    private long inTransaction(ToLongFunction<MongoOperations> body) {
+        try (ClientSession session = mongoTemplate.getMongoDatabaseFactory().getSession(ClientSessionOptions.builder().build())) {
+            return session.withTransaction(() -> body.applyAsLong(mongoTemplate.withSession(session)));
+        }
+    }
+
+    /**
+     * Bump the shared catalog version
+     *
+     * @param operations the template, or one bound to a transaction
+     * @return the new version
+     */
+    private long incrementVersion(MongoOperations operations) {
+        Document counter = operations.findAndModify(
+                new Query(where(ID).is(VERSION_COUNTER)),
+                new Update().inc("version", 1L),
+                FindAndModifyOptions.options().returnNew(true).upsert(true),
+                Document.class, COUNTERS);
+        return counter != null ? counter.get("version", Number.class).longValue() : 0;
+    }
+
+    private void raiseKnownVersion(long version) {
+        knownVersion.accumulateAndGet(version, Math::max);
+    }
+
+    /**
+     * Check whether the server is a replica set member or a mongos, which support transactions
+     */
+    private boolean supportsTransactions() {
+        try {
+            Document reply = mongoTemplate.executeCommand(new Document("isMaster", 1));
+            return reply != null && (reply.containsKey("setName") || "isdbgrid".equals(reply.getString("msg")));
+        } catch (RuntimeException e) {
+            log.warn("Could not tell whether MongoDB supports transactions: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Translate a sort to a MongoDB sort document, with the barcode as the final tie-breaker
+     */
+    private static Document sortDocument(ProductSort sort) {
+        Document order = new Document();
+        for (ProductSort.Order key : sort.getOrders()) {
+            order.append(field(key.getKey()), key.getDirection() == ProductSort.Direction.DESC ? -1 : 1);
+        }
+        order.putIfAbsent(ID, 1);
+        return order;
+    }
+
+    private static List<Sort.Order> sortOrders(Document order) {
+        List<Sort.Order> orders = new ArrayList<>();
+        for (Map.Entry<String, Object> key : order.entrySet()) {
+            orders.add((Integer) key.getValue() < 0 ? Sort.Order.desc(key.getKey()) : Sort.Order.asc(key.getKey()));
+        }
+        return orders;
+    }
+
+    private static String field(ProductSortKey key) {
+        return key == ProductSortKey.BARCODE ? ID : key.getFieldName();
+    }
+
+    private static Query byBarcode(String barcode) {
+        return new Query(where(ID).is(barcode));
+    }
+
+    private static Criteria priceRange(int initialRange, int finalRange) {
+        return where(PRICE).gte(initialRange).lte(finalRange);
+    }
+
+    /**
+     * Order a query by (price, barcode), the order of the price index
+     */
+    private static Query priceOrdered(Criteria criteria) {
+        return new Query(criteria).with(Sort.by(Sort.Order.asc(PRICE), Sort.Order.asc(ID)));
+    }
+
+    private static Query page(Query query, PageSpec page) {
+        query.skip(page.getOffset());
+        if (page.getLimit() != Integer.MAX_VALUE) {
+            query.limit(page.getLimit());
+        }
+        return query;
+    }
+}
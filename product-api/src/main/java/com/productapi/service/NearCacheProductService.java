@@ -0,0 +1,201 @@
+package com.productapi.service;
+
+import com.productapi.model.BulkUpsertResult;
+import com.productapi.model.BulkUpsertResult.ItemResult;
+import com.productapi.model.BulkUpsertResult.Status;
+import com.productapi.model.Product;
+import com.productapi.service.cache.CacheStats;
+import com.productapi.service.cache.ProductNearCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Near cache in front of a remote catalog store
+ *
+ * Barcode lookups are served from a local {@link ProductNearCache}, so a
+ * popular product costs one database round trip per time to live instead
+ * of one per request, and a burst of misses for the same barcode costs one
+ * round trip in total. Every other query goes straight to the store, which
+ * already pushes it down to an index.
+ *
+ * Writes go to the store first and then invalidate the barcodes they
+ * touched, so this instance never serves a product it has overwritten.
+ * Changes made by other instances are seen once the entry expires.
+ *
+ * Active with app.catalog.store=mongo; app.catalog.near-cache.size=0 turns
+ * the cache off.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "app.catalog.store", havingValue = "mongo")
+public class NearCacheProductService implements ProductService {
+
+    private static final int DEFAULT_SIZE = 10000;
+    private static final long DEFAULT_TTL_MILLIS = 30000;
+
+    private final ProductService store;
+    private final ProductNearCache cache;
+
+    @Autowired
+    public NearCacheProductService(MongoProductServiceImpl store,
+            @Value("${app.catalog.near-cache.size:" + DEFAULT_SIZE + "}") int size,
+            @Value("${app.catalog.near-cache.ttl-ms:" + DEFAULT_TTL_MILLIS + "}") long ttlMillis) {
+        this((ProductService) store, new ProductNearCache(size, ttlMillis));
+    }
+
+    NearCacheProductService(ProductService store, ProductNearCache cache) {
+        this.store = store;
+        this.cache = cache;
+    }
+
+    /**
+     * Drop a barcode from the cache, e.g. after another instance changed it
+     *
+     * @param barcode the barcode
+     */
+    public void invalidate(String barcode) {
+        cache.invalidate(barcode);
+    }
+
+    @Override
+    public void addChangeListener(ProductChangeListener listener) {
+        store.addChangeListener(listener);
+    }
+
+    /**
+     * Drop every cached product, e.g. after missing changes made elsewhere
+     */
+    public void invalidateAll() {
+        cache.clear();
+    }
+
+    @Override
+    public Product getProductByBarcode(String barcode) {
+        return cache.get(barcode, store::getProductByBarcode);
+    }
+
+    @Override
+    public Product createProduct(Product product) {
+        try {
+            return store.createProduct(product);
+        } finally {
+            // A failed create may still have found an existing product; cached "not found" is stale either way
+            invalidateProduct(product);
+        }
+    }
+
+    @Override
+    public Product updateProduct(Product product) {
+        try {
+            return store.updateProduct(product);
+        } finally {
+            invalidateProduct(product);
+        }
+    }
+
+    @Override
+    public boolean deleteProduct(String barcode) {
+        try {
+            return store.deleteProduct(barcode);
+        } finally {
+            cache.invalidate(barcode);
+        }
+    }
+
+    @Override
+    public BulkUpsertResult upsertAll(Collection<Product> products) {
+        BulkUpsertResult result = store.upsertAll(products);
+        for (ItemResult item : result.getItems()) {
+            if (item.getBarcode() != null && item.getStatus() != Status.FAILED) {
+                cache.invalidate(item.getBarcode());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Product> filterByPriceRange(int initialRange, int finalRange) {
+        return store.filterByPriceRange(initialRange, finalRange);
+    }
+
+    @Override
+    public List<Product> filterByPriceRange(int initialRange, int finalRange, PageSpec page) {
+        return store.filterByPriceRange(initialRange, finalRange, page);
+    }
+
+    @Override
+    public List<Product> filterByPriceRangeAfter(int initialRange, int finalRange, PriceKey after, int limit) {
+        return store.filterByPriceRangeAfter(initialRange, finalRange, after, limit);
+    }
+
+    @Override
+    public List<String> sortByPrice() {
+        return store.sortByPrice();
+    }
+
+    @Override
+    public List<String> sortByPrice(PageSpec page) {
+        return store.sortByPrice(page);
+    }
+
+    @Override
+    public List<Product> sortProducts(ProductSort sort) {
+        return store.sortProducts(sort);
+    }
+
+    @Override
+    public List<Product> sortProducts(ProductSort sort, PageSpec page) {
+        return store.sortProducts(sort, page);
+    }
+
+    @Override
+    public List<Product> getAllProducts() {
+        return store.getAllProducts();
+    }
+
+    @Override
+    public Stream<Product> streamByPrice() {
+        return store.streamByPrice();
+    }
+
+    @Override
+    public long getProductCount() {
+        return store.getProductCount();
+    }
+
+    @Override
+    public long getCatalogVersion() {
+        return store.getCatalogVersion();
+    }
+
+    @Override
+    public Map<String, CacheStats> getCacheStats() {
+        Map<String, CacheStats> stats = new LinkedHashMap<>(store.getCacheStats());
+        stats.put("nearCache", cache.getStats());
+        return stats;
+    }
+
+    /**
+     * Get the number of lookups served by another lookup's database fetch
+     *
+     * @return coalesced misses
+     */
+    public long getCoalescedLookups() {
+        return cache.getCoalesced();
+    }
+
+    private void invalidateProduct(Product product) {
+        if (product != null && product.getBarcode() != null) {
+            cache.invalidate(product.getBarcode());
+        }
+    }
+}
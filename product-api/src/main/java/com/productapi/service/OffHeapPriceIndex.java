@@ -0,0 +1,346 @@
+package com.productapi.service;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Price index of the off-heap store: (price, row) entries in (price, barcode) order
+ *
+ * Entries live in direct blocks of at most BLOCK_ENTRIES, each sorted and
+ * each ending before the next begins, like the leaves of a B-tree. The heap
+ * holds one reference and two ints per block: its entry count and the
+ * position of its first entry. A search is a binary search over the blocks'
+ * last entries, then one inside a block. An insert or a remove shifts
+ * entries within one block only; a full block splits in two and a block
+ * that runs low absorbs its successor. The block positions after the
+ * changed block are then adjusted, one int per block.
+ *
+ * Barcodes are read through the owning store only to order entries of
+ * equal price. Not thread-safe, like the store.
+ */
+final class OffHeapPriceIndex {
+
+    // 4 KiB blocks: shifting one is a few hundred long moves
+    static final int BLOCK_ENTRIES = 512;
+
+    // Entry layout: price, then row
+    private static final int ENTRY_SIZE = 8;
+
+    // Bulk rebuilds leave room, so the inserts that follow do not split every block at once
+    private static final int FILL_ENTRIES = BLOCK_ENTRIES * 3 / 4;
+
+    private final IntFunction<String> barcodes;
+
+    private ByteBuffer[] blocks = new ByteBuffer[8];
+    private int[] counts = new int[8];
+    private int[] starts = new int[8];
+    private int blockCount;
+    private int size;
+
+    /**
+     * @param barcodes the barcode of a row, to order entries of equal price
+     */
+    OffHeapPriceIndex(IntFunction<String> barcodes) {
+        this.barcodes = barcodes;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int price(int position) {
+        int block = blockOf(position);
+        return blocks[block].getInt((position - starts[block]) * ENTRY_SIZE);
+    }
+
+    int row(int position) {
+        int block = blockOf(position);
+        return blocks[block].getInt((position - starts[block]) * ENTRY_SIZE + 4);
+    }
+
+    /**
+     * Point an entry at another row, keeping its place; for a record moved by a delete
+     *
+     * @param position the entry's position
+     * @param row the record's new row
+     */
+    void setRow(int position, int row) {
+        int block = blockOf(position);
+        blocks[block].putInt((position - starts[block]) * ENTRY_SIZE + 4, row);
+    }
+
+    /**
+     * Binary search for the first position priced at or above a value
+     *
+     * @param price the price
+     * @return the position, or size() if none
+     */
+    int firstAtLeast(int price) {
+        int low = 0;
+        int high = blockCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (blocks[mid].getInt((counts[mid] - 1) * ENTRY_SIZE) < price) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low == blockCount) {
+            return size;
+        }
+        ByteBuffer entries = blocks[low];
+        int from = 0;
+        int to = counts[low];
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (entries.getInt(mid * ENTRY_SIZE) < price) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return starts[low] + from;
+    }
+
+    /**
+     * Binary search for the first position after a (price, barcode) key
+     *
+     * @param key the key
+     * @return the position, or size() if none
+     */
+    int firstAfter(PriceKey key) {
+        int low = 0;
+        int high = blockCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(blocks[mid], counts[mid] - 1, key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low == blockCount) {
+            return size;
+        }
+        return starts[low] + firstAfterIn(low, key);
+    }
+
+    /**
+     * Add an entry
+     *
+     * @param price the row's price
+     * @param row the row, whose barcode orders it among equal prices
+     */
+    void insert(int price, int row) {
+        if (blockCount == 0) {
+            addBlock(0);
+        }
+        PriceKey key = new PriceKey(price, barcodes.apply(row));
+        int position = firstAfter(key);
+        // An entry that sorts between two blocks goes at the end of the earlier one
+        int block = position == size ? blockCount - 1 : blockOf(position);
+        if (position == starts[block] && block > 0 && counts[block - 1] < BLOCK_ENTRIES) {
+            block--;
+        }
+        if (counts[block] == BLOCK_ENTRIES) {
+            split(block);
+            if (position - starts[block] > counts[block]) {
+                block++;
+            }
+        }
+        ByteBuffer entries = blocks[block];
+        int offset = position - starts[block];
+        for (int i = counts[block] - 1; i >= offset; i--) {
+            entries.putLong((i + 1) * ENTRY_SIZE, entries.getLong(i * ENTRY_SIZE));
+        }
+        entries.putInt(offset * ENTRY_SIZE, price);
+        entries.putInt(offset * ENTRY_SIZE + 4, row);
+        counts[block]++;
+        shiftStarts(block + 1, 1);
+        size++;
+    }
+
+    /**
+     * Remove the entry at a position
+     *
+     * @param position the entry's position
+     */
+    void remove(int position) {
+        int block = blockOf(position);
+        ByteBuffer entries = blocks[block];
+        for (int i = position - starts[block]; i < counts[block] - 1; i++) {
+            entries.putLong(i * ENTRY_SIZE, entries.getLong((i + 1) * ENTRY_SIZE));
+        }
+        counts[block]--;
+        shiftStarts(block + 1, -1);
+        size--;
+        if (counts[block] == 0) {
+            dropBlock(block);
+        } else if (block + 1 < blockCount && counts[block] + counts[block + 1] <= FILL_ENTRIES) {
+            absorbNext(block);
+        }
+    }
+
+    /**
+     * Rebuild the index with some rows dropped and others added, in one pass
+     *
+     * @param stale rows whose entries are dropped, sorted by row
+     * @param rows rows to add, sorted by (price, barcode)
+     * @param prices the price of each row to add
+     */
+    void merge(int[] stale, int[] rows, int[] prices) {
+        PriceKey[] keys = new PriceKey[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            keys[i] = new PriceKey(prices[i], barcodes.apply(rows[i]));
+        }
+        OffHeapPriceIndex merged = new OffHeapPriceIndex(barcodes);
+        int next = 0;
+        for (int block = 0; block < blockCount; block++) {
+            ByteBuffer entries = blocks[block];
+            for (int i = 0; i < counts[block]; i++) {
+                if (Arrays.binarySearch(stale, entries.getInt(i * ENTRY_SIZE + 4)) >= 0) {
+                    continue;
+                }
+                while (next < rows.length && compare(entries, i, keys[next]) > 0) {
+                    merged.append(prices[next], rows[next]);
+                    next++;
+                }
+                merged.append(entries.getInt(i * ENTRY_SIZE), entries.getInt(i * ENTRY_SIZE + 4));
+            }
+        }
+        for (; next < rows.length; next++) {
+            merged.append(prices[next], rows[next]);
+        }
+        blocks = merged.blocks;
+        counts = merged.counts;
+        starts = merged.starts;
+        blockCount = merged.blockCount;
+        size = merged.size;
+    }
+
+    /**
+     * Get the direct memory held by the blocks
+     *
+     * @return allocated bytes
+     */
+    long offHeapBytes() {
+        return (long) blockCount * BLOCK_ENTRIES * ENTRY_SIZE;
+    }
+
+    /**
+     * Add an entry after all others, while rebuilding
+     */
+    private void append(int price, int row) {
+        if (blockCount == 0 || counts[blockCount - 1] == FILL_ENTRIES) {
+            addBlock(blockCount);
+        }
+        int block = blockCount - 1;
+        blocks[block].putInt(counts[block] * ENTRY_SIZE, price);
+        blocks[block].putInt(counts[block] * ENTRY_SIZE + 4, row);
+        counts[block]++;
+        size++;
+    }
+
+    /**
+     * Find the block holding a position
+     */
+    private int blockOf(int position) {
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (starts[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private int firstAfterIn(int block, PriceKey key) {
+        int low = 0;
+        int high = counts[block];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(blocks[block], mid, key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compare an entry with a (price, barcode) key, reading the barcode only when the prices are equal
+     */
+    private int compare(ByteBuffer entries, int offset, PriceKey key) {
+        int price = entries.getInt(offset * ENTRY_SIZE);
+        if (price != key.getPrice()) {
+            return Integer.compare(price, key.getPrice());
+        }
+        return new PriceKey(price, barcodes.apply(entries.getInt(offset * ENTRY_SIZE + 4))).compareTo(key);
+    }
+
+    private void shiftStarts(int fromBlock, int delta) {
+        for (int block = fromBlock; block < blockCount; block++) {
+            starts[block] += delta;
+        }
+    }
+
+    /**
+     * Insert an empty block before the given one
+     */
+    private void addBlock(int block) {
+        if (blockCount == blocks.length) {
+            blocks = Arrays.copyOf(blocks, blockCount * 2);
+            counts = Arrays.copyOf(counts, blockCount * 2);
+            starts = Arrays.copyOf(starts, blockCount * 2);
+        }
+        System.arraycopy(blocks, block, blocks, block + 1, blockCount - block);
+        System.arraycopy(counts, block, counts, block + 1, blockCount - block);
+        System.arraycopy(starts, block, starts, block + 1, blockCount - block);
+        blocks[block] = ByteBuffer.allocateDirect(BLOCK_ENTRIES * ENTRY_SIZE);
+        counts[block] = 0;
+        starts[block] = block == 0 ? 0 : starts[block - 1] + counts[block - 1];
+        blockCount++;
+    }
+
+    private void dropBlock(int block) {
+        System.arraycopy(blocks, block + 1, blocks, block, blockCount - block - 1);
+        System.arraycopy(counts, block + 1, counts, block, blockCount - block - 1);
+        System.arraycopy(starts, block + 1, starts, block, blockCount - block - 1);
+        blocks[--blockCount] = null;
+    }
+
+    /**
+     * Move the upper half of a full block into a new block after it
+     */
+    private void split(int block) {
+        addBlock(block + 1);
+        int keep = counts[block] / 2;
+        int moved = counts[block] - keep;
+        ByteBuffer upper = blocks[block].duplicate();
+        upper.limit(counts[block] * ENTRY_SIZE).position(keep * ENTRY_SIZE);
+        blocks[block + 1].put(upper);
+        counts[block] = keep;
+        counts[block + 1] = moved;
+        starts[block + 1] = starts[block] + keep;
+    }
+
+    /**
+     * Move the next block's entries onto the end of a block and drop the next block
+     */
+    private void absorbNext(int block) {
+        ByteBuffer next = blocks[block + 1].duplicate();
+        next.limit(counts[block + 1] * ENTRY_SIZE).position(0);
+        ByteBuffer target = blocks[block].duplicate();
+        target.position(counts[block] * ENTRY_SIZE);
+        target.put(next);
+        counts[block] += counts[block + 1];
+        dropBlock(block + 1);
+    }
+}
@@ -0,0 +1,350 @@
+package com.productapi.service;
+
+import com.productapi.model.BulkUpsertResult;
+import com.productapi.model.BulkUpsertResult.ItemResult;
+import com.productapi.model.BulkUpsertResult.Status;
+import com.productapi.model.Product;
+import com.productapi.model.ProductChange;
+import com.productapi.model.ProductChange.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+
+/**
+ * Off-heap implementation of the ProductService interface
+ *
+ * Products and both indexes live in direct memory in an
+ * {@link OffHeapProductStore}, so the heap holds no per-product state and
+ * garbage collection does not scan the catalog. Product objects exist only
+ * while a request is answered: queries create them for the rows they
+ * return. Queries that return the whole catalog still create one per
+ * product.
+ *
+ * Writes hold the write lock and queries hold the read lock, so readers
+ * run in parallel and never see a half-applied write.
+ *
+ * Selected with app.catalog.store=offheap.
+ */
+@Service
+@ConditionalOnProperty(name = "app.catalog.store", havingValue = "offheap")
+public class OffHeapProductServiceImpl implements ProductService {
+
+    private static final Logger log = LoggerFactory.getLogger(OffHeapProductServiceImpl.class);
+
+    private final StampedLock lock = new StampedLock();
+
+    private final OffHeapProductStore store = new OffHeapProductStore();
+
+    // Incremented by every write, under the write lock
+    private volatile long version;
+
+    // Told about every write, under the write lock
+    private final ProductChangeListeners changeListeners = new ProductChangeListeners();
+
+    /**
+     * Initialize some sample product data
+     */
+    @PostConstruct
+    public void init() {
+        long stamp = lock.writeLock();
+        try {
+            if (store.size() == 0) {
+                log.info("Initializing the off-heap catalog with sample products");
+                store.upsert(SampleCatalog.products());
+                version++;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Get the direct memory held by the catalog
+     *
+     * @return allocated off-heap bytes
+     */
+    public long getOffHeapBytes() {
+        long stamp = lock.readLock();
+        try {
+            return store.offHeapBytes();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Product> filterByPriceRange(int initialRange, int finalRange) {
+        return filterByPriceRange(initialRange, finalRange, new PageSpec(0, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public List<Product> filterByPriceRange(int initialRange, int finalRange, PageSpec page) {
+        if (initialRange > finalRange) {
+            return Collections.emptyList();
+        }
+        long stamp = lock.readLock();
+        try {
+            int to = store.firstIndexAbove(finalRange);
+            int from = (int) Math.min(to, (long) store.firstIndexAtLeast(initialRange) + page.getOffset());
+            return products(from, (int) Math.min(to, (long) from + page.getLimit()));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Product> filterByPriceRangeAfter(int initialRange, int finalRange, PriceKey after, int limit) {
+        if (initialRange > finalRange) {
+            return Collections.emptyList();
+        }
+        long stamp = lock.readLock();
+        try {
+            int from = store.firstIndexAtLeast(initialRange);
+            if (after != null) {
+                from = Math.max(from, store.firstIndexAfter(after));
+            }
+            int to = store.firstIndexAbove(finalRange);
+            return products(from, (int) Math.min(to, (long) from + limit));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<String> sortByPrice() {
+        return sortByPrice(new PageSpec(0, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public List<String> sortByPrice(PageSpec page) {
+        // Reads only the item name of each record in the page
+        long stamp = lock.readLock();
+        try {
+            int from = Math.min(page.getOffset(), store.size());
+            int to = (int) Math.min(store.size(), (long) from + page.getLimit());
+            List<String> items = new ArrayList<>(Math.max(0, to - from));
+            for (int position = from; position < to; position++) {
+                items.add(store.itemAt(position));
+            }
+            return Collections.unmodifiableList(items);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Product> sortProducts(ProductSort sort) {
+        if (sort.equals(ProductSort.PRICE_ASCENDING)) {
+            return getAllProducts();
+        }
+        Product[] sorted = getAllProducts().toArray(new Product[0]);
+        Arrays.sort(sorted, sort.comparator());
+        return Collections.unmodifiableList(Arrays.asList(sorted));
+    }
+
+    @Override
+    public List<Product> sortProducts(ProductSort sort, PageSpec page) {
+        if (sort.equals(ProductSort.PRICE_ASCENDING)) {
+            return filterByPriceRange(Integer.MIN_VALUE, Integer.MAX_VALUE, page);
+        }
+        // Keep the best offset + limit products in a bounded heap while scanning the records
+        int k = page.getEnd();
+        if (k == 0) {
+            return Collections.emptyList();
+        }
+        Comparator<Product> comparator = sort.comparator();
+        PriorityQueue<Product> best = new PriorityQueue<>(Math.min(k, 1024) + 1, comparator.reversed());
+        long stamp = lock.readLock();
+        try {
+            for (int position = 0; position < store.size(); position++) {
+                Product product = store.productAt(position);
+                if (best.size() < k) {
+                    best.add(product);
+                } else if (comparator.compare(product, best.peek()) < 0) {
+                    best.poll();
+                    best.add(product);
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        Product[] ordered = best.toArray(new Product[0]);
+        Arrays.sort(ordered, comparator);
+        return page.slice(Arrays.asList(ordered));
+    }
+
+    @Override
+    public List<Product> getAllProducts() {
+        return filterByPriceRange(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Stream<Product> streamByPrice() {
+        // Positions are read a page at a time, so a slow reader never holds the read lock against writers
+        return PricePages.stream(this);
+    }
+
+    @Override
+    public long getProductCount() {
+        long stamp = lock.readLock();
+        try {
+            return store.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public long getCatalogVersion() {
+        return version;
+    }
+
+    @Override
+    public void addChangeListener(ProductChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    @Override
+    public Product getProductByBarcode(String barcode) {
+        long stamp = lock.readLock();
+        try {
+            int row = store.find(barcode);
+            return row >= 0 ? store.product(row) : null;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Product createProduct(Product product) {
+        ProductValidator.validate(product);
+
+        long stamp = lock.writeLock();
+        try {
+            if (store.find(product.getBarcode()) >= 0) {
+                throw new IllegalArgumentException("Product with barcode " + product.getBarcode() + " already exists");
+            }
+            store.insert(product);
+            version++;
+            fireChange(ProductChange.put(Type.CREATED, product));
+            return product;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Product updateProduct(Product product) {
+        ProductValidator.validate(product);
+
+        long stamp = lock.writeLock();
+        try {
+            int row = store.find(product.getBarcode());
+            if (row < 0) {
+                return null;
+            }
+            store.update(row, product);
+            version++;
+            fireChange(ProductChange.put(Type.UPDATED, product));
+            return product;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean deleteProduct(String barcode) {
+        long stamp = lock.writeLock();
+        try {
+            int row = store.find(barcode);
+            if (row < 0) {
+                return false;
+            }
+            store.delete(row);
+            version++;
+            fireChange(ProductChange.deleted(barcode));
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public BulkUpsertResult upsertAll(Collection<Product> batch) {
+        long start = System.nanoTime();
+        List<Product> submitted = new ArrayList<>(batch);
+        ItemResult[] results = new ItemResult[submitted.size()];
+
+        // Validate and dedupe outside the lock
+        Map<String, Integer> winners = BulkUpserts.prepare(submitted, results);
+
+        // Apply the whole batch as one version, merging the price index once
+        long appliedVersion;
+        long stamp = lock.writeLock();
+        try {
+            if (!winners.isEmpty()) {
+                List<Product> applied = new ArrayList<>(winners.size());
+                for (int i : winners.values()) {
+                    Product product = submitted.get(i);
+                    Status status = store.find(product.getBarcode()) >= 0 ? Status.UPDATED : Status.CREATED;
+                    results[i] = new ItemResult(i, product.getBarcode(), status, null);
+                    applied.add(product);
+                }
+                store.upsert(applied);
+                version++;
+                if (!changeListeners.isEmpty()) {
+                    changeListeners.fire(version, BulkUpserts.changes(submitted, winners, results));
+                }
+            }
+            appliedVersion = version;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        BulkUpsertResult result = BulkUpserts.summarize(results, appliedVersion, start);
+        log.debug("Bulk upsert of {} items took {} ms", submitted.size(), result.getDurationMillis());
+        return result;
+    }
+
+    /**
+     * Materialize the products at a range of price index positions; callers hold the read lock
+     *
+     * @param from first position, inclusive
+     * @param to last position, exclusive
+     * @return unmodifiable list of new Product objects
+     */
+    private List<Product> products(int from, int to) {
+        if (from >= to) {
+            return Collections.emptyList();
+        }
+        Product[] result = new Product[to - from];
+        for (int position = from; position < to; position++) {
+            result[position - from] = store.productAt(position);
+        }
+        return Collections.unmodifiableList(Arrays.asList(result));
+    }
+
+    /**
+     * Report a single-product write to the change listeners; callers hold the write lock
+     *
+     * @param change the product changed by the write
+     */
+    private void fireChange(ProductChange change) {
+        if (!changeListeners.isEmpty()) {
+            changeListeners.fire(version, Collections.singletonList(change));
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package com.productapi.service;
+
+import com.productapi.model.Product;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Product records and their indexes in direct memory
+ *
+ * Each product is a fixed 32-byte record in chunks of direct ByteBuffers:
+ * price (int), discount and availability (one byte each, two bytes
+ * padding), then references to the barcode, item and category in an
+ * {@link OffHeapStringArena}. Live records occupy rows [0, size); a delete
+ * moves the last record into the hole.
+ *
+ * Two indexes live off-heap as well. The barcode index is an open-addressing
+ * hash table of (hash, row + 1) slots with linear probing. The price index,
+ * an {@link OffHeapPriceIndex}, keeps (price, row) entries in (price,
+ * barcode) order in blocks, so range queries are a binary search and a
+ * sequential scan, and a write shifts entries within one block.
+ *
+ * The heap holds only the chunk lists, which grow by one reference per
+ * 65536 products, and the price index's block table, a reference and two
+ * ints per 512 entries. Not thread-safe; the owning service serializes
+ * writes and excludes them while reading.
+ */
+final class OffHeapProductStore {
+
+    // Record layout
+    private static final int PRICE = 0;
+    private static final int DISCOUNT = 4;
+    private static final int AVAILABLE = 5;
+    private static final int BARCODE = 8;
+    private static final int ITEM = 16;
+    private static final int CATEGORY = 24;
+    private static final int RECORD_SIZE = 32;
+
+    private static final int ROWS_PER_CHUNK = 1 << 16;
+
+    // Hash slot layout: hash, then row + 1 (0 marks an empty slot)
+    private static final int SLOT_SIZE = 8;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final List<ByteBuffer> records = new ArrayList<>();
+    private OffHeapStringArena strings = new OffHeapStringArena();
+    private int size;
+
+    private ByteBuffer hashSlots = ByteBuffer.allocateDirect(INITIAL_CAPACITY * 2 * SLOT_SIZE);
+    private int hashMask = INITIAL_CAPACITY * 2 - 1;
+
+    private final OffHeapPriceIndex priceIndex = new OffHeapPriceIndex(this::barcode);
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Find the row of a barcode
+     *
+     * @param barcode the barcode
+     * @return the row, or -1 if not found
+     */
+    int find(String barcode) {
+        byte[] bytes = barcode.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(barcode);
+        for (int slot = hash & hashMask; ; slot = (slot + 1) & hashMask) {
+            int rowPlusOne = hashSlots.getInt(slot * SLOT_SIZE + 4);
+            if (rowPlusOne == 0) {
+                return -1;
+            }
+            int row = rowPlusOne - 1;
+            if (hashSlots.getInt(slot * SLOT_SIZE) == hash && strings.contentEquals(ref(row, BARCODE), bytes)) {
+                return row;
+            }
+        }
+    }
+
+    /**
+     * Create the Product of a row
+     *
+     * @param row the row
+     * @return a new Product holding the record's values
+     */
+    Product product(int row) {
+        ByteBuffer chunk = chunk(row);
+        int base = offset(row);
+        return new Product(strings.get(chunk.getLong(base + BARCODE)), strings.get(chunk.getLong(base + ITEM)),
+                strings.get(chunk.getLong(base + CATEGORY)), chunk.getInt(base + PRICE),
+                (int) chunk.get(base + DISCOUNT), (int) chunk.get(base + AVAILABLE));
+    }
+
+    /**
+     * Get the Product at a position of the price index
+     *
+     * @param position index into (price, barcode) order
+     * @return a new Product
+     */
+    Product productAt(int position) {
+        return product(rowAt(position));
+    }
+
+    /**
+     * Get the item name at a position of the price index
+     *
+     * @param position index into (price, barcode) order
+     * @return the item name
+     */
+    String itemAt(int position) {
+        return strings.get(ref(rowAt(position), ITEM));
+    }
+
+    /**
+     * Add a product as a new record and index it
+     *
+     * @param product the validated product, whose barcode is not stored yet
+     */
+    void insert(Product product) {
+        int row = appendRecord(product);
+        priceInsert(row);
+    }
+
+    /**
+     * Replace the values of a record and reposition it in the price index
+     *
+     * @param row the record's row
+     * @param product the validated product with the same barcode
+     */
+    void update(int row, Product product) {
+        boolean priceChanged = price(row) != product.getPrice();
+        if (priceChanged) {
+            priceRemove(row);
+        }
+        writeValues(row, product, true);
+        if (priceChanged) {
+            priceInsert(row);
+        }
+        compactStringsIfSparse();
+    }
+
+    /**
+     * Create or replace many products, rebuilding the price index once
+     *
+     * Records are written first; then the entries of new and repriced rows
+     * are sorted on their own and merged with the rest of the index in one
+     * pass, instead of shifting the index once per product.
+     *
+     * @param products validated products with distinct barcodes
+     */
+    void upsert(Collection<Product> products) {
+        int previousSize = size;
+        List<Integer> moved = new ArrayList<>();
+        for (Product product : products) {
+            int row = find(product.getBarcode());
+            if (row >= 0) {
+                if (price(row) != product.getPrice()) {
+                    moved.add(row);
+                }
+                writeValues(row, product, true);
+            } else {
+                moved.add(appendRecord(product));
+            }
+        }
+        mergeIntoPriceIndex(moved, previousSize);
+        compactStringsIfSparse();
+    }
+
+    /**
+     * Delete a record
+     *
+     * @param row the record's row
+     */
+    void delete(int row) {
+        priceRemove(row);
+        hashRemove(row);
+        strings.release(ref(row, BARCODE));
+        strings.release(ref(row, ITEM));
+        strings.release(ref(row, CATEGORY));
+
+        // Move the last record into the hole and repoint its index entries
+        int last = size - 1;
+        if (row != last) {
+            int lastPosition = pricePosition(last);
+            ByteBuffer from = chunk(last);
+            ByteBuffer to = chunk(row);
+            for (int field = 0; field < RECORD_SIZE; field += Long.BYTES) {
+                to.putLong(offset(row) + field, from.getLong(offset(last) + field));
+            }
+            priceIndex.setRow(lastPosition, row);
+            hashSlots.putInt(hashSlotOf(last) * SLOT_SIZE + 4, row + 1);
+        }
+        size--;
+        compactStringsIfSparse();
+    }
+
+    /**
+     * Binary search for the first position priced at or above a value
+     *
+     * @param price the price
+     * @return position in the price index, or size() if none
+     */
+    int firstIndexAtLeast(int price) {
+        return priceIndex.firstAtLeast(price);
+    }
+
+    /**
+     * Binary search for the first position priced above a value
+     *
+     * @param price the price
+     * @return position in the price index, or size() if none
+     */
+    int firstIndexAbove(int price) {
+        return price == Integer.MAX_VALUE ? size : firstIndexAtLeast(price + 1);
+    }
+
+    /**
+     * Binary search for the first position after a (price, barcode) key
+     *
+     * @param key the position
+     * @return position in the price index, or size() if none
+     */
+    int firstIndexAfter(PriceKey key) {
+        return priceIndex.firstAfter(key);
+    }
+
+    /**
+     * Get the direct memory held by records, strings and indexes
+     *
+     * @return allocated bytes
+     */
+    long offHeapBytes() {
+        return (long) records.size() * ROWS_PER_CHUNK * RECORD_SIZE + strings.capacityBytes()
+                + hashSlots.capacity() + priceIndex.offHeapBytes();
+    }
+
+    private int appendRecord(Product product) {
+        if (size == records.size() * ROWS_PER_CHUNK) {
+            records.add(ByteBuffer.allocateDirect(ROWS_PER_CHUNK * RECORD_SIZE));
+        }
+        int row = size++;
+        chunk(row).putLong(offset(row) + BARCODE, strings.add(product.getBarcode()));
+        writeValues(row, product, false);
+        hashInsert(row);
+        return row;
+    }
+
+    /**
+     * Write everything but the barcode into a record
+     *
+     * @param row the record's row
+     * @param product the values to write
+     * @param replacing true to release the strings of the values being replaced
+     */
+    private void writeValues(int row, Product product, boolean replacing) {
+        ByteBuffer chunk = chunk(row);
+        int base = offset(row);
+        if (replacing) {
+            strings.release(chunk.getLong(base + ITEM));
+            strings.release(chunk.getLong(base + CATEGORY));
+        }
+        chunk.putInt(base + PRICE, product.getPrice());
+        chunk.put(base + DISCOUNT, product.getDiscount().byteValue());
+        chunk.put(base + AVAILABLE, product.getAvailable().byteValue());
+        chunk.putLong(base + ITEM, strings.add(product.getItem()));
+        chunk.putLong(base + CATEGORY, strings.add(product.getCategory()));
+    }
+
+    private ByteBuffer chunk(int row) {
+        return records.get(row / ROWS_PER_CHUNK);
+    }
+
+    private static int offset(int row) {
+        return (row % ROWS_PER_CHUNK) * RECORD_SIZE;
+    }
+
+    private long ref(int row, int field) {
+        return chunk(row).getLong(offset(row) + field);
+    }
+
+    private int price(int row) {
+        return chunk(row).getInt(offset(row) + PRICE);
+    }
+
+    private String barcode(int row) {
+        return strings.get(ref(row, BARCODE));
+    }
+
+    private int rowAt(int position) {
+        return priceIndex.row(position);
+    }
+
+    private static int hash(String barcode) {
+        int h = barcode.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private void hashInsert(int row) {
+        if ((size + 1) * 2L > hashMask + 1) {
+            rehash((hashMask + 1) * 2);
+        }
+        int hash = hash(barcode(row));
+        int slot = hash & hashMask;
+        while (hashSlots.getInt(slot * SLOT_SIZE + 4) != 0) {
+            slot = (slot + 1) & hashMask;
+        }
+        hashSlots.putInt(slot * SLOT_SIZE, hash);
+        hashSlots.putInt(slot * SLOT_SIZE + 4, row + 1);
+    }
+
+    private int hashSlotOf(int row) {
+        int slot = hash(barcode(row)) & hashMask;
+        while (hashSlots.getInt(slot * SLOT_SIZE + 4) != row + 1) {
+            slot = (slot + 1) & hashMask;
+        }
+        return slot;
+    }
+
+    /**
+     * Remove a row's slot, shifting later slots of the probe run back so lookups never stop early
+     */
+    private void hashRemove(int row) {
+        int hole = hashSlotOf(row);
+        int slot = (hole + 1) & hashMask;
+        while (hashSlots.getInt(slot * SLOT_SIZE + 4) != 0) {
+            int home = hashSlots.getInt(slot * SLOT_SIZE) & hashMask;
+            boolean movable = hole <= slot ? (home <= hole || home > slot) : (home <= hole && home > slot);
+            if (movable) {
+                hashSlots.putLong(hole * SLOT_SIZE, hashSlots.getLong(slot * SLOT_SIZE));
+                hole = slot;
+            }
+            slot = (slot + 1) & hashMask;
+        }
+        hashSlots.putLong(hole * SLOT_SIZE, 0L);
+    }
+
+    private void rehash(int capacity) {
+        ByteBuffer old = hashSlots;
+        int oldCapacity = hashMask + 1;
+        hashSlots = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+        hashMask = capacity - 1;
+        for (int i = 0; i < oldCapacity; i++) {
+            int rowPlusOne = old.getInt(i * SLOT_SIZE + 4);
+            if (rowPlusOne != 0) {
+                int hash = old.getInt(i * SLOT_SIZE);
+                int slot = hash & hashMask;
+                while (hashSlots.getInt(slot * SLOT_SIZE + 4) != 0) {
+                    slot = (slot + 1) & hashMask;
+                }
+                hashSlots.putInt(slot * SLOT_SIZE, hash);
+                hashSlots.putInt(slot * SLOT_SIZE + 4, rowPlusOne);
+            }
+        }
+    }
+
+    /**
+     * Find a row's position in the price index by its current (price, barcode) key
+     *
+     * @param row the row
+     * @return the position of the row's entry
+     */
+    private int pricePosition(int row) {
+        return priceIndex.firstAfter(new PriceKey(price(row), barcode(row))) - 1;
+    }
+
+    private void priceInsert(int row) {
+        priceIndex.insert(price(row), row);
+    }
+
+    private void priceRemove(int row) {
+        priceIndex.remove(pricePosition(row));
+    }
+
+    /**
+     * Merge new and repriced rows into the price index in one pass
+     *
+     * @param moved rows appended by the batch, and existing rows whose price changed
+     * @param previousSize number of rows, and of index entries, before the batch
+     */
+    private void mergeIntoPriceIndex(List<Integer> moved, int previousSize) {
+        if (moved.isEmpty()) {
+            return;
+        }
+        // Stale entries of repriced rows are skipped while copying
+        int[] repriced = moved.stream().mapToInt(Integer::intValue).filter(row -> row < previousSize).sorted().toArray();
+
+        // The batch's own entries are sorted on the heap; the batch bounds their number
+        PriceKey[] keys = new PriceKey[moved.size()];
+        Integer[] order = new Integer[moved.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            keys[i] = new PriceKey(price(moved.get(i)), barcode(moved.get(i)));
+        }
+        Arrays.sort(order, (a, b) -> keys[a].compareTo(keys[b]));
+        int[] rows = new int[order.length];
+        int[] prices = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            rows[i] = moved.get(order[i]);
+            prices[i] = keys[order[i]].getPrice();
+        }
+        priceIndex.merge(repriced, rows, prices);
+    }
+
+    /**
+     * Copy live strings into a new arena when released strings dominate the old one
+     */
+    private void compactStringsIfSparse() {
+        if (!strings.isSparse()) {
+            return;
+        }
+        OffHeapStringArena compacted = new OffHeapStringArena();
+        for (int row = 0; row < size; row++) {
+            ByteBuffer chunk = chunk(row);
+            int base = offset(row);
+            for (int field = BARCODE; field <= CATEGORY; field += Long.BYTES) {
+                chunk.putLong(base + field, compacted.add(strings.get(chunk.getLong(base + field))));
+            }
+        }
+        strings = compacted;
+    }
+}
@@ -0,0 +1,121 @@
+package com.productapi.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only string storage in direct memory
+ *
+ * Strings are written as a length-prefixed UTF-8 run into chunks of direct
+ * ByteBuffers and addressed by a long reference (chunk index in the high
+ * half, offset in the low half). Released strings are only counted; the
+ * owner reclaims the space by copying live strings into a new arena.
+ * Callers serialize writes, and reads use absolute positions only.
+ */
+final class OffHeapStringArena {
+
+    private static final int CHUNK_SIZE = 16 << 20;
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private ByteBuffer current;
+    private int used;
+    private long liveBytes;
+    private long garbageBytes;
+
+    /**
+     * Store a string
+     *
+     * @param value the string
+     * @return its reference
+     */
+    long add(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int needed = Integer.BYTES + bytes.length;
+        if (current == null || used + needed > current.capacity()) {
+            current = ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, needed));
+            chunks.add(current);
+            used = 0;
+        }
+        int offset = used;
+        current.putInt(offset, bytes.length);
+        ByteBuffer target = current.duplicate();
+        target.position(offset + Integer.BYTES);
+        target.put(bytes);
+        used += needed;
+        liveBytes += needed;
+        return ((long) (chunks.size() - 1) << 32) | offset;
+    }
+
+    /**
+     * Read a string
+     *
+     * @param ref a reference returned by add
+     * @return the string
+     */
+    String get(long ref) {
+        ByteBuffer chunk = chunks.get((int) (ref >>> 32));
+        int offset = (int) ref;
+        byte[] bytes = new byte[chunk.getInt(offset)];
+        ByteBuffer source = chunk.duplicate();
+        source.position(offset + Integer.BYTES);
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compare a stored string with UTF-8 bytes without decoding it
+     *
+     * @param ref a reference returned by add
+     * @param bytes the UTF-8 bytes to compare with
+     * @return true if the stored string has exactly these bytes
+     */
+    boolean contentEquals(long ref, byte[] bytes) {
+        ByteBuffer chunk = chunks.get((int) (ref >>> 32));
+        int offset = (int) ref;
+        if (chunk.getInt(offset) != bytes.length) {
+            return false;
+        }
+        int start = offset + Integer.BYTES;
+        for (int i = 0; i < bytes.length; i++) {
+            if (chunk.get(start + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Mark a string as no longer referenced
+     *
+     * @param ref a reference returned by add
+     */
+    void release(long ref) {
+        int length = Integer.BYTES + chunks.get((int) (ref >>> 32)).getInt((int) ref);
+        liveBytes -= length;
+        garbageBytes += length;
+    }
+
+    /**
+     * Check whether released strings take up more space than live ones
+     *
+     * @return true if copying the live strings would reclaim most of the arena
+     */
+    boolean isSparse() {
+        return garbageBytes > CHUNK_SIZE && garbageBytes > liveBytes;
+    }
+
+    /**
+     * Get the direct memory held by the arena
+     *
+     * @return allocated bytes
+     */
+    long capacityBytes() {
+        long total = 0;
+        for (ByteBuffer chunk : chunks) {
+            total += chunk.capacity();
+        }
+        return total;
+    }
+}
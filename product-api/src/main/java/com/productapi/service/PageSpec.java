@@ -0,0 +1,72 @@
+package com.productapi.service;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Offset and limit of a page of results
+ */
+public final class PageSpec {
+
+    private final int offset;
+    private final int limit;
+
+    /**
+     * Create a page spec
+     *
+     * @param offset number of leading results to skip
+     * @param limit maximum number of results to return
+     * @throws IllegalArgumentException if offset or limit is negative
+     */
+    public PageSpec(int offset, int limit) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must be a non-negative value");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must be a non-negative value");
+        }
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * Create a page spec from optional parameters
+     *
+     * @param offset number of leading results to skip, or null for 0
+     * @param limit maximum number of results, or null for no limit
+     * @return the page spec
+     */
+    public static PageSpec of(Integer offset, Integer limit) {
+        return new PageSpec(offset != null ? offset : 0, limit != null ? limit : Integer.MAX_VALUE);
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Get the index just past the last result of the page, without overflowing
+     *
+     * @return offset + limit, capped at Integer.MAX_VALUE
+     */
+    public int getEnd() {
+        return (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Cut this page out of a list
+     *
+     * @param list the full list
+     * @return view of the page, empty if the offset is past the end
+     */
+    public <T> List<T> slice(List<T> list) {
+        if (offset >= list.size()) {
+            return Collections.emptyList();
+        }
+        return list.subList(offset, Math.min(getEnd(), list.size()));
+    }
+}
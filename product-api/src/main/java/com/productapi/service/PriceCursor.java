@@ -0,0 +1,51 @@
+package com.productapi.service;
+
+import com.productapi.model.Product;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset pagination cursor over the (price, barcode) order
+ *
+ * A cursor names the last product of a page; the next page starts right
+ * after that position. Positions do not shift when other products are
+ * created or deleted, so pages stay stable under concurrent writes.
+ */
+public final class PriceCursor {
+
+    private PriceCursor() {
+    }
+
+    /**
+     * Encode the position of a product as a cursor
+     *
+     * @param product the last product of a page
+     * @return URL-safe cursor string
+     */
+    public static String encode(Product product) {
+        String position = product.getPrice() + ":" + product.getBarcode();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor into its position in the price order
+     *
+     * @param cursor the cursor string
+     * @return the (price, barcode) key of the position
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static PriceKey decode(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.indexOf(':');
+            if (separator <= 0 || separator == position.length() - 1) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new PriceKey(Integer.parseInt(position.substring(0, separator)), position.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            // Covers bad Base64 and a non-numeric price as well
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
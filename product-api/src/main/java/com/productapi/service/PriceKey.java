@@ -0,0 +1,82 @@
+package com.productapi.service;
+
+import java.util.Objects;
+
+/**
+ * Ordering key for the price index: products are ordered by price and,
+ * for equal prices, by barcode so every product has a unique position
+ */
+public final class PriceKey implements Comparable<PriceKey> {
+
+    private final int price;
+
+    // A null barcode marks the upper bound of a price (sorts after every barcode)
+    private final String barcode;
+
+    public PriceKey(int price, String barcode) {
+        this.price = price;
+        this.barcode = barcode;
+    }
+
+    /**
+     * Lowest possible key for a price, used as an inclusive range start
+     *
+     * @param price the price
+     * @return key sorting before every product with that price
+     */
+    public static PriceKey lowest(int price) {
+        return new PriceKey(price, "");
+    }
+
+    /**
+     * Highest possible key for a price, used as an inclusive range end
+     *
+     * @param price the price
+     * @return key sorting after every product with that price
+     */
+    public static PriceKey highest(int price) {
+        return new PriceKey(price, null);
+    }
+
+    public int getPrice() {
+        return price;
+    }
+
+    public String getBarcode() {
+        return barcode;
+    }
+
+    @Override
+    public int compareTo(PriceKey other) {
+        int byPrice = Integer.compare(price, other.price);
+        if (byPrice != 0) {
+            return byPrice;
+        }
+        if (barcode == null || other.barcode == null) {
+            return barcode == null ? (other.barcode == null ? 0 : 1) : -1;
+        }
+        return barcode.compareTo(other.barcode);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PriceKey)) {
+            return false;
+        }
+        PriceKey other = (PriceKey) o;
+        return price == other.price && Objects.equals(barcode, other.barcode);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(price, barcode);
+    }
+
+    @Override
+    public String toString() {
+        return price + ":" + barcode;
+    }
+}
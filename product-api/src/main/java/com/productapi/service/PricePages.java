@@ -0,0 +1,49 @@
+package com.productapi.service;
+
+import com.productapi.model.Product;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Streams a catalog in (price, barcode) order one keyset page at a time
+ *
+ * Each page resumes after the last product of the page before, so only one
+ * page is held at a time, and products created or deleted meanwhile never
+ * shift the pages still to come. The stream as a whole is not a snapshot of
+ * one catalog version.
+ */
+final class PricePages {
+
+    static final int PAGE_SIZE = 1000;
+
+    private PricePages() {
+    }
+
+    /**
+     * Stream every product of a store, reading the first page now and each later page when it is reached
+     *
+     * @param store the store to read
+     * @return the products in (price, barcode) order
+     */
+    static Stream<Product> stream(ProductService store) {
+        return Stream.iterate(store.filterByPriceRangeAfter(Integer.MIN_VALUE, Integer.MAX_VALUE, null, PAGE_SIZE),
+                page -> !page.isEmpty(),
+                page -> page.size() < PAGE_SIZE ? Collections.emptyList() : next(store, page))
+                .flatMap(List::stream);
+    }
+
+    /**
+     * Read the page after a full one
+     *
+     * @param store the store to read
+     * @param page the page just streamed
+     * @return the next page, empty at the end of the catalog
+     */
+    private static List<Product> next(ProductService store, List<Product> page) {
+        Product last = page.get(page.size() - 1);
+        return store.filterByPriceRangeAfter(Integer.MIN_VALUE, Integer.MAX_VALUE,
+                new PriceKey(last.getPrice(), last.getBarcode()), PAGE_SIZE);
+    }
+}
@@ -0,0 +1,23 @@
+package com.productapi.service;
+
+import com.productapi.model.ProductChange;
+
+import java.util.List;
+
+/**
+ * Callback for writes applied to a catalog store
+ */
+@FunctionalInterface
+public interface ProductChangeListener {
+    
+    /**
+     * Called once per write, after it is applied and before the next write
+     * starts, so calls arrive in commit order. Runs while the store still
+     * excludes other writers: implementations must return quickly and hand
+     * slow work to another thread.
+     * 
+     * @param catalogVersion catalog version the write produced
+     * @param changes products created, updated or deleted by the write
+     */
+    void onChange(long catalogVersion, List<ProductChange> changes);
+}
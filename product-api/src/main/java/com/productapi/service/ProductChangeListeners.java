@@ -0,0 +1,47 @@
+package com.productapi.service;
+
+import com.productapi.model.ProductChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Change listeners registered with a catalog store
+ */
+final class ProductChangeListeners {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductChangeListeners.class);
+
+    private final List<ProductChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    void add(ProductChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Check whether anyone listens, so stores can skip building changes
+     *
+     * @return true if no listener is registered
+     */
+    boolean isEmpty() {
+        return listeners.isEmpty();
+    }
+
+    /**
+     * Pass a write to every listener; a failing listener does not fail the write
+     *
+     * @param catalogVersion catalog version the write produced
+     * @param changes products changed by the write
+     */
+    void fire(long catalogVersion, List<ProductChange> changes) {
+        for (ProductChangeListener listener : listeners) {
+            try {
+                listener.onChange(catalogVersion, changes);
+            } catch (RuntimeException e) {
+                log.error("Product change listener failed for catalog version {}", catalogVersion, e);
+            }
+        }
+    }
+}
@@ -1,7 +1,17 @@
 package com.productapi.service;
 
+import com.productapi.model.BulkUpsertResult;
+import com.productapi.model.BulkUpsertResult.ItemResult;
+import com.productapi.model.BulkUpsertResult.Status;
 import com.productapi.model.Product;
+import com.productapi.service.cache.CacheStats;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service interface for handling product operations
@@ -13,24 +23,128 @@ public interface ProductService {
      * 
      * @param initialRange the minimum price
      * @param finalRange the maximum price
-     * @return list of products within the price range
+     * @return read-only list of products within the price range, in price order
      */
     List<Product> filterByPriceRange(int initialRange, int finalRange);
     
+    /**
+     * Get one page of the products in a price range
+     * 
+     * @param initialRange the minimum price
+     * @param finalRange the maximum price
+     * @param page offset and limit of the page
+     * @return read-only list of products within the price range, in price order
+     */
+    default List<Product> filterByPriceRange(int initialRange, int finalRange, PageSpec page) {
+        return page.slice(filterByPriceRange(initialRange, finalRange));
+    }
+    
+    /**
+     * Get the products of a price range that come after a keyset position in
+     * (price, barcode) order
+     * 
+     * @param initialRange the minimum price
+     * @param finalRange the maximum price
+     * @param after position of the last product of the previous page, or null for the first page
+     * @param limit maximum number of products to return
+     * @return read-only list of up to limit products in (price, barcode) order
+     */
+    default List<Product> filterByPriceRangeAfter(int initialRange, int finalRange, PriceKey after, int limit) {
+        return filterByPriceRange(initialRange, finalRange).stream()
+                .filter(product -> after == null
+                        || new PriceKey(product.getPrice(), product.getBarcode()).compareTo(after) > 0)
+                .sorted((a, b) -> new PriceKey(a.getPrice(), a.getBarcode())
+                        .compareTo(new PriceKey(b.getPrice(), b.getBarcode())))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+    
     /**
      * Sort products by price in ascending order
      * 
-     * @return list of product names sorted by price
+     * @return read-only list of product names sorted by price
      */
     List<String> sortByPrice();
     
+    /**
+     * Get one page of the product names sorted by price
+     * 
+     * @param page offset and limit of the page
+     * @return read-only list of product names sorted by price
+     */
+    default List<String> sortByPrice(PageSpec page) {
+        return page.slice(sortByPrice());
+    }
+    
+    /**
+     * Sort products by one or more fields
+     * 
+     * The default implementation sorts a copy of the catalog on every call;
+     * implementations with indexes should override it.
+     * 
+     * @param sort the fields and directions to sort by
+     * @return list of products in the requested order
+     */
+    default List<Product> sortProducts(ProductSort sort) {
+        List<Product> sorted = new ArrayList<>(getAllProducts());
+        sorted.sort(sort.comparator());
+        return sorted;
+    }
+    
+    /**
+     * Get one page of the products sorted by one or more fields
+     * 
+     * @param sort the fields and directions to sort by
+     * @param page offset and limit of the page
+     * @return list of products in the requested order
+     */
+    default List<Product> sortProducts(ProductSort sort, PageSpec page) {
+        return page.slice(sortProducts(sort));
+    }
+    
     /**
      * Get all products
      * 
-     * @return list of all products
+     * Products are returned in (price, barcode) order, the order the
+     * catalogs index them in, and not in insertion order.
+     * 
+     * @return read-only list of all products
      */
     List<Product> getAllProducts();
     
+    /**
+     * Stream all products without collecting them first
+     * 
+     * Products come in (price, barcode) order, as from getAllProducts, but
+     * are read as the stream is consumed. Callers must close the stream:
+     * a store may hold a database cursor open until then.
+     * 
+     * The default implementation reads the catalog a page at a time with
+     * filterByPriceRangeAfter, so a long stream is not one catalog version.
+     * 
+     * @return the products in (price, barcode) order
+     */
+    default Stream<Product> streamByPrice() {
+        return PricePages.stream(this);
+    }
+    
+    /**
+     * Get the number of products in the catalog
+     * 
+     * @return the product count; implementations may return an estimate
+     */
+    default long getProductCount() {
+        return getAllProducts().size();
+    }
+    
+    /**
+     * Get the catalog version, which changes whenever a product is created,
+     * updated or deleted
+     * 
+     * @return the current catalog version
+     */
+    long getCatalogVersion();
+    
     /**
      * Get product by barcode
      * 
@@ -64,4 +178,64 @@ public interface ProductService {
      * @return true if deleted, false if not found
      */
     boolean deleteProduct(String barcode);
-} 
\ No newline at end of file
+    
+    /**
+     * Create or replace many products in one call
+     * 
+     * Every item is validated, and when items share a barcode the last one
+     * wins. The memory, columnar and off-heap stores apply the batch as one
+     * write, so readers see all of it or none of it.
+     * 
+     * The default implementation is not atomic: it updates or creates the
+     * items one at a time, so readers can see part of the batch, a
+     * concurrent write can land between two items, and a failure part-way
+     * leaves the items before it applied. It reports no superseded items;
+     * repeated barcodes are applied in order, each counted as an update.
+     * 
+     * @param products the products to create or replace
+     * @return per-item results and batch totals
+     */
+    default BulkUpsertResult upsertAll(Collection<Product> products) {
+        long start = System.nanoTime();
+        BulkUpsertResult result = new BulkUpsertResult();
+        List<Product> items = new ArrayList<>(products);
+        for (int i = 0; i < items.size(); i++) {
+            Product product = items.get(i);
+            String barcode = product != null ? product.getBarcode() : null;
+            try {
+                if (updateProduct(product) != null) {
+                    result.getItems().add(new ItemResult(i, barcode, Status.UPDATED, null));
+                    result.setUpdated(result.getUpdated() + 1);
+                } else {
+                    createProduct(product);
+                    result.getItems().add(new ItemResult(i, barcode, Status.CREATED, null));
+                    result.setCreated(result.getCreated() + 1);
+                }
+            } catch (IllegalArgumentException e) {
+                result.getItems().add(new ItemResult(i, barcode, Status.FAILED, e.getMessage()));
+                result.setFailed(result.getFailed() + 1);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        result.setCatalogVersion(getCatalogVersion());
+        result.setDurationMillis(elapsed / 1_000_000);
+        result.setItemsPerSecond(items.size() * 1e9 / Math.max(1, elapsed));
+        return result;
+    }
+    
+    /**
+     * Register a callback for every write applied to the catalog
+     * 
+     * @param listener called in commit order after each write
+     */
+    void addChangeListener(ProductChangeListener listener);
+    
+    /**
+     * Get the counters of the caches in front of the catalog
+     * 
+     * @return stats by cache name; empty if the implementation has no caches
+     */
+    default Map<String, CacheStats> getCacheStats() {
+        return Collections.emptyMap();
+    }
+}
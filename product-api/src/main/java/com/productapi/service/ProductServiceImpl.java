@@ -1,151 +1,1212 @@
 package com.productapi.service;
 
+import com.productapi.model.BulkUpsertResult;
+import com.productapi.model.BulkUpsertResult.ItemResult;
+import com.productapi.model.BulkUpsertResult.Status;
 import com.productapi.model.Product;
+import com.productapi.model.ProductChange;
+import com.productapi.model.ProductChange.Type;
+import com.productapi.service.cache.CacheStats;
+import com.productapi.service.cache.PriceRangeCache;
+import com.productapi.service.jfr.CatalogSnapshotEvent;
+import com.productapi.service.persistence.CatalogSnapshotFile;
+import com.productapi.service.persistence.ProductWriteAheadLog;
+import com.productapi.service.persistence.ProductWriteAheadLog.Mutation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 /**
  * Implementation of the ProductService interface
+ * 
+ * Reads go straight to concurrent indexes without locking. Writes are
+ * serialized by a single lock so both indexes change together and the
+ * duplicate check in createProduct cannot race with another insert.
+ * 
+ * Catalog-wide reads are served from an immutable {@link CatalogSnapshot}.
+ * The first reader after a write builds the next snapshot by walking the
+ * price index under a seqlock check, so readers never wait for writers.
+ * Readers that need a newer snapshot while one is being built wait for
+ * that build instead of copying the catalog too, and every later reader of
+ * that version just returns the published reference.
+ * 
+ * With app.catalog.snapshot.path set, the catalog is saved to a
+ * {@link CatalogSnapshotFile} on shutdown, and in the background every
+ * app.catalog.snapshot.save-every-writes versions, and mapped again on boot.
+ * The mapped file is used in place as a read-only base layer: the indexes
+ * above hold only products written since, and deleted base products are
+ * remembered by barcode. Barcode lookups and price ranges are served from
+ * the file's records, decoding only the products they return; only a
+ * catalog-wide read decodes the whole file, merging the layers into a
+ * snapshot. After each save the new file is mapped as the base, and the
+ * written products and deletions it covers are dropped from the layers
+ * above, so they hold only what was written since the last save.
+ * 
+ * With app.catalog.wal.dir set as well, every write is appended to a
+ * {@link ProductWriteAheadLog} and applied only once the log is synced, so
+ * readers, snapshots and change listeners never see a write a crash could
+ * lose. Syncs are shared by the writers of one commit window: a writer
+ * appends under the write lock, syncs without it, then applies its write in
+ * log order. Writers validate against the writes still waiting for the
+ * disk as well as the applied catalog. If a sync fails, the writes not yet
+ * on disk are dropped unapplied and the log rejects every later write. On boot the log is replayed
+ * over the snapshot; once it grows past app.catalog.wal.compact-bytes it is
+ * compacted into a new snapshot file in the background.
  */
 @Service
+@ConditionalOnProperty(name = "app.catalog.store", havingValue = "memory", matchIfMissing = true)
 public class ProductServiceImpl implements ProductService {
     
     private static final Logger log = LoggerFactory.getLogger(ProductServiceImpl.class);
     
-    // In-memory product list for demo purposes
-    private List<Product> products = new ArrayList<>();
+    // In-memory primary index for demo purposes: barcode -> product
+    private final Map<String, Product> products = new ConcurrentHashMap<>();
+    
+    // Products ordered by (price, barcode), kept in step with every write
+    private final NavigableMap<PriceKey, Product> priceIndex = new ConcurrentSkipListMap<>();
+    
+    // Serializes writers; readers never take it
+    private final ReentrantLock writeLock = new ReentrantLock();
+    
+    // Incremented before and after each write: odd while a write is in progress, version = value / 2
+    private final AtomicLong writeSequence = new AtomicLong();
+    
+    // Latest published snapshot
+    private final AtomicReference<CatalogSnapshot> snapshot = new AtomicReference<>(CatalogSnapshot.EMPTY);
+    
+    // Optimistic snapshot builds tried before falling back to the write lock
+    private static final int SNAPSHOT_ATTEMPTS = 4;
+    
+    // Held by the one reader building a snapshot; never taken by writers
+    private final ReentrantLock snapshotBuild = new ReentrantLock();
+    
+    // Popular price buckets are served from here instead of the snapshot
+    private volatile PriceRangeCache rangeCache = new PriceRangeCache(DEFAULT_RANGE_CACHE_SIZE);
+    
+    private static final int DEFAULT_RANGE_CACHE_SIZE = 256;
+    
+    // Snapshot file location, or null when the catalog is not persisted
+    private Path snapshotPath;
+    
+    // Catalog mapped from the snapshot file at boot, or null
+    private volatile CatalogSnapshotFile base;
+    
+    // Barcodes deleted and not written again since the base was saved; only kept when the catalog is persisted
+    private final Set<String> deletedFromBase = ConcurrentHashMap.newKeySet();
+    
+    // Incremented before and after a newly saved base replaces the layers: odd while they change
+    private final AtomicLong layerSequence = new AtomicLong();
+    
+    // Products in the catalog, kept in step with every write
+    private final AtomicLong productCount = new AtomicLong();
+    
+    private static final long DEFAULT_COMMIT_WINDOW_MICROS = 1000;
+    
+    private static final long DEFAULT_COMPACT_BYTES = 64L << 20;
+    
+    private static final long DEFAULT_SAVE_EVERY_WRITES = 10_000;
+    
+    // Catalog versions written since the last save that trigger a background save; 0 saves only on shutdown
+    private long saveEveryWrites = DEFAULT_SAVE_EVERY_WRITES;
+    
+    // Version held by the snapshot file, or 0 before the first save
+    private final AtomicLong savedVersion = new AtomicLong();
+    
+    // Write-ahead log location, or null when writes are not logged
+    private Path walDirectory;
+    
+    private long commitWindowMicros = DEFAULT_COMMIT_WINDOW_MICROS;
+    
+    private long compactBytes = DEFAULT_COMPACT_BYTES;
+    
+    // Open write-ahead log, or null; appended to under the write lock
+    private volatile ProductWriteAheadLog wal;
+    
+    // Version of the last write appended to the log; guarded by the write lock
+    private long loggedVersion;
+    
+    // Logged writes not yet applied, in log order; guarded by the write lock
+    private final ArrayDeque<PendingWrite> pendingWrites = new ArrayDeque<>();
+    
+    // Latest pending mutation of each barcode, so writers validate against it; guarded by the write lock
+    private final Map<String, Mutation> pendingMutations = new HashMap<>();
+    
+    // Signalled whenever pending writes are applied or dropped
+    private final Condition pendingApplied = writeLock.newCondition();
+    
+    // Runs snapshot saves and log compactions off the request threads
+    private ExecutorService persister;
+    
+    private final AtomicBoolean persisting = new AtomicBoolean();
+    
+    // Serializes compactions with each other and with shutdown
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    
+    // Told about every write, under the write lock
+    private final ProductChangeListeners changeListeners = new ProductChangeListeners();
     
     /**
      * Initialize some sample product data
      */
     @PostConstruct
     public void init() {
-        if (products.isEmpty()) {
+        writeLock.lock();
+        try {
+            loadSnapshotFile();
+            recoverLog();
+            if (snapshotPath != null) {
+                persister = Executors.newSingleThreadExecutor(task -> {
+                    Thread thread = new Thread(task, "catalog-snapshot-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            seedProducts();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    /**
+     * Add the sample products when the catalog is empty
+     */
+    private void seedProducts() {
+        if (products.isEmpty() && base == null && getCatalogVersion() == 0) {
+            List<Product> samples = SampleCatalog.products();
+            List<Mutation> mutations = new ArrayList<>(samples.size());
+            for (Product product : samples) {
+                mutations.add(Mutation.put(product));
+            }
             log.info("Inicializando lista de produtos in-memory como fallback devido a falha de conexão com MongoDB");
-            
-            // Produtos disponíveis
-            products.add(new Product("74001755", "Ball Gown", "Full Body Outfits", 3548, 7, 1));
-            products.add(new Product("74001756", "Summer Dress", "Full Body Outfits", 2500, 5, 1));
-            products.add(new Product("74001757", "Winter Coat", "Outerwear", 4000, 10, 1));
-            products.add(new Product("74002423", "Silk Scarf", "Accessories", 890, 15, 1));
-            products.add(new Product("74003512", "Leather Jacket", "Outerwear", 2250, 5, 1));
-            products.add(new Product("74004298", "Cotton T-Shirt", "Casual Wear", 450, 0, 1));
-            
-            // Produtos não disponíveis
-            products.add(new Product("74005123", "Denim Jeans", "Casual Wear", 1200, 10, 0));
-            products.add(new Product("74006789", "Wool Sweater", "Winter Collection", 1750, 12, 0));
-            products.add(new Product("74007890", "Designer Sunglasses", "Accessories", 1580, 8, 0));
+            awaitLogged(commit(mutations, null));
+        }
+    }
+    
+    /**
+     * Map the snapshot file as the base layer of the catalog, if one exists
+     */
+    private void loadSnapshotFile() {
+        if (snapshotPath == null || !Files.exists(snapshotPath)) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            CatalogSnapshotFile file = CatalogSnapshotFile.open(snapshotPath);
+            base = file;
+            productCount.set(file.size());
+            savedVersion.set(file.getVersion());
+            // Versions continue from the saved catalog, so clients never see them go backwards
+            writeSequence.set(file.getVersion() * 2);
+            log.info("Mapped {} products at version {} from {} in {} ms", file.size(), file.getVersion(),
+                    snapshotPath, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            log.error("Could not open catalog snapshot {}; starting without it", snapshotPath, e);
         }
     }
     
+    /**
+     * Replay the write-ahead log over the catalog loaded so far and start a new segment
+     */
+    private void recoverLog() {
+        if (walDirectory == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            ProductWriteAheadLog opened = ProductWriteAheadLog.open(walDirectory, commitWindowMicros * 1000);
+            int replayed = opened.replay(getCatalogVersion(), this::applyLogged);
+            opened.roll(getCatalogVersion() + 1);
+            loggedVersion = getCatalogVersion();
+            wal = opened;
+            log.info("Replayed {} write-ahead log records up to version {} from {} in {} ms", replayed,
+                    getCatalogVersion(), walDirectory, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            // Running on without the log would silently drop the durability writers are promised
+            throw new IllegalStateException("Could not recover the write-ahead log " + walDirectory, e);
+        }
+        if (snapshotPath == null) {
+            log.warn("No app.catalog.snapshot.path configured; the write-ahead log in {} will not be compacted", walDirectory);
+        }
+    }
+    
+    /**
+     * Apply one replayed log record; runs during init, before any reader
+     * 
+     * @param entry the record
+     */
+    private void applyLogged(ProductWriteAheadLog.Entry entry) {
+        if (entry.getVersion() != getCatalogVersion() + 1) {
+            log.warn("Write-ahead log jumps from version {} to {}", getCatalogVersion(), entry.getVersion());
+        }
+        long added = 0;
+        for (Mutation mutation : entry.getMutations()) {
+            added += applyMutation(mutation);
+        }
+        productCount.addAndGet(added);
+        writeSequence.set(entry.getVersion() * 2);
+    }
+    
+    /**
+     * Save the catalog to the snapshot file on shutdown, compacting the write-ahead log into it
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (persister != null) {
+            persister.shutdown();
+            try {
+                persister.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (snapshotPath != null) {
+            try {
+                if (wal != null) {
+                    compactLog();
+                } else {
+                    saveSnapshot();
+                }
+            } catch (IOException e) {
+                log.error("Could not save catalog snapshot {}", snapshotPath, e);
+            }
+        }
+        if (wal != null) {
+            try {
+                wal.close();
+            } catch (IOException e) {
+                log.error("Could not close write-ahead log {}", walDirectory, e);
+            }
+            wal = null;
+        }
+    }
+    
+    /**
+     * Fold the write-ahead log into the snapshot file
+     * 
+     * The log is rolled to a new segment under the write lock, so the older
+     * segments hold only versions the next snapshot will contain. The
+     * snapshot is then written without blocking writers, and the older
+     * segments are deleted.
+     * 
+     * @return the version of the snapshot written
+     * @throws IOException if syncing the log or writing the snapshot fails
+     * @throws IllegalStateException if the log or the snapshot path is not configured
+     */
+    public long compactLog() throws IOException {
+        ProductWriteAheadLog current = wal;
+        if (current == null || snapshotPath == null) {
+            throw new IllegalStateException("Log compaction needs both a write-ahead log and a snapshot path");
+        }
+        compactionLock.lock();
+        try {
+            long nextVersion;
+            writeLock.lock();
+            try {
+                nextVersion = loggedVersion + 1;
+                current.roll(nextVersion);
+                // The roll forced every pending write: wait for their writers to apply them, so the snapshot covers them
+                while (getCatalogVersion() < nextVersion - 1 && !pendingWrites.isEmpty()) {
+                    pendingApplied.awaitUninterruptibly();
+                }
+            } finally {
+                writeLock.unlock();
+            }
+            long version = saveSnapshot();
+            int deleted = current.deleteSegmentsBefore(nextVersion);
+            log.info("Compacted {} write-ahead log segments into the snapshot at version {}", deleted, version);
+            return version;
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+    
+    /**
+     * Get the open write-ahead log
+     * 
+     * @return the log, or null when writes are not logged
+     */
+    public ProductWriteAheadLog getWriteAheadLog() {
+        return wal;
+    }
+    
+    /**
+     * Write the latest catalog version to the snapshot file and map it as the new base
+     * 
+     * @return the version written
+     * @throws IOException if writing fails
+     * @throws IllegalStateException if no snapshot path is configured
+     */
+    public long saveSnapshot() throws IOException {
+        if (snapshotPath == null) {
+            throw new IllegalStateException("No catalog snapshot path configured");
+        }
+        CatalogSnapshot current = getSnapshot();
+        long start = System.nanoTime();
+        CatalogSnapshotFile.write(snapshotPath, current.getVersion(), current.getProducts());
+        savedVersion.accumulateAndGet(current.getVersion(), Math::max);
+        log.info("Saved {} products at version {} to {} in {} ms", current.size(), current.getVersion(),
+                snapshotPath, (System.nanoTime() - start) / 1_000_000);
+        rebase(current);
+        return current.getVersion();
+    }
+    
+    /**
+     * Map a just saved snapshot file as the base and drop the written products and deletions it holds
+     * 
+     * A written product is dropped only if it is the very product the file
+     * was written from, so products written after the saved version stay
+     * above the new base. A deletion is dropped once the base no longer
+     * holds the barcode. The file is replaced by a move, so readers still on
+     * the old mapping keep reading it unharmed.
+     * 
+     * @param saved the snapshot the file was written from
+     */
+    private void rebase(CatalogSnapshot saved) {
+        CatalogSnapshotFile file;
+        try {
+            file = CatalogSnapshotFile.open(snapshotPath);
+        } catch (IOException e) {
+            log.error("Could not map the saved catalog snapshot {}; keeping the previous base", snapshotPath, e);
+            return;
+        }
+        if (file.getVersion() != saved.getVersion()) {
+            // Replaced by a later save meanwhile, which rebases itself
+            return;
+        }
+        
+        // Collect the candidates without the lock; the identity check is repeated under it
+        List<Product> folded = new ArrayList<>();
+        for (Product product : saved.getProducts()) {
+            if (products.get(product.getBarcode()) == product) {
+                folded.add(product);
+            }
+        }
+        writeLock.lock();
+        try {
+            CatalogSnapshotFile previous = base;
+            if (previous != null && previous.getVersion() >= file.getVersion()) {
+                return;
+            }
+            layerSequence.incrementAndGet();
+            try {
+                // Publish the base first, so a reader missing a dropped product finds it there
+                base = file;
+                for (Product product : folded) {
+                    if (products.get(product.getBarcode()) == product) {
+                        products.remove(product.getBarcode());
+                        priceIndex.remove(priceKey(product), product);
+                    }
+                }
+                // Deletions the file already holds; the rest were deleted after it was written
+                deletedFromBase.removeIf(barcode -> !file.contains(barcode));
+            } finally {
+                layerSequence.incrementAndGet();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        log.debug("Mapped the catalog snapshot at version {} as the base, leaving {} written products above it",
+                file.getVersion(), products.size());
+    }
+    
+    /**
+     * Set where the catalog is saved on shutdown and loaded from on boot
+     * 
+     * @param path the snapshot file; empty disables persistence
+     */
+    @Value("${app.catalog.snapshot.path:}")
+    public void setSnapshotPath(String path) {
+        this.snapshotPath = path == null || path.isEmpty() ? null : Paths.get(path);
+    }
+    
+    /**
+     * Set the directory of the write-ahead log
+     * 
+     * @param directory the log directory; empty disables the log
+     */
+    @Value("${app.catalog.wal.dir:}")
+    public void setWalDirectory(String directory) {
+        this.walDirectory = directory == null || directory.isEmpty() ? null : Paths.get(directory);
+    }
+    
+    /**
+     * Set how long a log sync waits for other writers before forcing the log to disk
+     * 
+     * @param micros the group commit window; 0 syncs at once, still sharing syncs already in flight
+     */
+    @Value("${app.catalog.wal.commit-window-micros:" + DEFAULT_COMMIT_WINDOW_MICROS + "}")
+    public void setCommitWindowMicros(long micros) {
+        this.commitWindowMicros = micros;
+    }
+    
+    /**
+     * Set the log segment size that triggers compaction into the snapshot file
+     * 
+     * @param bytes segment size in bytes
+     */
+    @Value("${app.catalog.wal.compact-bytes:" + DEFAULT_COMPACT_BYTES + "}")
+    public void setCompactBytes(long bytes) {
+        this.compactBytes = bytes;
+    }
+    
+    /**
+     * Set how many catalog versions may be written before the snapshot file is saved again
+     * 
+     * Without a write-ahead log, these are the writes a crash can lose; with
+     * one, the log is compacted into the new file instead.
+     * 
+     * @param writes versions between background saves; 0 saves only on shutdown and log compaction
+     */
+    @Value("${app.catalog.snapshot.save-every-writes:" + DEFAULT_SAVE_EVERY_WRITES + "}")
+    public void setSaveEveryWrites(long writes) {
+        this.saveEveryWrites = writes;
+    }
+    
+    /**
+     * Set the number of price ranges kept by the filter cache
+     * 
+     * @param size maximum cached ranges; 0 disables the cache
+     */
+    @Value("${app.catalog.range-cache.size:" + DEFAULT_RANGE_CACHE_SIZE + "}")
+    public void setRangeCacheSize(int size) {
+        this.rangeCache = new PriceRangeCache(size);
+    }
+    
+    /**
+     * Get the price range filter cache counters
+     * 
+     * @return hits, misses, evictions and size of the cache
+     */
+    public CacheStats getRangeCacheStats() {
+        return rangeCache.getStats();
+    }
+    
+    @Override
+    public void addChangeListener(ProductChangeListener listener) {
+        changeListeners.add(listener);
+    }
+    
+    @Override
+    public Map<String, CacheStats> getCacheStats() {
+        return Collections.singletonMap("priceRange", rangeCache.getStats());
+    }
+    
     @Override
     public List<Product> filterByPriceRange(int initialRange, int finalRange) {
-        return products.stream()
-                .filter(product -> product.getPrice() >= initialRange && product.getPrice() <= finalRange)
-                .collect(Collectors.toList());
+        return range(rangeSnapshot(initialRange, finalRange), initialRange, finalRange);
+    }
+    
+    @Override
+    public List<Product> filterByPriceRange(int initialRange, int finalRange, PageSpec page) {
+        // The range is a view, so slicing it costs nothing beyond the two binary searches
+        return page.slice(range(rangeSnapshot(initialRange, finalRange), initialRange, finalRange));
+    }
+    
+    /**
+     * Get a snapshot holding at least the products of a price range, at the latest version
+     * 
+     * A current snapshot is used as is. While the snapshot is behind and a
+     * mapped file is the base layer, only the range is read: its records
+     * and the written products in the range are merged into a snapshot of
+     * that range alone, which is never published. A filter then decodes the
+     * products it returns instead of the whole file.
+     * 
+     * @param initialRange the minimum price
+     * @param finalRange the maximum price
+     * @return the snapshot to read the range from
+     */
+    private CatalogSnapshot rangeSnapshot(int initialRange, int finalRange) {
+        CatalogSnapshotFile file = base;
+        if (file == null || snapshot.get().getVersion() >= getCatalogVersion()) {
+            return getSnapshot();
+        }
+        if (initialRange > finalRange) {
+            return new CatalogSnapshot(getCatalogVersion(), new Product[0]);
+        }
+        
+        // Seqlock, as for a full snapshot
+        for (int attempt = 0; attempt < SNAPSHOT_ATTEMPTS; attempt++) {
+            long before = writeSequence.get();
+            long layers = layerSequence.get();
+            if ((before & 1) == 0 && (layers & 1) == 0) {
+                Product[] inRange = layeredRange(base, initialRange, finalRange);
+                if (writeSequence.get() == before && layerSequence.get() == layers) {
+                    return new CatalogSnapshot(before / 2, inRange);
+                }
+            }
+            Thread.onSpinWait();
+        }
+        writeLock.lock();
+        try {
+            return new CatalogSnapshot(getCatalogVersion(), layeredRange(base, initialRange, finalRange));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    /**
+     * Merge the base records and written products of a price range
+     * 
+     * @param file the base layer
+     * @param initialRange the minimum price
+     * @param finalRange the maximum price, at least initialRange
+     * @return the products in (price, barcode) order
+     */
+    private Product[] layeredRange(CatalogSnapshotFile file, int initialRange, int finalRange) {
+        Collection<Product> written = priceIndex.subMap(PriceKey.lowest(initialRange), true,
+                PriceKey.highest(finalRange), true).values();
+        return merge(file, file.firstIndexAtLeast(initialRange), file.firstIndexAbove(finalRange),
+                written.toArray(new Product[0]));
+    }
+    
+    /**
+     * Get the products within a price range, through the range cache
+     * 
+     * @param current the snapshot to read
+     * @param initialRange the minimum price
+     * @param finalRange the maximum price
+     * @return the products in (price, barcode) order
+     */
+    private List<Product> range(CatalogSnapshot current, int initialRange, int finalRange) {
+        // Binary search on the price-ordered snapshot: O(log n), returns a view
+        return rangeCache.get(initialRange, finalRange, current.getVersion(),
+                () -> current.range(initialRange, finalRange));
+    }
+    
+    @Override
+    public List<Product> filterByPriceRangeAfter(int initialRange, int finalRange, PriceKey after, int limit) {
+        // Keyset lookup on the latest snapshot: O(log n + limit)
+        return rangeSnapshot(initialRange, finalRange).rangeAfter(initialRange, finalRange, after, limit);
+    }
+    
+    @Override
+    public List<String> sortByPrice(PageSpec page) {
+        // Map only the requested slice of the price-ordered snapshot: O(limit)
+        List<Product> slice = page.slice(getSnapshot().getProducts());
+        List<String> items = new ArrayList<>(slice.size());
+        for (Product product : slice) {
+            items.add(product.getItem());
+        }
+        return items;
     }
     
     @Override
     public List<String> sortByPrice() {
-        return products.stream()
-                .sorted(Comparator.comparing(Product::getPrice))
-                .map(Product::getItem)
-                .collect(Collectors.toList());
+        // Memoized per snapshot: a write publishes a new snapshot, which invalidates it
+        return getSnapshot().getItemsByPrice();
+    }
+    
+    @Override
+    public List<Product> sortProducts(ProductSort sort) {
+        // Ordering is computed once per catalog version and shared by later calls
+        return getSnapshot().sorted(sort);
+    }
+    
+    @Override
+    public List<Product> sortProducts(ProductSort sort, PageSpec page) {
+        return getSnapshot().sorted(sort, page);
     }
     
     @Override
     public List<Product> getAllProducts() {
-        return new ArrayList<>(products);
+        return getSnapshot().getProducts();
+    }
+    
+    @Override
+    public Stream<Product> streamByPrice() {
+        // A stale snapshot over the mapped file is not rebuilt: that would decode the whole file at once
+        if (base != null && snapshot.get().getVersion() < getCatalogVersion()) {
+            return PricePages.stream(this);
+        }
+        return getSnapshot().getProducts().stream();
+    }
+    
+    @Override
+    public long getProductCount() {
+        return productCount.get();
+    }
+    
+    /**
+     * Get the number of products written since the base was saved, held in the layer above it
+     * 
+     * @return the written products
+     */
+    int getWrittenProductCount() {
+        return products.size();
+    }
+    
+    @Override
+    public long getCatalogVersion() {
+        return writeSequence.get() / 2;
+    }
+    
+    /**
+     * Get the snapshot of the latest completed version of the catalog
+     * 
+     * @return the current snapshot, built on first use after a write
+     */
+    public CatalogSnapshot getSnapshot() {
+        long wanted = writeSequence.get() / 2;
+        CatalogSnapshot current = snapshot.get();
+        if (current.getVersion() >= wanted) {
+            return current;
+        }
+        
+        // A writer reading the catalog builds on its own: a builder could be waiting for its lock
+        if (writeLock.isHeldByCurrentThread()) {
+            return buildSnapshot();
+        }
+        snapshotBuild.lock();
+        try {
+            // Built by another reader while this one waited
+            current = snapshot.get();
+            if (current.getVersion() >= wanted) {
+                return current;
+            }
+            return buildSnapshot();
+        } finally {
+            snapshotBuild.unlock();
+        }
+    }
+    
+    /**
+     * Copy the catalog into a new snapshot and publish it
+     * 
+     * @return the snapshot readers should use
+     */
+    private CatalogSnapshot buildSnapshot() {
+        CatalogSnapshotEvent event = new CatalogSnapshotEvent();
+        event.begin();
+        
+        // Seqlock: the copy is consistent if no write or rebase started or finished while it ran
+        for (int attempt = 0; attempt < SNAPSHOT_ATTEMPTS; attempt++) {
+            long before = writeSequence.get();
+            long layers = layerSequence.get();
+            if ((before & 1) == 0 && (layers & 1) == 0) {
+                Product[] byPrice = catalogByPrice();
+                if (writeSequence.get() == before && layerSequence.get() == layers) {
+                    return rebuilt(event, publish(new CatalogSnapshot(before / 2, byPrice)), attempt + 1, false);
+                }
+            }
+            Thread.onSpinWait();
+        }
+        
+        // Writers keep winning: build under the lock instead of spinning
+        writeLock.lock();
+        try {
+            CatalogSnapshot built = publish(new CatalogSnapshot(writeSequence.get() / 2, catalogByPrice()));
+            return rebuilt(event, built, SNAPSHOT_ATTEMPTS + 1, true);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    /**
+     * Commit the event of a snapshot rebuild
+     * 
+     * @param event the event begun when the rebuild started
+     * @param built the snapshot the rebuild produced
+     * @param attempts number of copies taken
+     * @param locked whether the last copy was taken under the write lock
+     * @return the snapshot
+     */
+    private static CatalogSnapshot rebuilt(CatalogSnapshotEvent event, CatalogSnapshot built, int attempts, boolean locked) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.catalogVersion = built.getVersion();
+            event.products = built.size();
+            event.attempts = attempts;
+            event.locked = locked;
+            event.commit();
+        }
+        return built;
+    }
+    
+    /**
+     * Copy every product in (price, barcode) order, merging in the base layer if there is one
+     * 
+     * @return the products
+     */
+    private Product[] catalogByPrice() {
+        Product[] written = priceIndex.values().toArray(new Product[0]);
+        CatalogSnapshotFile file = base;
+        if (file == null) {
+            return written;
+        }
+        return merge(file, 0, file.size(), written);
+    }
+    
+    /**
+     * Merge a run of base records with written products, both in (price, barcode) order
+     * 
+     * Base products replaced or deleted since boot are skipped by barcode,
+     * before the rest of their record is decoded.
+     * 
+     * @param file the base layer
+     * @param from first record of the run
+     * @param to end of the run, exclusive
+     * @param written the written products covering the same prices
+     * @return the merged products
+     */
+    private Product[] merge(CatalogSnapshotFile file, int from, int to, Product[] written) {
+        Product[] merged = new Product[Math.max(0, to - from) + written.length];
+        int count = 0;
+        int next = 0;
+        for (int record = from; record < to; record++) {
+            String barcode = file.barcode(record);
+            if (products.containsKey(barcode) || deletedFromBase.contains(barcode)) {
+                continue;
+            }
+            PriceKey key = new PriceKey(file.price(record), barcode);
+            while (next < written.length && priceKey(written[next]).compareTo(key) < 0) {
+                merged[count++] = written[next++];
+            }
+            merged[count++] = file.product(record);
+        }
+        while (next < written.length) {
+            merged[count++] = written[next++];
+        }
+        return count == merged.length ? merged : Arrays.copyOf(merged, count);
+    }
+    
+    /**
+     * Publish a snapshot unless a newer one is already published
+     * 
+     * @param built the snapshot just built
+     * @return the snapshot readers should use
+     */
+    private CatalogSnapshot publish(CatalogSnapshot built) {
+        while (true) {
+            CatalogSnapshot current = snapshot.get();
+            if (current.getVersion() >= built.getVersion()) {
+                return current;
+            }
+            if (snapshot.compareAndSet(current, built)) {
+                return built;
+            }
+        }
     }
     
     @Override
     public Product getProductByBarcode(String barcode) {
-        return products.stream()
-                .filter(product -> product.getBarcode().equals(barcode))
-                .findFirst()
-                .orElse(null);
+        return findProduct(barcode);
+    }
+    
+    /**
+     * Look up a product in the written products, then in the base layer
+     * 
+     * @param barcode the barcode
+     * @return the product, or null if not found or deleted
+     */
+    private Product findProduct(String barcode) {
+        Product product = products.get(barcode);
+        if (product != null) {
+            return product;
+        }
+        // Check deletions before reading the base: a rebase drops them only after publishing a base without them
+        if (deletedFromBase.contains(barcode)) {
+            return null;
+        }
+        CatalogSnapshotFile file = base;
+        return file != null ? file.get(barcode) : null;
     }
     
     @Override
     public Product createProduct(Product product) {
         // Validate product data
-        validateProduct(product);
+        ProductValidator.validate(product);
         
-        // Check if barcode already exists
-        if (products.stream().anyMatch(p -> p.getBarcode().equals(product.getBarcode()))) {
-            throw new IllegalArgumentException("Product with barcode " + product.getBarcode() + " already exists");
+        PendingWrite logged;
+        writeLock.lock();
+        try {
+            // Check if barcode already exists
+            if (findForWrite(product.getBarcode()) != null) {
+                throw new IllegalArgumentException("Product with barcode " + product.getBarcode() + " already exists");
+            }
+            
+            // Add product to list
+            logged = commit(Collections.singletonList(Mutation.put(product)),
+                    Collections.singletonList(ProductChange.put(Type.CREATED, product)));
+        } finally {
+            writeLock.unlock();
         }
-        
-        // Add product to list
-        products.add(product);
+        awaitLogged(logged);
         return product;
     }
     
     @Override
     public Product updateProduct(Product product) {
         // Validate product data
-        validateProduct(product);
+        ProductValidator.validate(product);
         
-        // Find and update product
-        for (int i = 0; i < products.size(); i++) {
-            if (products.get(i).getBarcode().equals(product.getBarcode())) {
-                products.set(i, product);
-                return product;
+        PendingWrite logged;
+        writeLock.lock();
+        try {
+            // Return null if product not found
+            if (findForWrite(product.getBarcode()) == null) {
+                return null;
             }
+            
+            logged = commit(Collections.singletonList(Mutation.put(product)),
+                    Collections.singletonList(ProductChange.put(Type.UPDATED, product)));
+        } finally {
+            writeLock.unlock();
         }
-        
-        // Return null if product not found
-        return null;
+        awaitLogged(logged);
+        return product;
     }
     
     @Override
     public boolean deleteProduct(String barcode) {
-        int initialSize = products.size();
-        products.removeIf(product -> product.getBarcode().equals(barcode));
-        return products.size() < initialSize;
+        PendingWrite logged;
+        writeLock.lock();
+        try {
+            if (findForWrite(barcode) == null) {
+                return false;
+            }
+            logged = commit(Collections.singletonList(Mutation.delete(barcode)),
+                    Collections.singletonList(ProductChange.deleted(barcode)));
+        } finally {
+            writeLock.unlock();
+        }
+        awaitLogged(logged);
+        return true;
+    }
+    
+    @Override
+    public BulkUpsertResult upsertAll(Collection<Product> batch) {
+        long start = System.nanoTime();
+        List<Product> items = new ArrayList<>(batch);
+        ItemResult[] results = new ItemResult[items.size()];
+        
+        // Validate and dedupe outside the lock
+        Map<String, Integer> winners = BulkUpserts.prepare(items, results);
+        
+        // Apply the whole batch as one write, so readers see all of it or none of it
+        long version;
+        PendingWrite logged = null;
+        writeLock.lock();
+        try {
+            if (!winners.isEmpty()) {
+                List<Mutation> mutations = new ArrayList<>(winners.size());
+                for (int i : winners.values()) {
+                    Product product = items.get(i);
+                    mutations.add(Mutation.put(product));
+                    Status status = findForWrite(product.getBarcode()) != null ? Status.UPDATED : Status.CREATED;
+                    results[i] = new ItemResult(i, product.getBarcode(), status, null);
+                }
+                List<ProductChange> changes = changeListeners.isEmpty() ? null : BulkUpserts.changes(items, winners, results);
+                logged = commit(mutations, changes);
+            }
+            version = logged != null ? logged.version : getCatalogVersion();
+        } finally {
+            writeLock.unlock();
+        }
+        awaitLogged(logged);
+        
+        BulkUpsertResult result = BulkUpserts.summarize(results, version, start);
+        log.debug("Bulk upsert of {} items took {} ms", items.size(), result.getDurationMillis());
+        return result;
+    }
+    
+    /**
+     * Look up a product as writers see it, including writes still waiting for the log; callers hold the write lock
+     * 
+     * @param barcode the barcode
+     * @return the product, or null if not found or deleted
+     */
+    private Product findForWrite(String barcode) {
+        Mutation pending = pendingMutations.get(barcode);
+        return pending != null ? pending.getProduct() : findProduct(barcode);
     }
     
     /**
-     * Validate product data
+     * Log a write as the next catalog version, or apply it at once when writes are not logged; callers hold the write lock
      * 
-     * @param product the product to validate
-     * @throws IllegalArgumentException if product data is invalid
+     * @param mutations the products the write puts or deletes
+     * @param changes the changes to report once applied, or null if nobody listens
+     * @return the write to pass to awaitLogged, or null if already applied
      */
-    private void validateProduct(Product product) {
+    private PendingWrite commit(List<Mutation> mutations, List<ProductChange> changes) {
+        ProductWriteAheadLog current = wal;
+        if (current == null) {
+            apply(mutations, changes);
+            return null;
+        }
+        long position;
+        try {
+            position = current.append(loggedVersion + 1, mutations);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to the write-ahead log", e);
+        }
+        PendingWrite write = new PendingWrite(++loggedVersion, current, position, mutations, changes);
+        pendingWrites.addLast(write);
+        for (Mutation mutation : mutations) {
+            pendingMutations.put(mutation.getBarcode(), mutation);
+        }
+        return write;
+    }
+    
+    /**
+     * Wait, after releasing the write lock, until a logged write is on disk, then apply it
+     * 
+     * Other writers append while this one waits, and their syncs are shared.
+     * Writes are applied in log order, each by its own writer, so change
+     * listeners run on the thread that made the change.
+     * 
+     * @param write the write returned by commit, or null if it was applied at once
+     */
+    private void awaitLogged(PendingWrite write) {
+        if (write != null) {
+            IOException failure = null;
+            try {
+                write.log.sync(write.position);
+            } catch (IOException e) {
+                failure = e;
+            }
+            writeLock.lock();
+            try {
+                if (failure != null) {
+                    dropUnsynced(write.log);
+                }
+                // Earlier writes are on disk too; their writers are about to apply them
+                while (!write.dropped && pendingWrites.peekFirst() != write) {
+                    pendingApplied.awaitUninterruptibly();
+                }
+                if (write.dropped) {
+                    throw new UncheckedIOException("Could not sync the write-ahead log",
+                            failure != null ? failure : new IOException("Write-ahead log failed before the write was synced"));
+                }
+                pendingWrites.removeFirst();
+                for (Mutation mutation : write.mutations) {
+                    pendingMutations.remove(mutation.getBarcode(), mutation);
+                }
+                apply(write.mutations, write.changes);
+                pendingApplied.signalAll();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        persistIfDue(wal);
+    }
+    
+    /**
+     * Drop the pending writes a failed sync left off the disk; callers hold the write lock
+     * 
+     * Writes already on disk stay queued for their writers, as a restart would replay them.
+     * 
+     * @param failed the log whose sync failed
+     */
+    private void dropUnsynced(ProductWriteAheadLog failed) {
+        long durable = failed.getDurablePosition();
+        while (!pendingWrites.isEmpty() && pendingWrites.peekLast().position > durable) {
+            pendingWrites.pollLast().dropped = true;
+        }
+        pendingMutations.clear();
+        for (PendingWrite kept : pendingWrites) {
+            for (Mutation mutation : kept.mutations) {
+                pendingMutations.put(mutation.getBarcode(), mutation);
+            }
+        }
+        pendingApplied.signalAll();
+    }
+    
+    /**
+     * Apply a write to the indexes as the next catalog version and report it; callers hold the write lock
+     * 
+     * @param mutations the products the write puts or deletes
+     * @param changes the changes to report, or null
+     */
+    private void apply(List<Mutation> mutations, List<ProductChange> changes) {
+        beginWrite();
+        try {
+            long added = 0;
+            for (Mutation mutation : mutations) {
+                added += applyMutation(mutation);
+            }
+            productCount.addAndGet(added);
+        } finally {
+            endWrite();
+        }
+        if (changes != null && !changeListeners.isEmpty()) {
+            changeListeners.fire(getCatalogVersion(), changes);
+        }
+    }
+    
+    /**
+     * Put or delete one product; callers hold the write lock
+     * 
+     * @param mutation the mutation
+     * @return the change in the number of products: 1, -1 or 0
+     */
+    private int applyMutation(Mutation mutation) {
+        Product product = mutation.getProduct();
+        Product existing = findProduct(mutation.getBarcode());
         if (product == null) {
-            throw new IllegalArgumentException("Product cannot be null");
+            removeProduct(mutation.getBarcode());
+            return existing != null ? -1 : 0;
         }
-        
-        if (product.getBarcode() == null || product.getBarcode().trim().isEmpty()) {
-            throw new IllegalArgumentException("Product barcode is required");
+        if (existing != null) {
+            replaceProduct(existing, product);
+            return 0;
         }
-        
-        if (product.getItem() == null || product.getItem().trim().isEmpty()) {
-            throw new IllegalArgumentException("Product name is required");
+        addProduct(product);
+        return 1;
+    }
+    
+    /**
+     * Save the catalog in the background once enough has been written since the last save
+     * 
+     * With a write-ahead log the save is a compaction, which a large log
+     * segment triggers as well.
+     * 
+     * @param current the open write-ahead log, or null
+     */
+    private void persistIfDue(ProductWriteAheadLog current) {
+        if (persister == null) {
+            return;
         }
-        
-        if (product.getCategory() == null || product.getCategory().trim().isEmpty()) {
-            throw new IllegalArgumentException("Product category is required");
+        boolean due = saveEveryWrites > 0 && getCatalogVersion() - savedVersion.get() >= saveEveryWrites
+                || current != null && current.getSegmentBytes() >= compactBytes;
+        if (due && persisting.compareAndSet(false, true)) {
+            persister.execute(() -> {
+                try {
+                    if (wal != null) {
+                        compactLog();
+                    } else {
+                        saveSnapshot();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    log.error("Could not save catalog snapshot {}", snapshotPath, e);
+                } finally {
+                    persisting.set(false);
+                }
+            });
         }
-        
-        if (product.getPrice() == null || product.getPrice() < 0) {
-            throw new IllegalArgumentException("Product price must be a non-negative value");
+    }
+    
+    /**
+     * Mark the start of a write; callers hold the write lock
+     */
+    private void beginWrite() {
+        writeSequence.incrementAndGet();
+    }
+    
+    /**
+     * Mark the end of a write, making it visible as a new catalog version
+     */
+    private void endWrite() {
+        writeSequence.incrementAndGet();
+    }
+    
+    /**
+     * Add a product to the barcode and price indexes; callers hold the write lock
+     * 
+     * @param product the product to add
+     */
+    private void addProduct(Product product) {
+        products.put(product.getBarcode(), product);
+        priceIndex.put(priceKey(product), product);
+        // The written copy hides the barcode from now on, and a later rebase folds it into the base
+        deletedFromBase.remove(product.getBarcode());
+    }
+    
+    /**
+     * Remove a product from both indexes and hide its base copy; callers hold the write lock
+     * 
+     * A written product is remembered as deleted too: a save in flight may
+     * hold it, and the base it becomes must not show it again.
+     * 
+     * @param barcode the barcode
+     */
+    private void removeProduct(String barcode) {
+        // Hide the base copy before dropping the written one, so readers never fall back to it
+        if (snapshotPath != null) {
+            deletedFromBase.add(barcode);
         }
-        
-        if (product.getDiscount() == null || product.getDiscount() < 0 || product.getDiscount() > 100) {
-            throw new IllegalArgumentException("Product discount must be between 0 and 100");
+        Product removed = products.remove(barcode);
+        if (removed != null) {
+            priceIndex.remove(priceKey(removed));
+        }
+    }
+    
+    /**
+     * Replace a product in both indexes; callers hold the write lock
+     * 
+     * @param existing the current version of the product
+     * @param product the new version
+     */
+    private void replaceProduct(Product existing, Product product) {
+        // Index the new version before dropping the old key so readers never miss the product
+        PriceKey oldKey = priceKey(existing);
+        addProduct(product);
+        if (!oldKey.equals(priceKey(product))) {
+            priceIndex.remove(oldKey);
         }
+    }
+    
+    /**
+     * Build the price index key of a product
+     * 
+     * @param product the product
+     * @return the (price, barcode) key
+     */
+    private static PriceKey priceKey(Product product) {
+        return new PriceKey(product.getPrice(), product.getBarcode());
+    }
+    
+    /**
+     * A logged write waiting for the log to reach the disk
+     */
+    private static final class PendingWrite {
+        
+        final long version;
+        final ProductWriteAheadLog log;
+        final long position;
+        final List<Mutation> mutations;
+        final List<ProductChange> changes;
+        
+        // Set when a failed sync leaves the write off the disk; guarded by the write lock
+        boolean dropped;
         
-        if (product.getAvailable() == null || (product.getAvailable() != 0 && product.getAvailable() != 1)) {
-            throw new IllegalArgumentException("Product availability must be 0 (unavailable) or 1 (available)");
+        PendingWrite(long version, ProductWriteAheadLog log, long position, List<Mutation> mutations,
+                List<ProductChange> changes) {
+            this.version = version;
+            this.log = log;
+            this.position = position;
+            this.mutations = mutations;
+            this.changes = changes;
         }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,180 @@
+package com.productapi.service;
+
+import com.productapi.model.Product;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Composite sort specification over product fields
+ *
+ * Ties left by the requested keys are broken by barcode, ascending, so
+ * every specification yields one well-defined order.
+ */
+public final class ProductSort {
+
+    /**
+     * Sort direction of a single key
+     */
+    public enum Direction {
+        ASC,
+        DESC
+    }
+
+    /**
+     * One key of a composite sort
+     */
+    public static final class Order {
+
+        private final ProductSortKey key;
+        private final Direction direction;
+
+        public Order(ProductSortKey key, Direction direction) {
+            this.key = Objects.requireNonNull(key, "key");
+            this.direction = direction != null ? direction : Direction.ASC;
+        }
+
+        public ProductSortKey getKey() {
+            return key;
+        }
+
+        public Direction getDirection() {
+            return direction;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Order)) {
+                return false;
+            }
+            Order other = (Order) o;
+            return key == other.key && direction == other.direction;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, direction);
+        }
+
+        @Override
+        public String toString() {
+            return key.getFieldName() + ":" + direction.name().toLowerCase();
+        }
+    }
+
+    /**
+     * Ascending price, the order the catalog snapshot is stored in
+     */
+    public static final ProductSort PRICE_ASCENDING = of(new Order(ProductSortKey.PRICE, Direction.ASC));
+
+    private final List<Order> orders;
+    private final Comparator<Product> comparator;
+
+    private ProductSort(List<Order> orders) {
+        this.orders = Collections.unmodifiableList(new ArrayList<>(orders));
+        this.comparator = buildComparator(this.orders);
+    }
+
+    /**
+     * Create a sort from its keys, most significant first
+     *
+     * @param orders the sort keys
+     * @return the sort
+     * @throws IllegalArgumentException if no key is given or a key repeats
+     */
+    public static ProductSort of(List<Order> orders) {
+        if (orders == null || orders.isEmpty()) {
+            throw new IllegalArgumentException("At least one sort field is required");
+        }
+        if (orders.stream().map(Order::getKey).distinct().count() != orders.size()) {
+            throw new IllegalArgumentException("Sort fields must not repeat");
+        }
+        return new ProductSort(orders);
+    }
+
+    public static ProductSort of(Order... orders) {
+        List<Order> list = new ArrayList<>();
+        Collections.addAll(list, orders);
+        return of(list);
+    }
+
+    /**
+     * Parse a sort specification such as "finalPrice:desc,item"
+     *
+     * @param spec comma-separated fields, each optionally followed by ":asc" or ":desc"
+     * @return the sort
+     * @throws IllegalArgumentException if the specification is invalid
+     */
+    public static ProductSort parse(String spec) {
+        if (spec == null || spec.trim().isEmpty()) {
+            throw new IllegalArgumentException("At least one sort field is required");
+        }
+        List<Order> orders = new ArrayList<>();
+        for (String token : spec.split(",")) {
+            String[] parts = token.trim().split(":");
+            if (parts.length > 2 || parts[0].isEmpty()) {
+                throw new IllegalArgumentException("Invalid sort field: " + token.trim());
+            }
+            Direction direction = Direction.ASC;
+            if (parts.length == 2) {
+                try {
+                    direction = Direction.valueOf(parts[1].trim().toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Invalid sort direction: " + parts[1].trim());
+                }
+            }
+            orders.add(new Order(ProductSortKey.fromName(parts[0].trim()), direction));
+        }
+        return of(orders);
+    }
+
+    public List<Order> getOrders() {
+        return orders;
+    }
+
+    /**
+     * Get the comparator implementing this sort, including the barcode tie-breaker
+     *
+     * @return the comparator
+     */
+    public Comparator<Product> comparator() {
+        return comparator;
+    }
+
+    private static Comparator<Product> buildComparator(List<Order> orders) {
+        Comparator<Product> result = null;
+        for (Order order : orders) {
+            Comparator<Product> next = order.getDirection() == Direction.ASC
+                    ? order.getKey().getComparator()
+                    : order.getKey().getComparator().reversed();
+            result = result == null ? next : result.thenComparing(next);
+        }
+        boolean hasBarcode = orders.stream().anyMatch(order -> order.getKey() == ProductSortKey.BARCODE);
+        return hasBarcode ? result : result.thenComparing(ProductSortKey.BARCODE.getComparator());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof ProductSort && orders.equals(((ProductSort) o).orders);
+    }
+
+    @Override
+    public int hashCode() {
+        return orders.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return orders.stream().map(Order::toString).collect(Collectors.joining(","));
+    }
+}
@@ -0,0 +1,61 @@
+package com.productapi.service;
+
+import com.productapi.model.Product;
+
+import java.util.Comparator;
+
+/**
+ * Product fields the catalog can be sorted by
+ */
+public enum ProductSortKey {
+
+    PRICE("price", Comparator.comparing(Product::getPrice)),
+    FINAL_PRICE("finalPrice", Comparator.comparing(Product::getFinalPrice)),
+    DISCOUNT("discount", Comparator.comparing(Product::getDiscount)),
+    ITEM("item", Comparator.comparing(Product::getItem)),
+    CATEGORY("category", Comparator.comparing(Product::getCategory)),
+    AVAILABLE("available", Comparator.comparing(Product::getAvailable)),
+    BARCODE("barcode", Comparator.comparing(Product::getBarcode));
+
+    private final String fieldName;
+    private final Comparator<Product> comparator;
+
+    ProductSortKey(String fieldName, Comparator<Product> comparator) {
+        this.fieldName = fieldName;
+        this.comparator = comparator;
+    }
+
+    /**
+     * Get the name of the field as it appears in the Product JSON
+     *
+     * @return the field name
+     */
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    /**
+     * Get the ascending comparator for this field
+     *
+     * @return the comparator
+     */
+    public Comparator<Product> getComparator() {
+        return comparator;
+    }
+
+    /**
+     * Find a sort key by field name or constant name, ignoring case
+     *
+     * @param name the field name, e.g. "finalPrice" or "FINAL_PRICE"
+     * @return the sort key
+     * @throws IllegalArgumentException if no field has that name
+     */
+    public static ProductSortKey fromName(String name) {
+        for (ProductSortKey key : values()) {
+            if (key.fieldName.equalsIgnoreCase(name) || key.name().equalsIgnoreCase(name)) {
+                return key;
+            }
+        }
+        throw new IllegalArgumentException("Unknown sort field: " + name);
+    }
+}
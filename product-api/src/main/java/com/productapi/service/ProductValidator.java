@@ -0,0 +1,48 @@
+package com.productapi.service;
+
+import com.productapi.model.Product;
+
+/**
+ * Validation rules shared by every catalog store
+ */
+final class ProductValidator {
+
+    private ProductValidator() {
+    }
+
+    /**
+     * Validate product data
+     * 
+     * @param product the product to validate
+     * @throws IllegalArgumentException if product data is invalid
+     */
+    static void validate(Product product) {
+        if (product == null) {
+            throw new IllegalArgumentException("Product cannot be null");
+        }
+        
+        if (product.getBarcode() == null || product.getBarcode().trim().isEmpty()) {
+            throw new IllegalArgumentException("Product barcode is required");
+        }
+        
+        if (product.getItem() == null || product.getItem().trim().isEmpty()) {
+            throw new IllegalArgumentException("Product name is required");
+        }
+        
+        if (product.getCategory() == null || product.getCategory().trim().isEmpty()) {
+            throw new IllegalArgumentException("Product category is required");
+        }
+        
+        if (product.getPrice() == null || product.getPrice() < 0) {
+            throw new IllegalArgumentException("Product price must be a non-negative value");
+        }
+        
+        if (product.getDiscount() == null || product.getDiscount() < 0 || product.getDiscount() > 100) {
+            throw new IllegalArgumentException("Product discount must be between 0 and 100");
+        }
+        
+        if (product.getAvailable() == null || (product.getAvailable() != 0 && product.getAvailable() != 1)) {
+            throw new IllegalArgumentException("Product availability must be 0 (unavailable) or 1 (available)");
+        }
+    }
+}
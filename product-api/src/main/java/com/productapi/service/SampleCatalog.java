@@ -0,0 +1,36 @@
+package com.productapi.service;
+
+import com.productapi.model.Product;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sample products every catalog store starts with when it is empty
+ */
+final class SampleCatalog {
+
+    private SampleCatalog() {
+    }
+
+    /**
+     * Build fresh copies of the sample products
+     *
+     * @return the sample products
+     */
+    static List<Product> products() {
+        return Arrays.asList(
+                // Produtos disponíveis
+                new Product("74001755", "Ball Gown", "Full Body Outfits", 3548, 7, 1),
+                new Product("74001756", "Summer Dress", "Full Body Outfits", 2500, 5, 1),
+                new Product("74001757", "Winter Coat", "Outerwear", 4000, 10, 1),
+                new Product("74002423", "Silk Scarf", "Accessories", 890, 15, 1),
+                new Product("74003512", "Leather Jacket", "Outerwear", 2250, 5, 1),
+                new Product("74004298", "Cotton T-Shirt", "Casual Wear", 450, 0, 1),
+
+                // Produtos não disponíveis
+                new Product("74005123", "Denim Jeans", "Casual Wear", 1200, 10, 0),
+                new Product("74006789", "Wool Sweater", "Winter Collection", 1750, 12, 0),
+                new Product("74007890", "Designer Sunglasses", "Accessories", 1580, 8, 0));
+    }
+}
@@ -0,0 +1,75 @@
+package com.productapi.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Append-only dictionary encoding strings as dense int codes
+ *
+ * Codes are handed out in insertion order and never change, so a reader
+ * holding the array returned by {@link #values()} can keep decoding every
+ * code it has seen even after the dictionary grows. Callers serialize
+ * writes; unused entries are dropped by building a new dictionary.
+ */
+final class StringDictionary {
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private String[] values;
+    private int size;
+
+    StringDictionary() {
+        this(16);
+    }
+
+    StringDictionary(int capacity) {
+        this.values = new String[Math.max(1, capacity)];
+    }
+
+    /**
+     * Get the code of a string, adding it when it is new
+     *
+     * @param value the string
+     * @return its code
+     */
+    int encode(String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value;
+        codes.put(value, size);
+        return size++;
+    }
+
+    /**
+     * Get the string of a code
+     *
+     * @param code a code returned by encode
+     * @return the string
+     */
+    String decode(int code) {
+        return values[code];
+    }
+
+    /**
+     * Get the backing array; entries below {@link #size()} never change
+     *
+     * @return the strings indexed by code
+     */
+    String[] values() {
+        return values;
+    }
+
+    /**
+     * Get the number of distinct strings
+     *
+     * @return the dictionary size
+     */
+    int size() {
+        return size;
+    }
+}
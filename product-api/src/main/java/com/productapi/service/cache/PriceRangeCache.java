@@ -0,0 +1,212 @@
+package com.productapi.service.cache;
+
+import com.productapi.model.Product;
+import com.productapi.service.jfr.CacheEvictionEvent;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of price range filter results with approximate LRU eviction
+ *
+ * Entries belong to one catalog version, and only an entry of the version
+ * the caller reads is served, so a result is never served after a product
+ * changed price. The first lookup for a newer version drops every entry of
+ * the previous one. Lookups for an older version than the cache holds are
+ * computed but not stored.
+ *
+ * Lookups take no lock: entries live in a concurrent map, and a hit only
+ * reads the entry and, at most once per millisecond, stamps it as used.
+ * When an insert takes the cache over its size, the inserting thread
+ * evicts the least recently used quarter of the entries in one pass, unless
+ * another thread is already evicting; nobody waits for it. Recency is kept
+ * to the millisecond, so ranges used within the same millisecond are
+ * evicted in no particular order.
+ */
+public class PriceRangeCache {
+
+    // Stamp an entry as used at most this often, so hot entries are not written on every hit
+    private static final long TOUCH_NANOS = 1_000_000;
+
+    private final int maxEntries;
+    private final LongSupplier clock;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    // Newest catalog version seen; entries of other versions are never served
+    private final AtomicLong version = new AtomicLong(-1);
+
+    // Held by the one thread trimming the cache
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create a cache
+     *
+     * @param maxEntries maximum number of ranges kept; 0 disables caching
+     */
+    public PriceRangeCache(int maxEntries) {
+        this(maxEntries, System::nanoTime);
+    }
+
+    PriceRangeCache(int maxEntries, LongSupplier clock) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Cache size must be a non-negative value");
+        }
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    /**
+     * Get the cached result for a range, loading it on a miss
+     *
+     * @param initialRange the minimum price
+     * @param finalRange the maximum price
+     * @param catalogVersion the catalog version the loader reads from
+     * @param loader computes the result on a miss
+     * @return the products within the range
+     */
+    public List<Product> get(int initialRange, int finalRange, long catalogVersion, Supplier<List<Product>> loader) {
+        if (maxEntries == 0) {
+            misses.increment();
+            return loader.get();
+        }
+
+        advance(catalogVersion);
+        Long key = key(initialRange, finalRange);
+        Entry cached = entries.get(key);
+        if (cached != null && cached.version == catalogVersion) {
+            hits.increment();
+            long now = clock.getAsLong();
+            if (now - cached.lastUsed >= TOUCH_NANOS) {
+                cached.lastUsed = now;
+            }
+            return cached.products;
+        }
+
+        // Load without holding anything, so slow loads do not delay other lookups
+        misses.increment();
+        List<Product> loaded = loader.get();
+        if (catalogVersion == version.get()) {
+            entries.put(key, new Entry(catalogVersion, loaded, clock.getAsLong()));
+            if (entries.size() > maxEntries) {
+                evict();
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Drop every cached entry
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Get the maximum number of ranges kept
+     *
+     * @return the configured size
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Get the cache counters
+     *
+     * @return current hits, misses, evictions and size
+     */
+    public CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+    }
+
+    /**
+     * Move the cache to a newer catalog version, dropping the entries of the older ones
+     *
+     * @param catalogVersion the version a lookup reads
+     */
+    private void advance(long catalogVersion) {
+        long current = version.get();
+        while (catalogVersion > current) {
+            if (version.compareAndSet(current, catalogVersion)) {
+                entries.clear();
+                return;
+            }
+            current = version.get();
+        }
+    }
+
+    /**
+     * Trim the cache below its size, least recently used entries and entries of old versions first
+     */
+    private void evict() {
+        // Re-check after every pass: inserts made while another thread trimmed skipped their own
+        while (entries.size() > maxEntries && evicting.compareAndSet(false, true)) {
+            try {
+                trim(maxEntries - maxEntries / 4);
+            } finally {
+                evicting.set(false);
+            }
+        }
+    }
+
+    private void trim(int target) {
+        long current = version.get();
+        List<Map.Entry<Long, Entry>> candidates = new ArrayList<>(entries.entrySet());
+        candidates.sort(Comparator.comparingLong(candidate -> candidate.getValue().version == current
+                ? candidate.getValue().lastUsed : Long.MIN_VALUE));
+        for (Map.Entry<Long, Entry> candidate : candidates) {
+            if (entries.size() <= target) {
+                return;
+            }
+            if (entries.remove(candidate.getKey(), candidate.getValue())) {
+                evictions.increment();
+                recordEviction(candidate.getKey());
+            }
+        }
+    }
+
+    private void recordEviction(long key) {
+        CacheEvictionEvent event = new CacheEvictionEvent();
+        if (event.shouldCommit()) {
+            event.cache = "priceRange";
+            event.key = (int) (key >> 32) + "-" + (int) key;
+            event.size = entries.size();
+            event.commit();
+        }
+    }
+
+    private static Long key(int initialRange, int finalRange) {
+        return ((long) initialRange << 32) | (finalRange & 0xFFFFFFFFL);
+    }
+
+    /**
+     * A cached range result and the catalog version it was computed from
+     */
+    private static final class Entry {
+
+        final long version;
+        final List<Product> products;
+
+        // Racy by design: a lost stamp only makes the entry look a little older
+        volatile long lastUsed;
+
+        Entry(long version, List<Product> products, long lastUsed) {
+            this.version = version;
+            this.products = products;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
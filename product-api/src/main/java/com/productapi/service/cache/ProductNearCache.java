@@ -0,0 +1,263 @@
+package com.productapi.service.cache;
+
+import com.productapi.model.Product;
+import com.productapi.service.jfr.CacheEvictionEvent;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache of products by barcode, with a time to live and approximate LRU eviction
+ *
+ * Sits in front of a store where every lookup is a round trip. Misses for
+ * the same barcode are coalesced: the first one loads the product and
+ * concurrent lookups wait for that load instead of issuing their own.
+ * Barcodes that do not exist are cached too, so repeated lookups of a
+ * missing product do not reach the store either.
+ *
+ * Writers call {@link #invalidate(String)} after changing a product. A load
+ * that was already running when the barcode was invalidated still answers
+ * its waiters but is not stored, so the cache never keeps a value read
+ * before the write. Entries written elsewhere, e.g. by another instance,
+ * are picked up when they expire.
+ *
+ * Lookups take no lock. A barcode maps to either its loaded entry or the
+ * load in progress, in one concurrent map, and a load stores its result
+ * only by replacing its own placeholder, which an invalidation removes.
+ * A hit stamps its entry as used at most once per millisecond. When the
+ * cache grows past its size, one thread evicts the least recently used
+ * quarter of the loaded entries while other lookups carry on; recency is
+ * kept to the millisecond.
+ */
+public class ProductNearCache {
+
+    // Stamp an entry as used at most this often, so hot entries are not written on every hit
+    private static final long TOUCH_NANOS = 1_000_000;
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+
+    // Loaded entries and loads in progress, by barcode
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+
+    // Held by the one thread trimming the cache
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Create a cache
+     *
+     * @param maxEntries maximum number of barcodes kept; 0 disables caching
+     * @param ttlMillis how long an entry is served after it was loaded
+     */
+    public ProductNearCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, System::nanoTime);
+    }
+
+    ProductNearCache(int maxEntries, long ttlMillis, LongSupplier clock) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Cache size must be a non-negative value");
+        }
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("Cache time to live must be a positive value");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.clock = clock;
+    }
+
+    /**
+     * Get the product for a barcode, loading it on a miss
+     *
+     * @param barcode the barcode
+     * @param loader reads the product from the store; may return null
+     * @return the product, or null if the store has none
+     */
+    public Product get(String barcode, Function<String, Product> loader) {
+        if (maxEntries == 0) {
+            misses.increment();
+            return loader.apply(barcode);
+        }
+
+        long now = clock.getAsLong();
+        Slot slot = slots.get(barcode);
+        if (slot != null && slot.load == null) {
+            if (now - slot.loadedAt < ttlNanos) {
+                hits.increment();
+                if (now - slot.lastUsed >= TOUCH_NANOS) {
+                    slot.lastUsed = now;
+                }
+                return slot.product;
+            }
+            slots.remove(barcode, slot);
+        }
+
+        misses.increment();
+        if (slot != null && slot.load != null) {
+            coalesced.increment();
+            return await(slot.load);
+        }
+        Slot placeholder = Slot.loading();
+        Slot running = slots.putIfAbsent(barcode, placeholder);
+        if (running != null) {
+            // Another lookup got there first; its entry is at most a moment old
+            if (running.load == null) {
+                return running.product;
+            }
+            coalesced.increment();
+            return await(running.load);
+        }
+
+        // Load outside any lock so slow loads do not delay other lookups
+        Product product;
+        try {
+            product = loader.apply(barcode);
+        } catch (RuntimeException e) {
+            slots.remove(barcode, placeholder);
+            placeholder.load.completeExceptionally(e);
+            throw e;
+        }
+        // Fails if the barcode was invalidated while loading
+        if (slots.replace(barcode, placeholder, Slot.loaded(product, now)) && slots.size() > maxEntries) {
+            evict();
+        }
+        placeholder.load.complete(product);
+        return product;
+    }
+
+    /**
+     * Drop a barcode, and keep any load already running from storing its result
+     *
+     * @param barcode the barcode that changed
+     */
+    public void invalidate(String barcode) {
+        slots.remove(barcode);
+    }
+
+    /**
+     * Drop every cached entry
+     */
+    public void clear() {
+        slots.clear();
+    }
+
+    /**
+     * Get the number of lookups that waited for another lookup's load
+     *
+     * @return coalesced misses; each one is a store round trip saved
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Get the cache counters
+     *
+     * @return current hits, misses, evictions and size; the size includes loads in progress
+     */
+    public CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), slots.size());
+    }
+
+    /**
+     * Trim the cache below its size, least recently used entries first
+     */
+    private void evict() {
+        // Re-check after every pass: inserts made while another thread trimmed skipped their own
+        while (slots.size() > maxEntries && evicting.compareAndSet(false, true)) {
+            try {
+                trim(maxEntries - maxEntries / 4);
+            } finally {
+                evicting.set(false);
+            }
+        }
+    }
+
+    private void trim(int target) {
+        List<Map.Entry<String, Slot>> candidates = new ArrayList<>(slots.size());
+        for (Map.Entry<String, Slot> candidate : slots.entrySet()) {
+            // Loads in progress are about to be used; they are never evicted
+            if (candidate.getValue().load == null) {
+                candidates.add(candidate);
+            }
+        }
+        candidates.sort(Comparator.comparingLong(candidate -> candidate.getValue().lastUsed));
+        for (Map.Entry<String, Slot> candidate : candidates) {
+            if (slots.size() <= target) {
+                return;
+            }
+            if (slots.remove(candidate.getKey(), candidate.getValue())) {
+                evictions.increment();
+                recordEviction(candidate.getKey());
+            }
+        }
+    }
+
+    private void recordEviction(String barcode) {
+        CacheEvictionEvent event = new CacheEvictionEvent();
+        if (event.shouldCommit()) {
+            event.cache = "nearCache";
+            event.key = barcode;
+            event.size = slots.size();
+            event.commit();
+        }
+    }
+
+    private static Product await(CompletableFuture<Product> load) {
+        try {
+            return load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a product load", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause);
+        }
+    }
+
+    /**
+     * A loaded product, or a load in progress that lookups of the same barcode wait for
+     */
+    private static final class Slot {
+
+        // Null when the store has no product with the barcode
+        final Product product;
+        final long loadedAt;
+
+        // Set while the product is being loaded
+        final CompletableFuture<Product> load;
+
+        // Racy by design: a lost stamp only makes the entry look a little older
+        volatile long lastUsed;
+
+        private Slot(Product product, long loadedAt, CompletableFuture<Product> load) {
+            this.product = product;
+            this.loadedAt = loadedAt;
+            this.load = load;
+            this.lastUsed = loadedAt;
+        }
+
+        static Slot loading() {
+            return new Slot(null, 0, new CompletableFuture<>());
+        }
+
+        static Slot loaded(Product product, long loadedAt) {
+            return new Slot(product, loadedAt, null);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.productapi.service.changefeed;
+
+/**
+ * Thrown when the changes after a version are no longer retained by the feed,
+ * the version is newer than the catalog, or it belongs to another epoch
+ *
+ * The consumer has to reload the full catalog and continue from the
+ * catalog version returned with it.
+ */
+public class ChangeFeedExpiredException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long horizon;
+
+    public ChangeFeedExpiredException(long since, long horizon) {
+        this("Changes since version " + since + " are no longer retained; reload the catalog and continue from version "
+                + horizon + " or later", horizon);
+    }
+
+    private ChangeFeedExpiredException(String message, long horizon) {
+        super(message);
+        this.horizon = horizon;
+    }
+
+    /**
+     * Create the exception for a version newer than the catalog, e.g. one seen before a restart
+     *
+     * @param since the version the consumer asked to continue from
+     * @param catalogVersion the current catalog version
+     * @return the exception
+     */
+    public static ChangeFeedExpiredException unknownVersion(long since, long catalogVersion) {
+        return new ChangeFeedExpiredException("Version " + since + " is newer than the catalog at version "
+                + catalogVersion + "; reload the catalog and continue from the version returned with it", catalogVersion);
+    }
+
+    /**
+     * Create the exception for a version from another run of catalog versions, e.g. one before a restart
+     *
+     * @param epoch the epoch the consumer's version belongs to
+     * @param currentEpoch the feed's epoch
+     * @param catalogVersion the current catalog version
+     * @return the exception
+     */
+    public static ChangeFeedExpiredException otherEpoch(String epoch, String currentEpoch, long catalogVersion) {
+        return new ChangeFeedExpiredException("Epoch " + epoch + " is not the catalog's current epoch " + currentEpoch
+                + "; reload the catalog and continue from the version returned with it", catalogVersion);
+    }
+
+    /**
+     * Get the oldest version the feed can still continue from
+     *
+     * @return the horizon
+     */
+    public long getHorizon() {
+        return horizon;
+    }
+}
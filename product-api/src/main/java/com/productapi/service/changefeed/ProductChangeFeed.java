@@ -0,0 +1,241 @@
+package com.productapi.service.changefeed;
+
+import com.productapi.model.CatalogDelta;
+import com.productapi.model.CatalogDeltaPage;
+import com.productapi.model.ProductChange;
+import com.productapi.service.ProductChangeListener;
+import com.productapi.service.ProductService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+import javax.annotation.PostConstruct;
+
+/**
+ * Bounded, versioned log of the writes applied to the catalog
+ *
+ * Every write reported by the store is recorded as a {@link CatalogDelta}
+ * under the catalog version it produced, so a consumer that last saw
+ * version v fetches the deltas after v instead of the whole catalog.
+ * Deltas are kept in a skip list by version: appends come from the store's
+ * writer and readers never block it.
+ *
+ * At most app.catalog.change-feed.max-changes product changes are retained;
+ * the oldest deltas are dropped beyond that. The horizon is the oldest
+ * version a consumer can continue from: the catalog version when the feed
+ * started, raised to the version of every dropped delta. Asking for changes
+ * since an older version fails with {@link ChangeFeedExpiredException}.
+ * So does asking for changes since a version newer than the catalog: the
+ * version was handed out before a restart, which started the versions
+ * over, and waiting would silently skip every change up to it.
+ *
+ * A restart can also start the versions over and pass the old version
+ * again, and then the same number names a different catalog. Each feed
+ * therefore has a random epoch, returned with every version it hands out.
+ * A consumer passes it back with its version, and a version from another
+ * epoch fails with {@link ChangeFeedExpiredException} as well. The epoch
+ * changes on every start, even where the store's versions survive restarts,
+ * at the cost of one reload per consumer.
+ *
+ * With the mongo store the feed holds the writes made through this
+ * instance only.
+ */
+@Component
+public class ProductChangeFeed implements ProductChangeListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductChangeFeed.class);
+
+    private static final int DEFAULT_MAX_CHANGES = 100000;
+
+    private final ProductService productService;
+    private final int maxChanges;
+    private final LongSupplier clock;
+
+    // Identifies this run of catalog versions; versions from another run are not continued
+    private final String epoch = UUID.randomUUID().toString();
+
+    private final ConcurrentNavigableMap<Long, CatalogDelta> deltas = new ConcurrentSkipListMap<>();
+
+    // Called after every append, still inside the store's write
+    private final List<Runnable> appendListeners = new CopyOnWriteArrayList<>();
+
+    // Written by the store's writer only
+    private volatile long horizon;
+    private long retainedChanges;
+
+    @Autowired
+    public ProductChangeFeed(ProductService productService,
+            @Value("${app.catalog.change-feed.max-changes:" + DEFAULT_MAX_CHANGES + "}") int maxChanges) {
+        this(productService, maxChanges, System::currentTimeMillis);
+    }
+
+    ProductChangeFeed(ProductService productService, int maxChanges, LongSupplier clock) {
+        if (maxChanges <= 0) {
+            throw new IllegalArgumentException("Change feed size must be a positive value");
+        }
+        this.productService = productService;
+        this.maxChanges = maxChanges;
+        this.clock = clock;
+    }
+
+    /**
+     * Start recording the store's writes
+     */
+    @PostConstruct
+    public void start() {
+        productService.addChangeListener(this);
+        // Read after registering, so no write between the two goes unrecorded
+        horizon = productService.getCatalogVersion();
+        log.info("Catalog change feed started at version {} in epoch {}", horizon, epoch);
+    }
+
+    @Override
+    public void onChange(long catalogVersion, List<ProductChange> changes) {
+        deltas.put(catalogVersion, new CatalogDelta(catalogVersion, clock.getAsLong(), changes));
+        retainedChanges += changes.size();
+        // Keep the newest delta even if it alone exceeds the limit
+        while (retainedChanges > maxChanges && deltas.size() > 1) {
+            Map.Entry<Long, CatalogDelta> oldest = deltas.pollFirstEntry();
+            retainedChanges -= oldest.getValue().getChanges().size();
+            horizon = oldest.getKey();
+        }
+        for (Runnable listener : appendListeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Get the deltas recorded after a version of an epoch
+     *
+     * @param epoch the epoch the consumer's version belongs to, or null to skip the check
+     * @param since the last version the consumer has seen
+     * @param limit maximum number of deltas to return
+     * @return the deltas after since, oldest first
+     * @throws IllegalArgumentException if since is negative or limit is not positive
+     * @throws ChangeFeedExpiredException if the epoch is not the feed's, deltas after since were already dropped,
+     *         or since is newer than the catalog
+     */
+    public CatalogDeltaPage since(String epoch, long since, int limit) {
+        checkEpoch(epoch);
+        return since(since, limit);
+    }
+
+    /**
+     * Get the deltas recorded after a version
+     *
+     * @param since the last version the consumer has seen
+     * @param limit maximum number of deltas to return
+     * @return the deltas after since, oldest first
+     * @throws IllegalArgumentException if since is negative or limit is not positive
+     * @throws ChangeFeedExpiredException if deltas after since were already dropped, or since is newer than the catalog
+     */
+    public CatalogDeltaPage since(long since, int limit) {
+        if (since < 0) {
+            throw new IllegalArgumentException("Version must be a non-negative value");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be a positive value");
+        }
+        List<CatalogDelta> page = new ArrayList<>(Math.min(limit, 64));
+        Collection<CatalogDelta> after = deltas.tailMap(since, false).values();
+        boolean complete = true;
+        for (CatalogDelta delta : after) {
+            if (page.size() == limit) {
+                complete = false;
+                break;
+            }
+            page.add(delta);
+        }
+        // Checked after reading: the deltas read are only whole if none after since was dropped meanwhile
+        checkContinuable(since);
+        long version = page.isEmpty() ? since : page.get(page.size() - 1).getVersion();
+        return new CatalogDeltaPage(epoch, since, version, complete, page);
+    }
+
+    /**
+     * Check that a consumer can continue from a version of an epoch
+     *
+     * @param epoch the epoch the consumer's version belongs to, or null to skip the check
+     * @param since the last version the consumer has seen
+     * @throws ChangeFeedExpiredException if the epoch is not the feed's, deltas after since were already dropped,
+     *         or since is newer than the catalog
+     */
+    public void checkContinuable(String epoch, long since) {
+        checkEpoch(epoch);
+        checkContinuable(since);
+    }
+
+    private void checkEpoch(String consumerEpoch) {
+        if (consumerEpoch != null && !consumerEpoch.equals(epoch)) {
+            throw ChangeFeedExpiredException.otherEpoch(consumerEpoch, epoch, productService.getCatalogVersion());
+        }
+    }
+
+    /**
+     * Check that a consumer can continue from a version
+     *
+     * @param since the last version the consumer has seen
+     * @throws ChangeFeedExpiredException if deltas after since were already dropped, or since is newer than the catalog
+     */
+    public void checkContinuable(long since) {
+        long currentHorizon = horizon;
+        if (since < currentHorizon) {
+            throw new ChangeFeedExpiredException(since, currentHorizon);
+        }
+        // Past every recorded delta; only then is the store asked, as that may be a round trip
+        if (since > getLatestVersion()) {
+            long catalogVersion = productService.getCatalogVersion();
+            if (since > catalogVersion) {
+                throw ChangeFeedExpiredException.unknownVersion(since, catalogVersion);
+            }
+        }
+    }
+
+    /**
+     * Get the epoch of the versions this feed hands out
+     *
+     * @return the epoch, new on every start
+     */
+    public String getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Get the oldest version consumers can continue from
+     *
+     * @return the horizon
+     */
+    public long getHorizon() {
+        return horizon;
+    }
+
+    /**
+     * Get the version of the newest recorded delta
+     *
+     * @return the latest version, or the horizon if nothing was recorded since
+     */
+    public long getLatestVersion() {
+        Map.Entry<Long, CatalogDelta> last = deltas.lastEntry();
+        return last != null ? last.getKey() : horizon;
+    }
+
+    /**
+     * Register a callback for every recorded delta
+     *
+     * @param listener called after each append, inside the store's write; must return quickly
+     */
+    public void addAppendListener(Runnable listener) {
+        appendListeners.add(listener);
+    }
+}
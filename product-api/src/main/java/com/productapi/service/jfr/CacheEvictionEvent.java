@@ -0,0 +1,29 @@
+package com.productapi.service.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * An entry dropped from a full cache to make room for a new one
+ */
+@Name("com.productapi.CacheEviction")
+@Label("Cache Eviction")
+@Category({"Product API", "Cache"})
+@Description("Least recently used entry evicted from a bounded cache")
+@StackTrace(false)
+public class CacheEvictionEvent extends Event {
+
+    @Label("Cache")
+    public String cache;
+
+    @Label("Key")
+    public String key;
+
+    @Label("Size")
+    @Description("Entries in the cache when the eviction happened")
+    public int size;
+}
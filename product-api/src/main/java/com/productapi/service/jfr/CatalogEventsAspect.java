@@ -0,0 +1,105 @@
+package com.productapi.service.jfr;
+
+import com.productapi.model.BulkUpsertResult;
+import com.productapi.model.Product;
+import com.productapi.service.ProductService;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.util.Collection;
+
+/**
+ * Records catalog writes and queries as flight recorder events, whatever the store
+ *
+ * Writes of a ProductService record a {@link CatalogMutationEvent}, and
+ * sorts and price filters a {@link CatalogQueryEvent}, tagged with the
+ * implementing class. Calls that go through a decorator are recorded at
+ * each layer, as for the service metrics: with the mongo store, a write is
+ * recorded for NearCacheProductService and for MongoProductServiceImpl.
+ *
+ * With no recording running, a call costs two enabled checks. A call that
+ * throws records nothing.
+ */
+@Aspect
+@Component
+public class CatalogEventsAspect {
+
+    @Around("execution(* com.productapi.service.ProductService.createProduct(..))"
+            + " || execution(* com.productapi.service.ProductService.updateProduct(..))"
+            + " || execution(* com.productapi.service.ProductService.deleteProduct(..))"
+            + " || execution(* com.productapi.service.ProductService.upsertAll(..))")
+    public Object recordMutation(ProceedingJoinPoint call) throws Throwable {
+        CatalogMutationEvent event = new CatalogMutationEvent();
+        event.begin();
+        Object result = call.proceed();
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = call.getSignature().getName();
+            event.store = store(call);
+            event.barcode = barcode(call.getArgs()[0]);
+            event.products = changed(result);
+            event.catalogVersion = ((ProductService) call.getTarget()).getCatalogVersion();
+            event.commit();
+        }
+        return result;
+    }
+
+    @Around("execution(* com.productapi.service.ProductService.filterByPriceRange(..))"
+            + " || execution(* com.productapi.service.ProductService.filterByPriceRangeAfter(..))"
+            + " || execution(* com.productapi.service.ProductService.sortByPrice(..))"
+            + " || execution(* com.productapi.service.ProductService.sortProducts(..))")
+    public Object recordQuery(ProceedingJoinPoint call) throws Throwable {
+        CatalogQueryEvent event = new CatalogQueryEvent();
+        // The version is only read when a recording may keep the event
+        long version = event.isEnabled() ? ((ProductService) call.getTarget()).getCatalogVersion() : 0;
+        event.begin();
+        Object result = call.proceed();
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = call.getSignature().getName();
+            event.store = store(call);
+            event.resultCount = result instanceof Collection ? ((Collection<?>) result).size() : 0;
+            event.catalogVersion = version;
+            event.commit();
+        }
+        return result;
+    }
+
+    private static String store(ProceedingJoinPoint call) {
+        // The target may itself be a CGLIB subclass
+        return ClassUtils.getUserClass(call.getTarget().getClass()).getSimpleName();
+    }
+
+    /**
+     * Get the barcode a write names
+     *
+     * @param argument the first argument of the write
+     * @return the product's barcode or the barcode deleted, or null for a bulk upsert
+     */
+    private static String barcode(Object argument) {
+        if (argument instanceof Product) {
+            return ((Product) argument).getBarcode();
+        }
+        return argument instanceof String ? (String) argument : null;
+    }
+
+    /**
+     * Get the number of products a write created, updated or deleted
+     *
+     * @param result what the write returned
+     * @return products changed
+     */
+    private static int changed(Object result) {
+        if (result instanceof BulkUpsertResult) {
+            BulkUpsertResult upserted = (BulkUpsertResult) result;
+            return upserted.getCreated() + upserted.getUpdated();
+        }
+        if (result instanceof Boolean) {
+            return (Boolean) result ? 1 : 0;
+        }
+        return result != null ? 1 : 0;
+    }
+}
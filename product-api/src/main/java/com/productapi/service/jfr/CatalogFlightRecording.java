@@ -0,0 +1,108 @@
+package com.productapi.service.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * Flight recording of the application's events next to the JVM's own
+ *
+ * Starts one recording with a built-in settings file (profile by default),
+ * which already covers garbage collection, safepoints, allocation and
+ * monitor contention, and adds the catalog and cache events of
+ * this package. Lock thresholds are lowered so that short waits on the
+ * store's write lock (jdk.ThreadPark) and on the cache monitors
+ * (jdk.JavaMonitorEnter) line up with the mutations and queries they
+ * delayed. The recording is written to app.jfr.file on shutdown, and by
+ * the JVM on exit if the context never closes.
+ *
+ * Active with app.jfr.enabled=true. The events are also recorded by any
+ * recording started with -XX:StartFlightRecording or jcmd JFR.start.
+ */
+@Component
+@ConditionalOnProperty(name = "app.jfr.enabled", havingValue = "true")
+public class CatalogFlightRecording {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogFlightRecording.class);
+
+    private static final String DEFAULT_FILE = "product-api.jfr";
+    private static final String DEFAULT_SETTINGS = "profile";
+    private static final long DEFAULT_LOCK_THRESHOLD_MILLIS = 1;
+    private static final long DEFAULT_QUERY_THRESHOLD_MILLIS = 1;
+
+    private final Path file;
+    private final String settings;
+    private final Duration lockThreshold;
+    private final Duration queryThreshold;
+
+    private Recording recording;
+
+    public CatalogFlightRecording(
+            @Value("${app.jfr.file:" + DEFAULT_FILE + "}") String file,
+            @Value("${app.jfr.settings:" + DEFAULT_SETTINGS + "}") String settings,
+            @Value("${app.jfr.lock-threshold-ms:" + DEFAULT_LOCK_THRESHOLD_MILLIS + "}") long lockThresholdMillis,
+            @Value("${app.jfr.query-threshold-ms:" + DEFAULT_QUERY_THRESHOLD_MILLIS + "}") long queryThresholdMillis) {
+        if (lockThresholdMillis < 0 || queryThresholdMillis < 0) {
+            throw new IllegalArgumentException("Recording thresholds must be non-negative values");
+        }
+        this.file = Paths.get(file);
+        this.settings = settings;
+        this.lockThreshold = Duration.ofMillis(lockThresholdMillis);
+        this.queryThreshold = Duration.ofMillis(queryThresholdMillis);
+    }
+
+    /**
+     * Start the recording
+     *
+     * @throws IOException if the settings or the destination cannot be used
+     * @throws ParseException if the settings file is malformed
+     */
+    @PostConstruct
+    public void start() throws IOException, ParseException {
+        Recording started = new Recording(Configuration.getConfiguration(settings));
+        started.setName("product-api");
+        started.setToDisk(true);
+        started.setDumpOnExit(true);
+        started.setDestination(file);
+
+        started.enable("jdk.JavaMonitorEnter").withThreshold(lockThreshold);
+        started.enable("jdk.ThreadPark").withThreshold(lockThreshold);
+        started.enable(CatalogMutationEvent.class);
+        started.enable(CatalogQueryEvent.class).withThreshold(queryThreshold);
+        started.enable(CatalogSnapshotEvent.class);
+        started.enable(CacheEvictionEvent.class);
+
+        started.start();
+        recording = started;
+        log.info("Flight recording started with {} settings, writing to {}", settings, file.toAbsolutePath());
+    }
+
+    /**
+     * Stop the recording and write it to the destination file
+     */
+    @PreDestroy
+    public void stop() {
+        if (recording == null) {
+            return;
+        }
+        try {
+            recording.stop();
+            log.info("Flight recording written to {}", file.toAbsolutePath());
+        } finally {
+            recording.close();
+            recording = null;
+        }
+    }
+}
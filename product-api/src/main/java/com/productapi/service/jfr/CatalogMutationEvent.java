@@ -0,0 +1,44 @@
+package com.productapi.service.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A catalog write: create, update, delete or bulk upsert
+ *
+ * Recorded by {@link CatalogEventsAspect} around every store. With the
+ * memory store, the duration covers validation, the wait for the write
+ * lock, the index update and the write-ahead log sync, so a slow write can
+ * be matched to the lock contention or GC pause recorded over the same
+ * interval.
+ */
+@Name("com.productapi.CatalogMutation")
+@Label("Catalog Mutation")
+@Category({"Product API", "Catalog"})
+@Description("Write to the product catalog")
+@StackTrace(false)
+public class CatalogMutationEvent extends Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Store")
+    @Description("Class of the catalog store or decorator that ran the write")
+    public String store;
+
+    @Label("Barcode")
+    @Description("Product written, or null for a bulk upsert")
+    public String barcode;
+
+    @Label("Products")
+    @Description("Products created, updated or deleted by the write")
+    public int products;
+
+    @Label("Catalog Version")
+    @Description("Catalog version when the write returned")
+    public long catalogVersion;
+}
@@ -0,0 +1,39 @@
+package com.productapi.service.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A catalog sort or price range filter and the number of products it returned
+ *
+ * Recorded by {@link CatalogEventsAspect} around every store. Most
+ * queries are served from a memoized snapshot in microseconds, so only the
+ * ones slower than the threshold are recorded.
+ */
+@Name("com.productapi.CatalogQuery")
+@Label("Catalog Query")
+@Category({"Product API", "Catalog"})
+@Description("Sort or filter of the product catalog")
+@StackTrace(false)
+@Threshold("1 ms")
+public class CatalogQueryEvent extends Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Store")
+    @Description("Class of the catalog store or decorator that ran the query")
+    public String store;
+
+    @Label("Result Count")
+    public int resultCount;
+
+    @Label("Catalog Version")
+    @Description("Catalog version when the query started")
+    public long catalogVersion;
+}
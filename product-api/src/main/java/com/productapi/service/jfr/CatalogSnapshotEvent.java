@@ -0,0 +1,33 @@
+package com.productapi.service.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A rebuild of the price-ordered catalog snapshot after a write
+ */
+@Name("com.productapi.CatalogSnapshot")
+@Label("Catalog Snapshot Rebuild")
+@Category({"Product API", "Catalog"})
+@Description("Copy of the catalog indexes into a new read snapshot")
+@StackTrace(false)
+public class CatalogSnapshotEvent extends Event {
+
+    @Label("Catalog Version")
+    public long catalogVersion;
+
+    @Label("Products")
+    public int products;
+
+    @Label("Attempts")
+    @Description("Optimistic copies tried before one was consistent")
+    public int attempts;
+
+    @Label("Locked")
+    @Description("Whether writers kept interfering and the copy was taken under the write lock")
+    public boolean locked;
+}
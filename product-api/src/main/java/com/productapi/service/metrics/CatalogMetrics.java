@@ -0,0 +1,67 @@
+package com.productapi.service.metrics;
+
+import com.productapi.service.ProductService;
+import com.productapi.service.cache.CacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Gauges of the catalog state, read when the registry is scraped
+ *
+ * Reports the product count and catalog version of the active store, and
+ * hits, misses, evictions, size and hit ratio of every cache the store
+ * lists in getCacheStats, tagged with the cache name. The caches are
+ * looked up once, when the registry binds this.
+ */
+@Component
+public class CatalogMetrics implements MeterBinder {
+
+    private final ProductService productService;
+
+    @Autowired
+    public CatalogMetrics(ProductService productService) {
+        this.productService = productService;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("catalog.products", productService, ProductService::getProductCount)
+                .description("Products in the catalog")
+                .baseUnit("products")
+                .register(registry);
+        Gauge.builder("catalog.version", productService, ProductService::getCatalogVersion)
+                .description("Current catalog version")
+                .register(registry);
+
+        for (String cache : productService.getCacheStats().keySet()) {
+            counter(registry, "catalog.cache.hits", cache, CacheStats::getHits);
+            counter(registry, "catalog.cache.misses", cache, CacheStats::getMisses);
+            counter(registry, "catalog.cache.evictions", cache, CacheStats::getEvictions);
+            gauge(registry, "catalog.cache.size", cache, CacheStats::getSize);
+            gauge(registry, "catalog.cache.hit.ratio", cache, CacheStats::getHitRatio);
+        }
+    }
+
+    private void counter(MeterRegistry registry, String name, String cache, ToDoubleFunction<CacheStats> value) {
+        FunctionCounter.builder(name, productService, service -> read(service, cache, value))
+                .tag("cache", cache)
+                .register(registry);
+    }
+
+    private void gauge(MeterRegistry registry, String name, String cache, ToDoubleFunction<CacheStats> value) {
+        Gauge.builder(name, productService, service -> read(service, cache, value))
+                .tag("cache", cache)
+                .register(registry);
+    }
+
+    private static double read(ProductService service, String cache, ToDoubleFunction<CacheStats> value) {
+        CacheStats stats = service.getCacheStats().get(cache);
+        return stats != null ? value.applyAsDouble(stats) : Double.NaN;
+    }
+}
@@ -0,0 +1,156 @@
+package com.productapi.service.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.function.SingletonSupplier;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Times every catalog service call
+ *
+ * Each call of a ProductService operation records into the
+ * catalog.operation timer, tagged with the operation, the implementing
+ * store and the outcome; operations that return a list also record its
+ * size into catalog.result.size. Both publish percentile histograms, so
+ * p99 can be aggregated across instances.
+ *
+ * Calls that go through a decorator are timed at each layer: with the
+ * mongo store, a lookup is recorded for NearCacheProductService and, on a
+ * miss, for MongoProductServiceImpl. Version, count, cache statistics and
+ * listener calls are not timed; the first runs on every request and the
+ * others are read by {@link CatalogMetrics}.
+ *
+ * The registry is looked up on the first call, and calls pass through
+ * untimed in contexts without one, such as web slice tests.
+ */
+@Aspect
+@Component
+public class ServiceMetricsAspect {
+
+    static final String CATALOG_TIMER = "catalog.operation";
+    static final String CATALOG_RESULT_SIZE = "catalog.result.size";
+
+    private final Supplier<MeterRegistry> registry;
+
+    // Meters of successful calls by method and implementation; registry lookups would hash the tags on every call
+    private final ConcurrentMap<Key, Meters> meters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ServiceMetricsAspect(ObjectProvider<MeterRegistry> registry) {
+        this.registry = SingletonSupplier.of(registry::getIfAvailable);
+    }
+
+    ServiceMetricsAspect(MeterRegistry registry) {
+        this.registry = () -> registry;
+    }
+
+    @Around("execution(* com.productapi.service.ProductService.*(..))"
+            + " && !execution(* com.productapi.service.ProductService.getCatalogVersion())"
+            + " && !execution(* com.productapi.service.ProductService.getProductCount())"
+            + " && !execution(* com.productapi.service.ProductService.getCacheStats())"
+            + " && !execution(* com.productapi.service.ProductService.addChangeListener(..))")
+    public Object timeCatalog(ProceedingJoinPoint call) throws Throwable {
+        if (registry.get() == null) {
+            return call.proceed();
+        }
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = call.proceed();
+        } catch (Throwable e) {
+            timer(call, "error", e.getClass().getSimpleName())
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        long elapsed = System.nanoTime() - start;
+        Meters success = meters.computeIfAbsent(new Key(((MethodSignature) call.getSignature()).getMethod(),
+                call.getTarget().getClass()), key -> register(call));
+        success.timer.record(elapsed, TimeUnit.NANOSECONDS);
+        if (success.resultSize != null && result instanceof Collection) {
+            success.resultSize.record(((Collection<?>) result).size());
+        }
+        return result;
+    }
+
+    private Meters register(ProceedingJoinPoint call) {
+        Timer timer = timer(call, "success", "none");
+        DistributionSummary resultSize = null;
+        if (Collection.class.isAssignableFrom(((MethodSignature) call.getSignature()).getReturnType())) {
+            resultSize = DistributionSummary.builder(CATALOG_RESULT_SIZE)
+                    .baseUnit("rows")
+                    .tags("operation", operation(call), "store", implementation(call))
+                    .publishPercentileHistogram()
+                    .register(registry.get());
+        }
+        return new Meters(timer, resultSize);
+    }
+
+    private Timer timer(ProceedingJoinPoint call, String outcome, String exception) {
+        // Buckets from 1 us to 30 s cover a cached lookup as well as a full Mongo scan
+        return Timer.builder(CATALOG_TIMER)
+                .tags("operation", operation(call), "store", implementation(call), "outcome", outcome, "exception", exception)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(1000))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry.get());
+    }
+
+    private static String operation(ProceedingJoinPoint call) {
+        return call.getSignature().getName();
+    }
+
+    private static String implementation(ProceedingJoinPoint call) {
+        // The target may itself be a CGLIB subclass
+        return ClassUtils.getUserClass(call.getTarget().getClass()).getSimpleName();
+    }
+
+    private static final class Meters {
+        private final Timer timer;
+        private final DistributionSummary resultSize;
+
+        private Meters(Timer timer, DistributionSummary resultSize) {
+            this.timer = timer;
+            this.resultSize = resultSize;
+        }
+    }
+
+    private static final class Key {
+        private final Method method;
+        private final Class<?> target;
+
+        private Key(Method method, Class<?> target) {
+            this.method = method;
+            this.target = target;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return method.equals(key.method) && target == key.target;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * method.hashCode() + target.hashCode();
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package com.productapi.service.persistence;
+
+import com.productapi.model.Product;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only catalog stored in a memory-mapped binary file
+ *
+ * The file holds everything needed to answer queries without loading it:
+ *
+ * <pre>
+ * header   magic, format, catalog version, product count, hash slot count, section offsets
+ * records  one fixed 20-byte record per product, in (price, barcode) order:
+ *          price, discount, availability, then offsets of barcode, item and category
+ * hash     open-addressing barcode index of (hash, record + 1) slots
+ * strings  length-prefixed UTF-8; items and categories are stored once
+ * </pre>
+ *
+ * Records are written in price order, so the record array is itself the
+ * price index: a price range is a binary search over the record prices,
+ * then one decode per product in the range. Opening a file maps it and
+ * checks the header; a barcode lookup then touches one hash slot, one
+ * record and three strings, and nothing is parsed or sorted up front.
+ * Products are decoded on each read and never kept by the file.
+ */
+public final class CatalogSnapshotFile {
+
+    private static final int MAGIC = 0x50434154; // "PCAT"
+    private static final int FORMAT = 1;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 20;
+    private static final int SLOT_SIZE = 8;
+
+    // Record layout
+    private static final int PRICE = 0;
+    private static final int DISCOUNT = 4;
+    private static final int AVAILABLE = 5;
+    private static final int BARCODE = 8;
+    private static final int ITEM = 12;
+    private static final int CATEGORY = 16;
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final long version;
+    private final int size;
+    private final int slotMask;
+    private final int recordsOffset;
+    private final int hashOffset;
+    private final int stringsOffset;
+
+    private CatalogSnapshotFile(Path path, MappedByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a catalog snapshot file: " + path);
+        }
+        if (buffer.getInt(4) != FORMAT) {
+            throw new IOException("Unsupported catalog snapshot format " + buffer.getInt(4) + ": " + path);
+        }
+        this.version = buffer.getLong(8);
+        this.size = buffer.getInt(16);
+        this.slotMask = buffer.getInt(20) - 1;
+        this.recordsOffset = (int) buffer.getLong(24);
+        this.hashOffset = (int) buffer.getLong(32);
+        this.stringsOffset = (int) buffer.getLong(40);
+        if (buffer.getLong(48) != buffer.capacity()) {
+            throw new IOException("Truncated catalog snapshot file: " + path);
+        }
+    }
+
+    /**
+     * Map a snapshot file
+     *
+     * @param path the file
+     * @return the mapped catalog
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static CatalogSnapshotFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Catalog snapshot file exceeds 2 GB: " + path);
+            }
+            // The mapping stays valid after the channel is closed
+            return new CatalogSnapshotFile(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Write a snapshot file, replacing any existing file atomically
+     *
+     * The file is written next to the target, forced to disk, then moved
+     * over it, so a crash leaves either the old file or the new one.
+     *
+     * @param path the file
+     * @param version the catalog version of the products
+     * @param byPrice every product, in (price, barcode) order
+     * @throws IOException if writing fails
+     */
+    public static void write(Path path, long version, List<Product> byPrice) throws IOException {
+        int count = byPrice.size();
+        int slots = Integer.highestOneBit(Math.max(1, count) * 2 - 1) << 1;
+        long recordsOffset = HEADER_SIZE;
+        long hashOffset = recordsOffset + (long) count * RECORD_SIZE;
+        long stringsOffset = hashOffset + (long) slots * SLOT_SIZE;
+
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // The hash section is filled in place through a mapping of the new file
+                MappedByteBuffer hash = channel.map(FileChannel.MapMode.READ_WRITE, hashOffset, (long) slots * SLOT_SIZE);
+                SectionWriter records = new SectionWriter(channel, recordsOffset);
+                SectionWriter strings = new SectionWriter(channel, stringsOffset);
+                Map<String, Integer> shared = new HashMap<>();
+                try {
+                    for (int i = 0; i < count; i++) {
+                        Product product = byPrice.get(i);
+                        records.putInt(product.getPrice());
+                        records.put(product.getDiscount().byteValue());
+                        records.put(product.getAvailable().byteValue());
+                        records.putShort((short) 0);
+                        records.putInt(strings.putString(product.getBarcode()));
+                        records.putInt(shared.computeIfAbsent(product.getItem(), strings::putString));
+                        records.putInt(shared.computeIfAbsent(product.getCategory(), strings::putString));
+                        insertSlot(hash, slots - 1, hash(product.getBarcode()), i);
+                    }
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                records.flush();
+                long end = strings.flush();
+                if (end > Integer.MAX_VALUE) {
+                    throw new IOException("Catalog snapshot exceeds 2 GB");
+                }
+                hash.force();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(FORMAT).putLong(version).putInt(count).putInt(slots)
+                        .putLong(recordsOffset).putLong(hashOffset).putLong(stringsOffset).putLong(end);
+                header.clear();
+                channel.write(header, 0);
+                channel.force(true);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Get the catalog version the file was written at
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Look up a product by barcode
+     *
+     * @param barcode the barcode
+     * @return a new Product, or null if the file has no such product
+     */
+    public Product get(String barcode) {
+        int record = find(barcode);
+        return record >= 0 ? product(record) : null;
+    }
+
+    /**
+     * Check whether the file holds a barcode
+     *
+     * @param barcode the barcode
+     * @return true if found
+     */
+    public boolean contains(String barcode) {
+        return find(barcode) >= 0;
+    }
+
+    /**
+     * Decode every product in (price, barcode) order
+     *
+     * @return unmodifiable list of new Product objects
+     */
+    public List<Product> getProducts() {
+        Product[] decoded = new Product[size];
+        for (int i = 0; i < size; i++) {
+            decoded[i] = product(i);
+        }
+        return Collections.unmodifiableList(Arrays.asList(decoded));
+    }
+
+    /**
+     * Decode the product of a record
+     *
+     * @param record the record's position in (price, barcode) order
+     * @return a new Product
+     */
+    public Product product(int record) {
+        int base = recordsOffset + record * RECORD_SIZE;
+        return new Product(string(buffer.getInt(base + BARCODE)), string(buffer.getInt(base + ITEM)),
+                string(buffer.getInt(base + CATEGORY)), buffer.getInt(base + PRICE),
+                (int) buffer.get(base + DISCOUNT), (int) buffer.get(base + AVAILABLE));
+    }
+
+    /**
+     * Read the price of a record without decoding the rest of it
+     *
+     * @param record the record's position
+     * @return the price
+     */
+    public int price(int record) {
+        return buffer.getInt(recordsOffset + record * RECORD_SIZE + PRICE);
+    }
+
+    /**
+     * Read the barcode of a record without decoding the rest of it
+     *
+     * @param record the record's position
+     * @return the barcode
+     */
+    public String barcode(int record) {
+        return string(buffer.getInt(recordsOffset + record * RECORD_SIZE + BARCODE));
+    }
+
+    /**
+     * Binary search over the record prices for the first record priced at or above a value
+     *
+     * @param price the price
+     * @return position of the first such record, or size() if none
+     */
+    public int firstIndexAtLeast(int price) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (price(mid) < price) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Binary search over the record prices for the first record priced above a value
+     *
+     * @param price the price
+     * @return position of the first such record, or size() if none
+     */
+    public int firstIndexAbove(int price) {
+        return price == Integer.MAX_VALUE ? size : firstIndexAtLeast(price + 1);
+    }
+
+    private int find(String barcode) {
+        byte[] bytes = barcode.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(barcode);
+        for (int slot = hash & slotMask; ; slot = (slot + 1) & slotMask) {
+            int position = hashOffset + slot * SLOT_SIZE;
+            int recordPlusOne = buffer.getInt(position + 4);
+            if (recordPlusOne == 0) {
+                return -1;
+            }
+            int record = recordPlusOne - 1;
+            if (buffer.getInt(position) == hash
+                    && stringEquals(buffer.getInt(recordsOffset + record * RECORD_SIZE + BARCODE), bytes)) {
+                return record;
+            }
+        }
+    }
+
+    private String string(int offset) {
+        int start = stringsOffset + offset;
+        byte[] bytes = new byte[buffer.getInt(start)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + Integer.BYTES + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean stringEquals(int offset, byte[] bytes) {
+        int start = stringsOffset + offset;
+        if (buffer.getInt(start) != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(start + Integer.BYTES + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(String barcode) {
+        int h = barcode.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static void insertSlot(ByteBuffer hash, int mask, int barcodeHash, int record) {
+        int slot = barcodeHash & mask;
+        while (hash.getInt(slot * SLOT_SIZE + 4) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        hash.putInt(slot * SLOT_SIZE, barcodeHash);
+        hash.putInt(slot * SLOT_SIZE + 4, record + 1);
+    }
+
+    /**
+     * Buffered sequential writer for one section of the file
+     */
+    private static final class SectionWriter {
+
+        private final FileChannel channel;
+        private final ByteBuffer pending = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        private final long start;
+        private long position;
+
+        SectionWriter(FileChannel channel, long start) {
+            this.channel = channel;
+            this.start = start;
+            this.position = start;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            pending.putInt(value);
+        }
+
+        void putShort(short value) throws IOException {
+            ensure(Short.BYTES);
+            pending.putShort(value);
+        }
+
+        void put(byte value) throws IOException {
+            ensure(1);
+            pending.put(value);
+        }
+
+        /**
+         * Append a length-prefixed string
+         *
+         * @param value the string
+         * @return its offset from the start of the section
+         */
+        int putString(String value) {
+            try {
+                long offset = position + pending.position() - start;
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                putInt(bytes.length);
+                for (int written = 0; written < bytes.length; ) {
+                    ensure(1);
+                    int chunk = Math.min(pending.remaining(), bytes.length - written);
+                    pending.put(bytes, written, chunk);
+                    written += chunk;
+                }
+                return (int) offset;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        long flush() throws IOException {
+            pending.flip();
+            while (pending.hasRemaining()) {
+                position += channel.write(pending, position);
+            }
+            pending.clear();
+            return position;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (pending.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,644 @@
+package com.productapi.service.persistence;
+
+import com.productapi.model.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of catalog writes, synced to disk in groups
+ *
+ * Every catalog version is one record: its version number and the products
+ * it put or deleted. Records are appended to the active segment file as the
+ * owner applies them and are synced separately by {@link #sync(long)}: the
+ * first writer to wait becomes the leader, waits for the commit window so
+ * other writers can append, and makes everything appended so far durable
+ * with a single FileChannel.force. Writers that arrive while it runs are
+ * covered by the next force, so a burst of writes costs a few syncs instead
+ * of one each.
+ *
+ * <pre>
+ * segment  wal-&lt;first version&gt;.log, a sequence of records
+ * record   payload length, CRC32 of the payload, payload
+ * payload  version, mutation count, then per mutation:
+ *          PUT barcode item category price discount available | DELETE barcode
+ * </pre>
+ *
+ * Compaction rolls the log to a new segment, saves a snapshot covering the
+ * older segments, then deletes them. A crash can leave a torn record at the
+ * end of the newest segment: one cut short, one running past the end of the
+ * file, a last record that fails its checksum, or zeros where the file was
+ * extended but never written. Recovery cuts the segment before it. A bad
+ * record with more data after it is corruption, not a crash, and recovery
+ * fails rather than drop the versions logged after it. So does any bad
+ * record in an older segment, since those were forced before the log
+ * rolled past them.
+ *
+ * A failed append is cut back off the segment. A failed force leaves the
+ * log in an unknown state, since the kernel may have dropped the dirty
+ * pages, so the log is marked failed and rejects every later append, sync
+ * and roll until the process restarts and replays what reached the disk.
+ *
+ * Appends and rolls must be serialized by the caller; sync may be called
+ * from any thread.
+ */
+public final class ProductWriteAheadLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductWriteAheadLog.class);
+
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_PAYLOAD_SIZE = 64 << 20;
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    private final Path directory;
+    private final long commitWindowNanos;
+
+    private final Object monitor = new Object();
+
+    // Active segment; replaced only by roll, while no sync is running
+    private FileChannel channel;
+    private long segmentStart;
+    private volatile long segmentBytes;
+
+    // Bytes appended and bytes known to be on disk, counted across all segments
+    private volatile long written;
+    private long durable;
+    private boolean syncing;
+
+    private volatile long appendCount;
+    private volatile long syncCount;
+
+    // Set once a write or force fails in a way that leaves the segment unknown; never cleared
+    private volatile IOException failure;
+
+    private ProductWriteAheadLog(Path directory, long commitWindowNanos) {
+        this.directory = directory;
+        this.commitWindowNanos = commitWindowNanos;
+    }
+
+    /**
+     * Open the log in a directory, creating the directory if needed
+     *
+     * Nothing can be appended until {@link #roll(long)} starts a segment,
+     * which is normally done after {@link #replay(long, Consumer)}.
+     *
+     * @param directory the directory holding the segment files
+     * @param commitWindowNanos how long a sync waits for more writers before forcing; 0 forces at once
+     * @return the log
+     * @throws IOException if the directory cannot be created
+     */
+    public static ProductWriteAheadLog open(Path directory, long commitWindowNanos) throws IOException {
+        Files.createDirectories(directory);
+        return new ProductWriteAheadLog(directory, Math.max(0, commitWindowNanos));
+    }
+
+    /**
+     * Read every record after a version, oldest first
+     *
+     * The log ends at a torn record at the end of the newest segment, and the
+     * segment is cut before it.
+     *
+     * @param afterVersion records up to this version are skipped, e.g. the version of a loaded snapshot
+     * @param apply called with each record
+     * @return number of records passed to apply
+     * @throws IOException if a segment cannot be read, holds a bad record followed by more data, or is
+     *         not the newest and ends with a torn record
+     */
+    public int replay(long afterVersion, Consumer<Entry> apply) throws IOException {
+        List<Path> segments = segments();
+        int replayed = 0;
+        for (int s = 0; s < segments.size(); s++) {
+            Path segment = segments.get(s);
+            long segmentSize = Files.size(segment);
+            long validBytes = 0;
+            boolean torn = false;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+                while (true) {
+                    Entry entry;
+                    try {
+                        entry = readRecord(in, segmentSize - validBytes);
+                    } catch (EOFException e) {
+                        torn = true;
+                        break;
+                    } catch (IOException e) {
+                        throw new IOException("Write-ahead log segment " + segment + " is corrupt at " + validBytes
+                                + " bytes, with more records after it", e);
+                    }
+                    if (entry == null) {
+                        break;
+                    }
+                    validBytes += RECORD_HEADER_SIZE + entry.size;
+                    if (entry.getVersion() > afterVersion) {
+                        apply.accept(entry);
+                        replayed++;
+                    }
+                }
+            }
+            if (torn) {
+                if (s < segments.size() - 1) {
+                    throw new IOException("Write-ahead log segment " + segment + " is corrupt at " + validBytes
+                            + " bytes and is followed by " + (segments.size() - 1 - s) + " newer segments");
+                }
+                cutAfterTornRecord(segment, validBytes);
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Close the active segment and start a new one
+     *
+     * Everything appended so far is forced to disk first, so only the newest
+     * segment can ever hold a torn record.
+     *
+     * @param nextVersion version of the next record to be appended, which names the segment
+     * @throws IOException if the old segment cannot be synced or the new one created, or the log has failed
+     */
+    public void roll(long nextVersion) throws IOException {
+        synchronized (monitor) {
+            // Keep leaders off the channel while it is swapped
+            while (syncing) {
+                awaitSync();
+            }
+            checkNotFailed();
+            if (channel != null) {
+                force();
+                channel.close();
+                durable = written;
+            }
+            Path segment = directory.resolve(segmentName(nextVersion));
+            channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            segmentStart = nextVersion;
+            segmentBytes = 0;
+            syncDirectory();
+            monitor.notifyAll();
+        }
+    }
+
+    /**
+     * Append a record to the active segment without waiting for the disk
+     *
+     * The record reaches the operating system before this returns, so it
+     * survives a crash of the process but not of the machine until synced.
+     * If the write fails, whatever part of the record was written is cut off
+     * again; if even that fails, the log is marked failed.
+     *
+     * @param version the catalog version the mutations produce
+     * @param mutations the products put or deleted, in order
+     * @return log position to pass to {@link #sync(long)}
+     * @throws IOException if the record cannot be written, or the log has failed
+     */
+    public long append(long version, List<Mutation> mutations) throws IOException {
+        if (channel == null) {
+            throw new IllegalStateException("Write-ahead log has no active segment");
+        }
+        checkNotFailed();
+        ByteBuffer record = encode(version, mutations);
+        int length = record.remaining();
+        long start = segmentBytes;
+        try {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        } catch (IOException e) {
+            undoAppend(start, e);
+            throw e;
+        }
+        segmentBytes += length;
+        appendCount++;
+        written += length;
+        return written;
+    }
+
+    /**
+     * Wait until the log is durable up to a position
+     *
+     * @param position a position returned by append
+     * @throws IOException if forcing the segment fails, now or in a sync this one waited for
+     */
+    public void sync(long position) throws IOException {
+        synchronized (monitor) {
+            while (durable < position && syncing) {
+                awaitSync();
+            }
+            if (durable >= position) {
+                return;
+            }
+            checkNotFailed();
+            syncing = true;
+        }
+        long target = 0;
+        boolean synced = false;
+        try {
+            // Leader: give concurrent writers the window to append, then force once for all of them
+            if (commitWindowNanos > 0) {
+                LockSupport.parkNanos(commitWindowNanos);
+            }
+            target = written;
+            force();
+            syncCount++;
+            synced = true;
+        } finally {
+            synchronized (monitor) {
+                if (synced) {
+                    durable = Math.max(durable, target);
+                }
+                syncing = false;
+                monitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Delete the segments that hold only records before a version
+     *
+     * @param version first version that must stay in the log
+     * @return number of segments deleted
+     * @throws IOException if a segment cannot be deleted
+     */
+    public int deleteSegmentsBefore(long version) throws IOException {
+        int deleted = 0;
+        for (Path segment : segments()) {
+            long start = segmentStart(segment);
+            if (start < version && start != segmentStart) {
+                Files.deleteIfExists(segment);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Get the bytes appended to the active segment
+     *
+     * @return size of the active segment
+     */
+    public long getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    /**
+     * Get the number of records appended since the log was opened
+     *
+     * @return appended records
+     */
+    public long getAppendCount() {
+        return appendCount;
+    }
+
+    /**
+     * Get the number of forces since the log was opened
+     *
+     * @return forces; with concurrent writers, fewer than the records appended
+     */
+    public long getSyncCount() {
+        return syncCount;
+    }
+
+    /**
+     * Get the position up to which the log is known to be on disk
+     *
+     * @return the durable position, comparable with those returned by append
+     */
+    public long getDurablePosition() {
+        synchronized (monitor) {
+            return durable;
+        }
+    }
+
+    /**
+     * Tell whether a failed write or force has stopped the log
+     *
+     * @return true once the log rejects appends
+     */
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (monitor) {
+            while (syncing) {
+                awaitSync();
+            }
+            if (channel != null) {
+                try {
+                    if (failure == null) {
+                        channel.force(false);
+                        durable = written;
+                    }
+                } finally {
+                    channel.close();
+                    channel = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Force the active segment, failing the log if the force fails
+     */
+    private void force() throws IOException {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            // The kernel may have dropped the pages it could not write; a retry would report them durable
+            fail(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Cut a partly written record off the active segment, failing the log if that is not possible
+     *
+     * @param start segment size before the record
+     * @param cause the write failure
+     */
+    private void undoAppend(long start, IOException cause) {
+        try {
+            channel.truncate(start);
+            channel.position(start);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            fail(cause);
+        }
+    }
+
+    private void fail(IOException cause) {
+        if (failure == null) {
+            failure = cause;
+            log.error("Write-ahead log {} failed; rejecting further writes", directory, cause);
+        }
+    }
+
+    private void checkNotFailed() throws IOException {
+        IOException cause = failure;
+        if (cause != null) {
+            throw new IOException("Write-ahead log " + directory + " has failed", cause);
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                segments.add(file);
+            }
+        }
+        // Names are zero-padded, so name order is version order
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static String segmentName(long version) {
+        return String.format("%s%019d%s", PREFIX, version, SUFFIX);
+    }
+
+    private static long segmentStart(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private void cutAfterTornRecord(Path segment, long validBytes) throws IOException {
+        log.warn("Write-ahead log segment {} ends with a torn record; cutting it at {} bytes", segment, validBytes);
+        try (FileChannel torn = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            torn.truncate(validBytes);
+            torn.force(true);
+        }
+    }
+
+    /**
+     * Force the directory so newly created segments survive a crash; not supported everywhere
+     */
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            log.debug("Could not sync directory {}", directory, e);
+        }
+    }
+
+    private void awaitSync() throws InterruptedIOException {
+        try {
+            monitor.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the write-ahead log");
+        }
+    }
+
+    private static ByteBuffer encode(long version, List<Mutation> mutations) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * (mutations.size() + 1));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeLong(version);
+        out.writeInt(mutations.size());
+        for (Mutation mutation : mutations) {
+            Product product = mutation.getProduct();
+            if (product == null) {
+                out.writeByte(DELETE);
+                writeString(out, mutation.getBarcode());
+            } else {
+                out.writeByte(PUT);
+                writeString(out, product.getBarcode());
+                writeString(out, product.getItem());
+                writeString(out, product.getCategory());
+                out.writeInt(product.getPrice());
+                out.writeByte(product.getDiscount());
+                out.writeByte(product.getAvailable());
+            }
+        }
+        out.flush();
+
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        int payloadSize = record.capacity() - RECORD_HEADER_SIZE;
+        if (payloadSize > MAX_PAYLOAD_SIZE) {
+            throw new IOException("Write-ahead log record exceeds " + MAX_PAYLOAD_SIZE + " bytes");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER_SIZE, payloadSize);
+        record.putInt(0, payloadSize);
+        record.putInt(4, (int) crc.getValue());
+        return record;
+    }
+
+    /**
+     * Read the next record
+     *
+     * @param remaining bytes left in the segment, from the start of the record
+     * @return the record, or null at the clean end of the segment
+     * @throws EOFException if the record is torn: cut short, running past the end, the last one and
+     *         failing its checksum, or zeros to the end of the segment
+     * @throws IOException if the record is bad and more data follows it
+     */
+    private static Entry readRecord(DataInputStream in, long remaining) throws IOException {
+        if (remaining == 0) {
+            return null;
+        }
+        if (remaining < RECORD_HEADER_SIZE) {
+            throw new EOFException("Record header cut short");
+        }
+        int size = in.readInt();
+        int checksum = in.readInt();
+        long left = remaining - RECORD_HEADER_SIZE;
+        if (size < Long.BYTES + Integer.BYTES || size > MAX_PAYLOAD_SIZE) {
+            if (size == 0 && checksum == 0 && zerosToEnd(in, left)) {
+                throw new EOFException("Segment ends with unwritten space");
+            }
+            throw new IOException("Invalid record size " + size);
+        }
+        if (size > left) {
+            throw new EOFException("Record runs past the end of the segment");
+        }
+        byte[] payload = new byte[size];
+        in.readFully(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, size);
+        if ((int) crc.getValue() != checksum) {
+            if (size == left) {
+                throw new EOFException("Last record fails its checksum");
+            }
+            throw new IOException("Record checksum mismatch");
+        }
+
+        DataInputStream fields = new DataInputStream(new ByteArrayInputStream(payload));
+        long version;
+        List<Mutation> mutations;
+        // The checksum matched, so a payload that ends early was written that way, not torn
+        try {
+            version = fields.readLong();
+            int count = fields.readInt();
+            mutations = new ArrayList<>(Math.min(count, 1024));
+            for (int i = 0; i < count; i++) {
+                byte type = fields.readByte();
+                if (type == DELETE) {
+                    mutations.add(Mutation.delete(readString(fields)));
+                } else if (type == PUT) {
+                    mutations.add(Mutation.put(new Product(readString(fields), readString(fields), readString(fields),
+                            fields.readInt(), (int) fields.readByte(), (int) fields.readByte())));
+                } else {
+                    throw new IOException("Unknown mutation type " + type);
+                }
+            }
+        } catch (EOFException e) {
+            throw new IOException("Malformed record payload", e);
+        }
+        return new Entry(version, Collections.unmodifiableList(mutations), size);
+    }
+
+    /**
+     * Check that the rest of the segment is zeros, consuming it
+     */
+    private static boolean zerosToEnd(DataInputStream in, long bytes) throws IOException {
+        for (long i = 0; i < bytes; i++) {
+            if (in.readByte() != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_PAYLOAD_SIZE) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * One logged catalog version
+     */
+    public static final class Entry {
+
+        private final long version;
+        private final List<Mutation> mutations;
+        private final int size;
+
+        private Entry(long version, List<Mutation> mutations, int size) {
+            this.version = version;
+            this.mutations = mutations;
+            this.size = size;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public List<Mutation> getMutations() {
+            return mutations;
+        }
+    }
+
+    /**
+     * A product put into the catalog, or a barcode deleted from it
+     */
+    public static final class Mutation {
+
+        private final String barcode;
+        private final Product product;
+
+        private Mutation(String barcode, Product product) {
+            this.barcode = barcode;
+            this.product = product;
+        }
+
+        public static Mutation put(Product product) {
+            return new Mutation(product.getBarcode(), product);
+        }
+
+        public static Mutation delete(String barcode) {
+            return new Mutation(barcode, null);
+        }
+
+        public String getBarcode() {
+            return barcode;
+        }
+
+        /**
+         * Get the product put by this mutation
+         *
+         * @return the product, or null for a delete
+         */
+        public Product getProduct() {
+            return product;
+        }
+    }
+}
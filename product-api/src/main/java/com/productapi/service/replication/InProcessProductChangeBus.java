@@ -0,0 +1,37 @@
+package com.productapi.service.replication;
+
+import com.productapi.model.ProductChangeEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Change bus that delivers events to subscribers in the same JVM
+ *
+ * Delivery is synchronous, on the publishing thread, so a single instance
+ * only ever talks to itself; tests share one bus between several replicas
+ * to stand in for the broker.
+ *
+ * Active with app.catalog.replication.bus=local, the default.
+ */
+@Component
+@ConditionalOnProperty(name = "app.catalog.replication.bus", havingValue = "local", matchIfMissing = true)
+public class InProcessProductChangeBus implements ProductChangeBus {
+
+    private final List<Consumer<ProductChangeEvent>> subscribers = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(ProductChangeEvent event) {
+        for (Consumer<ProductChangeEvent> subscriber : subscribers) {
+            subscriber.accept(event);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<ProductChangeEvent> subscriber) {
+        subscribers.add(subscriber);
+    }
+}
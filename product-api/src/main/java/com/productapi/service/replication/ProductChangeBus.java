@@ -0,0 +1,29 @@
+package com.productapi.service.replication;
+
+import com.productapi.model.ProductChangeEvent;
+
+import java.util.function.Consumer;
+
+/**
+ * Transport that carries product change events between catalog replicas
+ *
+ * Every subscriber, including the publisher's own, receives every event.
+ * Events from one publisher arrive in the order they were published, but
+ * may be lost or delivered twice; receivers use the event sequence to tell.
+ */
+public interface ProductChangeBus {
+
+    /**
+     * Send an event to every replica
+     *
+     * @param event the event
+     */
+    void publish(ProductChangeEvent event);
+
+    /**
+     * Receive the events published by every replica
+     *
+     * @param subscriber called once per delivered event
+     */
+    void subscribe(Consumer<ProductChangeEvent> subscriber);
+}
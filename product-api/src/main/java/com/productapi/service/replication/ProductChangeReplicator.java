@@ -0,0 +1,760 @@
+package com.productapi.service.replication;
+
+import com.productapi.model.Product;
+import com.productapi.model.ProductChange;
+import com.productapi.model.ProductChangeEvent;
+import com.productapi.model.ReplicatedProduct;
+import com.productapi.service.NearCacheProductService;
+import com.productapi.service.PriceKey;
+import com.productapi.service.ProductChangeListener;
+import com.productapi.service.ProductService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * Keeps catalog replicas in step by exchanging their writes
+ *
+ * Every write applied to the local store is published on the
+ * {@link ProductChangeBus} as a {@link ProductChangeEvent} tagged with this
+ * replica's origin and the next number in its sequence. Events from peers
+ * are applied to the local store: puts go through upsertAll and deletes
+ * through deleteProduct, so indexes and caches are maintained exactly as
+ * for local writes. Writes applied this way are not published again.
+ *
+ * Concurrent writes to one barcode on two replicas are settled last writer
+ * wins, on the event's (timestamp, origin). Each replica remembers the
+ * stamp of the write that last set every barcode, deletes included, and
+ * skips peer changes older than it, so all replicas keep the same write
+ * whatever order the events arrive in. A local write is stamped later than
+ * any write it replaced, even one from a peer whose clock runs ahead. A
+ * local write that lands between a peer change being accepted and being
+ * applied is put back after it. The stamps cover every barcode written
+ * since the replica started. Delete stamps are dropped once they are
+ * app.catalog.replication.tombstone-ttl-ms old, by when every peer has long
+ * applied the delete; a write older than that arriving later would bring
+ * the product back.
+ *
+ * A product not written since the replica started holds its base copy,
+ * from sample data or a snapshot. Base copies are stamped with minus the
+ * replica's start time, so any write beats them and, between two replicas,
+ * the copy of the one running longer wins.
+ *
+ * With the mongo store every replica already shares the data, so peer
+ * events only invalidate the changed barcodes in the near cache.
+ *
+ * Sequences are tracked per origin. An event that skips ahead means events
+ * were lost: the gap is logged and counted. In invalidate mode the whole
+ * near cache is dropped; otherwise the replica asks the origin to resend
+ * its catalog, with the stamp of every barcode, and merges it in by the
+ * same rule. The first event from an origin is handled the same way, so a
+ * new or restarted replica takes in the writes made before it joined.
+ * Events at or below the last sequence seen are redeliveries and are
+ * ignored.
+ *
+ * The catalog is resent in pages of app.catalog.replication.resync-page-size
+ * products, so no message grows with the catalog: first the products not
+ * written since the origin started, in (price, barcode) order, then every
+ * stamped barcode. The pages carry the id of the request and a page number.
+ * Each page is merged as it arrives; after the last one, products the
+ * origin did not list are deleted by the same rule. A missing page, or a
+ * reply that stops coming, makes the replica ask again.
+ *
+ * Active with app.catalog.replication.enabled=true.
+ */
+@Component
+@ConditionalOnProperty(name = "app.catalog.replication.enabled", havingValue = "true")
+public class ProductChangeReplicator implements ProductChangeListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductChangeReplicator.class);
+
+    private static final int DEFAULT_RESYNC_PAGE_SIZE = 500;
+    private static final long DEFAULT_TOMBSTONE_TTL_MILLIS = 3600000;
+
+    // A resync that made no progress for this long is asked for again
+    private static final long RESYNC_TIMEOUT_MILLIS = 60000;
+
+    private final ProductService productService;
+    private final ProductChangeBus bus;
+    private final Executor publisher;
+    private final LongSupplier clock;
+    private final String origin = UUID.randomUUID().toString();
+
+    // Stamp time of products not written since start; below every write, higher the earlier the replica started
+    private final long baseTimestamp;
+
+    private int resyncPageSize = DEFAULT_RESYNC_PAGE_SIZE;
+    private long tombstoneTtlMillis = DEFAULT_TOMBSTONE_TTL_MILLIS;
+
+    // Peers share the data through the store, so their events only invalidate cached barcodes
+    private final boolean invalidateOnly;
+
+    // Set while peer changes are applied, so they are not published back
+    private final ThreadLocal<Boolean> applying = ThreadLocal.withInitial(() -> false);
+
+    // Separate monitors: a receiver holds its own while waiting for the store lock a local writer holds
+    private final Object sendLock = new Object();
+    private final Object receiveLock = new Object();
+
+    // Guarded by sendLock
+    private long sequence;
+
+    // Guarded by receiveLock
+    private final Map<String, Long> lastSequences = new HashMap<>();
+
+    // Catalogs asked for and not yet complete, by the origin asked; guarded by receiveLock
+    private final Map<String, Resync> pendingResyncs = new HashMap<>();
+
+    // Write that last set each barcode; replaced only by a newer one
+    private final Map<String, Stamp> stamps = new ConcurrentHashMap<>();
+
+    // Delete stamps in the order they were set, to be dropped after the TTL
+    private final Queue<Tombstone> tombstones = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder gaps = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder superseded = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+    private final LongAdder pruned = new LongAdder();
+
+    @Autowired
+    public ProductChangeReplicator(ProductService productService, ProductChangeBus bus) {
+        this(productService, bus, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-replication-publisher");
+            thread.setDaemon(true);
+            return thread;
+        }), System::currentTimeMillis);
+    }
+
+    ProductChangeReplicator(ProductService productService, ProductChangeBus bus, Executor publisher, LongSupplier clock) {
+        this.productService = productService;
+        this.bus = bus;
+        this.publisher = publisher;
+        this.clock = clock;
+        this.invalidateOnly = productService instanceof NearCacheProductService;
+        // One below minus the start time, so a clock starting at 0 still stamps writes above it
+        this.baseTimestamp = -1 - clock.getAsLong();
+    }
+
+    /**
+     * Set how many products each page of a resent catalog holds
+     *
+     * @param pageSize products per page
+     */
+    @Value("${app.catalog.replication.resync-page-size:" + DEFAULT_RESYNC_PAGE_SIZE + "}")
+    public void setResyncPageSize(int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Resync page size must be positive");
+        }
+        this.resyncPageSize = pageSize;
+    }
+
+    /**
+     * Set how long the stamp of a delete is kept
+     *
+     * A peer write older than the delete that arrives after it is dropped
+     * would bring the product back, so the TTL must exceed any delivery delay.
+     *
+     * @param ttlMillis time to keep delete stamps, in milliseconds
+     */
+    @Value("${app.catalog.replication.tombstone-ttl-ms:" + DEFAULT_TOMBSTONE_TTL_MILLIS + "}")
+    public void setTombstoneTtlMillis(long ttlMillis) {
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("Tombstone TTL must be positive");
+        }
+        this.tombstoneTtlMillis = ttlMillis;
+    }
+
+    /**
+     * Start listening to local writes and to peers
+     */
+    @PostConstruct
+    public void start() {
+        bus.subscribe(this::receive);
+        productService.addChangeListener(this);
+        log.info("Catalog replication started as {}", origin);
+    }
+
+    /**
+     * Publish the events still queued
+     */
+    @PreDestroy
+    public void stop() {
+        if (publisher instanceof ExecutorService) {
+            ExecutorService executor = (ExecutorService) publisher;
+            executor.shutdown();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void onChange(long catalogVersion, List<ProductChange> changes) {
+        if (applying.get()) {
+            return;
+        }
+        pruneTombstones();
+        ProductChangeEvent event;
+        synchronized (sendLock) {
+            long timestamp = invalidateOnly ? clock.getAsLong() : stamp(changes);
+            // Number and queue together, so events leave in sequence order
+            event = new ProductChangeEvent(origin, ++sequence, catalogVersion, timestamp, changes);
+            publisher.execute(() -> publish(event));
+        }
+    }
+
+    /**
+     * Record a local write as the newest write to each barcode it changed
+     *
+     * Runs under the store's write lock, after the write was applied, so it
+     * must win: it is stamped later than whatever the barcodes held,
+     * including a peer change accepted meanwhile; applyClaims then puts the
+     * local write back over it.
+     *
+     * @param changes the products the write changed
+     * @return the write's timestamp
+     */
+    private long stamp(List<ProductChange> changes) {
+        long timestamp = clock.getAsLong();
+        while (true) {
+            for (ProductChange change : changes) {
+                Stamp current = stamps.get(change.getBarcode());
+                if (current != null && current.timestamp >= timestamp) {
+                    timestamp = current.timestamp + 1;
+                }
+            }
+            boolean won = true;
+            for (ProductChange change : changes) {
+                Stamp ours = new Stamp(timestamp, origin, change.getProduct());
+                if (stamps.merge(change.getBarcode(), ours, Stamp::newer) != ours) {
+                    // A peer change was accepted since the read; stamp past it
+                    won = false;
+                    break;
+                }
+                remember(change.getBarcode(), ours);
+            }
+            if (won) {
+                return timestamp;
+            }
+        }
+    }
+
+    /**
+     * Apply an event delivered by the bus
+     *
+     * @param event the event, possibly this replica's own
+     */
+    void receive(ProductChangeEvent event) {
+        if (origin.equals(event.getOrigin())) {
+            return;
+        }
+        if (event.getResyncOrigin() != null) {
+            if (origin.equals(event.getResyncOrigin())) {
+                execute(() -> sendCatalog(event.getResyncId()));
+            }
+            return;
+        }
+        pruneTombstones();
+        synchronized (receiveLock) {
+            if (event.getCatalog() != null) {
+                receiveCatalog(event);
+            } else {
+                receivePeer(event);
+            }
+        }
+    }
+
+    private void receivePeer(ProductChangeEvent event) {
+        Long last = lastSequences.get(event.getOrigin());
+        if (last != null && event.getSequence() <= last) {
+            duplicates.increment();
+            return;
+        }
+        boolean gap = last != null && event.getSequence() > last + 1;
+        if (gap) {
+            gaps.increment();
+            log.warn("Missed {} product change events from {}", event.getSequence() - last - 1, event.getOrigin());
+        } else if (last == null) {
+            log.info("First product change event from {}", event.getOrigin());
+        }
+        lastSequences.put(event.getOrigin(), event.getSequence());
+
+        if (invalidateOnly) {
+            NearCacheProductService nearCache = (NearCacheProductService) productService;
+            // The data is shared, so only cached writes from before the first event seen can be missing
+            if (gap || last == null && event.getSequence() > 1) {
+                nearCache.invalidateAll();
+            }
+            for (ProductChange change : event.getChanges()) {
+                nearCache.invalidate(change.getBarcode());
+            }
+        } else {
+            Map<String, Stamp> claims = new LinkedHashMap<>();
+            for (ProductChange change : event.getChanges()) {
+                Stamp stamp = new Stamp(event.getTimestamp(), event.getOrigin(), change.getProduct());
+                if (!claim(change.getBarcode(), stamp, claims)) {
+                    superseded.increment();
+                }
+            }
+            applyClaims(claims);
+            Resync pending = pendingResyncs.get(event.getOrigin());
+            if (gap || last == null) {
+                // Ask for the origin's catalog; the changes in between, or before it was seen, are otherwise lost for good
+                requestCatalog(event.getOrigin());
+            } else if (pending != null && clock.getAsLong() - pending.updatedAt > RESYNC_TIMEOUT_MILLIS) {
+                log.warn("The catalog of {} stopped after {} pages; asking again", event.getOrigin(), pending.nextPage);
+                requestCatalog(event.getOrigin());
+            }
+        }
+        applied.increment();
+    }
+
+    /**
+     * Ask an origin to resend its catalog, replacing any resync of it still in progress
+     *
+     * @param peer the origin asked
+     */
+    private void requestCatalog(String peer) {
+        Resync resync = new Resync(UUID.randomUUID().toString(), clock.getAsLong());
+        pendingResyncs.put(peer, resync);
+        ProductChangeEvent request = new ProductChangeEvent(origin, 0, productService.getCatalogVersion(),
+                clock.getAsLong(), Collections.emptyList(), peer, resync.id, 0, false, null);
+        execute(() -> publish(request));
+    }
+
+    /**
+     * Merge in a page of the catalog an origin resent
+     *
+     * Pages of a resync this replica did not ask for, or has asked for
+     * again since, are ignored. After the last page, products the origin did
+     * not list are deleted here, unless written since this replica started
+     * or this replica started first.
+     *
+     * @param reply the page
+     */
+    private void receiveCatalog(ProductChangeEvent reply) {
+        Resync resync = pendingResyncs.get(reply.getOrigin());
+        if (resync == null || !resync.id.equals(reply.getResyncId())) {
+            return;
+        }
+        if (reply.getResyncPage() != resync.nextPage) {
+            log.warn("Missed page {} of the catalog of {}; asking again", resync.nextPage, reply.getOrigin());
+            requestCatalog(reply.getOrigin());
+            return;
+        }
+        resync.nextPage++;
+        resync.updatedAt = clock.getAsLong();
+
+        Map<String, Stamp> claims = new LinkedHashMap<>();
+        for (ReplicatedProduct entry : reply.getCatalog()) {
+            resync.listed.add(entry.getBarcode());
+            if (claim(entry.getBarcode(), new Stamp(entry.getTimestamp(), entry.getOrigin(), entry.getProduct()), claims)
+                    && Objects.equals(entry.getProduct(), productService.getProductByBarcode(entry.getBarcode()))) {
+                // Most of the catalog matches already; only the stamp is news
+                claims.remove(entry.getBarcode());
+            }
+        }
+        applyClaims(claims);
+        resync.changed += claims.size();
+        if (!reply.isResyncComplete()) {
+            return;
+        }
+
+        // The reply's timestamp is the origin's base stamp, which decides over products only one replica has
+        Stamp unlisted = new Stamp(reply.getTimestamp(), reply.getOrigin(), null);
+        forEachPage(products -> {
+            Map<String, Stamp> deletes = new LinkedHashMap<>();
+            for (Product product : products) {
+                if (!resync.listed.contains(product.getBarcode())) {
+                    claim(product.getBarcode(), unlisted, deletes);
+                }
+            }
+            applyClaims(deletes);
+            resync.changed += deletes.size();
+            return true;
+        });
+        pendingResyncs.remove(reply.getOrigin());
+        resyncs.increment();
+        log.info("Merged the catalog of {} in {} pages: {} barcodes listed, {} changed here", reply.getOrigin(),
+                resync.nextPage, resync.listed.size(), resync.changed);
+    }
+
+    /**
+     * Publish this replica's catalog in pages for a peer that asked; runs on the publisher
+     *
+     * Gives up at the first page that fails to publish; the peer asks again.
+     *
+     * @param resyncId the id of the request
+     */
+    private void sendCatalog(String resyncId) {
+        ReplyPages pages = new ReplyPages(resyncId);
+        // Products not written since start; any written meanwhile are stamped, so the second pass sends them
+        boolean sent = forEachPage(products -> {
+            for (Product product : products) {
+                if (!stamps.containsKey(product.getBarcode())
+                        && !pages.add(new ReplicatedProduct(product.getBarcode(), product, baseTimestamp, origin))) {
+                    return false;
+                }
+            }
+            return true;
+        });
+        if (!sent) {
+            return;
+        }
+        for (Map.Entry<String, Stamp> entry : stamps.entrySet()) {
+            Stamp stamp = entry.getValue();
+            if (!pages.add(new ReplicatedProduct(entry.getKey(), stamp.product, stamp.timestamp, stamp.origin))) {
+                return;
+            }
+        }
+        pages.finish();
+    }
+
+    /**
+     * Visit the local catalog a page at a time, in (price, barcode) order
+     *
+     * Pages are read by key, so products written in between neither shift
+     * the pages nor stop the walk.
+     *
+     * @param visitor called with each page; returns false to stop
+     * @return whether every page was visited
+     */
+    private boolean forEachPage(Predicate<List<Product>> visitor) {
+        PriceKey after = null;
+        List<Product> products;
+        do {
+            products = productService.filterByPriceRangeAfter(0, Integer.MAX_VALUE, after, resyncPageSize);
+            if (products.isEmpty() || !visitor.test(products)) {
+                return products.isEmpty();
+            }
+            Product last = products.get(products.size() - 1);
+            after = new PriceKey(last.getPrice(), last.getBarcode());
+        } while (products.size() == resyncPageSize);
+        return true;
+    }
+
+    /**
+     * Accept a peer change to a barcode unless a newer write already set it
+     *
+     * @param barcode the barcode
+     * @param stamp the peer change
+     * @param claims accepted changes, to be applied
+     * @return whether the change was accepted
+     */
+    private boolean claim(String barcode, Stamp stamp, Map<String, Stamp> claims) {
+        // An unstamped barcode holds this replica's base copy, which only the base of a replica started earlier beats
+        if (!stamps.containsKey(barcode) && Stamp.newer(new Stamp(baseTimestamp, origin, null), stamp) != stamp) {
+            return false;
+        }
+        if (stamps.merge(barcode, stamp, Stamp::newer) != stamp) {
+            return false;
+        }
+        remember(barcode, stamp);
+        claims.put(barcode, stamp);
+        return true;
+    }
+
+    /**
+     * Queue the stamp of a delete to be dropped after the TTL
+     *
+     * @param barcode the barcode
+     * @param stamp the stamp just set for it
+     */
+    private void remember(String barcode, Stamp stamp) {
+        if (stamp.product == null) {
+            tombstones.add(new Tombstone(barcode, stamp, clock.getAsLong() + tombstoneTtlMillis));
+        }
+    }
+
+    /**
+     * Drop the delete stamps older than the TTL, unless a later write replaced them
+     */
+    private void pruneTombstones() {
+        long now = clock.getAsLong();
+        Tombstone oldest;
+        while ((oldest = tombstones.peek()) != null && oldest.expiresAt <= now) {
+            if (tombstones.remove(oldest) && stamps.remove(oldest.barcode, oldest.stamp)) {
+                pruned.increment();
+            }
+        }
+    }
+
+    /**
+     * Get this replica's origin, as found on the events it publishes
+     *
+     * @return the origin
+     */
+    public String getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Get the number of events sent to the bus
+     *
+     * @return published events
+     */
+    public long getPublished() {
+        return published.sum();
+    }
+
+    /**
+     * Get the number of peer events applied
+     *
+     * @return applied events
+     */
+    public long getApplied() {
+        return applied.sum();
+    }
+
+    /**
+     * Get the number of times events from a peer went missing
+     *
+     * @return detected gaps
+     */
+    public long getGaps() {
+        return gaps.sum();
+    }
+
+    /**
+     * Get the number of redelivered events that were ignored
+     *
+     * @return duplicate events
+     */
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    /**
+     * Get the number of peer changes skipped because a newer write already set the barcode
+     *
+     * @return superseded changes
+     */
+    public long getSuperseded() {
+        return superseded.sum();
+    }
+
+    /**
+     * Get the number of catalogs merged in after a gap or from a newly seen origin
+     *
+     * @return completed resyncs
+     */
+    public long getResyncs() {
+        return resyncs.sum();
+    }
+
+    /**
+     * Get the number of delete stamps dropped after the TTL
+     *
+     * @return pruned tombstones
+     */
+    public long getPrunedTombstones() {
+        return pruned.sum();
+    }
+
+    /**
+     * Send an event to the peers; write events are counted as published
+     *
+     * @param event the event
+     * @return whether the bus took it
+     */
+    private boolean publish(ProductChangeEvent event) {
+        try {
+            bus.publish(event);
+            if (event.getSequence() > 0) {
+                published.increment();
+            }
+            return true;
+        } catch (RuntimeException e) {
+            // Peers will see the gap in the sequence, or the missing page of a resync
+            log.error("Failed to publish product change event {}", event.getSequence(), e);
+            return false;
+        }
+    }
+
+    private void execute(Runnable task) {
+        try {
+            publisher.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.warn("Replication is stopping; dropping a resync");
+        }
+    }
+
+    /**
+     * Apply accepted peer changes, then put back local writes that landed in between
+     *
+     * @param claims the accepted changes by barcode
+     */
+    private void applyClaims(Map<String, Stamp> claims) {
+        applying.set(true);
+        try {
+            // Runs of puts go through one bulk upsert; deletes apply one at a time, in order
+            List<Product> puts = new ArrayList<>();
+            for (Map.Entry<String, Stamp> claim : claims.entrySet()) {
+                if (claim.getValue().product == null) {
+                    flush(puts);
+                    productService.deleteProduct(claim.getKey());
+                } else {
+                    puts.add(claim.getValue().product);
+                }
+            }
+            flush(puts);
+
+            // A newer stamp means a local write landed after the claim, possibly before the apply overwrote it
+            for (Map.Entry<String, Stamp> claim : claims.entrySet()) {
+                Stamp written = claim.getValue();
+                Stamp current;
+                while ((current = stamps.get(claim.getKey())) != written) {
+                    if (current.product == null) {
+                        productService.deleteProduct(claim.getKey());
+                    } else {
+                        productService.upsertAll(Collections.singletonList(current.product));
+                    }
+                    written = current;
+                }
+            }
+        } finally {
+            applying.set(false);
+        }
+    }
+
+    private void flush(List<Product> puts) {
+        if (!puts.isEmpty()) {
+            productService.upsertAll(puts);
+            puts.clear();
+        }
+    }
+
+    /**
+     * The pages of one resync reply, published as they fill
+     */
+    private final class ReplyPages {
+
+        private final String resyncId;
+        private final long version = productService.getCatalogVersion();
+        private List<ReplicatedProduct> entries = new ArrayList<>();
+        private int page;
+
+        ReplyPages(String resyncId) {
+            this.resyncId = resyncId;
+        }
+
+        /**
+         * Add an entry, publishing the page once it is full
+         *
+         * @return whether the page, if published, reached the bus
+         */
+        boolean add(ReplicatedProduct entry) {
+            entries.add(entry);
+            return entries.size() < resyncPageSize || send(false);
+        }
+
+        /**
+         * Publish the last page, possibly empty
+         */
+        void finish() {
+            send(true);
+        }
+
+        private boolean send(boolean complete) {
+            // The timestamp carries this replica's base stamp, for the products it does not list
+            ProductChangeEvent reply = new ProductChangeEvent(origin, 0, version, baseTimestamp,
+                    Collections.emptyList(), null, resyncId, page++, complete, entries);
+            entries = new ArrayList<>();
+            return publish(reply);
+        }
+    }
+
+    /**
+     * Progress of a catalog this replica asked a peer for
+     */
+    private static final class Resync {
+
+        final String id;
+        final Set<String> listed = new HashSet<>();
+        int nextPage;
+        int changed;
+        long updatedAt;
+
+        Resync(String id, long requestedAt) {
+            this.id = id;
+            this.updatedAt = requestedAt;
+        }
+    }
+
+    /**
+     * The stamp of a delete, with the time it may be dropped
+     */
+    private static final class Tombstone {
+
+        final String barcode;
+        final Stamp stamp;
+        final long expiresAt;
+
+        Tombstone(String barcode, Stamp stamp, long expiresAt) {
+            this.barcode = barcode;
+            this.stamp = stamp;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * The write that last set a barcode: its time and origin, and the product it left
+     */
+    private static final class Stamp {
+
+        final long timestamp;
+        final String origin;
+
+        // Null for a delete
+        final Product product;
+
+        Stamp(long timestamp, String origin, Product product) {
+            this.timestamp = timestamp;
+            this.origin = origin;
+            this.product = product;
+        }
+
+        /**
+         * Pick the winner of two writes to a barcode; the incoming one on a tie, so redeliveries stay idempotent
+         */
+        static Stamp newer(Stamp current, Stamp incoming) {
+            int order = Long.compare(current.timestamp, incoming.timestamp);
+            if (order == 0) {
+                order = current.origin.compareTo(incoming.origin);
+            }
+            return order > 0 ? current : incoming;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.productapi.service.replication;
+
+import com.productapi.config.RabbitMQConfig;
+import com.productapi.model.ProductChangeEvent;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Change bus on the RabbitMQ product changes fanout exchange
+ *
+ * Each instance consumes from its own exclusive, auto-delete queue bound to
+ * the exchange, so every replica sees every event and a stopped replica
+ * leaves nothing behind on the broker. A single listener thread keeps each
+ * publisher's events in order.
+ *
+ * Active with app.catalog.replication.bus=rabbit.
+ */
+@Component
+@ConditionalOnProperty(name = "app.catalog.replication.bus", havingValue = "rabbit")
+public class RabbitProductChangeBus implements ProductChangeBus {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final List<Consumer<ProductChangeEvent>> subscribers = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    public RabbitProductChangeBus(RabbitTemplate rabbitTemplate) {
+        this.rabbitTemplate = rabbitTemplate;
+    }
+
+    @Override
+    public void publish(ProductChangeEvent event) {
+        // Fanout exchanges ignore the routing key
+        rabbitTemplate.convertAndSend(RabbitMQConfig.EXCHANGE_PRODUCT_CHANGES, "", event);
+    }
+
+    @Override
+    public void subscribe(Consumer<ProductChangeEvent> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * Deliver an event received from the broker
+     *
+     * Listeners are switched off globally, so this one starts explicitly.
+     *
+     * @param event the event
+     */
+    @RabbitListener(queues = "#{productChangesQueue.name}", autoStartup = "true", concurrency = "1")
+    public void receive(ProductChangeEvent event) {
+        for (Consumer<ProductChangeEvent> subscriber : subscribers) {
+            subscriber.accept(event);
+        }
+    }
+}
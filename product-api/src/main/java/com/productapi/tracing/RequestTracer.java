@@ -0,0 +1,115 @@
+package com.productapi.tracing;
+
+import com.productapi.model.RequestTrace;
+import com.productapi.model.TracingSettings;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Opt-in sampling tracer of request phases
+ *
+ * A request is traced if it is picked at the sample rate or carries the
+ * {@value #TRACE_HEADER} header. Its thread then records spans around the
+ * phases the tracing hooks see: the security filter chain, the controller
+ * method, catalog service calls, and JSON serialization.
+ * Finished traces go to a lock-free ring buffer that the diagnostics
+ * endpoint reads.
+ *
+ * With sampling off, a request costs the hooks one volatile read and a
+ * header lookup in the outermost filter, and a thread-local read in each
+ * inner hook; nothing is allocated.
+ */
+public class RequestTracer {
+
+    /**
+     * Request header that forces a request to be traced
+     */
+    public static final String TRACE_HEADER = "X-Trace";
+
+    /**
+     * Response header carrying the id of a traced request
+     */
+    public static final String TRACE_ID_HEADER = "X-Trace-Id";
+
+    private final ThreadLocal<Trace> current = new ThreadLocal<>();
+    private final TraceRingBuffer buffer;
+
+    private volatile double sampleRate;
+
+    /**
+     * Create a tracer
+     *
+     * @param sampleRate fraction of requests traced, 0 to 1
+     * @param capacity number of finished traces kept
+     */
+    public RequestTracer(double sampleRate, int capacity) {
+        this.buffer = new TraceRingBuffer(capacity);
+        setSampleRate(sampleRate);
+    }
+
+    /**
+     * Decide whether to trace a request and start its trace if so
+     *
+     * @param method the HTTP method
+     * @param path the request path
+     * @param forced true if the client asked for a trace
+     * @return the trace, now current on this thread, or null if the request is not traced
+     */
+    public Trace begin(String method, String path, boolean forced) {
+        double rate = sampleRate;
+        if (!forced && (rate == 0 || (rate < 1 && ThreadLocalRandom.current().nextDouble() >= rate))) {
+            return null;
+        }
+        Trace trace = new Trace(buffer.claim(), method, path);
+        current.set(trace);
+        return trace;
+    }
+
+    /**
+     * Get the trace of the request running on this thread
+     *
+     * @return the trace, or null if the request is not traced
+     */
+    public Trace current() {
+        return current.get();
+    }
+
+    /**
+     * Record a finished trace and detach it from this thread
+     *
+     * @param trace the trace returned by begin
+     * @param status the response status
+     */
+    public void finish(Trace trace, int status) {
+        current.remove();
+        buffer.add(trace.toRecord(status));
+    }
+
+    /**
+     * Get the newest finished traces
+     *
+     * @param limit maximum number of traces
+     * @return traces, newest first
+     */
+    public List<RequestTrace> recent(int limit) {
+        return buffer.recent(limit);
+    }
+
+    /**
+     * Change the sample rate while running
+     *
+     * @param sampleRate fraction of requests traced, 0 to 1
+     * @throws IllegalArgumentException if the rate is outside [0, 1]
+     */
+    public void setSampleRate(double sampleRate) {
+        if (!(sampleRate >= 0 && sampleRate <= 1)) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1");
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    public TracingSettings getSettings() {
+        return new TracingSettings(sampleRate, buffer.capacity(), buffer.claimed());
+    }
+}
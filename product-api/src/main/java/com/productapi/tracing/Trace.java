@@ -0,0 +1,120 @@
+package com.productapi.tracing;
+
+import com.productapi.model.RequestTrace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Spans of a request being traced
+ *
+ * Owned by the request's thread from start to finish, so nothing here is
+ * synchronized. Spans are kept in parallel arrays rather than as objects;
+ * a trace that opens more than {@value #MAX_SPANS} spans stops recording
+ * new ones.
+ */
+public final class Trace {
+
+    static final int MAX_SPANS = 64;
+
+    private static final int INITIAL_SPANS = 8;
+
+    private final long id;
+    private final String method;
+    private final String path;
+    private final long startNanos = System.nanoTime();
+    private final long startedAt = System.currentTimeMillis();
+
+    private String[] names = new String[INITIAL_SPANS];
+    private long[] starts = new long[INITIAL_SPANS];
+    private long[] ends = new long[INITIAL_SPANS];
+    private int[] parents = new int[INITIAL_SPANS];
+    private int count;
+
+    // Innermost open span, or -1
+    private int current = -1;
+
+    Trace(long id, String method, String path) {
+        this.id = id;
+        this.method = method;
+        this.path = path;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Start a span inside the innermost open one
+     *
+     * @param name the phase
+     * @return the span, to pass to {@link #close(int)}; -1 if the trace is full
+     */
+    public int open(String name) {
+        if (count == MAX_SPANS) {
+            return -1;
+        }
+        if (count == names.length) {
+            int capacity = Math.min(MAX_SPANS, count * 2);
+            names = Arrays.copyOf(names, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+        }
+        int span = count++;
+        names[span] = name;
+        parents[span] = current;
+        starts[span] = System.nanoTime();
+        ends[span] = 0;
+        current = span;
+        return span;
+    }
+
+    /**
+     * End a span; spans close in the reverse order they were opened
+     *
+     * @param span the span returned by open, or -1 to do nothing
+     */
+    public void close(int span) {
+        if (span < 0 || ends[span] != 0) {
+            return;
+        }
+        ends[span] = System.nanoTime();
+        current = parents[span];
+    }
+
+    /**
+     * Build the record of the finished request; spans still open end now
+     *
+     * @param status the response status
+     * @return the record
+     */
+    RequestTrace toRecord(int status) {
+        long end = System.nanoTime();
+        long[] childNanos = new long[count];
+        int[] depths = new int[count];
+        for (int span = 0; span < count; span++) {
+            if (ends[span] == 0) {
+                ends[span] = end;
+            }
+            int parent = parents[span];
+            if (parent >= 0) {
+                // Parents open before their children, so their depth is already known
+                depths[span] = depths[parent] + 1;
+                childNanos[parent] += ends[span] - starts[span];
+            }
+        }
+        List<RequestTrace.Span> spans = new ArrayList<>(count);
+        for (int span = 0; span < count; span++) {
+            long duration = ends[span] - starts[span];
+            spans.add(new RequestTrace.Span(names[span], depths[span], micros(starts[span] - startNanos),
+                    micros(duration), micros(duration - childNanos[span])));
+        }
+        return new RequestTrace(id, method, path, status, startedAt, micros(end - startNanos), spans);
+    }
+
+    private static long micros(long nanos) {
+        return nanos / 1000;
+    }
+}
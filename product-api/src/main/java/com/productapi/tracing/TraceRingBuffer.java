@@ -0,0 +1,82 @@
+package com.productapi.tracing;
+
+import com.productapi.model.RequestTrace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size buffer of the latest finished traces
+ *
+ * Writers claim a sequence number with one atomic increment and store
+ * their trace in the slot it maps to, overwriting the trace one lap
+ * older; nobody ever waits. Readers walk back from the newest sequence
+ * and skip slots that a writer has already reused for a newer trace.
+ */
+final class TraceRingBuffer {
+
+    private final AtomicReferenceArray<RequestTrace> slots;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * Create a buffer
+     *
+     * @param capacity minimum number of traces kept; rounded up to a power of two
+     */
+    TraceRingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 20) {
+            throw new IllegalArgumentException("Trace buffer size must be between 1 and " + (1 << 20));
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Claim the sequence number of a trace about to start
+     *
+     * @return the sequence number, used as the trace id
+     */
+    long claim() {
+        return next.getAndIncrement();
+    }
+
+    /**
+     * Store a finished trace in the slot of its id
+     *
+     * @param trace the trace
+     */
+    void add(RequestTrace trace) {
+        slots.set((int) (trace.getId() & mask), trace);
+    }
+
+    /**
+     * Get the newest traces
+     *
+     * @param limit maximum number of traces
+     * @return traces, newest first; traces still running are missing
+     */
+    List<RequestTrace> recent(int limit) {
+        long newest = next.get() - 1;
+        long oldest = Math.max(0, newest - mask);
+        List<RequestTrace> traces = new ArrayList<>(Math.min(limit, slots.length()));
+        for (long id = newest; id >= oldest && traces.size() < limit; id--) {
+            RequestTrace trace = slots.get((int) (id & mask));
+            if (trace != null && trace.getId() == id) {
+                traces.add(trace);
+            }
+        }
+        return traces;
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+
+    long claimed() {
+        return next.get();
+    }
+}
@@ -0,0 +1,34 @@
+package com.productapi.tracing;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Times catalog service calls of traced requests
+ */
+@Aspect
+public class TracingAspect {
+
+    private final RequestTracer tracer;
+
+    public TracingAspect(RequestTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Around("execution(* com.productapi.service.ProductService.*(..))")
+    public Object trace(ProceedingJoinPoint call) throws Throwable {
+        Trace trace = tracer.current();
+        if (trace == null) {
+            return call.proceed();
+        }
+        int span = trace.open("service " + ClassUtils.getUserClass(call.getTarget().getClass()).getSimpleName()
+                + "." + call.getSignature().getName());
+        try {
+            return call.proceed();
+        } finally {
+            trace.close(span);
+        }
+    }
+}
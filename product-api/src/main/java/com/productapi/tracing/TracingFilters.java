@@ -0,0 +1,89 @@
+package com.productapi.tracing;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Servlet filters that bracket the Spring Security filter chain
+ *
+ * {@link Outer} runs just before the security chain: it starts the trace
+ * and a "security" span. {@link Inner} runs just after it: it ends that
+ * span and starts a "dispatch" span around everything the dispatcher
+ * servlet does. A request rejected by security never reaches the inner
+ * filter, and its security span ends with the request.
+ */
+public final class TracingFilters {
+
+    // Request attribute holding the security span
+    private static final String SECURITY_SPAN = TracingFilters.class.getName() + ".securitySpan";
+
+    private TracingFilters() {
+    }
+
+    /**
+     * Starts and finishes the trace of sampled requests
+     */
+    public static final class Outer extends OncePerRequestFilter {
+
+        private final RequestTracer tracer;
+
+        public Outer(RequestTracer tracer) {
+            this.tracer = tracer;
+        }
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                throws ServletException, IOException {
+            Trace trace = tracer.begin(request.getMethod(), request.getRequestURI(),
+                    request.getHeader(RequestTracer.TRACE_HEADER) != null);
+            if (trace == null) {
+                chain.doFilter(request, response);
+                return;
+            }
+            response.setHeader(RequestTracer.TRACE_ID_HEADER, String.valueOf(trace.getId()));
+            request.setAttribute(SECURITY_SPAN, trace.open("security"));
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                tracer.finish(trace, response.getStatus());
+            }
+        }
+    }
+
+    /**
+     * Ends the security span and times the dispatch
+     */
+    public static final class Inner extends OncePerRequestFilter {
+
+        private final RequestTracer tracer;
+
+        public Inner(RequestTracer tracer) {
+            this.tracer = tracer;
+        }
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                throws ServletException, IOException {
+            Trace trace = tracer.current();
+            if (trace == null) {
+                chain.doFilter(request, response);
+                return;
+            }
+            Object securitySpan = request.getAttribute(SECURITY_SPAN);
+            if (securitySpan != null) {
+                trace.close((Integer) securitySpan);
+            }
+            int span = trace.open("dispatch");
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                trace.close(span);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.productapi.tracing;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Times controller methods of traced requests
+ *
+ * The span runs from before argument binding until the response is
+ * written, so the serialization span and the service calls nest inside it
+ * and its self time is the controller's own work.
+ */
+public class TracingInterceptor implements HandlerInterceptor {
+
+    // Request attribute holding the controller span
+    private static final String CONTROLLER_SPAN = TracingInterceptor.class.getName() + ".span";
+
+    private final RequestTracer tracer;
+
+    public TracingInterceptor(RequestTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Trace trace = tracer.current();
+        if (trace != null && handler instanceof HandlerMethod) {
+            HandlerMethod method = (HandlerMethod) handler;
+            request.setAttribute(CONTROLLER_SPAN, trace.open(
+                    "controller " + method.getBeanType().getSimpleName() + "." + method.getMethod().getName()));
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Trace trace = tracer.current();
+        Object span = request.getAttribute(CONTROLLER_SPAN);
+        if (trace != null && span != null) {
+            trace.close((Integer) span);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.productapi.tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * JSON converter that times response serialization of traced requests
+ *
+ * Replaces the application's JSON converter with the same object mapper,
+ * so INDENT_OUTPUT and every other setting still apply. The span includes
+ * writing to the response buffer, and to the socket once that fills up.
+ */
+public class TracingJacksonConverter extends MappingJackson2HttpMessageConverter {
+
+    private final RequestTracer tracer;
+
+    public TracingJacksonConverter(ObjectMapper objectMapper, RequestTracer tracer) {
+        super(objectMapper);
+        this.tracer = tracer;
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        Trace trace = tracer.current();
+        if (trace == null) {
+            super.writeInternal(object, type, outputMessage);
+            return;
+        }
+        int span = trace.open("serialization");
+        try {
+            super.writeInternal(object, type, outputMessage);
+        } finally {
+            trace.close(span);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.productapi.service;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.productapi.model.BulkUpsertResult;
+import com.productapi.model.Product;
+import com.productapi.model.ProductChange;
+import com.productapi.model.ProductChange.Type;
+import com.productapi.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the MongoDB store against real servers: a single-node replica set,
+ * where each write and its version bump share a transaction, and a
+ * standalone server, where the bump follows the write.
+ *
+ * Needs Docker; run with mvn -P mongo-it verify.
+ */
+@Testcontainers
+public class MongoProductServiceImplIT {
+
+    private static final DockerImageName MONGO_IMAGE = DockerImageName.parse("mongo:6.0");
+
+    @Container
+    private static final MongoDBContainer REPLICA_SET = new MongoDBContainer(MONGO_IMAGE);
+
+    @Container
+    private static final GenericContainer<?> STANDALONE = new GenericContainer<>(MONGO_IMAGE).withExposedPorts(27017);
+
+    private final List<MongoClient> clients = new ArrayList<>();
+
+    @AfterEach
+    public void closeClients() {
+        clients.forEach(MongoClient::close);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    public void testWritesAdvanceTheVersionInOrder(boolean replicaSet) {
+        MongoProductServiceImpl productService = store(replicaSet);
+        List<Long> versions = new ArrayList<>();
+        List<ProductChange> changes = new ArrayList<>();
+        productService.addChangeListener((version, written) -> {
+            versions.add(version);
+            changes.addAll(written);
+        });
+        long start = productService.getCatalogVersion();
+
+        Product hat = new Product("74009020", "Sun Hat", "Accessories", 990, 0, 1);
+        productService.createProduct(hat);
+        productService.updateProduct(new Product("74009020", "Sun Hat", "Accessories", 1290, 10, 1));
+        assertTrue(productService.deleteProduct("74009020"));
+        productService.createProduct(hat);
+
+        // Rejected and missed writes change nothing and report nothing
+        assertThrows(IllegalArgumentException.class, () -> productService.createProduct(hat));
+        assertNull(productService.updateProduct(new Product("74009099", "Missing", "Accessories", 1, 0, 1)));
+        assertFalse(productService.deleteProduct("74009099"));
+
+        assertEquals(4, versions.size());
+        for (int i = 0; i < versions.size(); i++) {
+            assertTrue(versions.get(i) > (i == 0 ? start : versions.get(i - 1)));
+        }
+        assertEquals(versions.get(3), productService.getCatalogVersion());
+        assertEquals(List.of(Type.CREATED, Type.UPDATED, Type.DELETED, Type.CREATED),
+                changes.stream().map(ProductChange::getType).collect(Collectors.toList()));
+        assertEquals(hat, productService.getProductByBarcode("74009020"));
+
+        // A second instance on the same database reads the version the first one wrote; without transactions its startup bumps it once
+        MongoProductServiceImpl other = store(replicaSet, false);
+        assertEquals(versions.get(3) + (replicaSet ? 0 : 1), other.getCatalogVersion());
+
+        // A bulk upsert reports one version for the whole batch
+        BulkUpsertResult result = productService.upsertAll(List.of(
+                new Product("74009020", "Straw Hat", "Accessories", 890, 0, 1),
+                new Product("74009021", "Wool Hat", "Accessories", 1490, 0, 1)));
+        assertEquals(1, result.getCreated());
+        assertEquals(1, result.getUpdated());
+        assertEquals(5, versions.size());
+        assertEquals(versions.get(4), result.getCatalogVersion());
+        assertTrue(result.getCatalogVersion() > versions.get(3));
+    }
+
+    @Test
+    public void testPriceRangesAndSortsFollowTheServerOrder() {
+        MongoProductServiceImpl productService = store(true);
+        Random random = new Random(17);
+        List<Product> batch = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            batch.add(new Product(String.valueOf(80000000 + i), "Item " + random.nextInt(50), "Category " + random.nextInt(6),
+                    random.nextInt(100) * 10, random.nextInt(101), random.nextInt(2)));
+        }
+        productService.upsertAll(batch);
+        List<Product> all = new ArrayList<>(batch);
+        all.addAll(SampleCatalog.products());
+        Comparator<Product> byPrice = Comparator.comparing(Product::getPrice).thenComparing(Product::getBarcode);
+
+        // Ranges are inclusive and come back in (price, barcode) order, duplicates of a price included
+        List<Product> expected = all.stream().filter(product -> product.getPrice() >= 200 && product.getPrice() <= 400)
+                .sorted(byPrice).collect(Collectors.toList());
+        assertEquals(expected, productService.filterByPriceRange(200, 400));
+        assertEquals(expected.subList(10, 30), productService.filterByPriceRange(200, 400, new PageSpec(10, 20)));
+        Product last = expected.get(29);
+        assertEquals(expected.subList(30, 60), productService.filterByPriceRangeAfter(200, 400,
+                new PriceKey(last.getPrice(), last.getBarcode()), 30));
+        assertTrue(productService.filterByPriceRange(400, 200).isEmpty());
+
+        // Whole-catalog orderings
+        all.sort(byPrice);
+        assertEquals(all, productService.getAllProducts());
+        try (Stream<Product> streamed = productService.streamByPrice()) {
+            assertEquals(all, streamed.collect(Collectors.toList()));
+        }
+        assertEquals(all.stream().map(Product::getItem).collect(Collectors.toList()), productService.sortByPrice());
+        assertEquals(all.subList(5, 15).stream().map(Product::getItem).collect(Collectors.toList()),
+                productService.sortByPrice(new PageSpec(5, 10)));
+        for (String spec : List.of("category,discount:desc", "finalPrice:desc,item", "available,price:desc")) {
+            ProductSort sort = ProductSort.parse(spec);
+            List<Product> sorted = new ArrayList<>(all);
+            sorted.sort(sort.comparator());
+            assertEquals(sorted, productService.sortProducts(sort), spec);
+            assertEquals(sorted.subList(40, 60), productService.sortProducts(sort, new PageSpec(40, 20)), spec);
+        }
+    }
+
+    /**
+     * Open the store on an empty database, as the application would
+     *
+     * @param replicaSet whether to use the replica set or the standalone server
+     * @return the initialized store, holding the sample products
+     */
+    private MongoProductServiceImpl store(boolean replicaSet) {
+        return store(replicaSet, true);
+    }
+
+    /**
+     * Open the store on the test database
+     *
+     * @param replicaSet whether to use the replica set or the standalone server
+     * @param empty whether to drop the database first
+     * @return the initialized store
+     */
+    private MongoProductServiceImpl store(boolean replicaSet, boolean empty) {
+        String url = replicaSet ? REPLICA_SET.getReplicaSetUrl()
+                : "mongodb://" + STANDALONE.getHost() + ":" + STANDALONE.getMappedPort(27017);
+        MongoClient client = MongoClients.create(url);
+        clients.add(client);
+        MongoTemplate mongoTemplate = new MongoTemplate(client, "catalog");
+        if (empty) {
+            mongoTemplate.getDb().drop();
+        }
+        ProductRepository productRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(ProductRepository.class);
+        MongoProductServiceImpl productService = new MongoProductServiceImpl(mongoTemplate, productRepository);
+        productService.init();
+        return productService;
+    }
+}
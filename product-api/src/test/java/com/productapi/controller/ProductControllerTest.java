@@ -2,7 +2,10 @@ package com.productapi.controller;
 
 import com.productapi.TestConfig;
 import com.productapi.model.Product;
+import com.productapi.service.PageSpec;
+import com.productapi.service.PriceCursor;
 import com.productapi.service.ProductService;
+import com.productapi.service.ProductSort;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -11,15 +14,26 @@ import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = ProductController.class)
@@ -98,12 +112,133 @@ public class ProductControllerTest {
         
         // Mock service method
         when(productService.getAllProducts()).thenReturn(allProducts);
+        when(productService.getCatalogVersion()).thenReturn(42L);
         
         // Test the endpoint
         mockMvc.perform(get("/products")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
+                .andExpect(header().string(ProductController.CATALOG_VERSION_HEADER, "42"))
                 .andExpect(jsonPath("$", hasSize(2)))
                 .andExpect(jsonPath("$[*].item", containsInAnyOrder("Ball Gown", "Shawl")));
     }
-} 
\ No newline at end of file
+
+    @Test
+    public void testSortProducts() throws Exception {
+        Product product1 = new Product("74001755", "Ball Gown", "Full Body Outfits", 3548, 7, 1);
+        Product product2 = new Product("74002423", "Shawl", "Accessories", 758, 12, 1);
+        
+        // Mock service method
+        when(productService.sortProducts(ProductSort.parse("finalPrice:desc"))).thenReturn(Arrays.asList(product1, product2));
+        
+        // Test the endpoint
+        mockMvc.perform(get("/sort/products").param("by", "finalPrice:desc")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].item").value("Ball Gown"));
+        
+        // Test with an unknown field
+        mockMvc.perform(get("/sort/products").param("by", "weight")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testPagedSortByPrice() throws Exception {
+        // Mock service method
+        when(productService.sortByPrice(any(PageSpec.class))).thenReturn(Arrays.asList("Shawl"));
+        
+        // Test the endpoint
+        mockMvc.perform(get("/sort/price").param("offset", "1").param("limit", "1")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0]").value("Shawl"));
+        
+        // Test with negative paging parameters
+        mockMvc.perform(get("/sort/price").param("limit", "-1")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/filter/price/0/100").param("offset", "-1")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testKeysetPagedProducts() throws Exception {
+        Product product1 = new Product("74002423", "Shawl", "Accessories", 758, 12, 1);
+        Product product2 = new Product("74001755", "Ball Gown", "Full Body Outfits", 3548, 7, 1);
+        String cursor = PriceCursor.encode(product1);
+        
+        // Mock service method
+        when(productService.filterByPriceRangeAfter(Integer.MIN_VALUE, Integer.MAX_VALUE, null, 1)).thenReturn(Arrays.asList(product1));
+        when(productService.filterByPriceRangeAfter(Integer.MIN_VALUE, Integer.MAX_VALUE, PriceCursor.decode(cursor), 1)).thenReturn(Arrays.asList(product2));
+        
+        // An empty cursor asks for the first page; a full page carries the cursor of the next one
+        mockMvc.perform(get("/products").param("limit", "1").param("cursor", "")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ProductController.NEXT_CURSOR_HEADER, cursor))
+                .andExpect(jsonPath("$[0].item").value("Shawl"));
+        
+        mockMvc.perform(get("/sort/price").param("limit", "1").param("cursor", cursor)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0]").value("Ball Gown"));
+        
+        // Without a cursor, a limit alone pages by offset and returns no cursor
+        when(productService.filterByPriceRange(eq(Integer.MIN_VALUE), eq(Integer.MAX_VALUE), any(PageSpec.class))).thenReturn(Arrays.asList(product1));
+        mockMvc.perform(get("/products").param("limit", "1")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(ProductController.NEXT_CURSOR_HEADER))
+                .andExpect(jsonPath("$[0].item").value("Shawl"));
+        
+        // Test with invalid cursor parameters
+        mockMvc.perform(get("/products").param("cursor", "%%%")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/filter/price/0/100").param("cursor", cursor).param("offset", "1")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testStreamAllProducts() throws Exception {
+        Product product1 = new Product("74001755", "Ball Gown", "Full Body Outfits", 3548, 7, 1);
+        Product product2 = new Product("74002423", "Shawl", "Accessories", 758, 12, 1);
+        
+        // Mock service method
+        AtomicInteger closed = new AtomicInteger();
+        when(productService.streamByPrice())
+                .thenAnswer(invocation -> Stream.of(product1, product2).onClose(closed::incrementAndGet));
+        
+        // NDJSON: one compact object per line
+        MvcResult ndjson = mockMvc.perform(get("/products").param("stream", "ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String[] lines = mockMvc.perform(asyncDispatch(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"barcode\":\"74001755\""));
+        
+        // JSON array: same shape as the buffered endpoint
+        MvcResult json = mockMvc.perform(get("/products").param("stream", "json"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].item").value("Shawl"));
+        
+        // Products are read from the store's stream, which is closed once written
+        assertEquals(2, closed.get());
+        
+        // Test with an unknown format
+        mockMvc.perform(get("/products").param("stream", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+}
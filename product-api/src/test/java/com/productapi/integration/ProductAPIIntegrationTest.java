@@ -13,6 +13,8 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.List;
+
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -216,4 +218,127 @@ public class ProductAPIIntegrationTest {
         mockMvc.perform(delete("/products/99999999"))
                 .andExpect(status().isNotFound());
     }
-} 
\ No newline at end of file
+
+    @Test
+    public void testBulkImport() throws Exception {
+        Product first = new Product("74002001", "Bulk One", "Test", 1111, 0, 1);
+        Product second = new Product("74002002", "Bulk Two", "Test", 2222, 0, 1);
+        Product invalid = new Product("74002003", "Bulk Invalid", "Test", -1, 0, 1);
+        
+        // Import two valid products and one invalid product
+        mockMvc.perform(post("/products/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(first, second, invalid))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(2))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.items[2].status").value("FAILED"));
+        
+        // Imported products are visible immediately
+        mockMvc.perform(get("/products/74002002"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.item", is("Bulk Two")));
+        mockMvc.perform(get("/products/74002003"))
+                .andExpect(status().isNotFound());
+    }
+    
+    @Test
+    public void testStreamedIngest() throws Exception {
+        // NDJSON: two valid records, one malformed line and one invalid product
+        String ndjson = "{\"barcode\":\"74003001\",\"item\":\"Ingest One\",\"category\":\"Test\",\"price\":1500,\"discount\":0,\"available\":1}\n"
+                + "{not json}\n"
+                + "\n"
+                + "{\"barcode\":\"74003002\",\"item\":\"Ingest Two\",\"category\":\"Test\",\"price\":-5,\"discount\":0,\"available\":1}\n"
+                + "{\"barcode\":\"74003003\",\"item\":\"Ingest Three\",\"category\":\"Test\",\"price\":1600,\"discount\":0,\"available\":1}\n";
+        mockMvc.perform(post("/products/ingest?batchSize=2")
+                .contentType("application/x-ndjson")
+                .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(4))
+                .andExpect(jsonPath("$.created").value(2))
+                .andExpect(jsonPath("$.failed").value(2))
+                .andExpect(jsonPath("$.batches").value(2))
+                .andExpect(jsonPath("$.errors[0].line").value(2))
+                .andExpect(jsonPath("$.errors[1].line").value(4))
+                .andExpect(jsonPath("$.errors[1].barcode").value("74003002"));
+        
+        // CSV: columns in any order, quoted fields, and an update of an ingested product
+        String csv = "item,barcode,category,price,discount,available\n"
+                + "\"Ingest One, Revised\",74003001,Test,1550,5,1\n"
+                + "Ingest Four,74003004,Test,abc,0,1\n";
+        mockMvc.perform(post("/products/ingest")
+                .contentType("text/csv")
+                .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(1))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.errors[0].error", is("Invalid price value: abc")));
+        
+        mockMvc.perform(get("/products/74003001"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.item", is("Ingest One, Revised")))
+                .andExpect(jsonPath("$.price").value(1550));
+        
+        // A line with no end in sight, such as a minified array, fails as one record without being buffered
+        String array = "[" + "{\"barcode\":\"74003005\",\"item\":\"Ingest Five\"},".repeat(5000) + "{}]";
+        mockMvc.perform(post("/products/ingest")
+                .contentType("application/x-ndjson")
+                .content(array + "\n"
+                        + "{\"barcode\":\"74003006\",\"item\":\"Ingest Six\",\"category\":\"Test\",\"price\":1700,\"discount\":0,\"available\":1}\r\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(2))
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.errors[0].line").value(1))
+                .andExpect(jsonPath("$.errors[0].error", startsWith("Record longer than")));
+        
+        // A CSV header without the required columns is rejected
+        mockMvc.perform(post("/products/ingest")
+                .contentType("text/csv")
+                .content("barcode,item\n74003005,Nope\n"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testChangeStreamSendsBacklogThenLiveDeltasInOrder() throws Exception {
+        mockMvc.perform(post("/products")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new Product("74003101", "Stream One", "Test", 1000, 0, 1))))
+                .andExpect(status().isCreated());
+        long since = Long.parseLong(mockMvc.perform(get("/products").param("limit", "1"))
+                .andReturn().getResponse().getHeader("X-Catalog-Version")) - 1;
+
+        MvcResult stream = mockMvc.perform(get("/products/changes/stream").param("since", String.valueOf(since)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(delete("/products/74003101")).andExpect(status().isOk());
+
+        // The recorded create first, then the live delete, each once
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        String events = stream.getResponse().getContentAsString();
+        while (!events.contains("\"DELETED\"") && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            events = stream.getResponse().getContentAsString();
+        }
+        assertTrue(events.indexOf("id:" + (since + 1)) < events.indexOf("id:" + (since + 2)), events);
+        assertEquals(events.indexOf("id:" + (since + 1)), events.lastIndexOf("id:" + (since + 1)), events);
+        assertTrue(events.contains("\"DELETED\""), events);
+    }
+
+    @Test
+    public void testChangesRejectVersionFromAnotherEpoch() throws Exception {
+        MvcResult catalog = mockMvc.perform(get("/products").param("limit", "1"))
+                .andExpect(header().exists("X-Catalog-Epoch"))
+                .andReturn();
+        String since = catalog.getResponse().getHeader("X-Catalog-Version");
+        String epoch = catalog.getResponse().getHeader("X-Catalog-Epoch");
+
+        mockMvc.perform(get("/products/changes").param("since", since).param("epoch", epoch))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Catalog-Epoch", epoch))
+                .andExpect(jsonPath("$.epoch").value(epoch));
+        mockMvc.perform(get("/products/changes").param("since", since).param("epoch", "before-restart"))
+                .andExpect(status().isGone());
+        mockMvc.perform(get("/products/changes/stream").param("since", since).param("epoch", "before-restart"))
+                .andExpect(status().isGone());
+    }
+}
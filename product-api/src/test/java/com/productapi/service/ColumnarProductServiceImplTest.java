@@ -0,0 +1,139 @@
+package com.productapi.service;
+
+import com.productapi.model.BulkUpsertResult;
+import com.productapi.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnarProductServiceImplTest {
+
+    private ColumnarProductServiceImpl productService;
+
+    @BeforeEach
+    public void setup() {
+        productService = new ColumnarProductServiceImpl();
+        productService.init(); // Initialize with sample data
+    }
+
+    @Test
+    public void testFilterAndSortSampleData() {
+        assertEquals(1, productService.filterByPriceRange(700, 1000).size());
+        assertEquals(8, productService.filterByPriceRange(700, 4000).size());
+        assertEquals(0, productService.filterByPriceRange(5000, 6000).size());
+
+        List<String> sorted = productService.sortByPrice();
+        assertEquals("Cotton T-Shirt", sorted.get(0));
+        assertEquals("Winter Coat", sorted.get(sorted.size() - 1));
+        assertEquals(List.of("Silk Scarf", "Denim Jeans"), productService.sortByPrice(new PageSpec(1, 2)));
+    }
+
+    @Test
+    public void testCrudRoundTrip() {
+        Product created = new Product("74009001", "Linen Shirt", "Casual Wear", 1300, 20, 1);
+        productService.createProduct(created);
+        assertEquals(created, productService.getProductByBarcode("74009001"));
+        assertThrows(IllegalArgumentException.class, () -> productService.createProduct(created));
+
+        Product updated = new Product("74009001", "Linen Shirt", "Summer", 1400, 25, 0);
+        assertEquals(updated, productService.updateProduct(updated));
+        assertEquals(updated, productService.getProductByBarcode("74009001"));
+        assertNull(productService.updateProduct(new Product("00000000", "Nope", "None", 1, 0, 1)));
+
+        // Deleting a row in the middle moves the last row into its place
+        long version = productService.getCatalogVersion();
+        assertTrue(productService.deleteProduct("74001755"));
+        assertFalse(productService.deleteProduct("74001755"));
+        assertTrue(productService.getCatalogVersion() > version);
+        assertNull(productService.getProductByBarcode("74001755"));
+        assertEquals(updated, productService.getProductByBarcode("74009001"));
+        assertEquals(9, productService.getAllProducts().size());
+    }
+
+    @Test
+    public void testMatchesObjectStore() {
+        ProductServiceImpl reference = new ProductServiceImpl();
+        reference.init();
+
+        // Random catalog with repeated prices, names and categories, then some churn
+        Random random = new Random(42);
+        List<Product> batch = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            batch.add(new Product(String.valueOf(80000000 + random.nextInt(5000)), "Item " + random.nextInt(200),
+                    "Category " + random.nextInt(12), random.nextInt(500) * 10, random.nextInt(101), random.nextInt(2)));
+        }
+        BulkUpsertResult applied = productService.upsertAll(batch);
+        BulkUpsertResult expected = reference.upsertAll(batch);
+        assertEquals(expected.getCreated(), applied.getCreated());
+        assertEquals(expected.getSuperseded(), applied.getSuperseded());
+        for (int i = 0; i < 300; i++) {
+            String barcode = batch.get(random.nextInt(batch.size())).getBarcode();
+            assertEquals(reference.deleteProduct(barcode), productService.deleteProduct(barcode));
+        }
+
+        assertEquals(reference.getAllProducts(), productService.getAllProducts());
+        assertEquals(reference.getAllProducts(), productService.streamByPrice().collect(Collectors.toList()));
+        assertEquals(reference.sortByPrice(), productService.sortByPrice());
+        assertEquals(reference.filterByPriceRange(1000, 2500), productService.filterByPriceRange(1000, 2500));
+        assertEquals(reference.filterByPriceRange(1000, 2500, new PageSpec(40, 25)),
+                productService.filterByPriceRange(1000, 2500, new PageSpec(40, 25)));
+        PriceKey after = PriceKey.lowest(1500);
+        assertEquals(reference.filterByPriceRangeAfter(0, 4000, after, 50),
+                productService.filterByPriceRangeAfter(0, 4000, after, 50));
+        for (String spec : new String[] {"finalPrice:desc,item", "category,discount:desc", "item", "available,price:desc", "barcode:desc"}) {
+            ProductSort sort = ProductSort.parse(spec);
+            assertEquals(reference.sortProducts(sort), productService.sortProducts(sort), spec);
+            assertEquals(reference.sortProducts(sort, new PageSpec(100, 30)),
+                    productService.sortProducts(sort, new PageSpec(100, 30)), spec);
+        }
+    }
+
+    @Test
+    public void testSingleWritesKeepPriceOrder() {
+        ProductServiceImpl reference = new ProductServiceImpl();
+        reference.init();
+
+        // Creates, reprices and deletes one at a time, with reads in between
+        Random random = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            Product product = new Product(String.valueOf(80000000 + random.nextInt(400)), "Item " + random.nextInt(50),
+                    "Category", random.nextInt(60) * 10, random.nextInt(101), 1);
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertEquals(reference.deleteProduct(product.getBarcode()), productService.deleteProduct(product.getBarcode()));
+                    break;
+                case 1:
+                    assertEquals(reference.updateProduct(product), productService.updateProduct(product));
+                    break;
+                default:
+                    if (reference.getProductByBarcode(product.getBarcode()) == null) {
+                        reference.createProduct(product);
+                        productService.createProduct(product);
+                    }
+                    break;
+            }
+            if (i % 100 == 0) {
+                assertEquals(reference.filterByPriceRange(100, 300), productService.filterByPriceRange(100, 300));
+            }
+        }
+
+        assertEquals(reference.getAllProducts(), productService.getAllProducts());
+        assertEquals(reference.sortByPrice(), productService.sortByPrice());
+    }
+
+    @Test
+    public void testDictionariesCompactAfterChurn() {
+        // Rename one product many times; unused names must not pile up
+        for (int i = 0; i < 5000; i++) {
+            productService.updateProduct(new Product("74001755", "Ball Gown v" + i, "Full Body Outfits", 3548, 7, 1));
+        }
+        assertEquals("Ball Gown v4999", productService.getProductByBarcode("74001755").getItem());
+        assertEquals("Ball Gown v4999", productService.sortByPrice().get(7));
+    }
+}
@@ -0,0 +1,256 @@
+package com.productapi.service;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.result.DeleteResult;
+import com.productapi.model.BulkUpsertResult;
+import com.productapi.model.BulkUpsertResult.Status;
+import com.productapi.model.Product;
+import com.productapi.repository.ProductRepository;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MongoProductServiceImplTest {
+
+    private MongoTemplate mongoTemplate;
+    private ProductRepository productRepository;
+    private MongoProductServiceImpl productService;
+
+    @BeforeEach
+    public void setup() {
+        mongoTemplate = mock(MongoTemplate.class);
+        productRepository = mock(ProductRepository.class);
+        productService = new MongoProductServiceImpl(mongoTemplate, productRepository);
+    }
+
+    @Test
+    public void testPriceRangePushedDown() {
+        productService.filterByPriceRange(100, 200, new PageSpec(10, 5));
+
+        Query query = capturedQuery(Product.class);
+        assertEquals(Document.parse("{price: {$gte: 100, $lte: 200}}"), query.getQueryObject());
+        assertEquals(Document.parse("{price: 1, _id: 1}"), query.getSortObject());
+        assertEquals(10, query.getSkip());
+        assertEquals(5, query.getLimit());
+    }
+
+    @Test
+    public void testKeysetContinuesAfterPosition() {
+        productService.filterByPriceRangeAfter(0, 5000, new PriceKey(1200, "74005123"), 20);
+
+        Query query = capturedQuery(Product.class);
+        assertEquals(Document.parse("{$and: [{price: {$gte: 0, $lte: 5000}},"
+                + " {$or: [{price: {$gt: 1200}}, {price: 1200, _id: {$gt: '74005123'}}]}]}"), query.getQueryObject());
+        assertEquals(20, query.getLimit());
+    }
+
+    @Test
+    public void testSortByPriceIsCoveredByIndex() {
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq(MongoProductServiceImpl.COLLECTION)))
+                .thenReturn(List.of(new Document("item", "Cotton T-Shirt"), new Document("item", "Silk Scarf")));
+
+        assertEquals(List.of("Cotton T-Shirt", "Silk Scarf"), productService.sortByPrice());
+
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(captor.capture(), eq(Document.class), eq(MongoProductServiceImpl.COLLECTION));
+        Query query = captor.getValue();
+        assertEquals(MongoProductServiceImpl.PRICE_INDEX, query.getHint());
+        assertEquals(Document.parse("{item: 1, _id: 0}"), query.getFieldsObject());
+        assertEquals(Document.parse("{price: 1, _id: 1}"), query.getSortObject());
+    }
+
+    @Test
+    public void testStreamByPriceReadsFromCursor() {
+        Iterator<Product> products = List.of(new Product("74002423", "Shawl", "Accessories", 758, 12, 1)).iterator();
+        AtomicBoolean closed = new AtomicBoolean();
+        when(mongoTemplate.stream(any(Query.class), eq(Product.class))).thenReturn(new CloseableIterator<Product>() {
+            @Override
+            public boolean hasNext() {
+                return products.hasNext();
+            }
+
+            @Override
+            public Product next() {
+                return products.next();
+            }
+
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        });
+
+        // The cursor stays open until the stream is closed
+        try (Stream<Product> stream = productService.streamByPrice()) {
+            assertEquals(List.of("Shawl"), stream.map(Product::getItem).collect(Collectors.toList()));
+            assertFalse(closed.get());
+        }
+        assertTrue(closed.get());
+
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(captor.capture(), eq(Product.class));
+        assertEquals(new Document(), captor.getValue().getQueryObject());
+        assertEquals(Document.parse("{price: 1, _id: 1}"), captor.getValue().getSortObject());
+    }
+
+    @Test
+    public void testSortRunsOnServer() {
+        productService.sortProducts(ProductSort.parse("category,discount:desc"), new PageSpec(20, 10));
+
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(captor.capture(), eq(Product.class), eq(MongoProductServiceImpl.COLLECTION));
+        Query query = captor.getValue();
+        assertEquals(Document.parse("{category: 1, discount: -1, _id: 1}"), query.getSortObject());
+        assertEquals(20, query.getSkip());
+        assertEquals(10, query.getLimit());
+    }
+
+    @Test
+    public void testFinalPriceSortIsComputedInAggregation() {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(MongoProductServiceImpl.COLLECTION), eq(Product.class)))
+                .thenReturn(new AggregationResults<>(Collections.emptyList(), new Document()));
+
+        productService.sortProducts(ProductSort.parse("finalPrice:desc,item"), new PageSpec(0, 5));
+
+        ArgumentCaptor<Aggregation> captor = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate).aggregate(captor.capture(), eq(MongoProductServiceImpl.COLLECTION), eq(Product.class));
+        List<Document> pipeline = captor.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertTrue(pipeline.get(0).containsKey("$addFields"));
+        assertEquals(Document.parse("{$sort: {finalPrice: -1, item: 1, _id: 1}}"), pipeline.get(1));
+        assertEquals(5, pipeline.get(2).get("$limit", Number.class).intValue());
+    }
+
+    @Test
+    public void testCatalogVersionIsReadAtMostOncePerRefresh() {
+        AtomicLong now = new AtomicLong();
+        productService = new MongoProductServiceImpl(mongoTemplate, productRepository, now::get);
+        when(mongoTemplate.findById("catalog", Document.class, "counters")).thenReturn(new Document("version", 4L));
+
+        assertEquals(4, productService.getCatalogVersion());
+        assertEquals(4, productService.getCatalogVersion());
+        verify(mongoTemplate, times(1)).findById("catalog", Document.class, "counters");
+
+        // A write through this instance raises the version without a read
+        when(mongoTemplate.findAndModify(any(Query.class), any(), any(), eq(Document.class), eq("counters")))
+                .thenReturn(new Document("version", 9L));
+        DeleteResult deleted = mock(DeleteResult.class);
+        when(deleted.getDeletedCount()).thenReturn(1L);
+        when(mongoTemplate.remove(any(Query.class), eq(Product.class), eq(MongoProductServiceImpl.COLLECTION))).thenReturn(deleted);
+        productService.deleteProduct("74001755");
+        assertEquals(9, productService.getCatalogVersion());
+
+        // Writes by other instances show up after the refresh interval
+        now.addAndGet(MongoProductServiceImpl.VERSION_REFRESH_MILLIS);
+        when(mongoTemplate.findById("catalog", Document.class, "counters")).thenReturn(new Document("version", 12L));
+        assertEquals(12, productService.getCatalogVersion());
+        verify(mongoTemplate, times(2)).findById("catalog", Document.class, "counters");
+    }
+
+    @Test
+    public void testCreateDuplicateIsRejected() {
+        Product product = new Product("74001755", "Ball Gown", "Full Body Outfits", 3548, 7, 1);
+        when(mongoTemplate.insert(product, MongoProductServiceImpl.COLLECTION))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key"));
+
+        assertThrows(IllegalArgumentException.class, () -> productService.createProduct(product));
+        assertThrows(IllegalArgumentException.class,
+                () -> productService.createProduct(new Product("", "No Barcode", "None", 1, 0, 1)));
+    }
+
+    @Test
+    public void testUpsertAllReportsCreatedAndUpdated() {
+        BulkOperations bulk = mock(BulkOperations.class);
+        BulkWriteResult written = mock(BulkWriteResult.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class, MongoProductServiceImpl.COLLECTION))
+                .thenReturn(bulk);
+        when(bulk.execute()).thenReturn(written);
+        // Requests follow submission order; only the second one inserted a document
+        when(written.getUpserts()).thenReturn(Collections.singletonList(new BulkWriteUpsert(1, new BsonString("74009002"))));
+        when(mongoTemplate.findAndModify(any(Query.class), any(), any(), eq(Document.class), eq("counters")))
+                .thenReturn(new Document("version", 7L));
+
+        BulkUpsertResult result = productService.upsertAll(List.of(
+                new Product("74001755", "Ball Gown", "Full Body Outfits", 3000, 7, 1),
+                new Product("74009002", "New Hat", "Accessories", 990, 0, 1),
+                new Product("bad", "", "None", 1, 0, 1)));
+
+        assertEquals(1, result.getCreated());
+        assertEquals(1, result.getUpdated());
+        assertEquals(1, result.getFailed());
+        assertEquals(7, result.getCatalogVersion());
+        assertEquals(Status.UPDATED, result.getItems().get(0).getStatus());
+        assertEquals(Status.CREATED, result.getItems().get(1).getStatus());
+    }
+
+    @Test
+    public void testChangesAreReportedInVersionOrder() throws Exception {
+        AtomicLong counter = new AtomicLong();
+        when(mongoTemplate.findAndModify(any(Query.class), any(), any(), eq(Document.class), eq("counters")))
+                .thenAnswer(invocation -> {
+                    long version = counter.incrementAndGet();
+                    Thread.sleep(version % 3); // counter round trips finish in varying order
+                    return new Document("version", version);
+                });
+        DeleteResult deleted = mock(DeleteResult.class);
+        when(deleted.getDeletedCount()).thenReturn(1L);
+        when(mongoTemplate.remove(any(Query.class), eq(Product.class), eq(MongoProductServiceImpl.COLLECTION))).thenReturn(deleted);
+        List<Long> reported = Collections.synchronizedList(new ArrayList<>());
+        productService.addChangeListener((version, changes) -> reported.add(version));
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            writers.add(pool.submit(() -> {
+                for (int i = 0; i < 25; i++) {
+                    productService.deleteProduct("74001755");
+                }
+            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get(10, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(100, reported.size());
+        for (int i = 0; i < reported.size(); i++) {
+            assertEquals(i + 1, reported.get(i));
+        }
+    }
+
+    private Query capturedQuery(Class<?> type) {
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(captor.capture(), eq(type));
+        return captor.getValue();
+    }
+}
@@ -0,0 +1,58 @@
+package com.productapi.service;
+
+import com.productapi.model.Product;
+import com.productapi.service.cache.ProductNearCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NearCacheProductServiceTest {
+
+    private ProductServiceImpl store;
+    private NearCacheProductService productService;
+
+    @BeforeEach
+    public void setup() {
+        store = new ProductServiceImpl();
+        store.init(); // Initialize with sample data
+        productService = new NearCacheProductService(store, new ProductNearCache(100, 60000));
+    }
+
+    @Test
+    public void testLookupsAreServedFromCache() {
+        assertEquals("Ball Gown", productService.getProductByBarcode("74001755").getItem());
+        assertEquals("Ball Gown", productService.getProductByBarcode("74001755").getItem());
+
+        assertEquals(1, productService.getCacheStats().get("nearCache").getHits());
+        assertTrue(productService.getCacheStats().containsKey("priceRange"));
+    }
+
+    @Test
+    public void testWritesInvalidate() {
+        assertNull(productService.getProductByBarcode("74009040"));
+        productService.createProduct(new Product("74009040", "Cached Hat", "Accessories", 990, 0, 1));
+        assertEquals("Cached Hat", productService.getProductByBarcode("74009040").getItem());
+
+        productService.updateProduct(new Product("74009040", "Cached Cap", "Accessories", 980, 0, 1));
+        assertEquals("Cached Cap", productService.getProductByBarcode("74009040").getItem());
+
+        productService.upsertAll(List.of(new Product("74009040", "Cached Beret", "Accessories", 970, 0, 1)));
+        assertEquals("Cached Beret", productService.getProductByBarcode("74009040").getItem());
+
+        assertTrue(productService.deleteProduct("74009040"));
+        assertNull(productService.getProductByBarcode("74009040"));
+    }
+
+    @Test
+    public void testWritesElsewhereNeedInvalidation() {
+        productService.getProductByBarcode("74001755");
+        store.updateProduct(new Product("74001755", "Ball Gown II", "Full Body Outfits", 3548, 7, 1));
+        assertEquals("Ball Gown", productService.getProductByBarcode("74001755").getItem());
+
+        productService.invalidate("74001755");
+        assertEquals("Ball Gown II", productService.getProductByBarcode("74001755").getItem());
+    }
+}
@@ -0,0 +1,154 @@
+package com.productapi.service;
+
+import com.productapi.model.BulkUpsertResult;
+import com.productapi.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OffHeapProductServiceImplTest {
+
+    private OffHeapProductServiceImpl productService;
+
+    @BeforeEach
+    public void setup() {
+        productService = new OffHeapProductServiceImpl();
+        productService.init(); // Initialize with sample data
+    }
+
+    @Test
+    public void testFilterAndSortSampleData() {
+        assertEquals(1, productService.filterByPriceRange(700, 1000).size());
+        assertEquals(8, productService.filterByPriceRange(700, 4000).size());
+        assertEquals(0, productService.filterByPriceRange(5000, 6000).size());
+
+        List<String> sorted = productService.sortByPrice();
+        assertEquals("Cotton T-Shirt", sorted.get(0));
+        assertEquals("Winter Coat", sorted.get(sorted.size() - 1));
+        assertTrue(productService.getOffHeapBytes() > 0);
+    }
+
+    @Test
+    public void testCrudRoundTrip() {
+        Product created = new Product("74009001", "Camisa de Linho", "Casual Wear", 1300, 20, 1);
+        productService.createProduct(created);
+        assertEquals(created, productService.getProductByBarcode("74009001"));
+        assertThrows(IllegalArgumentException.class, () -> productService.createProduct(created));
+
+        Product updated = new Product("74009001", "Camisa de Linho", "Verão", 1400, 25, 0);
+        assertEquals(updated, productService.updateProduct(updated));
+        assertEquals(updated, productService.getProductByBarcode("74009001"));
+        assertNull(productService.updateProduct(new Product("00000000", "Nope", "None", 1, 0, 1)));
+
+        assertTrue(productService.deleteProduct("74001755"));
+        assertFalse(productService.deleteProduct("74001755"));
+        assertNull(productService.getProductByBarcode("74001755"));
+        assertEquals(updated, productService.getProductByBarcode("74009001"));
+        assertEquals(9, productService.getAllProducts().size());
+    }
+
+    @Test
+    public void testMatchesObjectStoreUnderChurn() {
+        ProductServiceImpl reference = new ProductServiceImpl();
+        reference.init();
+
+        // Bulk load with repeated prices, then random single writes of every kind
+        Random random = new Random(7);
+        List<Product> batch = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            batch.add(randomProduct(random));
+        }
+        BulkUpsertResult applied = productService.upsertAll(batch);
+        BulkUpsertResult expected = reference.upsertAll(batch);
+        assertEquals(expected.getCreated(), applied.getCreated());
+        assertEquals(expected.getUpdated(), applied.getUpdated());
+        for (int i = 0; i < 2000; i++) {
+            Product product = randomProduct(random);
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertEquals(reference.deleteProduct(product.getBarcode()), productService.deleteProduct(product.getBarcode()));
+                    break;
+                case 1:
+                    assertEquals(reference.updateProduct(product), productService.updateProduct(product));
+                    break;
+                default:
+                    if (reference.getProductByBarcode(product.getBarcode()) == null) {
+                        reference.createProduct(product);
+                        productService.createProduct(product);
+                    }
+                    break;
+            }
+        }
+        // A second batch mixing updates, reprices and inserts is merged into the index
+        List<Product> second = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            second.add(randomProduct(random));
+        }
+        reference.upsertAll(second);
+        productService.upsertAll(second);
+
+        assertEquals(reference.getAllProducts(), productService.getAllProducts());
+        // Streamed a page of positions at a time
+        assertEquals(reference.getAllProducts(), productService.streamByPrice().collect(Collectors.toList()));
+        assertEquals(reference.sortByPrice(), productService.sortByPrice());
+        assertEquals(reference.filterByPriceRange(1000, 2500, new PageSpec(40, 25)),
+                productService.filterByPriceRange(1000, 2500, new PageSpec(40, 25)));
+        PriceKey after = new PriceKey(1500, "80002500");
+        assertEquals(reference.filterByPriceRangeAfter(0, 4000, after, 50),
+                productService.filterByPriceRangeAfter(0, 4000, after, 50));
+        for (Product product : reference.getAllProducts()) {
+            assertEquals(product, productService.getProductByBarcode(product.getBarcode()));
+        }
+        ProductSort sort = ProductSort.parse("finalPrice:desc,item");
+        assertEquals(reference.sortProducts(sort), productService.sortProducts(sort));
+        assertEquals(reference.sortProducts(sort, new PageSpec(10, 20)), productService.sortProducts(sort, new PageSpec(10, 20)));
+    }
+
+    @Test
+    public void testPriceIndexSplitsAndMergesBlocks() {
+        ProductServiceImpl reference = new ProductServiceImpl();
+        reference.init();
+
+        // Single creates fill and split price index blocks; deletes then empty and merge them
+        Random random = new Random(11);
+        for (int i = 0; i < 3 * OffHeapPriceIndex.BLOCK_ENTRIES; i++) {
+            Product product = new Product(String.valueOf(81000000 + i), "Item " + i, "Category", random.nextInt(40) * 10, 0, 1);
+            reference.createProduct(product);
+            productService.createProduct(product);
+        }
+        assertEquals(reference.sortByPrice(), productService.sortByPrice());
+        for (int i = 0; i < 3 * OffHeapPriceIndex.BLOCK_ENTRIES; i++) {
+            if (i % 7 != 0) {
+                String barcode = String.valueOf(81000000 + i);
+                assertEquals(reference.deleteProduct(barcode), productService.deleteProduct(barcode));
+            }
+        }
+
+        assertEquals(reference.sortByPrice(), productService.sortByPrice());
+        assertEquals(reference.filterByPriceRange(100, 250), productService.filterByPriceRange(100, 250));
+        assertEquals(reference.getAllProducts(), productService.getAllProducts());
+    }
+
+    @Test
+    public void testStringsCompactAfterChurn() {
+        // Enough renames with long names to leave the string arena mostly garbage
+        String padding = "x".repeat(1000);
+        for (int i = 0; i < 20000; i++) {
+            productService.updateProduct(new Product("74001755", "Ball Gown " + i + padding, "Full Body Outfits", 3548 + i % 3, 7, 1));
+        }
+        assertEquals("Ball Gown 19999" + padding, productService.getProductByBarcode("74001755").getItem());
+        assertEquals("Winter Coat", productService.getProductByBarcode("74001757").getItem());
+        assertTrue(productService.getOffHeapBytes() < 64L << 20);
+    }
+
+    private static Product randomProduct(Random random) {
+        return new Product(String.valueOf(80000000 + random.nextInt(5000)), "Item " + random.nextInt(200),
+                "Category " + random.nextInt(12), random.nextInt(500) * 10, random.nextInt(101), random.nextInt(2));
+    }
+}
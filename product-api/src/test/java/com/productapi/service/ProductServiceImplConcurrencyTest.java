@@ -0,0 +1,141 @@
+package com.productapi.service;
+
+import com.productapi.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress test running CRUD writers and sort/filter readers against the same service
+ */
+public class ProductServiceImplConcurrencyTest {
+
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int OPERATIONS = 5_000;
+
+    private ProductServiceImpl productService;
+
+    @BeforeEach
+    public void setup() {
+        productService = new ProductServiceImpl();
+        productService.init();
+    }
+
+    @Test
+    public void testConcurrentCrudWithSortAndFilter() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> writers = new ArrayList<>();
+        List<Future<Integer>> readers = new ArrayList<>();
+
+        try {
+            for (int w = 0; w < WRITERS; w++) {
+                writers.add(executor.submit(writer(w, start)));
+            }
+            for (int r = 0; r < READERS; r++) {
+                readers.add(executor.submit(reader(start)));
+            }
+            start.countDown();
+
+            // Each writer reports how many of its own products survive
+            int expectedSize = 9;
+            for (Future<Integer> writer : writers) {
+                expectedSize += writer.get(60, TimeUnit.SECONDS);
+            }
+            for (Future<Integer> reader : readers) {
+                assertTrue(reader.get(60, TimeUnit.SECONDS) > 0);
+            }
+
+            // Both indexes must agree once writers are done
+            assertEquals(expectedSize, productService.getAllProducts().size());
+            assertEquals(expectedSize, productService.sortByPrice().size());
+            assertEquals(expectedSize, productService.filterByPriceRange(0, Integer.MAX_VALUE).size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcurrentCreateOfSameBarcodeHasSingleWinner() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> attempts = new ArrayList<>();
+
+        try {
+            for (int w = 0; w < WRITERS; w++) {
+                attempts.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        productService.createProduct(new Product("80000000", "Contended", "Test", 100, 0, 1));
+                        return true;
+                    } catch (IllegalArgumentException e) {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+
+            int created = 0;
+            for (Future<Boolean> attempt : attempts) {
+                if (attempt.get(10, TimeUnit.SECONDS)) {
+                    created++;
+                }
+            }
+            assertEquals(1, created);
+            assertEquals(1, productService.filterByPriceRange(100, 100).size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Callable<Integer> writer(int id, CountDownLatch start) {
+        return () -> {
+            start.await();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int live = 0;
+            for (int i = 0; i < OPERATIONS; i++) {
+                String barcode = "9" + id + String.format("%06d", i);
+                productService.createProduct(new Product(barcode, "Item " + barcode, "Stress", random.nextInt(5000), 0, 1));
+                if (i % 3 == 0) {
+                    assertNotNull(productService.updateProduct(
+                            new Product(barcode, "Updated " + barcode, "Stress", random.nextInt(5000), 5, 0)));
+                }
+                if (i % 2 == 0) {
+                    assertTrue(productService.deleteProduct(barcode));
+                } else {
+                    live++;
+                }
+            }
+            return live;
+        };
+    }
+
+    private Callable<Integer> reader(CountDownLatch start) {
+        return () -> {
+            start.await();
+            int reads = 0;
+            for (int i = 0; i < OPERATIONS / 10; i++) {
+                List<String> sorted = productService.sortByPrice();
+                List<Product> filtered = productService.filterByPriceRange(1000, 3000);
+                for (Product product : filtered) {
+                    assertTrue(product.getPrice() >= 1000 && product.getPrice() <= 3000);
+                }
+                assertNotNull(productService.getProductByBarcode("74001755"));
+                reads += sorted.size() > 0 ? 1 : 0;
+            }
+            return reads;
+        };
+    }
+}
@@ -1,14 +1,28 @@
 package com.productapi.service;
 
+import com.productapi.model.BulkUpsertResult;
 import com.productapi.model.Product;
+import com.productapi.service.persistence.CatalogSnapshotFile;
+import com.productapi.service.persistence.ProductWriteAheadLog;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -160,4 +174,447 @@ public class ProductServiceImplTest {
         result = productService.deleteProduct("nonexistent");
         assertFalse(result);
     }
-} 
\ No newline at end of file
+
+    @Test
+    public void testPriceIndexFollowsWrites() {
+        // Move the cheapest product to the top of the price range
+        productService.updateProduct(new Product("74004298", "Cotton T-Shirt", "Casual Wear", 5000, 0, 1));
+        List<String> sortedProducts = productService.sortByPrice();
+        assertEquals("Silk Scarf", sortedProducts.get(0));
+        assertEquals("Cotton T-Shirt", sortedProducts.get(8));
+        
+        // Range bounds are inclusive and equal prices are all returned
+        productService.createProduct(new Product("74009001", "Twin Scarf", "Accessories", 890, 0, 1));
+        List<Product> filteredProducts = productService.filterByPriceRange(890, 890);
+        assertEquals(2, filteredProducts.size());
+        
+        // Deleted products leave the index
+        productService.deleteProduct("74009001");
+        assertEquals(1, productService.filterByPriceRange(890, 890).size());
+        assertEquals(9, productService.sortByPrice().size());
+    }
+
+    @Test
+    public void testCatalogVersionAndSnapshots() {
+        long version = productService.getCatalogVersion();
+        List<Product> before = productService.getAllProducts();
+        
+        // Reads of an unchanged catalog share the same snapshot
+        assertSame(before, productService.getAllProducts());
+        assertThrows(UnsupportedOperationException.class, () -> before.remove(0));
+        
+        // Every successful write publishes a new version
+        productService.createProduct(new Product("74009002", "Linen Shirt", "Casual Wear", 990, 0, 1));
+        assertEquals(version + 1, productService.getCatalogVersion());
+        productService.updateProduct(new Product("74009002", "Linen Shirt", "Casual Wear", 1090, 0, 1));
+        assertEquals(version + 2, productService.getCatalogVersion());
+        productService.deleteProduct("74009002");
+        assertEquals(version + 3, productService.getCatalogVersion());
+        assertEquals(version + 3, productService.getSnapshot().getVersion());
+        
+        // Failed writes leave the version untouched
+        productService.deleteProduct("nonexistent");
+        productService.updateProduct(new Product("nonexistent", "Test", "Test", 100, 0, 1));
+        assertThrows(IllegalArgumentException.class, () ->
+                productService.createProduct(new Product("74001755", "Duplicate", "Test", 100, 0, 1)));
+        assertEquals(version + 3, productService.getCatalogVersion());
+        
+        // Earlier snapshots are unaffected by later writes
+        assertEquals(9, before.size());
+        assertNotSame(before, productService.getAllProducts());
+    }
+
+    @Test
+    public void testSortByPriceIsMemoizedUntilCatalogChanges() {
+        List<String> first = productService.sortByPrice();
+        assertSame(first, productService.sortByPrice());
+        
+        // A price change invalidates the memoized order
+        productService.updateProduct(new Product("74001757", "Winter Coat", "Outerwear", 100, 10, 1));
+        List<String> second = productService.sortByPrice();
+        assertNotSame(first, second);
+        assertEquals("Winter Coat", second.get(0));
+        assertEquals("Winter Coat", first.get(8));
+    }
+
+    @Test
+    public void testFilterCacheIsInvalidatedByPriceChange() {
+        assertEquals(1, productService.filterByPriceRange(700, 1000).size());
+        assertEquals(1, productService.filterByPriceRange(700, 1000).size());
+        assertEquals(1, productService.getRangeCacheStats().getHits());
+        
+        // Moving a product into the range must not be hidden by the cached result
+        productService.updateProduct(new Product("74005123", "Denim Jeans", "Casual Wear", 800, 10, 0));
+        assertEquals(2, productService.filterByPriceRange(700, 1000).size());
+    }
+
+    @Test
+    public void testSortProductsByCompositeKeys() {
+        // Category ascending, then final price descending within each category
+        List<Product> sorted = productService.sortProducts(ProductSort.parse("category,finalPrice:desc"));
+        assertEquals(9, sorted.size());
+        assertEquals("Designer Sunglasses", sorted.get(0).getItem()); // Accessories, 1454
+        assertEquals("Silk Scarf", sorted.get(1).getItem());          // Accessories, 757
+        assertEquals("Wool Sweater", sorted.get(8).getItem());        // Winter Collection
+        
+        // Price order is the snapshot itself; other orderings are reused until a write
+        assertSame(productService.getAllProducts(), productService.sortProducts(ProductSort.PRICE_ASCENDING));
+        ProductSort byDiscount = ProductSort.parse("discount:desc");
+        List<Product> first = productService.sortProducts(byDiscount);
+        assertSame(first, productService.sortProducts(byDiscount));
+        assertEquals("Silk Scarf", first.get(0).getItem());
+        
+        productService.deleteProduct("74002423");
+        assertEquals("Wool Sweater", productService.sortProducts(byDiscount).get(0).getItem());
+    }
+
+    @Test
+    public void testInvalidSortSpecifications() {
+        assertThrows(IllegalArgumentException.class, () -> ProductSort.parse("weight"));
+        assertThrows(IllegalArgumentException.class, () -> ProductSort.parse("price:sideways"));
+        assertThrows(IllegalArgumentException.class, () -> ProductSort.parse("price,price:desc"));
+        assertThrows(IllegalArgumentException.class, () -> ProductSort.parse(" "));
+    }
+
+    @Test
+    public void testPagedSortAndFilter() {
+        // Pages of the price order
+        assertEquals(List.of("Cotton T-Shirt", "Silk Scarf"), productService.sortByPrice(new PageSpec(0, 2)));
+        assertEquals(List.of("Summer Dress", "Ball Gown", "Winter Coat"), productService.sortByPrice(new PageSpec(6, 10)));
+        assertTrue(productService.sortByPrice(new PageSpec(20, 5)).isEmpty());
+        
+        // Pages of a price range
+        List<Product> page = productService.filterByPriceRange(1000, 4000, new PageSpec(1, 2));
+        assertEquals(2, page.size());
+        assertEquals("Designer Sunglasses", page.get(0).getItem());
+        assertEquals("Wool Sweater", page.get(1).getItem());
+        
+        // Top-K pages of other orderings match the full sort
+        ProductSort byFinalPriceDesc = ProductSort.parse("finalPrice:desc");
+        List<Product> full = productService.sortProducts(byFinalPriceDesc);
+        assertEquals(full.subList(2, 5), productService.sortProducts(byFinalPriceDesc, new PageSpec(2, 3)));
+        
+        assertThrows(IllegalArgumentException.class, () -> new PageSpec(-1, 5));
+        assertThrows(IllegalArgumentException.class, () -> new PageSpec(0, -5));
+    }
+
+    @Test
+    public void testTopKSelectionOnLargeCatalog() {
+        for (int i = 0; i < 2000; i++) {
+            productService.createProduct(new Product(String.format("8%07d", i), "Bulk " + i, "Bulk", (i * 7919) % 5000, i % 50, 1));
+        }
+        ProductSort byDiscountThenItem = ProductSort.parse("discount:desc,item");
+        
+        // A small first page is answered by heap selection before any full sort is memoized
+        List<Product> topPage = productService.sortProducts(byDiscountThenItem, new PageSpec(5, 20));
+        List<Product> full = productService.sortProducts(byDiscountThenItem);
+        assertEquals(full.subList(5, 25), topPage);
+    }
+
+    @Test
+    public void testKeysetPagesStayStableUnderWrites() {
+        List<Product> first = productService.filterByPriceRangeAfter(0, Integer.MAX_VALUE, null, 4);
+        assertEquals(4, first.size());
+        PriceKey cursor = PriceCursor.decode(PriceCursor.encode(first.get(3)));
+        
+        // Writes before the cursor position must not shift the next page
+        productService.createProduct(new Product("74009003", "Cheap Socks", "Casual Wear", 100, 0, 1));
+        productService.deleteProduct("74004298");
+        
+        List<Product> second = productService.filterByPriceRangeAfter(0, Integer.MAX_VALUE, cursor, 4);
+        assertEquals("Wool Sweater", second.get(0).getItem());
+        assertEquals("Ball Gown", second.get(3).getItem());
+        
+        // Products sharing a price are split by barcode
+        productService.createProduct(new Product("74009004", "Twin Jeans", "Casual Wear", 1200, 0, 1));
+        List<Product> tied = productService.filterByPriceRangeAfter(1200, 1200, null, 1);
+        assertEquals("74005123", tied.get(0).getBarcode());
+        tied = productService.filterByPriceRangeAfter(1200, 1200, PriceCursor.decode(PriceCursor.encode(tied.get(0))), 1);
+        assertEquals("74009004", tied.get(0).getBarcode());
+        
+        assertThrows(IllegalArgumentException.class, () -> PriceCursor.decode("not a cursor"));
+    }
+
+    @Test
+    public void testUpsertAllAppliesBatchAsOneVersion() {
+        long version = productService.getCatalogVersion();
+        List<Product> batch = List.of(
+                new Product("74009010", "Bulk Hat", "Accessories", 600, 0, 1),
+                new Product("74001755", "Ball Gown", "Full Body Outfits", 3000, 7, 1),  // existing
+                new Product("74009011", null, "Accessories", 700, 0, 1),                // invalid
+                new Product("74009010", "Bulk Cap", "Accessories", 650, 0, 1));         // supersedes item 0
+        
+        BulkUpsertResult result = productService.upsertAll(batch);
+        
+        assertEquals(1, result.getCreated());
+        assertEquals(1, result.getUpdated());
+        assertEquals(1, result.getFailed());
+        assertEquals(1, result.getSuperseded());
+        assertEquals(BulkUpsertResult.Status.SUPERSEDED, result.getItems().get(0).getStatus());
+        assertEquals(BulkUpsertResult.Status.UPDATED, result.getItems().get(1).getStatus());
+        assertEquals(BulkUpsertResult.Status.FAILED, result.getItems().get(2).getStatus());
+        assertEquals("Product name is required", result.getItems().get(2).getError());
+        assertEquals(BulkUpsertResult.Status.CREATED, result.getItems().get(3).getStatus());
+        
+        // The whole batch is a single catalog version
+        assertEquals(version + 1, result.getCatalogVersion());
+        assertEquals(version + 1, productService.getCatalogVersion());
+        assertEquals("Bulk Cap", productService.getProductByBarcode("74009010").getItem());
+        assertEquals(3000, productService.getProductByBarcode("74001755").getPrice());
+        assertEquals(1, productService.filterByPriceRange(3000, 3000).size());
+        assertTrue(productService.filterByPriceRange(3548, 3548).isEmpty());
+        assertEquals(10, productService.sortByPrice().size());
+    }
+
+    @Test
+    public void testUpsertAllLargeBatch() {
+        List<Product> batch = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            batch.add(new Product(String.format("7%07d", i), "Item " + i, "Bulk", i % 1000, 0, 1));
+        }
+        
+        BulkUpsertResult result = productService.upsertAll(batch);
+        
+        assertEquals(5000, result.getCreated());
+        assertEquals(5009, productService.getAllProducts().size());
+        assertTrue(result.getItemsPerSecond() > 0);
+    }
+
+    @Test
+    public void testSnapshotFileSurvivesRestart(@TempDir Path directory) throws Exception {
+        String path = directory.resolve("catalog.bin").toString();
+        productService.setSnapshotPath(path);
+        productService.createProduct(new Product("74009020", "Saved Hat", "Accessories", 990, 0, 1));
+        productService.deleteProduct("74004298");
+        long version = productService.getCatalogVersion();
+        productService.shutdown();
+        
+        // A restart maps the file instead of seeding sample data
+        ProductServiceImpl restarted = new ProductServiceImpl();
+        restarted.setSnapshotPath(path);
+        restarted.init();
+        assertEquals(version, restarted.getCatalogVersion());
+        assertEquals("Saved Hat", restarted.getProductByBarcode("74009020").getItem());
+        assertNull(restarted.getProductByBarcode("74004298"));
+        assertEquals(productService.getAllProducts(), restarted.getAllProducts());
+        
+        // Writes after the restart layer over the mapped products
+        restarted.updateProduct(new Product("74001755", "Ball Gown", "Full Body Outfits", 100, 7, 1));
+        restarted.deleteProduct("74002423");
+        restarted.createProduct(new Product("74009021", "New Belt", "Accessories", 1200, 0, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> restarted.createProduct(new Product("74001756", "Duplicate", "Full Body Outfits", 1, 0, 1)));
+        assertNull(restarted.getProductByBarcode("74002423"));
+        assertFalse(restarted.deleteProduct("74002423"));
+        List<String> sorted = restarted.sortByPrice();
+        assertEquals("Ball Gown", sorted.get(0));
+        assertEquals(9, sorted.size());
+        assertEquals(List.of("Saved Hat", "Denim Jeans", "New Belt"),
+                restarted.filterByPriceRange(900, 1200).stream().map(Product::getItem).collect(Collectors.toList()));
+        
+        // Saving again folds both layers into the file
+        restarted.shutdown();
+        ProductServiceImpl again = new ProductServiceImpl();
+        again.setSnapshotPath(path);
+        again.init();
+        assertEquals(restarted.getAllProducts(), again.getAllProducts());
+        assertEquals(restarted.getCatalogVersion(), again.getCatalogVersion());
+    }
+    
+    @Test
+    public void testSaveMapsTheFileAsTheNewBase(@TempDir Path directory) throws Exception {
+        productService.setSnapshotPath(directory.resolve("catalog.bin").toString());
+        productService.createProduct(new Product("74009020", "Saved Hat", "Accessories", 990, 0, 1));
+        productService.deleteProduct("74004298");
+        assertEquals(SampleCatalog.products().size(), productService.getWrittenProductCount());
+        
+        // The saved products now come from the file, and the layer above it is empty
+        long version = productService.saveSnapshot();
+        assertEquals(0, productService.getWrittenProductCount());
+        assertEquals(version, productService.getCatalogVersion());
+        assertEquals("Saved Hat", productService.getProductByBarcode("74009020").getItem());
+        assertNull(productService.getProductByBarcode("74004298"));
+        assertEquals(SampleCatalog.products().size(), productService.getProductCount());
+        
+        // Writes after the save stay above it, and deletions of saved products hide them
+        productService.deleteProduct("74009020");
+        productService.createProduct(new Product("74004298", "Back Again", "Accessories", 10, 0, 1));
+        productService.updateProduct(new Product("74001755", "Ball Gown", "Full Body Outfits", 100, 7, 1));
+        assertEquals(2, productService.getWrittenProductCount());
+        assertNull(productService.getProductByBarcode("74009020"));
+        assertEquals("Back Again", productService.getProductByBarcode("74004298").getItem());
+        List<Product> all = productService.getAllProducts();
+        assertEquals(all.size(), productService.getProductCount());
+        
+        // A deletion folded into the next save does not bring the product back
+        productService.saveSnapshot();
+        assertEquals(0, productService.getWrittenProductCount());
+        assertNull(productService.getProductByBarcode("74009020"));
+        assertEquals(all, productService.getAllProducts());
+        assertEquals(all.size(), productService.getProductCount());
+        productService.createProduct(new Product("74009020", "Saved Hat", "Accessories", 990, 0, 1));
+        assertEquals(all.size() + 1, productService.getProductCount());
+        assertEquals(List.of("Saved Hat"),
+                productService.filterByPriceRange(990, 990).stream().map(Product::getItem).collect(Collectors.toList()));
+    }
+    
+    @Test
+    public void testPriceRangesReadMappedRecords(@TempDir Path directory) throws Exception {
+        String path = directory.resolve("catalog.bin").toString();
+        productService.setSnapshotPath(path);
+        productService.upsertAll(randomProducts(new Random(5), 2000));
+        productService.shutdown();
+        
+        // A small save interval makes the restarted store save on its own, in the background
+        ProductServiceImpl restarted = new ProductServiceImpl();
+        restarted.setSnapshotPath(path);
+        restarted.setSaveEveryWrites(50);
+        restarted.init();
+        ProductServiceImpl reference = new ProductServiceImpl();
+        reference.init();
+        reference.upsertAll(productService.getAllProducts());
+        Random random = new Random(6);
+        for (int i = 0; i < 200; i++) {
+            Product product = randomProducts(random, 1).get(0);
+            if (random.nextBoolean()) {
+                assertEquals(reference.deleteProduct(product.getBarcode()), restarted.deleteProduct(product.getBarcode()));
+            } else {
+                reference.upsertAll(List.of(product));
+                restarted.upsertAll(List.of(product));
+            }
+            // Ranges are merged from the mapped records and the writes since boot, without a full snapshot
+            if (i % 20 == 0) {
+                assertEquals(reference.filterByPriceRange(1000, 2500), restarted.filterByPriceRange(1000, 2500));
+                assertEquals(reference.getProductCount(), restarted.getProductCount());
+                assertEquals(reference.filterByPriceRange(2500, 1000), restarted.filterByPriceRange(2500, 1000));
+                PriceKey after = new PriceKey(1500, "80002500");
+                assertEquals(reference.filterByPriceRangeAfter(0, 4000, after, 50),
+                        restarted.filterByPriceRangeAfter(0, 4000, after, 50));
+            }
+        }
+        assertEquals(reference.filterByPriceRange(0, Integer.MAX_VALUE, new PageSpec(100, 40)),
+                restarted.filterByPriceRange(0, Integer.MAX_VALUE, new PageSpec(100, 40)));
+        // A stale snapshot over the mapped file is streamed in pages instead of being rebuilt
+        List<Product> streamed = List.of(new Product("80002500", "Streamed", "Category", 1500, 0, 1));
+        reference.upsertAll(streamed);
+        restarted.upsertAll(streamed);
+        assertEquals(reference.getAllProducts(), restarted.streamByPrice().collect(Collectors.toList()));
+        assertEquals(reference.getAllProducts(), restarted.getAllProducts());
+        assertEquals(reference.getAllProducts(), restarted.streamByPrice().collect(Collectors.toList()));
+        
+        // No shutdown: the file already holds a version saved after the restart
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (CatalogSnapshotFile.open(Path.of(path)).getVersion() <= productService.getCatalogVersion()
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(CatalogSnapshotFile.open(Path.of(path)).getVersion() > productService.getCatalogVersion());
+        restarted.shutdown();
+    }
+    
+    @Test
+    public void testWriteAheadLogRecoversAfterCrash(@TempDir Path directory) throws Exception {
+        String walDir = directory.resolve("wal").toString();
+        String snapshotPath = directory.resolve("catalog.bin").toString();
+        ProductServiceImpl crashed = new ProductServiceImpl();
+        crashed.setWalDirectory(walDir);
+        crashed.setSnapshotPath(snapshotPath);
+        crashed.init();
+        crashed.createProduct(new Product("74009030", "Logged Hat", "Accessories", 990, 0, 1));
+        crashed.updateProduct(new Product("74001755", "Ball Gown", "Full Body Outfits", 100, 7, 1));
+        crashed.deleteProduct("74002423");
+        crashed.upsertAll(List.of(new Product("74009031", "Logged Belt", "Accessories", 1200, 0, 1),
+                new Product("74009030", "Logged Cap", "Accessories", 980, 0, 1)));
+        
+        // No shutdown: the next instance only has the log to go on
+        ProductServiceImpl recovered = new ProductServiceImpl();
+        recovered.setWalDirectory(walDir);
+        recovered.setSnapshotPath(snapshotPath);
+        recovered.init();
+        assertEquals(crashed.getCatalogVersion(), recovered.getCatalogVersion());
+        assertEquals(crashed.getAllProducts(), recovered.getAllProducts());
+        assertEquals("Logged Cap", recovered.getProductByBarcode("74009030").getItem());
+        assertNull(recovered.getProductByBarcode("74002423"));
+        
+        // Compaction moves the log into the snapshot; later writes are replayed over it
+        long compacted = recovered.compactLog();
+        assertEquals(recovered.getCatalogVersion(), compacted);
+        recovered.deleteProduct("74009031");
+        ProductServiceImpl restarted = new ProductServiceImpl();
+        restarted.setWalDirectory(walDir);
+        restarted.setSnapshotPath(snapshotPath);
+        restarted.init();
+        assertEquals(recovered.getCatalogVersion(), restarted.getCatalogVersion());
+        assertEquals(recovered.getAllProducts(), restarted.getAllProducts());
+        assertNull(restarted.getProductByBarcode("74009031"));
+        
+        recovered.shutdown();
+        restarted.shutdown();
+    }
+    
+    @Test
+    public void testWritesAreReportedOnlyOnceLogged(@TempDir Path directory) throws Exception {
+        ProductServiceImpl logged = new ProductServiceImpl();
+        logged.setWalDirectory(directory.resolve("wal").toString());
+        logged.setCommitWindowMicros(0);
+        logged.init();
+        ProductWriteAheadLog log = logged.getWriteAheadLog();
+        
+        // Listeners see a write only after the sync that makes it durable
+        List<Long> syncsSeen = new ArrayList<>();
+        logged.addChangeListener((version, changes) -> syncsSeen.add(log.getSyncCount()));
+        long syncs = log.getSyncCount();
+        logged.createProduct(new Product("74009040", "Durable Hat", "Accessories", 990, 0, 1));
+        logged.updateProduct(new Product("74009040", "Durable Cap", "Accessories", 980, 0, 1));
+        logged.deleteProduct("74009040");
+        logged.upsertAll(List.of(new Product("74009041", "Durable Belt", "Accessories", 1200, 0, 1)));
+        assertEquals(List.of(syncs + 1, syncs + 2, syncs + 3, syncs + 4), syncsSeen);
+        
+        // Writers validate against writes that are logged, whether or not applied yet
+        assertThrows(IllegalArgumentException.class,
+                () -> logged.createProduct(new Product("74009041", "Duplicate", "Accessories", 1, 0, 1)));
+        assertNull(logged.updateProduct(new Product("74009040", "Gone", "Accessories", 1, 0, 1)));
+        logged.shutdown();
+    }
+    
+    @Test
+    public void testConcurrentLoggedWritesShareSyncsAndApplyInOrder(@TempDir Path directory) throws Exception {
+        ProductServiceImpl logged = new ProductServiceImpl();
+        logged.setWalDirectory(directory.resolve("wal").toString());
+        logged.init();
+        List<Long> versions = Collections.synchronizedList(new ArrayList<>());
+        logged.addChangeListener((version, changes) -> versions.add(version));
+        long start = logged.getCatalogVersion();
+        
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            writers.add(pool.submit(() -> {
+                for (int i = 0; i < 50; i++) {
+                    logged.createProduct(new Product(String.valueOf(81000000 + thread * 100 + i), "Item", "Category", i, 0, 1));
+                }
+            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        
+        // Writes are applied in log order, one version each, while syncs are shared
+        assertEquals(start + 400, logged.getCatalogVersion());
+        assertEquals(LongStream.rangeClosed(start + 1, start + 400).boxed().collect(Collectors.toList()), versions);
+        assertTrue(logged.getWriteAheadLog().getSyncCount() < 400);
+        assertEquals(SampleCatalog.products().size() + 400, logged.getProductCount());
+        logged.shutdown();
+    }
+    
+    private static List<Product> randomProducts(Random random, int count) {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            products.add(new Product(String.valueOf(80000000 + random.nextInt(5000)), "Item " + random.nextInt(200),
+                    "Category " + random.nextInt(12), random.nextInt(500) * 10, random.nextInt(101), random.nextInt(2)));
+        }
+        return products;
+    }
+}
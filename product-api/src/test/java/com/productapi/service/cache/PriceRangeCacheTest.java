@@ -0,0 +1,120 @@
+package com.productapi.service.cache;
+
+import com.productapi.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PriceRangeCacheTest {
+
+    private final Product product = new Product("74001755", "Ball Gown", "Full Body Outfits", 3548, 7, 1);
+
+    @Test
+    public void testHitsAndMisses() {
+        PriceRangeCache cache = new PriceRangeCache(4);
+        AtomicInteger loads = new AtomicInteger();
+
+        List<Product> first = cache.get(1000, 4000, 1, () -> load(loads));
+        List<Product> second = cache.get(1000, 4000, 1, () -> load(loads));
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        CacheStats stats = cache.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(0.5, stats.getHitRatio());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedRangeIsEvicted() {
+        // Recency is kept to the millisecond: every lookup here happens a millisecond after the last
+        AtomicLong now = new AtomicLong();
+        PriceRangeCache cache = new PriceRangeCache(2, () -> now.addAndGet(1_000_000));
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(0, 100, 1, () -> load(loads));
+        cache.get(0, 200, 1, () -> load(loads));
+        cache.get(0, 100, 1, () -> load(loads)); // touch, so 0-200 becomes eldest
+        cache.get(0, 300, 1, () -> load(loads));
+
+        assertEquals(1, cache.getStats().getEvictions());
+        assertEquals(2, cache.getStats().getSize());
+        cache.get(0, 100, 1, () -> load(loads));
+        assertEquals(3, loads.get());
+        cache.get(0, 200, 1, () -> load(loads));
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void testNewCatalogVersionInvalidatesEntries() {
+        PriceRangeCache cache = new PriceRangeCache(4);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(0, 100, 1, () -> load(loads));
+        cache.get(0, 100, 2, () -> load(loads));
+        assertEquals(2, loads.get());
+
+        // A reader still on the old version is served, but not cached
+        cache.get(0, 100, 1, () -> load(loads));
+        assertEquals(3, loads.get());
+        cache.get(0, 100, 2, () -> load(loads));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testZeroSizeDisablesCaching() {
+        PriceRangeCache cache = new PriceRangeCache(0);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(0, 100, 1, () -> load(loads));
+        cache.get(0, 100, 1, () -> load(loads));
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.getStats().getSize());
+        assertThrows(IllegalArgumentException.class, () -> new PriceRangeCache(-1));
+    }
+
+    @Test
+    public void testConcurrentLookupsStayWithinSize() throws Exception {
+        PriceRangeCache cache = new PriceRangeCache(16);
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int seed = t;
+                readers.add(pool.submit(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        int from = ((i * 31 + seed) % 64) * 100;
+                        // Every result is a list of the product loaded for this version
+                        assertEquals(1, cache.get(from, from + 100, i / 2500, () -> load(loads)).size());
+                    }
+                }));
+            }
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        CacheStats stats = cache.getStats();
+        assertEquals(80000, stats.getHits() + stats.getMisses());
+        assertTrue(stats.getSize() <= 16 + 8, "size " + stats.getSize());
+        assertTrue(stats.getEvictions() > 0);
+    }
+
+    private List<Product> load(AtomicInteger loads) {
+        loads.incrementAndGet();
+        return Collections.singletonList(product);
+    }
+}
@@ -0,0 +1,183 @@
+package com.productapi.service.cache;
+
+import com.productapi.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductNearCacheTest {
+
+    private final Product product = new Product("74001755", "Ball Gown", "Full Body Outfits", 3548, 7, 1);
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    public void testEntriesExpire() {
+        ProductNearCache cache = new ProductNearCache(16, 1000, now::get);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertSame(product, cache.get("74001755", barcode -> load(loads)));
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        assertSame(product, cache.get("74001755", barcode -> load(loads)));
+        assertEquals(1, loads.get());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        cache.get("74001755", barcode -> load(loads));
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getStats().getHits());
+        assertEquals(2, cache.getStats().getMisses());
+    }
+
+    @Test
+    public void testMissingProductsAreCached() {
+        ProductNearCache cache = new ProductNearCache(16, 1000, now::get);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertNull(cache.get("00000000", barcode -> { loads.incrementAndGet(); return null; }));
+        assertNull(cache.get("00000000", barcode -> { loads.incrementAndGet(); return null; }));
+        assertEquals(1, loads.get());
+
+        // A create invalidates the cached absence
+        cache.invalidate("00000000");
+        assertSame(product, cache.get("00000000", barcode -> product));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedBarcodeIsEvicted() {
+        // Recency is kept to the millisecond: every lookup here happens a millisecond after the last
+        ProductNearCache cache = new ProductNearCache(2, 1000, () -> now.addAndGet(1_000_000));
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("a", barcode -> load(loads));
+        cache.get("b", barcode -> load(loads));
+        cache.get("a", barcode -> load(loads)); // touch, so b becomes eldest
+        cache.get("c", barcode -> load(loads));
+
+        assertEquals(1, cache.getStats().getEvictions());
+        cache.get("a", barcode -> load(loads));
+        assertEquals(3, loads.get());
+        cache.get("b", barcode -> load(loads));
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void testConcurrentMissesShareOneLoad() throws Exception {
+        ProductNearCache cache = new ProductNearCache(16, 60000);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Product>> lookups = new ArrayList<>();
+        lookups.add(pool.submit(() -> cache.get("74001755", barcode -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return product;
+        })));
+        loading.await();
+        for (int i = 0; i < 7; i++) {
+            lookups.add(pool.submit(() -> cache.get("74001755", barcode -> load(loads))));
+        }
+        // Let the waiters register before the load finishes
+        while (cache.getCoalesced() < 7) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        for (Future<Product> lookup : lookups) {
+            assertSame(product, lookup.get(10, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+
+        assertEquals(1, loads.get());
+        assertEquals(7, cache.getCoalesced());
+    }
+
+    @Test
+    public void testLoadRunningDuringInvalidationIsNotStored() throws Exception {
+        ProductNearCache cache = new ProductNearCache(16, 60000);
+        Product updated = new Product("74001755", "Ball Gown", "Full Body Outfits", 100, 7, 1);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<Product> stale = pool.submit(() -> cache.get("74001755", barcode -> {
+            loading.countDown();
+            await(release);
+            return product;
+        }));
+        loading.await();
+        cache.invalidate("74001755"); // a write lands while the old value is being read
+        release.countDown();
+        assertSame(product, stale.get(10, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        assertSame(updated, cache.get("74001755", barcode -> updated));
+    }
+
+    @Test
+    public void testConcurrentLookupsStayWithinSize() throws Exception {
+        ProductNearCache cache = new ProductNearCache(16, 60000);
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int seed = t;
+                readers.add(pool.submit(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        assertSame(product, cache.get("barcode" + (i * 31 + seed) % 64, barcode -> load(loads)));
+                        if (i % 100 == seed) {
+                            cache.invalidate("barcode" + i % 64);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        CacheStats stats = cache.getStats();
+        assertEquals(80000, stats.getHits() + stats.getMisses());
+        assertTrue(stats.getSize() <= 16 + 8, "size " + stats.getSize());
+        assertTrue(stats.getEvictions() > 0);
+    }
+
+    @Test
+    public void testZeroSizeDisablesCaching() {
+        ProductNearCache cache = new ProductNearCache(0, 1000);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("74001755", barcode -> load(loads));
+        cache.get("74001755", barcode -> load(loads));
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.getStats().getSize());
+    }
+
+    private Product load(AtomicInteger loads) {
+        loads.incrementAndGet();
+        return product;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
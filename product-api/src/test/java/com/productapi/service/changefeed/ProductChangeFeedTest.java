@@ -0,0 +1,121 @@
+package com.productapi.service.changefeed;
+
+import com.productapi.model.CatalogDelta;
+import com.productapi.model.CatalogDeltaPage;
+import com.productapi.model.Product;
+import com.productapi.model.ProductChange.Type;
+import com.productapi.service.ProductServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductChangeFeedTest {
+
+    private ProductServiceImpl productService;
+
+    @BeforeEach
+    public void setup() {
+        productService = new ProductServiceImpl();
+        productService.init(); // Initialize with sample data
+    }
+
+    @Test
+    public void testDeltasSinceVersion() {
+        ProductChangeFeed feed = feed(100);
+        long start = productService.getCatalogVersion();
+
+        productService.createProduct(new Product("74009080", "Silk Scarf", "Accessories", 1490, 0, 1));
+        productService.upsertAll(List.of(
+                new Product("74009081", "Cotton Tee", "Tops", 990, 0, 1),
+                new Product("74001755", "Ball Gown", "Full Body Outfits", 3200, 7, 1)));
+        productService.deleteProduct("74009080");
+
+        CatalogDeltaPage page = feed.since(start, 10);
+        assertTrue(page.isComplete());
+        assertEquals(productService.getCatalogVersion(), page.getVersion());
+        List<CatalogDelta> deltas = page.getDeltas();
+        assertEquals(3, deltas.size());
+        assertEquals(Type.CREATED, deltas.get(0).getChanges().get(0).getType());
+        assertEquals(Type.CREATED, deltas.get(1).getChanges().get(0).getType());
+        assertEquals(Type.UPDATED, deltas.get(1).getChanges().get(1).getType());
+        assertEquals(3200, deltas.get(1).getChanges().get(1).getProduct().getPrice());
+        assertEquals(Type.DELETED, deltas.get(2).getChanges().get(0).getType());
+        assertNull(deltas.get(2).getChanges().get(0).getProduct());
+
+        // Continuing from the returned version yields only later writes
+        CatalogDeltaPage next = feed.since(page.getVersion(), 10);
+        assertTrue(next.getDeltas().isEmpty());
+        assertEquals(page.getVersion(), next.getVersion());
+    }
+
+    @Test
+    public void testLimitSplitsPages() {
+        ProductChangeFeed feed = feed(100);
+        long start = productService.getCatalogVersion();
+        for (int i = 0; i < 5; i++) {
+            productService.createProduct(new Product("7400910" + i, "Sock " + i, "Accessories", 500 + i, 0, 1));
+        }
+
+        CatalogDeltaPage first = feed.since(start, 2);
+        assertFalse(first.isComplete());
+        assertEquals(2, first.getDeltas().size());
+        CatalogDeltaPage second = feed.since(first.getVersion(), 2);
+        CatalogDeltaPage third = feed.since(second.getVersion(), 2);
+        assertEquals(1, third.getDeltas().size());
+        assertTrue(third.isComplete());
+        assertEquals("74009104", third.getDeltas().get(0).getChanges().get(0).getBarcode());
+    }
+
+    @Test
+    public void testDroppedDeltasExpireOldVersions() {
+        ProductChangeFeed feed = feed(2);
+        long start = productService.getCatalogVersion();
+        for (int i = 0; i < 4; i++) {
+            productService.createProduct(new Product("7400920" + i, "Belt " + i, "Accessories", 1500 + i, 0, 1));
+        }
+
+        assertEquals(start + 2, feed.getHorizon());
+        ChangeFeedExpiredException e = assertThrows(ChangeFeedExpiredException.class, () -> feed.since(start, 10));
+        assertEquals(start + 2, e.getHorizon());
+        assertEquals(2, feed.since(feed.getHorizon(), 10).getDeltas().size());
+        assertThrows(IllegalArgumentException.class, () -> feed.since(-1, 10));
+    }
+
+    @Test
+    public void testVersionNewerThanCatalogIsExpired() {
+        ProductChangeFeed feed = feed(100);
+        long latest = productService.getCatalogVersion();
+
+        // A version handed out before a restart started the versions over
+        ChangeFeedExpiredException e = assertThrows(ChangeFeedExpiredException.class, () -> feed.since(latest + 5, 10));
+        assertEquals(latest, e.getHorizon());
+        assertTrue(feed.since(latest, 10).getDeltas().isEmpty());
+    }
+
+    @Test
+    public void testVersionFromAnotherEpochIsExpired() {
+        ProductChangeFeed previousRun = feed(100);
+        ProductChangeFeed feed = feed(100);
+        long latest = productService.getCatalogVersion();
+        assertNotEquals(previousRun.getEpoch(), feed.getEpoch());
+
+        // The same version from a run that started the versions over names a different catalog
+        ChangeFeedExpiredException e = assertThrows(ChangeFeedExpiredException.class,
+                () -> feed.since(previousRun.getEpoch(), latest, 10));
+        assertEquals(latest, e.getHorizon());
+        assertThrows(ChangeFeedExpiredException.class, () -> feed.checkContinuable(previousRun.getEpoch(), latest));
+
+        CatalogDeltaPage page = feed.since(feed.getEpoch(), latest, 10);
+        assertEquals(feed.getEpoch(), page.getEpoch());
+        feed.checkContinuable(page.getEpoch(), page.getVersion());
+    }
+
+    private ProductChangeFeed feed(int maxChanges) {
+        ProductChangeFeed feed = new ProductChangeFeed(productService, maxChanges, System::currentTimeMillis);
+        feed.start();
+        return feed;
+    }
+}
@@ -0,0 +1,183 @@
+package com.productapi.service.jfr;
+
+import com.productapi.model.Product;
+import com.productapi.service.ColumnarProductServiceImpl;
+import com.productapi.service.OffHeapProductServiceImpl;
+import com.productapi.service.ProductService;
+import com.productapi.service.ProductServiceImpl;
+import com.productapi.service.cache.PriceRangeCache;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogEventsTest {
+
+    @TempDir
+    Path dir;
+
+    private Recording recording;
+    private ProductServiceImpl productService;
+
+    @BeforeEach
+    public void setup() {
+        productService = new ProductServiceImpl();
+        productService.init(); // Initialize with sample data
+
+        recording = new Recording();
+        recording.enable(CatalogMutationEvent.class);
+        // Queries on the sample catalog finish well under the default threshold
+        recording.enable(CatalogQueryEvent.class).withThreshold(Duration.ZERO);
+        recording.enable(CatalogSnapshotEvent.class);
+        recording.enable(CacheEvictionEvent.class);
+        recording.start();
+    }
+
+    @AfterEach
+    public void teardown() {
+        recording.close();
+    }
+
+    @Test
+    public void testMutationsAreRecorded() throws IOException {
+        ProductService service = recorded(productService);
+        service.createProduct(new Product("74003999", "T-Shirt", "Tops", 1299, 5, 1));
+        service.deleteProduct("74003999");
+        service.deleteProduct("00000000");
+
+        List<RecordedEvent> events = events("com.productapi.CatalogMutation");
+        assertEquals(3, events.size());
+        RecordedEvent created = events.get(0);
+        assertEquals("createProduct", created.getString("operation"));
+        assertEquals("ProductServiceImpl", created.getString("store"));
+        assertEquals("74003999", created.getString("barcode"));
+        assertEquals(1, created.getInt("products"));
+        assertEquals(productService.getCatalogVersion() - 1, created.getLong("catalogVersion"));
+        // A delete of a missing product changes nothing
+        assertEquals(0, events.get(2).getInt("products"));
+    }
+
+    @Test
+    public void testQueriesAreRecordedWithResultCounts() throws IOException {
+        ProductService service = recorded(productService);
+        int rows = service.filterByPriceRange(700, 4000).size();
+        int items = service.sortByPrice().size();
+
+        List<RecordedEvent> events = events("com.productapi.CatalogQuery");
+        assertEquals(2, events.size());
+        assertEquals("filterByPriceRange", events.get(0).getString("operation"));
+        assertEquals(rows, events.get(0).getInt("resultCount"));
+        assertEquals("sortByPrice", events.get(1).getString("operation"));
+        assertEquals(items, events.get(1).getInt("resultCount"));
+    }
+
+    @Test
+    public void testEveryStoreIsRecorded() throws IOException {
+        ColumnarProductServiceImpl columnar = new ColumnarProductServiceImpl();
+        columnar.init();
+        OffHeapProductServiceImpl offHeap = new OffHeapProductServiceImpl();
+        offHeap.init();
+        for (ProductService store : List.of(columnar, offHeap)) {
+            ProductService service = recorded(store);
+            service.upsertAll(List.of(new Product("74003999", "T-Shirt", "Tops", 1299, 5, 1),
+                    new Product("74001755", "Ball Gown", "Full Body Outfits", 3200, 7, 1)));
+            service.filterByPriceRange(700, 4000);
+        }
+
+        List<RecordedEvent> mutations = events("com.productapi.CatalogMutation");
+        assertEquals(List.of("ColumnarProductServiceImpl", "OffHeapProductServiceImpl"),
+                mutations.stream().map(event -> event.getString("store")).collect(Collectors.toList()));
+        assertEquals(2, mutations.get(0).getInt("products"));
+        assertNull(mutations.get(0).getString("barcode"));
+        List<RecordedEvent> queries = events("com.productapi.CatalogQuery");
+        assertEquals(List.of("ColumnarProductServiceImpl", "OffHeapProductServiceImpl"),
+                queries.stream().map(event -> event.getString("store")).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testSnapshotRebuildIsRecordedAfterWrite() throws IOException {
+        productService.upsertAll(Collections.singletonList(new Product("74003999", "T-Shirt", "Tops", 1299, 5, 1)));
+        productService.getAllProducts();
+        productService.getAllProducts();
+
+        // The second read is served by the snapshot the first one built
+        List<RecordedEvent> events = events("com.productapi.CatalogSnapshot");
+        assertEquals(1, events.size());
+        assertEquals(productService.getCatalogVersion(), events.get(0).getLong("catalogVersion"));
+        assertEquals(productService.getProductCount(), events.get(0).getInt("products"));
+    }
+
+    @Test
+    public void testConcurrentReadersShareOneRebuild() throws Exception {
+        productService.createProduct(new Product("74003999", "T-Shirt", "Tops", 1299, 5, 1));
+
+        ExecutorService readers = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> reads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            reads.add(readers.submit(() -> {
+                start.await();
+                return productService.getAllProducts().size();
+            }));
+        }
+        start.countDown();
+        for (Future<Integer> read : reads) {
+            assertEquals(productService.getProductCount(), (long) read.get(10, TimeUnit.SECONDS));
+        }
+        readers.shutdown();
+
+        // Readers arriving during the rebuild wait for it instead of copying the catalog too
+        assertEquals(1, events("com.productapi.CatalogSnapshot").size());
+    }
+
+    @Test
+    public void testCacheEvictionsAreRecorded() throws IOException {
+        PriceRangeCache cache = new PriceRangeCache(1);
+        cache.get(100, 200, 1, Collections::emptyList);
+        cache.get(300, 400, 1, Collections::emptyList);
+
+        List<RecordedEvent> events = events("com.productapi.CacheEviction");
+        assertEquals(1, events.size());
+        assertEquals("priceRange", events.get(0).getString("cache"));
+        assertEquals("100-200", events.get(0).getString("key"));
+    }
+
+    private static ProductService recorded(ProductService store) {
+        // The store behind the aspect, as the application proxies it
+        AspectJProxyFactory proxy = new AspectJProxyFactory(store);
+        proxy.addAspect(new CatalogEventsAspect());
+        return proxy.getProxy();
+    }
+
+    private List<RecordedEvent> events(String name) throws IOException {
+        if (recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+        }
+        Path file = dir.resolve("test.jfr");
+        recording.dump(file);
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .sorted((a, b) -> a.getStartTime().compareTo(b.getStartTime()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,80 @@
+package com.productapi.service.metrics;
+
+import com.productapi.model.Product;
+import com.productapi.service.ProductService;
+import com.productapi.service.ProductServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServiceMetricsAspectTest {
+
+    private SimpleMeterRegistry registry;
+    private ProductService productService;
+
+    @BeforeEach
+    public void setup() {
+        ProductServiceImpl store = new ProductServiceImpl();
+        store.init(); // Initialize with sample data
+        registry = new SimpleMeterRegistry();
+        AspectJProxyFactory factory = new AspectJProxyFactory(store);
+        factory.addAspect(new ServiceMetricsAspect(registry));
+        productService = factory.getProxy();
+    }
+
+    @Test
+    public void testCallsAreTimedWithResultSize() {
+        int rows = productService.filterByPriceRange(1000, 4000).size();
+        productService.filterByPriceRange(0, 500);
+        productService.getCatalogVersion();
+
+        assertEquals(2, registry.get(ServiceMetricsAspect.CATALOG_TIMER)
+                .tags("operation", "filterByPriceRange", "store", "ProductServiceImpl", "outcome", "success")
+                .timer().count());
+        assertTrue(registry.get(ServiceMetricsAspect.CATALOG_RESULT_SIZE)
+                .tag("operation", "filterByPriceRange")
+                .summary().max() >= rows);
+        // Version reads run on every request and are not timed
+        assertNull(registry.find(ServiceMetricsAspect.CATALOG_TIMER).tag("operation", "getCatalogVersion").timer());
+    }
+
+    @Test
+    public void testFailuresAreTaggedWithException() {
+        Product invalid = new Product("74009090", "", "Accessories", 100, 0, 1);
+        assertThrows(IllegalArgumentException.class, () -> productService.createProduct(invalid));
+
+        assertEquals(1, registry.get(ServiceMetricsAspect.CATALOG_TIMER)
+                .tags("operation", "createProduct", "outcome", "error", "exception", "IllegalArgumentException")
+                .timer().count());
+        // Single-product results are not sizes
+        assertNull(registry.find(ServiceMetricsAspect.CATALOG_RESULT_SIZE).tag("operation", "createProduct").summary());
+    }
+
+    @Test
+    public void testCallsPassThroughWithoutRegistry() {
+        ProductServiceImpl store = new ProductServiceImpl();
+        store.init();
+        AspectJProxyFactory factory = new AspectJProxyFactory(store);
+        factory.addAspect(new ServiceMetricsAspect(new DefaultListableBeanFactory().getBeanProvider(MeterRegistry.class)));
+        ProductService untimed = factory.getProxy();
+
+        assertEquals(store.filterByPriceRange(1000, 4000).size(), untimed.filterByPriceRange(1000, 4000).size());
+    }
+
+    @Test
+    public void testCatalogGauges() {
+        new CatalogMetrics(productService).bindTo(registry);
+        productService.filterByPriceRange(1000, 4000);
+        productService.filterByPriceRange(1000, 4000);
+
+        assertEquals(productService.getAllProducts().size(), registry.get("catalog.products").gauge().value());
+        assertEquals(productService.getCatalogVersion(), registry.get("catalog.version").gauge().value());
+        assertEquals(0.5, registry.get("catalog.cache.hit.ratio").tag("cache", "priceRange").gauge().value());
+        assertEquals(1, registry.get("catalog.cache.hits").tag("cache", "priceRange").functionCounter().count());
+    }
+}
@@ -0,0 +1,79 @@
+package com.productapi.service.persistence;
+
+import com.productapi.model.Product;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogSnapshotFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        List<Product> byPrice = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            byPrice.add(new Product(String.format("7%07d", i), "Item " + (i % 100), "Categoria " + (i % 7), i * 3, i % 101, i % 2));
+        }
+        Path path = directory.resolve("catalog.bin");
+        
+        CatalogSnapshotFile.write(path, 42, byPrice);
+        CatalogSnapshotFile file = CatalogSnapshotFile.open(path);
+        
+        assertEquals(42, file.getVersion());
+        assertEquals(5000, file.size());
+        assertEquals(byPrice.get(1234), file.get("70001234"));
+        assertEquals(byPrice.get(4999), file.get("70004999"));
+        assertNull(file.get("79999999"));
+        assertFalse(file.contains("00000000"));
+        assertEquals(byPrice, file.getProducts());
+        
+        // The records are the price index: ranges are found by binary search and decoded one by one
+        assertEquals(4, file.firstIndexAtLeast(10));
+        assertEquals(5, file.firstIndexAbove(12));
+        assertEquals(5000, file.firstIndexAbove(Integer.MAX_VALUE));
+        assertEquals(byPrice.get(4), file.product(4));
+        assertEquals(12, file.price(4));
+        assertEquals("70000004", file.barcode(4));
+    }
+
+    @Test
+    public void testReplaceAndEmptyCatalog() throws IOException {
+        Path path = directory.resolve("catalog.bin");
+        CatalogSnapshotFile.write(path, 1, List.of(new Product("74001755", "Ball Gown", "Full Body Outfits", 3548, 7, 1)));
+        
+        // Writing again replaces the file; an empty catalog is valid
+        CatalogSnapshotFile.write(path, 2, Collections.emptyList());
+        CatalogSnapshotFile file = CatalogSnapshotFile.open(path);
+        
+        assertEquals(2, file.getVersion());
+        assertEquals(0, file.size());
+        assertNull(file.get("74001755"));
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void testRejectsInvalidFiles() throws IOException {
+        Path garbage = directory.resolve("garbage.bin");
+        Files.write(garbage, new byte[128]);
+        assertThrows(IOException.class, () -> CatalogSnapshotFile.open(garbage));
+        
+        Path truncated = directory.resolve("truncated.bin");
+        CatalogSnapshotFile.write(truncated, 1, List.of(new Product("74001755", "Ball Gown", "Full Body Outfits", 3548, 7, 1)));
+        byte[] bytes = Files.readAllBytes(truncated);
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 3));
+        assertThrows(IOException.class, () -> CatalogSnapshotFile.open(truncated));
+    }
+}
@@ -0,0 +1,261 @@
+package com.productapi.service.replication;
+
+import com.productapi.model.Product;
+import com.productapi.model.ProductChangeEvent;
+import com.productapi.service.ProductServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductChangeReplicatorTest {
+
+    private ProductServiceImpl first;
+    private ProductServiceImpl second;
+
+    @BeforeEach
+    public void setup() {
+        first = new ProductServiceImpl();
+        first.init(); // Initialize with sample data
+        second = new ProductServiceImpl();
+        second.init();
+    }
+
+    @Test
+    public void testPeersConverge() {
+        InProcessProductChangeBus bus = new InProcessProductChangeBus();
+        ProductChangeReplicator firstReplicator = replicate(first, bus);
+        ProductChangeReplicator secondReplicator = replicate(second, bus);
+
+        first.createProduct(new Product("74009050", "Linen Shirt", "Tops", 2990, 0, 1));
+        second.updateProduct(new Product("74001755", "Ball Gown", "Full Body Outfits", 3000, 7, 1));
+        first.upsertAll(List.of(
+                new Product("74009051", "Wool Socks", "Accessories", 890, 0, 1),
+                new Product("74009050", "Linen Shirt", "Tops", 2790, 0, 1)));
+        second.deleteProduct("74009051");
+
+        assertEquals(first.getAllProducts(), second.getAllProducts());
+        assertEquals(2790, second.getProductByBarcode("74009050").getPrice());
+        assertEquals(3000, first.getProductByBarcode("74001755").getPrice());
+        assertNull(first.getProductByBarcode("74009051"));
+        // Peer writes are applied, not published again
+        assertEquals(2, firstReplicator.getPublished());
+        assertEquals(2, firstReplicator.getApplied());
+        assertEquals(2, secondReplicator.getPublished());
+        assertEquals(0, firstReplicator.getGaps() + secondReplicator.getGaps());
+    }
+
+    @Test
+    public void testLostEventIsDetected() {
+        InProcessProductChangeBus bus = new InProcessProductChangeBus();
+        ProductChangeBus lossy = new ProductChangeBus() {
+            @Override
+            public void publish(ProductChangeEvent event) {
+                // Drop the second write on the wire
+                if (event.getSequence() != 2) {
+                    bus.publish(event);
+                }
+            }
+
+            @Override
+            public void subscribe(Consumer<ProductChangeEvent> subscriber) {
+                bus.subscribe(subscriber);
+            }
+        };
+        replicate(first, lossy);
+        ProductChangeReplicator receiver = replicate(second, bus);
+
+        first.createProduct(new Product("74009060", "Rain Coat", "Outerwear", 8990, 0, 1));
+        first.createProduct(new Product("74009061", "Rain Hat", "Accessories", 1990, 0, 1));
+        first.createProduct(new Product("74009062", "Rain Boots", "Footwear", 4990, 0, 1));
+
+        assertEquals(1, receiver.getGaps());
+        assertEquals(2, receiver.getApplied());
+        // The origin's catalog is merged once when it is first seen and again to fill the gap
+        assertEquals(2, receiver.getResyncs());
+        assertEquals("Rain Hat", second.getProductByBarcode("74009061").getItem());
+        assertEquals("Rain Boots", second.getProductByBarcode("74009062").getItem());
+        assertEquals(first.getAllProducts(), second.getAllProducts());
+    }
+
+    @Test
+    public void testConcurrentWritesToOneBarcodeConverge() throws Exception {
+        InProcessProductChangeBus bus = new InProcessProductChangeBus();
+        AtomicLong clock = new AtomicLong(1_000);
+        ProductChangeReplicator firstReplicator = replicate(first, bus, clock);
+        ProductChangeReplicator secondReplicator = replicate(second, bus, clock);
+
+        ExecutorService writers = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> done = new ArrayList<>();
+        for (ProductServiceImpl store : List.of(first, second)) {
+            done.add(writers.submit(() -> {
+                start.await();
+                for (int i = 0; i < 200; i++) {
+                    store.upsertAll(List.of(new Product("74001755", "Ball Gown", "Full Body Outfits", 3000 + i, 7, 1)));
+                    if (i % 50 == 49) {
+                        store.deleteProduct("74001755");
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> writer : done) {
+            writer.get(10, TimeUnit.SECONDS);
+        }
+        writers.shutdown();
+        // Both publishers drain, delivering every event before the stores are compared
+        firstReplicator.stop();
+        secondReplicator.stop();
+
+        assertEquals(first.getProductByBarcode("74001755"), second.getProductByBarcode("74001755"));
+        assertEquals(first.getAllProducts(), second.getAllProducts());
+    }
+
+    @Test
+    public void testRedeliveryIsIgnored() {
+        InProcessProductChangeBus bus = new InProcessProductChangeBus();
+        ProductChangeBus duplicating = new ProductChangeBus() {
+            @Override
+            public void publish(ProductChangeEvent event) {
+                bus.publish(event);
+                bus.publish(event);
+            }
+
+            @Override
+            public void subscribe(Consumer<ProductChangeEvent> subscriber) {
+                bus.subscribe(subscriber);
+            }
+        };
+        replicate(first, duplicating);
+        ProductChangeReplicator receiver = replicate(second, bus);
+
+        first.createProduct(new Product("74009070", "Denim Jacket", "Outerwear", 6990, 0, 1));
+        first.deleteProduct("74009070");
+
+        assertEquals(2, receiver.getApplied());
+        assertEquals(2, receiver.getDuplicates());
+        assertNull(second.getProductByBarcode("74009070"));
+        assertEquals(first.getCatalogVersion(), second.getCatalogVersion());
+    }
+
+    @Test
+    public void testNewReplicaTakesInEarlierWritesInPages() {
+        InProcessProductChangeBus bus = new InProcessProductChangeBus();
+        List<ProductChangeEvent> pages = new ArrayList<>();
+        bus.subscribe(event -> {
+            if (event.getCatalog() != null) {
+                pages.add(event);
+            }
+        });
+        AtomicLong clock = new AtomicLong(1_000);
+        replicate(first, bus, clock::incrementAndGet, 2);
+        first.createProduct(new Product("74009090", "Wool Coat", "Outerwear", 12990, 0, 1));
+        first.deleteProduct("74001755");
+
+        // Joins later with the sample catalog, missing the writes above and holding a product first lacks
+        second.deleteProduct("74002423");
+        second.createProduct(new Product("74009091", "Old Stock", "Accessories", 100, 0, 1));
+        ProductChangeReplicator joined = replicate(second, bus, clock::incrementAndGet, 2);
+        first.createProduct(new Product("74009092", "Wool Hat", "Accessories", 2490, 0, 1));
+
+        assertEquals(1, joined.getResyncs());
+        assertEquals(0, joined.getGaps());
+        assertEquals(first.getAllProducts(), second.getAllProducts());
+        assertEquals("Wool Coat", second.getProductByBarcode("74009090").getItem());
+        assertNull(second.getProductByBarcode("74001755"));
+        assertNull(second.getProductByBarcode("74009091"));
+        // Every page but the last is full, numbered in order and tagged with the request
+        assertTrue(pages.size() > 2);
+        for (int i = 0; i < pages.size(); i++) {
+            assertEquals(i, pages.get(i).getResyncPage());
+            assertEquals(pages.get(0).getResyncId(), pages.get(i).getResyncId());
+            assertEquals(i == pages.size() - 1, pages.get(i).isResyncComplete());
+            assertTrue(pages.get(i).getCatalog().size() <= 2);
+        }
+    }
+
+    @Test
+    public void testMissingPageRestartsResync() {
+        InProcessProductChangeBus bus = new InProcessProductChangeBus();
+        AtomicInteger pages = new AtomicInteger();
+        ProductChangeBus lossy = new ProductChangeBus() {
+            @Override
+            public void publish(ProductChangeEvent event) {
+                // Drop the second page of the first resync reply
+                if (event.getCatalog() == null || pages.incrementAndGet() != 2) {
+                    bus.publish(event);
+                }
+            }
+
+            @Override
+            public void subscribe(Consumer<ProductChangeEvent> subscriber) {
+                bus.subscribe(subscriber);
+            }
+        };
+        AtomicLong clock = new AtomicLong(1_000);
+        replicate(first, lossy, clock::incrementAndGet, 2);
+        first.createProduct(new Product("74009093", "Wool Gloves", "Accessories", 1990, 0, 1));
+        ProductChangeReplicator receiver = replicate(second, bus, clock::incrementAndGet, 2);
+
+        first.createProduct(new Product("74009094", "Wool Scarf", "Accessories", 2290, 0, 1));
+
+        // The third page shows the second missing, and the resync is asked for again
+        assertEquals(1, receiver.getResyncs());
+        assertEquals(first.getAllProducts(), second.getAllProducts());
+    }
+
+    @Test
+    public void testDeleteStampsArePrunedAfterTtl() {
+        InProcessProductChangeBus bus = new InProcessProductChangeBus();
+        AtomicLong clock = new AtomicLong(1_000);
+        ProductChangeReplicator replicator = replicate(first, bus, clock::get, 2);
+        replicator.setTombstoneTtlMillis(60_000);
+
+        first.deleteProduct("74001755");
+        clock.addAndGet(59_999);
+        first.createProduct(new Product("74009095", "Wool Vest", "Tops", 3990, 0, 1));
+        assertEquals(0, replicator.getPrunedTombstones());
+
+        clock.addAndGet(1);
+        first.createProduct(new Product("74009096", "Wool Cap", "Accessories", 1490, 0, 1));
+        assertEquals(1, replicator.getPrunedTombstones());
+    }
+
+    private static ProductChangeReplicator replicate(ProductServiceImpl store, ProductChangeBus bus) {
+        // Publish on the writing thread so the test sees every event delivered
+        ProductChangeReplicator replicator = new ProductChangeReplicator(store, bus, Runnable::run, System::currentTimeMillis);
+        replicator.start();
+        return replicator;
+    }
+
+    private static ProductChangeReplicator replicate(ProductServiceImpl store, ProductChangeBus bus, AtomicLong clock) {
+        // Publish from a thread of its own, as in production; a coarse shared clock makes ties likely
+        ProductChangeReplicator replicator = new ProductChangeReplicator(store, bus,
+                Executors.newSingleThreadExecutor(), () -> clock.incrementAndGet() / 8);
+        replicator.start();
+        return replicator;
+    }
+
+    private static ProductChangeReplicator replicate(ProductServiceImpl store, ProductChangeBus bus, LongSupplier clock,
+            int pageSize) {
+        // Publish on the writing thread, with a clock of the test's own and small resync pages
+        ProductChangeReplicator replicator = new ProductChangeReplicator(store, bus, Runnable::run, clock);
+        replicator.setResyncPageSize(pageSize);
+        replicator.start();
+        return replicator;
+    }
+}
@@ -0,0 +1,68 @@
+package com.productapi.tracing;
+
+import com.productapi.model.RequestTrace;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestTracerTest {
+
+    @Test
+    public void testNothingIsTracedWhenSamplingIsOff() {
+        RequestTracer tracer = new RequestTracer(0, 16);
+
+        assertNull(tracer.begin("GET", "/products", false));
+        assertNull(tracer.current());
+        assertEquals(0, tracer.getSettings().getTraced());
+    }
+
+    @Test
+    public void testSpansNestWithSelfTime() throws InterruptedException {
+        RequestTracer tracer = new RequestTracer(0, 16);
+        Trace trace = tracer.begin("GET", "/filter/price/1000/4000", true);
+        assertSame(trace, tracer.current());
+
+        int controller = trace.open("controller ProductController.filterByPrice");
+        int service = trace.open("service ProductServiceImpl.filterByPriceRange");
+        Thread.sleep(5);
+        trace.close(service);
+        int serialization = trace.open("serialization");
+        trace.close(serialization);
+        trace.close(controller);
+        tracer.finish(trace, 200);
+
+        assertNull(tracer.current());
+        List<RequestTrace> traces = tracer.recent(10);
+        assertEquals(1, traces.size());
+        RequestTrace recorded = traces.get(0);
+        assertEquals(trace.getId(), recorded.getId());
+        assertEquals(200, recorded.getStatus());
+        List<RequestTrace.Span> spans = recorded.getSpans();
+        assertEquals(3, spans.size());
+        assertEquals(0, spans.get(0).getDepth());
+        assertEquals(1, spans.get(1).getDepth());
+        assertEquals(1, spans.get(2).getDepth());
+        assertTrue(spans.get(1).getDurationMicros() >= 5000);
+        // The controller's own time excludes the service call it waited for
+        assertTrue(spans.get(0).getSelfMicros() < spans.get(1).getDurationMicros());
+    }
+
+    @Test
+    public void testBufferKeepsNewestTraces() {
+        RequestTracer tracer = new RequestTracer(1, 4);
+        for (int i = 0; i < 10; i++) {
+            Trace trace = tracer.begin("GET", "/products/" + i, false);
+            trace.close(trace.open("dispatch"));
+            tracer.finish(trace, 200);
+        }
+
+        List<RequestTrace> traces = tracer.recent(10);
+        assertEquals(4, traces.size());
+        assertEquals("/products/9", traces.get(0).getPath());
+        assertEquals("/products/6", traces.get(3).getPath());
+        assertEquals(10, tracer.getSettings().getTraced());
+        assertThrows(IllegalArgumentException.class, () -> tracer.setSampleRate(1.5));
+    }
+}